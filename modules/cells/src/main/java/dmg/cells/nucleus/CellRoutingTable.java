@@ -1,11 +1,14 @@
 package dmg.cells.nucleus;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.SetMultimap;
 import com.google.common.math.IntMath;
 
+import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -15,30 +18,41 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 
 import org.dcache.util.ColumnWriter;
 
-import static java.util.stream.Collectors.toList;
-
+/**
+ * Routing table of a cell domain.
+ *
+ * Routes are looked up for every message routed through a domain, while routes
+ * change rarely. Lookups therefore operate on an immutable snapshot of the
+ * table that is rebuilt whenever a route is added or deleted and published
+ * through a volatile field. Lookups never acquire a lock.
+ */
 public class CellRoutingTable implements Serializable
 {
     private static final long serialVersionUID = -1456280129622980563L;
 
+    /* The following collections are only accessed while holding the monitor of the
+     * routing table. They are the source from which the lookup snapshot is built.
+     */
     private final ListMultimap<String, CellRoute> _queue = ArrayListMultimap.create();
     private final SetMultimap<String, CellRoute> _domain = LinkedHashMultimap.create();
     private final SetMultimap<String, CellRoute> _exact = LinkedHashMultimap.create();
-    private final Map<String, CopyOnWriteArraySet<CellRoute>> _topic = new HashMap<>();
-    private final AtomicReference<CellRoute> _dumpster = new AtomicReference<>();
+    private final SetMultimap<String, CellRoute> _topic = LinkedHashMultimap.create();
     private final List<CellRoute> _default = new ArrayList<>();
-    private final Random _random = new Random();
+    private CellRoute _dumpster;
+
+    private volatile Snapshot _snapshot = new Snapshot();
+
+    private final LongAdder _lookups = new LongAdder();
+    private final LongAdder _lookupTime = new LongAdder();
 
-    public void add(CellRoute route)
+    public synchronized void add(CellRoute route)
             throws IllegalArgumentException
     {
         String dest;
@@ -46,53 +60,45 @@ public class CellRoutingTable implements Serializable
         case CellRoute.EXACT:
         case CellRoute.ALIAS:
             dest = route.getCellName() + '@' + route.getDomainName();
-            synchronized (_exact) {
-                if (!_exact.put(dest, route)) {
-                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                }
+            if (!_exact.put(dest, route)) {
+                throw new IllegalArgumentException("Duplicated route entry for : " + dest);
             }
             break;
         case CellRoute.QUEUE:
             dest = route.getCellName();
-            synchronized (_queue) {
-                if (_queue.containsEntry(dest, route)) {
-                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                }
-                _queue.put(dest, route);
+            if (_queue.containsEntry(dest, route)) {
+                throw new IllegalArgumentException("Duplicated route entry for : " + dest);
             }
+            _queue.put(dest, route);
             break;
         case CellRoute.TOPIC:
             dest = route.getCellName();
-            synchronized (_topic) {
-                if (!_topic.computeIfAbsent(dest, key -> new CopyOnWriteArraySet()).add(route)) {
-                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                }
+            if (!_topic.put(dest, route)) {
+                throw new IllegalArgumentException("Duplicated route entry for : " + dest);
             }
             break;
         case CellRoute.DOMAIN:
             dest = route.getDomainName();
-            synchronized (_domain) {
-                if (!_domain.put(dest, route)) {
-                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                }
+            if (!_domain.put(dest, route)) {
+                throw new IllegalArgumentException("Duplicated route entry for : " + dest);
             }
             break;
         case CellRoute.DEFAULT:
-            synchronized (_default) {
-                if (!_default.contains(route)) {
-                    _default.add(route);
-                }
+            if (!_default.contains(route)) {
+                _default.add(route);
             }
             break;
         case CellRoute.DUMPSTER:
-            if (!_dumpster.compareAndSet(null, route)) {
+            if (_dumpster != null) {
                 throw new IllegalArgumentException("Duplicated route entry for dumpster");
             }
+            _dumpster = route;
             break;
         }
+        _snapshot = new Snapshot();
     }
 
-    public void delete(CellRoute route)
+    public synchronized void delete(CellRoute route)
             throws IllegalArgumentException
     {
         String dest;
@@ -100,89 +106,55 @@ public class CellRoutingTable implements Serializable
         case CellRoute.EXACT:
         case CellRoute.ALIAS:
             dest = route.getCellName() + '@' + route.getDomainName();
-            synchronized (_exact) {
-                if (!_exact.remove(dest, route)) {
-                    throw new IllegalArgumentException("Route entry not found for : " + dest);
-                }
+            if (!_exact.remove(dest, route)) {
+                throw new IllegalArgumentException("Route entry not found for : " + dest);
             }
             break;
         case CellRoute.QUEUE:
             dest = route.getCellName();
-            synchronized (_queue) {
-                if (!_queue.remove(dest, route)) {
-                    throw new IllegalArgumentException("Route entry not found for : " + dest);
-                }
+            if (!_queue.remove(dest, route)) {
+                throw new IllegalArgumentException("Route entry not found for : " + dest);
             }
             break;
         case CellRoute.TOPIC:
             dest = route.getCellName();
-            synchronized (_topic) {
-                Set<CellRoute> routes = _topic.get(dest);
-                if (!routes.remove(route)) {
-                    throw new IllegalArgumentException("Route entry not found for : " + dest);
-                }
-                if (routes.isEmpty()) {
-                    _topic.remove(dest);
-                }
+            if (!_topic.remove(dest, route)) {
+                throw new IllegalArgumentException("Route entry not found for : " + dest);
             }
             break;
         case CellRoute.DOMAIN:
             dest = route.getDomainName();
-            synchronized (_domain) {
-                if (!_domain.remove(dest, route)) {
-                    throw new IllegalArgumentException("Route entry not found for : " + dest);
-                }
+            if (!_domain.remove(dest, route)) {
+                throw new IllegalArgumentException("Route entry not found for : " + dest);
             }
             break;
         case CellRoute.DEFAULT:
-            synchronized (_default) {
-                if (!_default.remove(route)) {
-                    throw new IllegalArgumentException("Route entry not found for default");
-                }
+            if (!_default.remove(route)) {
+                throw new IllegalArgumentException("Route entry not found for default");
             }
             break;
         case CellRoute.DUMPSTER:
-            CellRoute currentDumpster = _dumpster.get();
-            if (!Objects.equals(currentDumpster, route) || !_dumpster.compareAndSet(currentDumpster, null)) {
+            if (!Objects.equals(_dumpster, route)) {
                 throw new IllegalArgumentException("Route entry not found dumpster");
             }
+            _dumpster = null;
             break;
         }
+        _snapshot = new Snapshot();
     }
 
-    public Collection<CellRoute> delete(CellAddressCore target)
+    public synchronized Collection<CellRoute> delete(CellAddressCore target)
     {
         Collection<CellRoute> deleted = new ArrayList<>();
 
         String addr = target.toString();
-        synchronized (_exact) {
-            delete(_exact.values(), addr, deleted);
-        }
-        synchronized (_queue) {
-            delete(_queue.values(), addr, deleted);
-        }
-        synchronized (_domain) {
-            delete(_domain.values(), addr, deleted);
-        }
-        synchronized (_topic) {
-            /* We cannot use the regular delete method because a CopyOnWriteArraySet iterator
-             * doesn't allow manipulating operations. We trade expensive deletion for not having
-             * to copy the set of topic routes in findTopicRoutes.
-             */
-            Iterator<CopyOnWriteArraySet<CellRoute>> iterator = _topic.values().iterator();
-            while (iterator.hasNext()) {
-                Set<CellRoute> routes = iterator.next();
-                List<CellRoute> toRemove =
-                        routes.stream().filter(route -> route.getTargetName().equals(addr)).collect(toList());
-                routes.removeAll(toRemove);
-                if (routes.isEmpty()) {
-                    iterator.remove();
-                }
-                deleted.addAll(toRemove);
-            }
-        }
-        synchronized (_default) {
-            delete(_default, addr, deleted);
+        delete(_exact.values(), addr, deleted);
+        delete(_queue.values(), addr, deleted);
+        delete(_domain.values(), addr, deleted);
+        delete(_topic.values(), addr, deleted);
+        delete(_default, addr, deleted);
+        if (!deleted.isEmpty()) {
+            _snapshot = new Snapshot();
         }
         return deleted;
     }
@@ -201,57 +173,33 @@ public class CellRoutingTable implements Serializable
 
     public CellRoute find(CellAddressCore addr, boolean allowRemote)
     {
-        String cellName = addr.getCellName();
-        String domainName = addr.getCellDomainName();
-        Optional<CellRoute> route;
-        synchronized (_exact) {
-            route = _exact.get(cellName + '@' + domainName).stream().findFirst();
-        }
-        if (route.isPresent()) {
-            return route.get();
-        }
-        if (domainName.equals("local")) {
-            //
-            // this is not really local but wellknown
-            // we checked for local before we called this.
-            //
-            synchronized (_queue) {
-                List<CellRoute> routes = _queue.get(cellName);
-                if (!allowRemote) {
-                    CellRoute[] localRoutes =
-                            routes.stream().filter(r -> !r.getTarget().isDomainAddress()).toArray(CellRoute[]::new);
-                    return (localRoutes.length > 0) ? localRoutes[_random.nextInt(localRoutes.length)] : null;
-                } else if (!routes.isEmpty()) {
-                    return routes.get(_random.nextInt(routes.size()));
-                }
-            }
-        } else {
-            synchronized (_domain) {
-                route = _domain.get(domainName).stream().findFirst();
-            }
-            if (route.isPresent()) {
-                return route.get();
-            }
-        }
-        synchronized (_default) {
-            return _default.isEmpty() ? null : _default.get(IntMath.mod(addr.hashCode(), _default.size()));
+        long start = System.nanoTime();
+        try {
+            return _snapshot.find(addr, allowRemote);
+        } finally {
+            _lookups.increment();
+            _lookupTime.add(System.nanoTime() - start);
         }
     }
 
     public Set<CellRoute> findTopicRoutes(CellAddressCore addr)
     {
-        String cellName = addr.getCellName();
         String domainName = addr.getCellDomainName();
         if (!domainName.equals("local")) {
             return Collections.emptySet();
         }
-        CopyOnWriteArraySet<CellRoute> routes;
-        synchronized (_topic) {
-            routes = _topic.get(cellName);
-        }
+        Set<CellRoute> routes = _snapshot.topics.get(addr.getCellName());
         return (routes != null) ? routes : Collections.emptySet();
     }
 
+    public void getInfo(PrintWriter pw)
+    {
+        long lookups = _lookups.sum();
+        long time = _lookupTime.sum();
+        pw.format(" Route lookups : %d (average %d ns)\n",
+                  lookups, (lookups == 0) ? 0 : time / lookups);
+    }
+
     public String toString()
     {
         ColumnWriter writer = new ColumnWriter()
@@ -267,57 +215,148 @@ public class CellRoutingTable implements Serializable
                         .value("gateway", route.getTargetName())
                         .value("type", route.getRouteTypeName());
 
-        synchronized (_topic) {
-            _topic.values().forEach(routes -> routes.forEach(append));
-        }
-        synchronized (_exact) {
-            _exact.values().forEach(append);
-        }
-        synchronized (_queue) {
-            _queue.values().forEach(append);
-        }
-        synchronized (_domain) {
-            _domain.values().forEach(append);
-        }
-        synchronized (_default) {
-            _default.forEach(append);
-        }
-        CellRoute dumpsterRoute = _dumpster.get();
-        if (dumpsterRoute != null) {
-            append.accept(dumpsterRoute);
+        for (CellRoute route : getRoutingList()) {
+            append.accept(route);
         }
         return writer.toString();
     }
 
     public CellRoute[] getRoutingList()
     {
-        List<CellRoute> routes = new ArrayList<>();
-        synchronized (_topic) {
-            _topic.values().forEach(routes::addAll);
+        return _snapshot.routes.clone();
+    }
+
+    public boolean hasDefaultRoute()
+    {
+        return _snapshot.defaults.length > 0;
+    }
+
+    /**
+     * Routes of a particular domain.
+     */
+    private static class DomainRoutes implements Serializable
+    {
+        private static final long serialVersionUID = 7390826539357231549L;
+
+        /**
+         * First exact or alias route for each cell name of the domain.
+         */
+        final Map<String, CellRoute> exact;
+
+        /**
+         * First domain route for the domain, or null.
+         */
+        final CellRoute domain;
+
+        DomainRoutes(Map<String, CellRoute> exact, CellRoute domain)
+        {
+            this.exact = exact;
+            this.domain = domain;
         }
-        synchronized (_exact) {
+    }
+
+    /**
+     * Immutable view of the routing table optimized for lookups.
+     *
+     * Exact, alias and domain routes are indexed by domain name, thus a lookup
+     * of a fully qualified address resolves both the exact route and the domain
+     * fallback with a single lookup of the domain, without constructing the
+     * fully qualified address as a string.
+     */
+    private class Snapshot implements Serializable
+    {
+        private static final long serialVersionUID = -1753614893785418460L;
+
+        final Map<String, DomainRoutes> domains;
+        final Map<String, CellRoute[]> queues;
+        final Map<String, CellRoute[]> localQueues;
+        final Map<String, Set<CellRoute>> topics;
+        final CellRoute[] defaults;
+        final CellRoute[] routes;
+
+        /**
+         * Creates a snapshot of the current routing table. Must be called while
+         * holding the monitor of the routing table.
+         */
+        Snapshot()
+        {
+            Map<String, Map<String, CellRoute>> exactByDomain = new HashMap<>();
+            for (CellRoute route : _exact.values()) {
+                exactByDomain.computeIfAbsent(route.getDomainName(), d -> new HashMap<>())
+                        .putIfAbsent(route.getCellName(), route);
+            }
+            Map<String, DomainRoutes> domains = new HashMap<>();
+            for (Map.Entry<String, Map<String, CellRoute>> e : exactByDomain.entrySet()) {
+                Set<CellRoute> domainRoutes = _domain.get(e.getKey());
+                domains.put(e.getKey(), new DomainRoutes(ImmutableMap.copyOf(e.getValue()),
+                                                         domainRoutes.isEmpty() ? null : domainRoutes.iterator().next()));
+            }
+            for (Map.Entry<String, Collection<CellRoute>> e : _domain.asMap().entrySet()) {
+                domains.computeIfAbsent(e.getKey(),
+                                        d -> new DomainRoutes(Collections.emptyMap(), e.getValue().iterator().next()));
+            }
+            this.domains = ImmutableMap.copyOf(domains);
+
+            ImmutableMap.Builder<String, CellRoute[]> queues = ImmutableMap.builder();
+            ImmutableMap.Builder<String, CellRoute[]> localQueues = ImmutableMap.builder();
+            for (Map.Entry<String, Collection<CellRoute>> e : _queue.asMap().entrySet()) {
+                queues.put(e.getKey(), e.getValue().toArray(new CellRoute[e.getValue().size()]));
+                localQueues.put(e.getKey(), e.getValue().stream()
+                        .filter(r -> !r.getTarget().isDomainAddress()).toArray(CellRoute[]::new));
+            }
+            this.queues = queues.build();
+            this.localQueues = localQueues.build();
+
+            ImmutableMap.Builder<String, Set<CellRoute>> topics = ImmutableMap.builder();
+            for (Map.Entry<String, Collection<CellRoute>> e : _topic.asMap().entrySet()) {
+                topics.put(e.getKey(), ImmutableSet.copyOf(e.getValue()));
+            }
+            this.topics = topics.build();
+
+            this.defaults = _default.toArray(new CellRoute[_default.size()]);
+
+            List<CellRoute> routes = new ArrayList<>();
+            routes.addAll(_topic.values());
             routes.addAll(_exact.values());
-        }
-        synchronized (_queue) {
             routes.addAll(_queue.values());
-        }
-        synchronized (_domain) {
             routes.addAll(_domain.values());
-        }
-        synchronized (_default) {
             routes.addAll(_default);
+            if (_dumpster != null) {
+                routes.add(_dumpster);
+            }
+            this.routes = routes.toArray(new CellRoute[routes.size()]);
         }
-        CellRoute dumpsterRoute = _dumpster.get();
-        if (dumpsterRoute != null) {
-            routes.add(dumpsterRoute);
-        }
-        return routes.toArray(new CellRoute[routes.size()]);
-    }
 
-    public boolean hasDefaultRoute()
-    {
-        synchronized (_default) {
-            return !_default.isEmpty();
+        CellRoute find(CellAddressCore addr, boolean allowRemote)
+        {
+            String cellName = addr.getCellName();
+            String domainName = addr.getCellDomainName();
+            DomainRoutes domain = domains.get(domainName);
+            if (domain != null) {
+                CellRoute route = domain.exact.get(cellName);
+                if (route != null) {
+                    return route;
+                }
+            }
+            if (domainName.equals("local")) {
+                //
+                // this is not really local but wellknown
+                // we checked for local before we called this.
+                //
+                if (!allowRemote) {
+                    CellRoute[] localRoutes = localQueues.get(cellName);
+                    return (localRoutes != null && localRoutes.length > 0)
+                           ? localRoutes[ThreadLocalRandom.current().nextInt(localRoutes.length)]
+                           : null;
+                }
+                CellRoute[] routes = queues.get(cellName);
+                if (routes != null && routes.length > 0) {
+                    return routes[ThreadLocalRandom.current().nextInt(routes.length)];
+                }
+            } else if (domain != null && domain.domain != null) {
+                return domain.domain;
+            }
+            return defaults.length == 0 ? null : defaults[IntMath.mod(addr.hashCode(), defaults.length)];
         }
     }
 }
@@ -21,4 +21,6 @@ public interface HttpRequest {
     String getUserName();
     String getPassword();
     void    setContentType(String type) ;
+    void    setHeader(String name, String value) ;
+    void    setStatus(int status) ;
 }
@@ -0,0 +1,77 @@
+package dmg.cells.nucleus;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.dcache.util.Args;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CellRoutingTableTest
+{
+    private CellRoutingTable table;
+
+    @Before
+    public void setUp()
+    {
+        table = new CellRoutingTable();
+    }
+
+    @Test
+    public void exactRouteShouldTakePrecedenceOverDomainRoute() throws Exception
+    {
+        CellRoute exact = new CellRoute(new Args("-exact a@b gateway1"));
+        CellRoute domain = new CellRoute(new Args("-domain b gateway2"));
+        table.add(domain);
+        table.add(exact);
+
+        assertThat(table.find(new CellAddressCore("a@b"), true), is(exact));
+        assertThat(table.find(new CellAddressCore("c@b"), true), is(domain));
+    }
+
+    @Test
+    public void shouldFallBackToDefaultRoute() throws Exception
+    {
+        CellRoute route = new CellRoute(new Args("-default gateway"));
+        table.add(route);
+
+        assertThat(table.find(new CellAddressCore("a@b"), true), is(route));
+        assertThat(table.hasDefaultRoute(), is(true));
+    }
+
+    @Test
+    public void shouldNotFindRemoteQueueRouteUnlessAllowed() throws Exception
+    {
+        CellRoute route = new CellRoute(new Args("-queue a *@b"));
+        table.add(route);
+        table.add(new CellRoute(new Args("-default gateway")));
+
+        assertThat(table.find(new CellAddressCore("a"), false), is(nullValue()));
+        assertThat(table.find(new CellAddressCore("a"), true), is(route));
+    }
+
+    @Test
+    public void deletedRouteShouldNotBeFound() throws Exception
+    {
+        CellRoute route = new CellRoute(new Args("-exact a@b gateway"));
+        table.add(route);
+        table.delete(route);
+
+        assertThat(table.find(new CellAddressCore("a@b"), true), is(nullValue()));
+        assertThat(table.getRoutingList().length, is(0));
+    }
+
+    @Test
+    public void deletingTargetShouldRemoveAllRoutesThroughIt() throws Exception
+    {
+        table.add(new CellRoute(new Args("-exact a@b gateway@c")));
+        table.add(new CellRoute(new Args("-domain b gateway@c")));
+        table.add(new CellRoute(new Args("-default gateway@c")));
+
+        assertThat(table.delete(new CellAddressCore("gateway@c")).size(), is(3));
+        assertThat(table.find(new CellAddressCore("a@b"), true), is(nullValue()));
+        assertThat(table.hasDefaultRoute(), is(false));
+    }
+}
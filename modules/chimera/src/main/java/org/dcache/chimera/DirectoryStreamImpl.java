@@ -36,12 +36,31 @@ public class DirectoryStreamImpl
             "UNION ALL " +
             "SELECT i.*, '..' FROM t_inodes i JOIN t_dirs d ON i.inumber = d.iparent WHERE d.ichild=?";
 
+    private static final String ORDERED_QUERY =
+            "SELECT i.*, d.iname FROM t_inodes i JOIN t_dirs d ON i.inumber = d.ichild " +
+            "WHERE d.iparent=? AND d.iname>? ORDER BY d.iname";
+
     private final ResultSet _resultSet;
     private final JdbcTemplate _jdbc;
     private final Connection _connection;
     private final PreparedStatement _statement;
 
     DirectoryStreamImpl(FsInode dir, JdbcTemplate jdbc)
+    {
+        this(jdbc, QUERY, dir.ino(), dir.ino(), dir.ino());
+    }
+
+    /**
+     * Creates a stream of the entries of {@code dir} in the order of their
+     * names, starting with the first name following {@code after}. The
+     * stream does not include the pseudo entries '.' and '..'.
+     */
+    DirectoryStreamImpl(FsInode dir, String after, JdbcTemplate jdbc)
+    {
+        this(jdbc, ORDERED_QUERY, dir.ino(), (after == null) ? "" : after);
+    }
+
+    private DirectoryStreamImpl(JdbcTemplate jdbc, String query, Object... args)
     {
         _jdbc = jdbc;
 
@@ -50,16 +69,16 @@ public class DirectoryStreamImpl
         ResultSet rs;
         try {
             connection = DataSourceUtils.getConnection(_jdbc.getDataSource());
-            ps = connection.prepareStatement(QUERY);
+            ps = connection.prepareStatement(query);
             ps.setFetchSize(50);
-            ps.setLong(1, dir.ino());
-            ps.setLong(2, dir.ino());
-            ps.setLong(3, dir.ino());
+            for (int i = 0; i < args.length; i++) {
+                ps.setObject(i + 1, args[i]);
+            }
             rs = ps.executeQuery();
         } catch (SQLException ex) {
             JdbcUtils.closeStatement(ps);
             DataSourceUtils.releaseConnection(connection, _jdbc.getDataSource());
-            throw _jdbc.getExceptionTranslator().translate("StatementExecution", QUERY, ex);
+            throw _jdbc.getExceptionTranslator().translate("StatementExecution", query, ex);
         }
         _connection = connection;
         _resultSet = rs;
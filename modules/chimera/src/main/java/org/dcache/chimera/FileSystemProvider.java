@@ -17,6 +17,7 @@
 package org.dcache.chimera;
 
 import java.io.Closeable;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -86,6 +87,14 @@ public interface FileSystemProvider extends Closeable {
     DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(FsInode dir)
             throws ChimeraFsException;
 
+    /**
+     * Returns the entries of a directory in the order of their names, starting
+     * with the first name following {@code after}, or with the first name if
+     * {@code after} is null. The pseudo entries '.' and '..' are not included.
+     */
+    DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(FsInode dir, String after)
+            throws ChimeraFsException;
+
     void remove(String path) throws ChimeraFsException;
 
     /**
@@ -243,6 +252,13 @@ public interface FileSystemProvider extends Closeable {
     List<StorageLocatable> getInodeLocations(FsInode inode)
             throws ChimeraFsException;
 
+    /**
+     * Returns the locations of several inodes. Inodes without locations
+     * are absent from the result.
+     */
+    Map<Long, List<StorageLocatable>> getInodeLocations(Collection<? extends FsInode> inodes)
+            throws ChimeraFsException;
+
     void addInodeLocation(FsInode inode, int type,
                           String location) throws ChimeraFsException;
 
@@ -253,6 +269,16 @@ public interface FileSystemProvider extends Closeable {
 
     Map<String, byte[]> getAllTags(FsInode inode) throws ChimeraFsException;
 
+    /**
+     * Returns a counter that is incremented whenever a tag is created, written
+     * or removed. Reading the generation is cheap and allows cached tag values
+     * to be validated, even if several processes share the same database.
+     *
+     * @return current tag generation
+     * @throws ChimeraFsException
+     */
+    long getTagGeneration() throws ChimeraFsException;
+
     void createTag(FsInode inode, String name)
             throws ChimeraFsException;
 
@@ -296,6 +322,13 @@ public interface FileSystemProvider extends Closeable {
     Set<Checksum> getInodeChecksums(FsInode inode)
                     throws ChimeraFsException;
 
+    /**
+     * Returns the checksums of several inodes. Inodes without checksums
+     * are absent from the result.
+     */
+    Map<Long, List<Checksum>> getInodeChecksums(Collection<? extends FsInode> inodes)
+            throws ChimeraFsException;
+
     String getInfo();
 
     /**
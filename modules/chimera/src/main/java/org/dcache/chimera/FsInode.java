@@ -429,6 +429,16 @@ public class FsInode {
         return _fs.newDirectoryStream(this);
     }
 
+    /**
+     * Returns the entries of this directory in the order of their names,
+     * starting with the first name following {@code after}.
+     *
+     * @see FileSystemProvider#newDirectoryStream(FsInode, String)
+     */
+    public DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(String after) throws ChimeraFsException {
+        return _fs.newDirectoryStream(this, after);
+    }
+
     public String getId() throws ChimeraFsException
     {
         Stat stat = _stat;
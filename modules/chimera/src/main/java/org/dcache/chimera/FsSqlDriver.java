@@ -45,6 +45,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -217,10 +218,29 @@ public class FsSqlDriver {
      * @return
      */
     DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(FsInode dir) {
+        return newDirectoryStream(dir, new DirectoryStreamImpl(dir, _jdbc));
+    }
+
+    /**
+     * Returns the entries of a directory in the order of their names, starting
+     * with the first name following {@code after}, or with the first name if
+     * {@code after} is null. The pseudo entries '.' and '..' are not included.
+     *
+     * Unlike the unordered stream, a listing may be resumed after the last
+     * entry it returned without skipping or repeating entries that were not
+     * modified in the meantime.
+     *
+     * @param dir
+     * @param after name after which to start, or null
+     * @return
+     */
+    DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(FsInode dir, String after) {
+        return newDirectoryStream(dir, new DirectoryStreamImpl(dir, after, _jdbc));
+    }
+
+    private DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(FsInode dir, DirectoryStreamImpl stream) {
         return new DirectoryStreamB<HimeraDirectoryEntry>()
         {
-            final DirectoryStreamImpl stream = new DirectoryStreamImpl(dir, _jdbc);
-
             @Override
             public Iterator<HimeraDirectoryEntry> iterator()
             {
@@ -953,6 +973,31 @@ public class FsSqlDriver {
                            });
     }
 
+    /**
+     * Returns the online locations of several inodes in a single query.
+     *
+     * @param inodes
+     * @return locations by inode number, ordered by priority
+     */
+    Map<Long, List<StorageLocatable>> getInodeLocations(Collection<? extends FsInode> inodes) {
+        Map<Long, List<StorageLocatable>> locations = new HashMap<>();
+        if (!inodes.isEmpty()) {
+            _jdbc.query("SELECT inumber,itype,ilocation,ipriority,ictime,iatime FROM t_locationinfo " +
+                        "WHERE inumber IN (" + placeholders(inodes.size()) + ") AND istate=1 ORDER BY ipriority DESC",
+                        ps -> setInodeNumbers(ps, inodes),
+                        rs -> {
+                            int type = rs.getInt("itype");
+                            long ctime = rs.getTimestamp("ictime").getTime();
+                            long atime = rs.getTimestamp("iatime").getTime();
+                            int priority = rs.getInt("ipriority");
+                            String location = rs.getString("ilocation");
+                            locations.computeIfAbsent(rs.getLong("inumber"), ino -> new ArrayList<>())
+                                    .add(new StorageGenericLocation(type, priority, location, ctime, atime, true));
+                        });
+        }
+        return locations;
+    }
+
 
     /**
      *
@@ -1039,6 +1084,25 @@ public class FsSqlDriver {
     void createTag(FsInode inode, String name, int uid, int gid, int mode) {
         long id = createTagInode(uid, gid, mode);
         assignTagToDir(id, name, inode, false, true);
+        incrementTagGeneration();
+    }
+
+    /**
+     * Returns the current tag generation. The generation is incremented whenever
+     * a tag is created, written or removed and allows clients to cheaply validate
+     * cached tag values.
+     *
+     * @return tag generation
+     */
+    long getTagGeneration() {
+        return _jdbc.queryForObject("SELECT igeneration FROM t_tags_generation", Long.class);
+    }
+
+    /**
+     * Increments the tag generation.
+     */
+    void incrementTagGeneration() {
+        _jdbc.update("UPDATE t_tags_generation SET igeneration=igeneration+1");
     }
 
     /**
@@ -1174,12 +1238,15 @@ public class FsSqlDriver {
                          ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
                          ps.setLong(4, tagId);
                      });
+        incrementTagGeneration();
         return len;
 
     }
 
     void removeTag(FsInode dir, String tag) {
-        _jdbc.update("DELETE FROM t_tags WHERE inumber=? AND itagname=?", dir.ino(), tag);
+        if (_jdbc.update("DELETE FROM t_tags WHERE inumber=? AND itagname=?", dir.ino(), tag) > 0) {
+            incrementTagGeneration();
+        }
     }
 
     void removeTag(FsInode dir) {
@@ -1447,6 +1514,39 @@ public class FsSqlDriver {
                            });
     }
 
+    /**
+     * Returns the checksums of several inodes in a single query.
+     *
+     * @param inodes
+     * @return checksums by inode number
+     */
+    Map<Long, List<Checksum>> getInodeChecksums(Collection<? extends FsInode> inodes) {
+        Map<Long, List<Checksum>> checksums = new HashMap<>();
+        if (!inodes.isEmpty()) {
+            _jdbc.query("SELECT inumber, isum, itype FROM t_inodes_checksum " +
+                        "WHERE inumber IN (" + placeholders(inodes.size()) + ")",
+                        ps -> setInodeNumbers(ps, inodes),
+                        rs -> {
+                            String checksum = rs.getString("isum");
+                            int type = rs.getInt("itype");
+                            checksums.computeIfAbsent(rs.getLong("inumber"), ino -> new ArrayList<>())
+                                    .add(new Checksum(ChecksumType.getChecksumType(type), checksum));
+                        });
+        }
+        return checksums;
+    }
+
+    private static String placeholders(int n) {
+        return String.join(",", Collections.nCopies(n, "?"));
+    }
+
+    private static void setInodeNumbers(PreparedStatement ps, Collection<? extends FsInode> inodes) throws SQLException {
+        int i = 1;
+        for (FsInode inode : inodes) {
+            ps.setLong(i++, inode.ino());
+        }
+    }
+
     /**
      *
      * @param inode
@@ -40,6 +40,7 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
@@ -465,6 +466,11 @@ public class JdbcFs implements FileSystemProvider {
         return _sqlDriver.newDirectoryStream(dir);
     }
 
+    @Override
+    public DirectoryStreamB<HimeraDirectoryEntry> newDirectoryStream(FsInode dir, String after) throws IOHimeraFsException {
+        return _sqlDriver.newDirectoryStream(dir, after);
+    }
+
     @Override
     public void remove(String path) throws ChimeraFsException {
 
@@ -1093,6 +1099,11 @@ public class JdbcFs implements FileSystemProvider {
         return _sqlDriver.getInodeLocations(inode);
     }
 
+    @Override
+    public Map<Long, List<StorageLocatable>> getInodeLocations(Collection<? extends FsInode> inodes) throws ChimeraFsException {
+        return _sqlDriver.getInodeLocations(inodes);
+    }
+
     @Override
     public void addInodeLocation(FsInode inode, int type, String location) throws ChimeraFsException {
         inTransaction(status -> {
@@ -1128,6 +1139,11 @@ public class JdbcFs implements FileSystemProvider {
         return _sqlDriver.getAllTags(inode);
     }
 
+    @Override
+    public long getTagGeneration() throws ChimeraFsException {
+        return _sqlDriver.getTagGeneration();
+    }
+
     @Override
     public void createTag(FsInode inode, String name) throws ChimeraFsException {
         this.createTag(inode, name, 0, 0, 0644);
@@ -1260,6 +1276,11 @@ public class JdbcFs implements FileSystemProvider {
         return new HashSet<>(_sqlDriver.getInodeChecksums(inode));
     }
 
+    @Override
+    public Map<Long, List<Checksum>> getInodeChecksums(Collection<? extends FsInode> inodes) throws ChimeraFsException {
+        return _sqlDriver.getInodeChecksums(inodes);
+    }
+
     /**
      * Get inode's Access Control List. An empty list is returned if there are no ACL assigned
      * to the <code>inode</code>.
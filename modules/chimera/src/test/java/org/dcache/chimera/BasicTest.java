@@ -12,8 +12,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.Callable;
@@ -31,6 +33,7 @@ import org.dcache.util.Checksum;
 import org.dcache.util.ChecksumType;
 
 import static org.dcache.chimera.FileSystemProvider.StatCacheOption.NO_STAT;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.is;
@@ -697,6 +700,36 @@ public class BasicTest extends ChimeraTestCaseHelper {
         assertHasChecksum(new Checksum(ChecksumType.getChecksumType(1), sum), fileInode);
     }
 
+    @Test
+    public void testGetChecksumsOfSeveralInodes() throws Exception {
+        FsInode base = _rootInode.mkdir("junit");
+        FsInode file1 = base.create("file1", 0, 0, 0644);
+        FsInode file2 = base.create("file2", 0, 0, 0644);
+        FsInode file3 = base.create("file3", 0, 0, 0644);
+        _fs.setInodeChecksum(file1, 1, "abc1");
+        _fs.setInodeChecksum(file2, 1, "abc2");
+
+        Map<Long, List<Checksum>> checksums = _fs.getInodeChecksums(Arrays.asList(file1, file2, file3));
+
+        assertThat(checksums.get(file1.ino()), contains(new Checksum(ChecksumType.getChecksumType(1), "abc1")));
+        assertThat(checksums.get(file2.ino()), contains(new Checksum(ChecksumType.getChecksumType(1), "abc2")));
+        assertThat(checksums.containsKey(file3.ino()), is(false));
+    }
+
+    @Test
+    public void testGetLocationsOfSeveralInodes() throws Exception {
+        FsInode base = _rootInode.mkdir("junit");
+        FsInode file1 = base.create("file1", 0, 0, 0644);
+        FsInode file2 = base.create("file2", 0, 0, 0644);
+        _fs.addInodeLocation(file1, StorageGenericLocation.DISK, "pool1");
+        _fs.addInodeLocation(file1, StorageGenericLocation.TAPE, "osm://tape");
+
+        Map<Long, List<StorageLocatable>> locations = _fs.getInodeLocations(Arrays.asList(file1, file2));
+
+        assertThat(locations.get(file1.ino()).size(), is(2));
+        assertThat(locations.containsKey(file2.ino()), is(false));
+    }
+
     @Ignore("Functionality not yet written, but desired")
     @Test
     public void testUpdateChecksumDifferTypes() throws Exception {
@@ -1065,6 +1098,30 @@ public class BasicTest extends ChimeraTestCaseHelper {
         }
     }
 
+    @Test
+    public void testOrderedReaddirAfterName() throws Exception {
+        FsInode dir = _rootInode.mkdir("junit");
+        dir.create("c", 0, 0, 0644);
+        dir.create("a", 0, 0, 0644);
+        dir.create("b", 0, 0, 0644);
+
+        List<String> names = new ArrayList<>();
+        try (DirectoryStreamB<HimeraDirectoryEntry> dirStream = _fs.newDirectoryStream(dir, null)) {
+            for (HimeraDirectoryEntry entry : dirStream) {
+                names.add(entry.getName());
+            }
+        }
+        assertEquals(Arrays.asList("a", "b", "c"), names);
+
+        names.clear();
+        try (DirectoryStreamB<HimeraDirectoryEntry> dirStream = _fs.newDirectoryStream(dir, "a")) {
+            for (HimeraDirectoryEntry entry : dirStream) {
+                names.add(entry.getName());
+            }
+        }
+        assertEquals(Arrays.asList("b", "c"), names);
+    }
+
     private void assertHasChecksum(Checksum expectedChecksum, FsInode inode) throws Exception {
         for(Checksum checksum: _fs.getInodeChecksums(inode)) {
             if (checksum.equals(expectedChecksum)) {
@@ -1112,6 +1169,28 @@ public class BasicTest extends ChimeraTestCaseHelper {
         link.setStat(stat);
     }
 
+    @Test
+    public void testTagGenerationIncrementsOnTagUpdate() throws Exception {
+        FsInode dir = _rootInode.mkdir("dir1");
+        byte[] data = "some data".getBytes(StandardCharsets.UTF_8);
+
+        long generation = _fs.getTagGeneration();
+        _fs.createTag(dir, "aTag");
+        assertTrue(_fs.getTagGeneration() > generation);
+
+        generation = _fs.getTagGeneration();
+        _fs.setTag(dir, "aTag", data, 0, data.length);
+        assertTrue(_fs.getTagGeneration() > generation);
+
+        generation = _fs.getTagGeneration();
+        _fs.removeTag(dir, "aTag");
+        assertTrue(_fs.getTagGeneration() > generation);
+
+        generation = _fs.getTagGeneration();
+        _fs.getAllTags(dir);
+        assertEquals(generation, _fs.getTagGeneration());
+    }
+
     @Test(expected = FileExistsChimeraFsException.class)
     public void testCreateDuplicateTag() throws Exception {
         FsInode dir = _rootInode.mkdir("dir1");
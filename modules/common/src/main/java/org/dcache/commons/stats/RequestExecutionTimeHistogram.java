@@ -0,0 +1,147 @@
+package org.dcache.commons.stats;
+
+import java.util.Formatter;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of the execution time of a request.
+ *
+ * Execution times are counted in buckets with exponentially growing bounds:
+ * bucket 0 holds times below 1 ms and bucket i holds times of at least
+ * 2^(i-1) ms and below 2^i ms. The last bucket is unbounded. Updates do not
+ * lock, thus the histogram may be updated by many threads at once.
+ */
+public class RequestExecutionTimeHistogram
+{
+    public static final int BUCKETS = 20;
+
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99 };
+
+    private final String name;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    public RequestExecutionTimeHistogram(String name)
+    {
+        this.name = name;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Adds an execution time in milliseconds to the histogram. Negative times
+     * are discarded.
+     */
+    public void update(long time)
+    {
+        if (time >= 0) {
+            buckets[bucketOf(time)].increment();
+        }
+    }
+
+    /**
+     * Returns the number of execution times counted in a bucket.
+     */
+    public long getCount(int bucket)
+    {
+        return buckets[bucket].sum();
+    }
+
+    /**
+     * Returns the number of execution times counted in the histogram.
+     */
+    public long getCount()
+    {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the exclusive upper bound in milliseconds of a bucket, or
+     * Long.MAX_VALUE for the last bucket.
+     */
+    public static long getUpperBound(int bucket)
+    {
+        return (bucket < BUCKETS - 1) ? 1L << bucket : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile,
+     * or zero if the histogram is empty.
+     *
+     * @param percentile a fraction between 0 and 1
+     */
+    public long getPercentile(double percentile)
+    {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts[i];
+            if (count >= rank) {
+                return getUpperBound(i);
+            }
+        }
+        return getUpperBound(BUCKETS - 1);
+    }
+
+    public void reset()
+    {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+    }
+
+    static int bucketOf(long time)
+    {
+        return Math.min(64 - Long.numberOfLeadingZeros(time), BUCKETS - 1);
+    }
+
+    /**
+     * Returns the header of a table of histograms as formatted by toString.
+     */
+    public static String header(String title)
+    {
+        StringBuilder sb = new StringBuilder();
+        try (Formatter formatter = new Formatter(sb)) {
+            formatter.format("%-36s %12s %12s %12s %12s", title, "Samples", "p50(<ms)", "p90(<ms)", "p99(<ms)");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of samples and the upper bounds of the 50th, 90th and
+     * 99th percentile.
+     */
+    @Override
+    public String toString()
+    {
+        String aName = (name.length() > 34) ? name.substring(0, 34) : name;
+        StringBuilder sb = new StringBuilder();
+        try (Formatter formatter = new Formatter(sb)) {
+            formatter.format("%-34s %,12d", aName, getCount());
+            for (double percentile : PERCENTILES) {
+                long bound = getPercentile(percentile);
+                formatter.format(" %12s", (bound == Long.MAX_VALUE) ? "-" : String.format("%,d", bound));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package org.dcache.commons.stats;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RequestExecutionTimeHistogramTest
+{
+    private RequestExecutionTimeHistogram histogram;
+
+    @Before
+    public void setUp()
+    {
+        histogram = new RequestExecutionTimeHistogram("test");
+    }
+
+    @Test
+    public void shouldCountTimesInExponentialBuckets()
+    {
+        histogram.update(0);
+        histogram.update(1);
+        histogram.update(3);
+        histogram.update(4);
+
+        assertThat(histogram.getCount(0), is(1L));
+        assertThat(histogram.getCount(1), is(1L));
+        assertThat(histogram.getCount(2), is(1L));
+        assertThat(histogram.getCount(3), is(1L));
+        assertThat(histogram.getCount(), is(4L));
+    }
+
+    @Test
+    public void shouldCountLongTimesInLastBucket()
+    {
+        histogram.update(Long.MAX_VALUE);
+
+        assertThat(histogram.getCount(RequestExecutionTimeHistogram.BUCKETS - 1), is(1L));
+    }
+
+    @Test
+    public void shouldDiscardNegativeTimes()
+    {
+        histogram.update(-1);
+
+        assertThat(histogram.getCount(), is(0L));
+    }
+
+    @Test
+    public void shouldReturnUpperBoundOfPercentileBucket()
+    {
+        for (int i = 0; i < 90; i++) {
+            histogram.update(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.update(100);
+        }
+
+        assertThat(histogram.getPercentile(0.5), is(16L));
+        assertThat(histogram.getPercentile(0.9), is(16L));
+        assertThat(histogram.getPercentile(0.99), is(128L));
+    }
+
+    @Test
+    public void shouldReturnZeroPercentileWhenEmpty()
+    {
+        assertThat(histogram.getPercentile(0.5), is(0L));
+    }
+}
@@ -3,6 +3,7 @@ package org.dcache.chimera.namespace;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.UncheckedExecutionException;
@@ -12,28 +13,32 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
 
 import diskCacheV111.util.CacheException;
@@ -59,6 +64,7 @@ import org.dcache.util.Option;
 import static com.google.common.util.concurrent.Futures.allAsList;
 import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
 /**
@@ -125,6 +131,13 @@ public class ChimeraCleaner extends AbstractCell implements Runnable
     )
     protected int _processAtOnce;
 
+    @Option(
+        name="batchesPerPool",
+        description="The number of removal requests outstanding at a pool at once",
+        required=true
+    )
+    protected int _batchesPerPool;
+
     @Option(
         name="reportRemove",
         description="The cells to report removes to"
@@ -181,6 +194,21 @@ public class ChimeraCleaner extends AbstractCell implements Runnable
     private CellStub _notificationStub;
     private CellStub _poolStub;
 
+    /** URIs of files deleted from an HSM, but not yet from the trash table. */
+    private final Queue<URI> _hsmRemoved = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder _filesRemoved = new LongAdder();
+    private final LongAdder _filesNotRemoved = new LongAdder();
+    private final LongAdder _batchesSent = new LongAdder();
+    private final LongAdder _batchesFailed = new LongAdder();
+    private final LongAdder _hsmFilesRemoved = new LongAdder();
+    private final AtomicInteger _batchesInFlight = new AtomicInteger();
+    private final AtomicInteger _poolsInProgress = new AtomicInteger();
+    private volatile long _runStarted;
+    private final LongAdder _runRemoved = new LongAdder();
+    private volatile long _lastRunDuration;
+    private volatile long _lastRunRemoved;
+
     public ChimeraCleaner(String cellName, String args)
     {
         super(cellName, args);
@@ -213,7 +241,10 @@ public class ChimeraCleaner extends AbstractCell implements Runnable
             _requests.setTimeout(_hsmTimeoutUnit.toMillis(_hsmTimeout));
             _requests.setPoolStub(new CellStub(this));
                 _requests.setPoolInformationBase(_pools);
-            _requests.setSuccessSink(uri -> _executor.execute(() -> onSuccess(uri)));
+            _requests.setSuccessSink(uri -> {
+                _hsmRemoved.add(uri);
+                _executor.execute(this::removeHsmFiles);
+            });
             _requests.setFailureSink(uri -> _executor.execute(() -> onFailure(uri)));
             addMessageListener(_requests);
             addCommandListener(_requests);
@@ -359,50 +390,210 @@ public class ChimeraCleaner extends AbstractCell implements Runnable
      * @param filelist file list for this pool
      *
      */
-    void removeFiles(final String poolname, final List<String> filelist)
+    void removeFiles(final String poolname, final Collection<String> filelist)
     {
-        _db.batchUpdate("DELETE FROM t_locationinfo_trash WHERE ilocation=? AND ipnfsid=? AND itype=1",
-                        new BatchPreparedStatementSetter()
-                        {
-                            @Override
-                            public int getBatchSize()
-                            {
-                                return filelist.size();
-                            }
-
-                            @Override
-                            public void setValues(PreparedStatement ps, int i)
-                                    throws SQLException
-                            {
-                                ps.setString(1, poolname);
-                                ps.setString(2, filelist.get(i));
-                            }
-                        });
+        if (!filelist.isEmpty()) {
+            List<Object> args = new ArrayList<>(filelist.size() + 1);
+            args.add(poolname);
+            args.addAll(filelist);
+            _db.update("DELETE FROM t_locationinfo_trash WHERE ilocation=? AND itype=1 AND ipnfsid IN " +
+                       filelist.stream().map(id -> "?").collect(joining(",", "(", ")")),
+                       args.toArray());
+        }
+    }
+
+    /**
+     * Returns the next files of a pool in the trash-table.
+     *
+     * @param poolName name of the pool
+     * @param after only files with a larger PNFS ID are returned, or all files if null
+     * @param limit maximum number of files to return
+     * @return list of PNFS IDs in ascending order
+     */
+    List<String> getFiles(String poolName, String after, int limit)
+    {
+        /* The page is bounded with setMaxRows as there is no portable SQL to limit the result. */
+        if (after == null) {
+            return _db.query(
+                    "SELECT ipnfsid FROM t_locationinfo_trash WHERE itype=1 AND ilocation=? ORDER BY ipnfsid",
+                    ps -> {
+                        ps.setString(1, poolName);
+                        ps.setMaxRows(limit);
+                    },
+                    (rs, rowNum) -> rs.getString("ipnfsid"));
+        } else {
+            return _db.query(
+                    "SELECT ipnfsid FROM t_locationinfo_trash WHERE itype=1 AND ilocation=? AND ipnfsid > ? ORDER BY ipnfsid",
+                    ps -> {
+                        ps.setString(1, poolName);
+                        ps.setString(2, after);
+                        ps.setMaxRows(limit);
+                    },
+                    (rs, rowNum) -> rs.getString("ipnfsid"));
+        }
     }
 
     /**
      * runDelete
      * Delete files on each pool from the poolList.
      *
+     * All pools are cleaned concurrently. Each pool has up to _batchesPerPool
+     * removal requests outstanding at any time. This thread pages through the
+     * trash-table and sends the requests, while the replies are processed by
+     * the executor.
+     *
      * @param poolList list of pools
      * @throws InterruptedException
      */
     private void runDelete(List<String> poolList)
         throws InterruptedException
     {
+        BlockingQueue<PoolCleaner> completed = new LinkedBlockingQueue<>();
+        Set<PoolCleaner> active = new HashSet<>();
         for (String pool: poolList) {
-            if (Thread.interrupted()) {
-                throw new InterruptedException("Cleaner interrupted");
+            if (!_poolsBlackList.containsKey(pool)) {
+                active.add(new PoolCleaner(pool, completed));
             }
+        }
 
-            _log.info("runDelete(): Now processing pool {}", pool);
-            if (!_poolsBlackList.containsKey(pool)) {
-                try {
-                    cleanPoolComplete(pool);
-                } catch (NoRouteToCellException | CacheException e) {
-                    _log.warn("Failed to remove files from {}: {}", pool, e.getMessage());
+        _log.info("runDelete(): Now processing pools {}", poolList);
+        _runStarted = System.currentTimeMillis();
+        _runRemoved.reset();
+        _poolsInProgress.set(active.size());
+        try {
+            for (PoolCleaner cleaner : new ArrayList<>(active)) {
+                if (cleaner.fill()) {
+                    active.remove(cleaner);
+                    _poolsInProgress.decrementAndGet();
                 }
             }
+            while (!active.isEmpty()) {
+                PoolCleaner cleaner = completed.take();
+                if (active.contains(cleaner) && cleaner.fill()) {
+                    active.remove(cleaner);
+                    _poolsInProgress.decrementAndGet();
+                }
+            }
+        } finally {
+            _poolsInProgress.set(0);
+            _lastRunDuration = System.currentTimeMillis() - _runStarted;
+            _lastRunRemoved = _runRemoved.sum();
+            _runStarted = 0;
+        }
+    }
+
+    /**
+     * Removes the files of a single pool listed in the trash-table.
+     *
+     * The entries of the pool are read from the trash-table in pages of
+     * _processAtOnce files ordered by PNFS ID, each page being sent to the pool
+     * in a single request. Entries are deleted from the trash-table once the
+     * pool acknowledged their removal. Entries the pool failed to remove are
+     * skipped and retried in the next run.
+     */
+    private class PoolCleaner
+    {
+        private final String _pool;
+        private final BlockingQueue<PoolCleaner> _completed;
+        private final AtomicInteger _inFlight = new AtomicInteger();
+        private volatile boolean _isFailed;
+
+        /** PNFS ID of the last file sent to the pool; accessed by the runDelete thread only. */
+        private String _last;
+        private boolean _isExhausted;
+
+        PoolCleaner(String pool, BlockingQueue<PoolCleaner> completed)
+        {
+            _pool = pool;
+            _completed = completed;
+        }
+
+        /**
+         * Sends removal requests until the limit of outstanding requests is
+         * reached. Returns true if all files of the pool have been processed.
+         */
+        boolean fill() throws InterruptedException
+        {
+            while (!_isExhausted && !_isFailed && _inFlight.get() < _batchesPerPool) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Cleaner interrupted");
+                }
+                List<String> files = getFiles(_pool, _last, _processAtOnce);
+                if (files.isEmpty()) {
+                    _isExhausted = true;
+                } else {
+                    _last = files.get(files.size() - 1);
+                    _isExhausted = files.size() < _processAtOnce;
+                    send(files);
+                }
+            }
+            return (_isExhausted || _isFailed) && _inFlight.get() == 0;
+        }
+
+        private void send(List<String> files)
+        {
+            _log.trace("sendRemoveToPoolCleaner: poolName={} removeList={}", _pool, files);
+            _inFlight.incrementAndGet();
+            _batchesInFlight.incrementAndGet();
+            _batchesSent.increment();
+            Futures.addCallback(_poolStub.send(new CellPath(_pool), new PoolRemoveFilesMessage(_pool, files)),
+                                new FutureCallback<PoolRemoveFilesMessage>()
+                                {
+                                    @Override
+                                    public void onSuccess(PoolRemoveFilesMessage msg)
+                                    {
+                                        replied(files, msg);
+                                    }
+
+                                    @Override
+                                    public void onFailure(Throwable t)
+                                    {
+                                        try {
+                                            failed(t);
+                                        } finally {
+                                            completed();
+                                        }
+                                    }
+                                }, _executor);
+        }
+
+        private void replied(List<String> files, PoolRemoveFilesMessage msg)
+        {
+            try {
+                List<String> removed = new ArrayList<>(files);
+                if (msg.getReturnCode() == 1 && msg.getErrorObject() instanceof String[]) {
+                    List<String> notRemoved = Arrays.asList((String[]) msg.getErrorObject());
+                    removed.removeAll(new HashSet<>(notRemoved));
+                    _filesNotRemoved.add(notRemoved.size());
+                } else if (msg.getReturnCode() != 0) {
+                    failed(CacheExceptionFactory.exceptionOf(msg));
+                    return;
+                }
+                removeFiles(_pool, removed);
+                _filesRemoved.add(removed.size());
+                _runRemoved.add(removed.size());
+            } catch (DataAccessException e) {
+                _log.error("Database failure while removing files of {} from the trash-table: {}",
+                           _pool, e.getMessage());
+                _isFailed = true;
+            } finally {
+                completed();
+            }
+        }
+
+        private void failed(Throwable t)
+        {
+            _log.warn("Failed to remove files from {}: {}", _pool, t.getMessage());
+            _batchesFailed.increment();
+            _poolsBlackList.put(_pool, System.currentTimeMillis());
+            _isFailed = true;
+        }
+
+        private void completed()
+        {
+            _batchesInFlight.decrementAndGet();
+            _inFlight.decrementAndGet();
+            _completed.add(this);
         }
     }
 
@@ -426,12 +617,15 @@ public class ChimeraCleaner extends AbstractCell implements Runnable
                                                 new PoolRemoveFilesMessage(poolName, removeList)));
             if (msg.getReturnCode() == 0) {
                 removeFiles(poolName, removeList);
+                _filesRemoved.add(removeList.size());
             } else if (msg.getReturnCode() == 1 && msg.getErrorObject() instanceof String[]) {
                 Set<String> notRemoved =
                         new HashSet<>(Arrays.asList((String[]) msg.getErrorObject()));
                 List<String> removed = new ArrayList<>(removeList);
                 removed.removeAll(notRemoved);
                 removeFiles(poolName, removed);
+                _filesRemoved.add(removed.size());
+                _filesNotRemoved.add(notRemoved.size());
             } else {
                 throw CacheExceptionFactory.exceptionOf(msg);
             }
@@ -483,39 +677,6 @@ public class ChimeraCleaner extends AbstractCell implements Runnable
                         .collect(toList()));
     }
 
-    /**
-     * cleanPoolComplete
-     * delete all files from the pool 'poolName' found in the trash-table for this pool
-     *
-     * @param poolName name of the pool
-     */
-    void cleanPoolComplete(final String poolName) throws InterruptedException, CacheException, NoRouteToCellException
-    {
-        _log.trace("CleanPoolComplete(): poolname={}", poolName);
-
-        try {
-            List<String> files = new ArrayList<>(_processAtOnce);
-            _db.query("SELECT ipnfsid FROM t_locationinfo_trash WHERE ilocation=? AND itype=1 ORDER BY iatime",
-                      rs -> {
-                          try {
-                              files.add(rs.getString("ipnfsid"));
-                              if (files.size() >= _processAtOnce || rs.isLast()) {
-                                  sendRemoveToPoolCleaner(poolName, files);
-                                  files.clear();
-                              }
-                          } catch (InterruptedException | CacheException | NoRouteToCellException e) {
-                              throw new UncheckedExecutionException(e);
-                          }
-                      },
-                      poolName);
-        } catch (UncheckedExecutionException e) {
-            Throwables.propagateIfInstanceOf(e.getCause(), InterruptedException.class);
-            Throwables.propagateIfInstanceOf(e.getCause(), CacheException.class);
-            Throwables.propagateIfInstanceOf(e.getCause(), NoRouteToCellException.class);
-            throw Throwables.propagate(e.getCause());
-        }
-    }
-
     /**
      * Delete files stored on tape (HSM).
      */
@@ -559,11 +720,32 @@ public class ChimeraCleaner extends AbstractCell implements Runnable
             sb.append("Refresh Interval: ").append(_refreshInterval).append(" ").append(_refreshIntervalUnit).append("\n");
             sb.append("Reply Timeout: ").append(_replyTimeout).append(" ").append(_replyTimeoutUnit).append("\n");
             sb.append("Recover Timer: ").append(_recoverTimer).append(" ").append(_recoverTimerUnit).append("\n");
-            sb.append("Number of files processed at once: ").append(_processAtOnce);
+            sb.append("Number of files processed at once: ").append(_processAtOnce).append("\n");
+            sb.append("Requests outstanding per pool: ").append(_batchesPerPool).append("\n");
+            sb.append("Files removed: ").append(_filesRemoved.sum()).append("\n");
+            sb.append("Files not removed by pools: ").append(_filesNotRemoved.sum()).append("\n");
+            sb.append("Requests sent: ").append(_batchesSent.sum())
+                    .append(" (").append(_batchesFailed.sum()).append(" failed, ")
+                    .append(_batchesInFlight.get()).append(" outstanding)\n");
+            long started = _runStarted;
+            if (started > 0) {
+                long elapsed = System.currentTimeMillis() - started;
+                long removed = _runRemoved.sum();
+                sb.append("Current run: ").append(removed).append(" files removed in ")
+                        .append(TimeUnit.MILLISECONDS.toSeconds(elapsed)).append(" s, ")
+                        .append(_poolsInProgress.get()).append(" pools in progress, ")
+                        .append(throughput(removed, elapsed)).append(" files/s\n");
+            }
+            if (_lastRunDuration > 0) {
+                sb.append("Last run: ").append(_lastRunRemoved).append(" files removed in ")
+                        .append(TimeUnit.MILLISECONDS.toSeconds(_lastRunDuration)).append(" s, ")
+                        .append(throughput(_lastRunRemoved, _lastRunDuration)).append(" files/s\n");
+            }
             if ( _hsmCleanerEnabled ) {
                 sb.append("\n HSM Cleaner enabled. Info : \n");
                 sb.append("Timeout for cleaning requests to HSM-pools: ").append(_hsmTimeout).append(" ").append(_hsmTimeoutUnit).append("\n");
-                sb.append("Maximal number of concurrent requests to a single HSM : ").append(_hsmCleanerRequest);
+                sb.append("Maximal number of concurrent requests to a single HSM : ").append(_hsmCleanerRequest).append("\n");
+                sb.append("Files removed from HSM: ").append(_hsmFilesRemoved.sum());
             } else {
                 sb.append("\n HSM Cleaner disabled.");
             }
@@ -638,7 +820,7 @@ public class ChimeraCleaner extends AbstractCell implements Runnable
         if (_poolsBlackList.containsKey(poolName)) {
             return "This pool is not available for the moment and therefore will not be cleaned.";
         }
-        cleanPoolComplete(poolName);
+        runDelete(Collections.singletonList(poolName));
         return "";
     }
 
@@ -751,18 +933,36 @@ public class ChimeraCleaner extends AbstractCell implements Runnable
     }
 
     /**
-     * Called when a file was successfully deleted from the HSM.
+     * Deletes the entries of files successfully deleted from the HSM from the
+     * trash-table. Entries are deleted in batches of up to _hsmCleanerRequest
+     * files.
      */
-    protected void onSuccess(URI uri)
+    protected void removeHsmFiles()
     {
-        try {
-            _log.debug("HSM-ChimeraCleaner: remove entries from the trash-table. ilocation={}", uri);
-            _db.update("DELETE FROM t_locationinfo_trash WHERE ilocation=? AND itype=0", uri.toString());
-        } catch (DataAccessException e) {
-            _log.error("Error when deleting from the trash-table: " + e.getMessage());
+        List<String> uris = new ArrayList<>();
+        URI uri;
+        while ((uri = _hsmRemoved.poll()) != null) {
+            uris.add(uri.toString());
+            if (uris.size() >= _hsmCleanerRequest || _hsmRemoved.isEmpty()) {
+                try {
+                    _log.debug("HSM-ChimeraCleaner: remove entries from the trash-table. ilocation={}", uris);
+                    _db.update("DELETE FROM t_locationinfo_trash WHERE itype=0 AND ilocation IN " +
+                               uris.stream().map(u -> "?").collect(joining(",", "(", ")")),
+                               uris.toArray());
+                    _hsmFilesRemoved.add(uris.size());
+                } catch (DataAccessException e) {
+                    _log.error("Error when deleting from the trash-table: " + e.getMessage());
+                }
+                uris.clear();
+            }
         }
     }
 
+    private static long throughput(long files, long millis)
+    {
+        return (millis == 0) ? 0 : files * 1000 / millis;
+    }
+
     /**
      * Called when a file could not be deleted from the HSM.
      */
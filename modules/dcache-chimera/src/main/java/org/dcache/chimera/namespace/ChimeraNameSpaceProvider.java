@@ -120,7 +120,21 @@ public class ChimeraNameSpaceProvider
                     FLAGS, HSM, LOCATIONS, NLINK, PNFSID, RETENTION_POLICY,
                     SIZE, STORAGECLASS, STORAGEINFO, SIMPLE_TYPE, TYPE);
 
+    /**
+     * Number of directory entries for which attributes are fetched together
+     * when listing a directory.
+     */
+    private static final int LIST_BATCH_SIZE = 100;
+
+    /**
+     * Attributes derived from the locations of a file.
+     */
+    private static final Set<FileAttribute> LOCATION_DEPENDENT_ATTRIBUTES =
+            EnumSet.of(SIZE, LOCATIONS, STORAGEINFO, STORAGECLASS, CACHECLASS, HSM);
+
     private FileSystemProvider       _fs;
+    private FileSystemProvider       _monitoredFs;
+    private DirectoryTagCache        _tagCache;
     private ChimeraStorageInfoExtractable _extractor;
 
     private static final Logger _log =  LoggerFactory.getLogger(ChimeraNameSpaceProvider.class);
@@ -180,8 +194,20 @@ public class ChimeraNameSpaceProvider
     @Required
     public void setFileSystem(FileSystemProvider fs)
     {
-        _fs = MonitoringProxy.decorateWithMonitoringProxy(new Class[] { FileSystemProvider.class }, fs, _counters,
-                                                          _gauges);
+        _monitoredFs = MonitoringProxy.decorateWithMonitoringProxy(new Class[] { FileSystemProvider.class }, fs,
+                                                                   _counters, _gauges);
+        _fs = (_tagCache == null) ? _monitoredFs : _tagCache.decorate(_monitoredFs);
+    }
+
+    /**
+     * Cache for directory tags shared by all requests. Optional.
+     */
+    public void setDirectoryTagCache(DirectoryTagCache cache)
+    {
+        _tagCache = cache;
+        if (_monitoredFs != null) {
+            _fs = (_tagCache == null) ? _monitoredFs : _tagCache.decorate(_monitoredFs);
+        }
     }
 
     @Required
@@ -820,6 +846,9 @@ public class ChimeraNameSpaceProvider
     {
         pw.append("Acl Enabled: ").println(_aclEnabled);
         pw.append(_fs.getInfo());
+        if (_tagCache != null) {
+            _tagCache.getInfo(pw);
+        }
         pw.println("Statistics:");
         pw.println(_gauges);
         pw.println(_counters);
@@ -1120,7 +1149,7 @@ public class ChimeraNameSpaceProvider
     }
 
     @Override
-    public void list(Subject subject, String path, Glob glob, Range<Integer> range,
+    public void list(Subject subject, String path, Glob glob, String after, Range<Integer> range,
                      Set<FileAttribute> attrs, ListHandler handler)
         throws CacheException
     {
@@ -1143,30 +1172,24 @@ public class ChimeraNameSpaceProvider
             }
 
             int counter = 0;
+            List<HimeraDirectoryEntry> batch = new ArrayList<>(LIST_BATCH_SIZE);
             try (DirectoryStreamB<HimeraDirectoryEntry> dirStream = dir
-                    .newDirectoryStream()) {
+                    .newDirectoryStream(after)) {
                 for (HimeraDirectoryEntry entry : dirStream) {
-                    try {
-                        String name = entry.getName();
-                        if (!name.equals(".") && !name.equals("..") &&
-                                (pattern == null || pattern.matcher(name)
-                                        .matches()) &&
-                                range.contains(counter++)) {
-                            // FIXME: actually, HimeraDirectoryEntry
-                            // already contains most of attributes
-                            FileAttributes fa =
-                                    attrs.isEmpty()
-                                            ? null
-                                            : getFileAttributes(new ExtendedInode(_fs, entry.getInode()), attrs);
-                            handler.addEntry(name, fa);
+                    String name = entry.getName();
+                    if (!name.equals(".") && !name.equals("..") &&
+                            (pattern == null || pattern.matcher(name)
+                                    .matches()) &&
+                            range.contains(counter++)) {
+                        batch.add(entry);
+                        if (batch.size() == LIST_BATCH_SIZE) {
+                            addEntries(dir, batch, attrs, handler);
+                            batch.clear();
                         }
-                    } catch (FileNotFoundHimeraFsException e) {
-                        /* Not an error; files may be deleted during the
-                         * list operation.
-                         */
                     }
                 }
             }
+            addEntries(dir, batch, attrs, handler);
 
         } catch (FileNotFoundHimeraFsException e) {
             throw new FileNotFoundCacheException("No such file or directory: " + path);
@@ -1176,6 +1199,53 @@ public class ChimeraNameSpaceProvider
         }
     }
 
+    /**
+     * Passes a batch of directory entries to the list handler.
+     *
+     * The directory stream already provides the stat of every entry. The
+     * locations and checksums are fetched for the whole batch at once rather
+     * than one entry at a time, and all entries share the directory inode so
+     * that its tags are only looked up once.
+     */
+    private void addEntries(ExtendedInode dir, List<HimeraDirectoryEntry> entries,
+                            Set<FileAttribute> attrs, ListHandler handler)
+            throws ChimeraFsException, CacheException
+    {
+        if (attrs.isEmpty()) {
+            for (HimeraDirectoryEntry entry : entries) {
+                handler.addEntry(entry.getName(), null);
+            }
+            return;
+        }
+
+        List<ExtendedInode> inodes = new ArrayList<>(entries.size());
+        for (HimeraDirectoryEntry entry : entries) {
+            inodes.add(new ExtendedInode(dir, entry.getInode()));
+        }
+        if (attrs.contains(CHECKSUM)) {
+            Map<Long, List<Checksum>> checksums = _fs.getInodeChecksums(inodes);
+            for (ExtendedInode inode : inodes) {
+                inode.setChecksums(checksums.getOrDefault(inode.ino(), Collections.emptyList()));
+            }
+        }
+        if (!Collections.disjoint(attrs, LOCATION_DEPENDENT_ATTRIBUTES)) {
+            Map<Long, List<StorageLocatable>> locations = _fs.getInodeLocations(inodes);
+            for (ExtendedInode inode : inodes) {
+                inode.setLocations(locations.getOrDefault(inode.ino(), Collections.emptyList()));
+            }
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            try {
+                handler.addEntry(entries.get(i).getName(), getFileAttributes(inodes.get(i), attrs));
+            } catch (FileNotFoundHimeraFsException e) {
+                /* Not an error; files may be deleted during the
+                 * list operation.
+                 */
+            }
+        }
+    }
+
     private ExtendedInode mkdir(Subject subject, ExtendedInode parent, String name, int uid, int gid, int mode)
             throws ChimeraFsException, CacheException
     {
@@ -0,0 +1,208 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2016 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.chimera.namespace;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dcache.chimera.ChimeraFsException;
+import org.dcache.chimera.FileSystemProvider;
+import org.dcache.chimera.FsInode;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Caches the tags of directories across requests.
+ *
+ * Storage info extraction reads the tags of the parent directory for every file
+ * creation and every attribute lookup. Since tags rarely change and files tend
+ * to be written into a small number of directories, the same tag values are
+ * read over and over again.
+ *
+ * The cache decorates a {@link FileSystemProvider} and serves
+ * {@link FileSystemProvider#getAllTags} from memory. Tag modifications through
+ * the decorated provider invalidate the cache, both immediately and once the
+ * enclosing transaction completes; until then, concurrent readers may still
+ * see and cache the old tags. Modifications by other processes
+ * sharing the same database are detected by periodically comparing the tag
+ * generation maintained by Chimera. Since a tag update may affect all directories
+ * inheriting the tag, any change of the generation flushes the entire cache.
+ */
+public class DirectoryTagCache
+{
+    private final Cache<Long, ImmutableMap<String, byte[]>> tags;
+    private final long generationCheckPeriod;
+
+    /**
+     * Incremented whenever the cache is invalidated. Guards against caching
+     * values that were read concurrently with an invalidation.
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    private volatile long generation;
+    private volatile long nextGenerationCheck;
+
+    public DirectoryTagCache(long maximumSize, long generationCheckPeriod, TimeUnit unit)
+    {
+        this.tags = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+        this.generationCheckPeriod = unit.toMillis(generationCheckPeriod);
+    }
+
+    /**
+     * Returns a file system provider that serves directory tags of {@code fs}
+     * from this cache.
+     */
+    public FileSystemProvider decorate(FileSystemProvider fs)
+    {
+        return (FileSystemProvider) Proxy.newProxyInstance(FileSystemProvider.class.getClassLoader(),
+                                                           new Class<?>[] { FileSystemProvider.class },
+                                                           new Handler(fs));
+    }
+
+    private Map<String, byte[]> getAllTags(FileSystemProvider fs, FsInode inode) throws ChimeraFsException
+    {
+        validate(fs);
+        long ino = inode.ino();
+        ImmutableMap<String, byte[]> value = tags.getIfPresent(ino);
+        if (value == null) {
+            /* Tags read concurrently with an invalidation may be stale and must
+             * not be cached.
+             */
+            long epoch = this.epoch.get();
+            value = ImmutableMap.copyOf(fs.getAllTags(inode));
+            if (epoch == this.epoch.get()) {
+                tags.put(ino, value);
+            }
+        }
+        return value;
+    }
+
+    private void validate(FileSystemProvider fs) throws ChimeraFsException
+    {
+        long now = System.currentTimeMillis();
+        if (now >= nextGenerationCheck) {
+            nextGenerationCheck = now + generationCheckPeriod;
+            long current = fs.getTagGeneration();
+            if (current != generation) {
+                generation = current;
+                epoch.incrementAndGet();
+                tags.invalidateAll();
+            }
+        }
+    }
+
+    /**
+     * Discards all cached tags and forces the generation to be validated on
+     * the next lookup.
+     */
+    public void invalidateAll()
+    {
+        nextGenerationCheck = 0;
+        epoch.incrementAndGet();
+        tags.invalidateAll();
+    }
+
+    /**
+     * Runs {@code action} once the current transaction completes, whether it
+     * committed or rolled back. Without a transaction nothing is done.
+     */
+    private static void afterCompletion(Runnable action)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCompletion(int status)
+                {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    public void getInfo(PrintWriter pw)
+    {
+        CacheStats stats = tags.stats();
+        pw.println("Directory tag cache:");
+        pw.append("    Entries        : ").println(tags.size());
+        pw.append("    Tag generation : ").println(generation);
+        pw.append("    Hit rate       : ").println(String.format("%.2f", stats.hitRate()));
+        pw.append("    Evictions      : ").println(stats.evictionCount());
+    }
+
+    /**
+     * Intercepts tag access on a file system provider.
+     */
+    private class Handler implements InvocationHandler
+    {
+        private final FileSystemProvider fs;
+
+        Handler(FileSystemProvider fs)
+        {
+            this.fs = checkNotNull(fs);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            switch (method.getName()) {
+            case "getAllTags":
+                return getAllTags(fs, (FsInode) args[0]);
+            case "createTag":
+            case "setTag":
+            case "removeTag":
+                try {
+                    return invokeTarget(method, args);
+                } finally {
+                    invalidateAll();
+                    afterCompletion(DirectoryTagCache.this::invalidateAll);
+                }
+            case "mkdir":
+                Object inode = invokeTarget(method, args);
+                long ino = ((FsInode) inode).ino();
+                tags.invalidate(ino);
+                afterCompletion(() -> tags.invalidate(ino));
+                return inode;
+            default:
+                return invokeTarget(method, args);
+            }
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable
+        {
+            try {
+                return method.invoke(fs, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.io.ByteSource;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -64,7 +65,7 @@ public class ExtendedInode extends FsInode
     private InodeStorageInformation storageInfo;
     private Optional<ExtendedInode> parent;
 
-    private ExtendedInode(ExtendedInode parent, FsInode inode)
+    ExtendedInode(ExtendedInode parent, FsInode inode)
     {
         this(parent.getFs(), inode);
         this.parent = Optional.of(parent);
@@ -190,6 +191,22 @@ public class ExtendedInode extends FsInode
         return locations;
     }
 
+    /**
+     * Primes the cached checksums with values fetched in bulk.
+     */
+    void setChecksums(Collection<Checksum> checksums)
+    {
+        this.checksums = ImmutableList.copyOf(checksums);
+    }
+
+    /**
+     * Primes the cached locations with values fetched in bulk.
+     */
+    void setLocations(Collection<StorageLocatable> locations)
+    {
+        this.locations = ImmutableList.copyOf(locations);
+    }
+
     public ImmutableMap<String,String> getFlags() throws ChimeraFsException
     {
         if (flags == null) {
@@ -1,5 +1,6 @@
 package diskCacheV111.namespace;
 
+import com.google.common.collect.Range;
 import com.google.common.io.Resources;
 import junit.framework.JUnit4TestAdapter;
 import liquibase.Liquibase;
@@ -11,23 +12,31 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import diskCacheV111.poolManager.RequestContainerV5;
 import diskCacheV111.util.AccessLatency;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FsPath;
 import diskCacheV111.util.PnfsId;
 import diskCacheV111.util.RetentionPolicy;
 import diskCacheV111.vehicles.PnfsAddCacheLocationMessage;
+import diskCacheV111.vehicles.PnfsBulkMessage;
 import diskCacheV111.vehicles.PnfsCancelUpload;
 import diskCacheV111.vehicles.PnfsClearCacheLocationMessage;
 import diskCacheV111.vehicles.PnfsCreateEntryMessage;
@@ -35,9 +44,18 @@ import diskCacheV111.vehicles.PnfsCreateUploadPath;
 import diskCacheV111.vehicles.PnfsDeleteEntryMessage;
 import diskCacheV111.vehicles.PnfsGetCacheLocationsMessage;
 import diskCacheV111.vehicles.PnfsRenameMessage;
+import diskCacheV111.vehicles.PnfsSelectReadPoolMessage;
 import diskCacheV111.vehicles.PnfsSetChecksumMessage;
+import diskCacheV111.vehicles.PoolManagerMessage;
+import diskCacheV111.vehicles.PoolMgrSelectReadPoolMsg;
+import diskCacheV111.vehicles.ProtocolInfo;
 import diskCacheV111.vehicles.StorageInfo;
 
+import dmg.cells.nucleus.CellAddressCore;
+import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+
 import org.dcache.auth.Subjects;
 import org.dcache.auth.attributes.Restrictions;
 import org.dcache.chimera.ChimeraFsException;
@@ -52,8 +70,12 @@ import org.dcache.chimera.posix.Stat;
 import org.dcache.namespace.CreateOption;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.namespace.PosixPermissionHandler;
+import org.dcache.poolmanager.SerializablePoolManagerHandler;
+import org.dcache.util.list.DirectoryEntry;
 import org.dcache.vehicles.FileAttributes;
 import org.dcache.vehicles.PnfsGetFileAttributes;
+import org.dcache.vehicles.PnfsListDirectoryCreditMessage;
+import org.dcache.vehicles.PnfsListDirectoryMessage;
 import org.dcache.vehicles.PnfsSetFileAttributes;
 
 import static diskCacheV111.util.AccessLatency.NEARLINE;
@@ -63,6 +85,12 @@ import static org.dcache.namespace.FileType.DIR;
 import static org.dcache.namespace.FileType.REGULAR;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 public class PnfsManagerTest
 {
@@ -134,6 +162,9 @@ public class PnfsManagerTest
         _pnfsManager.setQueueMaxSize(0);
         _pnfsManager.setFolding(true);
         _pnfsManager.setDirectoryListLimit(100);
+        _pnfsManager.setListCursorTimeout(1);
+        _pnfsManager.setListCursorTimeoutUnit(TimeUnit.MINUTES);
+        _pnfsManager.setSuspendedListLimit(10);
         _pnfsManager.init();
 
 
@@ -543,6 +574,154 @@ public class PnfsManagerTest
 
     }
 
+    @Test
+    public void testBulkMessage() throws Exception {
+
+        PnfsCreateEntryMessage pnfsCreateEntryMessage = new PnfsCreateEntryMessage("/pnfs/testRoot/testBulkMessage",
+                FileAttributes.ofFileType(REGULAR));
+        _pnfsManager.createEntry(pnfsCreateEntryMessage);
+        assertTrue("failed to create an entry", pnfsCreateEntryMessage.getReturnCode() == 0 );
+
+        PnfsGetFileAttributes existing =
+            new PnfsGetFileAttributes("/pnfs/testRoot/testBulkMessage", EnumSet.of(FileAttribute.PNFSID));
+        PnfsGetFileAttributes missing =
+            new PnfsGetFileAttributes("/pnfs/testRoot/testBulkMessageMissing", EnumSet.of(FileAttribute.PNFSID));
+        PnfsSetChecksumMessage notAllowed =
+            new PnfsSetChecksumMessage(pnfsCreateEntryMessage.getPnfsId(), 1, "12345678");
+        PnfsBulkMessage message = new PnfsBulkMessage(Arrays.asList(existing, missing, notAllowed));
+
+        BlockingQueue<CellMessage> replies = new LinkedBlockingQueue<>();
+        CellEndpoint endpoint = mock(CellEndpoint.class);
+        doAnswer(invocation -> replies.add((CellMessage) invocation.getArguments()[0]))
+                .when(endpoint).sendMessage(any(CellMessage.class));
+        _pnfsManager.setCellEndpoint(endpoint);
+
+        /* The embedded requests are queued individually; the bulk reply is
+         * sent once all of them have been processed.
+         */
+        CellMessage envelope = new CellMessage(new CellPath("PnfsManager"), message);
+        envelope.addSourceAddress(new CellAddressCore("SRM", "srmDomain"));
+        _pnfsManager.messageArrived(envelope, message);
+
+        CellMessage reply = replies.poll(1, TimeUnit.MINUTES);
+        assertNotNull(reply);
+        assertSame(message, reply.getMessageObject());
+        assertNull(replies.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, message.getReturnCode());
+        assertEquals(0, existing.getReturnCode());
+        assertEquals(pnfsCreateEntryMessage.getPnfsId(), existing.getFileAttributes().getPnfsId());
+        assertEquals(CacheException.FILE_NOT_FOUND, missing.getReturnCode());
+        assertEquals(CacheException.INVALID_ARGS, notAllowed.getReturnCode());
+    }
+
+    @Test
+    public void testListDirectorySuspendsWithoutCredits() throws Exception {
+
+        FsInode dir = _fs.mkdir("/pnfs/testRoot/testListDirectorySuspends");
+        _fs.createFile(dir, "c");
+        _fs.createFile(dir, "a");
+        _fs.createFile(dir, "b");
+
+        BlockingQueue<String> replies = new LinkedBlockingQueue<>();
+        CellEndpoint endpoint = mock(CellEndpoint.class);
+        doAnswer(invocation -> {
+            PnfsListDirectoryMessage reply =
+                    (PnfsListDirectoryMessage) ((CellMessage) invocation.getArguments()[0]).getMessageObject();
+            String names = reply.getEntries().stream().map(DirectoryEntry::getName).collect(Collectors.joining(","));
+            replies.add(reply.isFinal() ? "final:" + names : names);
+            return null;
+        }).when(endpoint).sendMessage(any(CellMessage.class));
+        _pnfsManager.setCellEndpoint(endpoint);
+        _pnfsManager.setDirectoryListLimit(1);
+
+        PnfsListDirectoryMessage message =
+                new PnfsListDirectoryMessage("/pnfs/testRoot/testListDirectorySuspends", null,
+                                             Range.all(), EnumSet.noneOf(FileAttribute.class));
+        message.setSubject(Subjects.ROOT);
+        message.setWindow(1);
+        CellMessage envelope = new CellMessage(new CellPath("PnfsManager"), message);
+        envelope.addSourceAddress(new CellAddressCore("door", "doorDomain"));
+
+        /* The listing is suspended after the first reply, releasing the calling thread. */
+        _pnfsManager.processPnfsMessage(envelope, message);
+        assertEquals("a", replies.poll());
+        assertNull(replies.poll());
+
+        /* Each credit resumes the listing on a list thread for one more reply. */
+        PnfsListDirectoryCreditMessage credit =
+                PnfsListDirectoryCreditMessage.grant(message.getPnfsPath(), message.getUUID(), 1);
+        _pnfsManager.messageArrived(new CellMessage(new CellPath("PnfsManager"), credit), credit);
+        assertEquals("b", replies.poll(1, TimeUnit.MINUTES));
+
+        _pnfsManager.messageArrived(new CellMessage(new CellPath("PnfsManager"), credit), credit);
+        assertEquals("c", replies.poll(1, TimeUnit.MINUTES));
+        assertEquals("final:", replies.poll(1, TimeUnit.MINUTES));
+        assertEquals(0, message.getReturnCode());
+    }
+
+    @Test
+    public void testSelectReadPoolForwardsToPoolManager() throws Exception {
+
+        FsInode inode = _fs.createFile(_fs.path2inode("/pnfs/testRoot"), "testSelectReadPool");
+        Stat stat = new Stat();
+        stat.setSize(1);
+        _fs.setInodeAttributes(inode, 0, stat);
+
+        CellEndpoint endpoint = mock(CellEndpoint.class);
+        _pnfsManager.setCellEndpoint(endpoint);
+        SerializablePoolManagerHandler handler = mock(SerializablePoolManagerHandler.class);
+
+        PnfsSelectReadPoolMessage message =
+                new PnfsSelectReadPoolMessage("/pnfs/testRoot/testSelectReadPool", EnumSet.noneOf(FileAttribute.class),
+                                              mock(ProtocolInfo.class), null, RequestContainerV5.allStates, handler);
+        message.setTransferId(42);
+        message.setTransferPath("/testSelectReadPool");
+        CellMessage envelope = new CellMessage(new CellPath("PnfsManager"), message);
+        envelope.addSourceAddress(new CellAddressCore("door", "doorDomain"));
+
+        _pnfsManager.processPnfsMessage(envelope, message);
+
+        /* PnfsManager does not reply, but forwards the envelope such that
+         * pool manager replies to the door.
+         */
+        ArgumentCaptor<PoolManagerMessage> request = ArgumentCaptor.forClass(PoolManagerMessage.class);
+        verify(handler).send(eq(endpoint), eq(envelope), request.capture());
+        verify(endpoint, never()).sendMessage(any(CellMessage.class));
+
+        PoolMgrSelectReadPoolMsg selectReadPool = (PoolMgrSelectReadPoolMsg) request.getValue();
+        assertEquals(42, selectReadPool.getId());
+        assertEquals(new PnfsId(inode.statCache().getId()), selectReadPool.getPnfsId());
+        assertEquals("/testSelectReadPool", selectReadPool.getTransferPath());
+        assertTrue(selectReadPool.getReplyRequired());
+    }
+
+    @Test
+    public void testSelectReadPoolRepliesIfFileIsNew() throws Exception {
+
+        _fs.createFile(_fs.path2inode("/pnfs/testRoot"), "testSelectReadPoolNew");
+
+        BlockingQueue<CellMessage> replies = new LinkedBlockingQueue<>();
+        CellEndpoint endpoint = mock(CellEndpoint.class);
+        doAnswer(invocation -> replies.add((CellMessage) invocation.getArguments()[0]))
+                .when(endpoint).sendMessage(any(CellMessage.class));
+        _pnfsManager.setCellEndpoint(endpoint);
+        SerializablePoolManagerHandler handler = mock(SerializablePoolManagerHandler.class);
+
+        PnfsSelectReadPoolMessage message =
+                new PnfsSelectReadPoolMessage("/pnfs/testRoot/testSelectReadPoolNew", EnumSet.noneOf(FileAttribute.class),
+                                              mock(ProtocolInfo.class), null, RequestContainerV5.allStates, handler);
+        CellMessage envelope = new CellMessage(new CellPath("PnfsManager"), message);
+        envelope.addSourceAddress(new CellAddressCore("door", "doorDomain"));
+
+        _pnfsManager.processPnfsMessage(envelope, message);
+
+        verify(handler, never()).send(any(CellEndpoint.class), any(CellMessage.class), any(PoolManagerMessage.class));
+        CellMessage reply = replies.poll();
+        assertNotNull(reply);
+        assertSame(message, reply.getMessageObject());
+        assertEquals(CacheException.FILE_IS_NEW, message.getReturnCode());
+    }
+
     @Test
     public void testGetCombinedAttributesNonExist() {
 
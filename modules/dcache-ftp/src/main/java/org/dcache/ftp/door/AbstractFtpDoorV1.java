@@ -1455,11 +1455,11 @@ public abstract class AbstractFtpDoorV1
         }
     }
 
-    public void messageArrived(PnfsListDirectoryMessage message)
+    public void messageArrived(CellMessage envelope, PnfsListDirectoryMessage message)
     {
         ListDirectoryHandler listSource = _listSource;
         if (listSource != null) {
-            listSource.messageArrived(message);
+            listSource.messageArrived(envelope, message);
         }
     }
 
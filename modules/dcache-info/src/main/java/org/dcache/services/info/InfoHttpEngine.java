@@ -6,6 +6,8 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,7 +59,12 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  * <p>
  * The implementation caches serialised data for one second.  This is a safety
  * feature to reducing the impact on info of pathologically broken clients that
- * make many requests per second.
+ * make many requests per second.  After that, the cached data is revalidated
+ * with the info cell, which only sends the data again if it has changed.
+ * <p>
+ * Each response carries an ETag.  Clients that send the tag back in an
+ * If-None-Match header receive a 304 (Not Modified) response without data if
+ * the data is unchanged.
  */
 public class InfoHttpEngine implements HttpResponseEngine, CellMessageSender
 {
@@ -65,6 +72,12 @@ public class InfoHttpEngine implements HttpResponseEngine, CellMessageSender
 
     private static final List<String> ENTIRE_TREE = new ArrayList<>();
 
+    /** How long serialised data is used without revalidation, in seconds */
+    private static final long REVALIDATE_AFTER = 1;
+
+    /** How long serialised data is kept if revalidation fails, in seconds */
+    private static final long EXPIRE_AFTER = 10;
+
     private final SerialisationHandler xmlSerialiser =
             new SerialisationHandler(XmlSerialiser.NAME, "text/xml");
 
@@ -100,21 +113,46 @@ public class InfoHttpEngine implements HttpResponseEngine, CellMessageSender
         private final String _name;
         private final String _mimeType;
 
-        LoadingCache<List<String>, String> resultCache = CacheBuilder.newBuilder()
+        LoadingCache<List<String>, SerialisedData> resultCache = CacheBuilder.newBuilder()
                 .maximumSize(10)
-                .expireAfterWrite(1, TimeUnit.SECONDS)
-                .build(new CacheLoader<List<String>, String>() {
+                .refreshAfterWrite(REVALIDATE_AFTER, TimeUnit.SECONDS)
+                .expireAfterWrite(EXPIRE_AFTER, TimeUnit.SECONDS)
+                .build(new CacheLoader<List<String>, SerialisedData>() {
                     @Override
-                    public String load(List<String> path) throws InterruptedException, CacheException, NoRouteToCellException
+                    public SerialisedData load(List<String> path) throws InterruptedException, CacheException, NoRouteToCellException
                     {
-                        InfoGetSerialisedDataMessage message =
-                                (path == ENTIRE_TREE) ? new InfoGetSerialisedDataMessage(_name)
-                                : new InfoGetSerialisedDataMessage(path, _name);
-                        message = _info.sendAndWait(message);
-                        return message.getSerialisedData();
+                        return fetch(path, null);
+                    }
+
+                    @Override
+                    public ListenableFuture<SerialisedData> reload(List<String> path, SerialisedData old)
+                            throws InterruptedException, CacheException, NoRouteToCellException
+                    {
+                        return Futures.immediateFuture(fetch(path, old));
                     }
                 });
 
+        /**
+         * Query the info cell for serialised data.  If the info cell reports
+         * the data we already have as current, the old data is returned.
+         */
+        private SerialisedData fetch(List<String> path, SerialisedData old)
+                throws InterruptedException, CacheException, NoRouteToCellException
+        {
+            InfoGetSerialisedDataMessage message =
+                    (path == ENTIRE_TREE) ? new InfoGetSerialisedDataMessage(_name)
+                    : new InfoGetSerialisedDataMessage(path, _name);
+            if (old != null) {
+                message.setKnownTag(old.tag);
+            }
+            message = _info.sendAndWait(message);
+            if (old != null && message.isUnchanged()) {
+                return old;
+            }
+            return new SerialisedData(message.getTag(),
+                    message.getSerialisedData().getBytes(Charsets.UTF_8));
+        }
+
         public SerialisationHandler(String name, String mimeType)
         {
             _name = name;
@@ -130,10 +168,18 @@ public class InfoHttpEngine implements HttpResponseEngine, CellMessageSender
                     Arrays.asList(urlItems).subList(1, urlItems.length);
 
             try {
-                byte[] raw = resultCache.get(path).getBytes(Charsets.UTF_8);
-                request.printHttpHeader(raw.length);
+                SerialisedData data = resultCache.get(path);
                 request.setContentType(this._mimeType);
-                out.write(raw);
+                if (data.tag != null) {
+                    String etag = '"' + data.tag + '"';
+                    request.setHeader("ETag", etag);
+                    if (matchesAny(getHeader(request, "If-None-Match"), etag)) {
+                        request.setStatus(304);
+                        return;
+                    }
+                }
+                request.printHttpHeader(data.raw.length);
+                out.write(data.raw);
             } catch (ExecutionException e) {
                 Throwable cause = e.getCause();
                 if (cause instanceof TimeoutCacheException) {
@@ -157,6 +203,53 @@ public class InfoHttpEngine implements HttpResponseEngine, CellMessageSender
     }
 
 
+    /**
+     * Serialised data as received from the info cell.
+     */
+    private static class SerialisedData
+    {
+        private final String tag;
+        private final byte[] raw;
+
+        SerialisedData(String tag, byte[] raw)
+        {
+            this.tag = tag;
+            this.raw = raw;
+        }
+    }
+
+    /**
+     * Return the value of a request header, or null if the request does not
+     * have that header.  Header names are case-insensitive.
+     */
+    private static String getHeader(HttpRequest request, String name)
+    {
+        for (Map.Entry<String,String> header : request.getRequestAttributes().entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the value of an If-None-Match header matches an ETag.
+     */
+    private static boolean matchesAny(String ifNoneMatch, String etag)
+    {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String entry : Splitter.on(',').trimResults().split(ifNoneMatch)) {
+            if (entry.equals("*") || entry.equals(etag) || entry.equals("W/" + etag)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * The constructor simply creates a new nucleus for us to use when sending messages.
      */
@@ -169,7 +262,12 @@ public class InfoHttpEngine implements HttpResponseEngine, CellMessageSender
     @Override
     public void setCellEndpoint(CellEndpoint endpoint)
     {
-        _info = new CellStub(endpoint, new CellPath(_infoCellName), 4000, MILLISECONDS);
+        setInfoStub(new CellStub(endpoint, new CellPath(_infoCellName), 4000, MILLISECONDS));
+    }
+
+    void setInfoStub(CellStub info)
+    {
+        _info = info;
     }
 
     /**
@@ -206,7 +304,7 @@ public class InfoHttpEngine implements HttpResponseEngine, CellMessageSender
 
     private SerialisationHandler serialiserFromHttpHeaders(HttpRequest request)
     {
-        String accept = request.getRequestAttributes().get("Accept");
+        String accept = getHeader(request, "Accept");
         if (accept == null) {
             return null;
         }
@@ -1,10 +1,14 @@
 package org.dcache.services.info;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
 
 import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -37,6 +41,9 @@ public class InfoProvider  implements CellCommandListener, CellInfoProvider,
     private static final String ADMIN_INTERFACE_LIST_PREFIX = "  ";
     private static final String TOPLEVEL_DIRECTORY_LABEL = "(top)";
 
+    /** Maximum number of serialised subtrees to keep */
+    private static final int MAX_SERIALISED_FRAGMENTS = 100;
+
 
     private String _defaultSerialiser = SimpleTextSerialiser.NAME;
 
@@ -49,6 +56,35 @@ public class InfoProvider  implements CellCommandListener, CellInfoProvider,
     private State _state;
     private StateObservatory _observatory;
 
+    /**
+     * Serialised subtrees, keyed by serialiser name and path.  A fragment
+     * is reused for as long as the version of its subtree is unchanged.
+     */
+    private final Cache<List<Object>,SerialisedFragment> _fragments =
+            CacheBuilder.newBuilder().maximumSize(MAX_SERIALISED_FRAGMENTS).build();
+
+    /**
+     * The serialised representation of a subtree of dCache state.
+     */
+    private static class SerialisedFragment
+    {
+        private final Object _version;
+        private final String _data;
+        private final String _tag;
+
+        SerialisedFragment(Object version, String data)
+        {
+            _version = version;
+            _data = data;
+            _tag = Hashing.murmur3_128().hashUnencodedChars(data).toString();
+        }
+
+        boolean isCurrent(Object version)
+        {
+            return _version == version;
+        }
+    }
+
     /**
      * Provide information for the info command.
      */
@@ -72,6 +108,9 @@ public class InfoProvider  implements CellCommandListener, CellInfoProvider,
         pw.print(_availableSerialisers.size());
         pw.println(" available serialisers.");
 
+        pw.print(_fragments.size());
+        pw.println(" cached serialisations.");
+
         _state.getInfo(pw);
     }
 
@@ -202,20 +241,41 @@ public class InfoProvider  implements CellCommandListener, CellInfoProvider,
             throw new IllegalArgumentException("no such serialiser");
         }
 
-        String data;
+        StatePath path = message.isCompleteDump() ? null : StatePath.buildFromList(message.getPathElements());
+        SerialisedFragment fragment = getSerialisedFragment(serialiser, path);
 
-        if (message.isCompleteDump()) {
-            data = serialiser.serialise();
-        } else {
-            StatePath path = StatePath.buildFromList(message.getPathElements());
-            data = serialiser.serialise(path);
+        message.setTag(fragment._tag);
+        if (!fragment._tag.equals(message.getKnownTag())) {
+            message.setData(fragment._data);
         }
 
-        message.setData(data);
-
         return message;
     }
 
+    /**
+     * Return the serialised subtree of dCache state at path.  The subtree is
+     * only serialised again if it has changed since it was last serialised.
+     * The caller must ensure no concurrent calls to the serialiser.
+     */
+    private SerialisedFragment getSerialisedFragment(StateSerialiser serialiser, StatePath path)
+    {
+        List<Object> key = Arrays.asList(serialiser.getName(), path);
+
+        /* The version is obtained before serialising, so the fragment is
+         * never older than the version it is recorded with.
+         */
+        Object version = _state.getVersion(path);
+
+        SerialisedFragment fragment = _fragments.getIfPresent(key);
+        if (fragment == null || !fragment.isCurrent(version)) {
+            String data = (path == null) ? serialiser.serialise() : serialiser.serialise(path);
+            fragment = new SerialisedFragment(version, data);
+            _fragments.put(key, fragment);
+        }
+
+        return fragment;
+    }
+
 
     /**
      *   H A N D L E R    A D M I N    C O M M A N D S
@@ -0,0 +1,492 @@
+package org.dcache.services.info.base;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An immutable Map from String to non-null values, implemented as a hash
+ * array mapped trie.
+ * <p>
+ * Instead of modifying the map, the <tt>plus()</tt> and <tt>minus()</tt>
+ * methods return a new map that reflects the change.  The new map shares
+ * all unaffected trie nodes with the original, so each such operation
+ * copies only O(log n) nodes, each with at most 32 slots.  This allows
+ * StateComposite to create new versions of wide branches (such as the list
+ * of pools) without copying all children.
+ * <p>
+ * The standard mutating methods of Map throw
+ * UnsupportedOperationException.
+ */
+final class HashTrieMap<V> extends AbstractMap<String,V>
+{
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final HashTrieMap<Object> EMPTY = new HashTrieMap<>(null, 0);
+
+    private final Node<V> _root;
+    private final int _size;
+
+    private HashTrieMap(Node<V> root, int size)
+    {
+        _root = root;
+        _size = size;
+    }
+
+    /**
+     * @return the empty HashTrieMap.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> HashTrieMap<V> empty()
+    {
+        return (HashTrieMap<V>) EMPTY;
+    }
+
+    private static int hash(Object key)
+    {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public int size()
+    {
+        return _size;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return _size == 0;
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        if (_root == null || !(key instanceof String)) {
+            return null;
+        }
+        return _root.get((String) key, hash(key), 0);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Return a map with the same entries as this map, except that
+     * <tt>key</tt> maps to <tt>value</tt>.
+     * @param key the key
+     * @param value the non-null value
+     * @return the resulting map; this map if it already contains the mapping.
+     */
+    HashTrieMap<V> plus(String key, V value)
+    {
+        checkNotNull(key);
+        checkNotNull(value);
+
+        int hash = hash(key);
+
+        if (_root == null) {
+            return new HashTrieMap<>(new BitmapNode<V>(0, new Object[0]).plus(key, hash, 0, value, new boolean[1]), 1);
+        }
+
+        boolean[] added = new boolean[1];
+        Node<V> root = _root.plus(key, hash, 0, value, added);
+        return root == _root ? this : new HashTrieMap<>(root, added[0] ? _size + 1 : _size);
+    }
+
+    /**
+     * Return a map with the same entries as this map, except that there is
+     * no entry for <tt>key</tt>.
+     * @param key the key
+     * @return the resulting map; this map if it contains no entry for key.
+     */
+    HashTrieMap<V> minus(String key)
+    {
+        if (_root == null) {
+            return this;
+        }
+
+        Node<V> root = _root.minus(key, hash(key), 0);
+        if (root == _root) {
+            return this;
+        }
+        return root == null ? HashTrieMap.<V>empty() : new HashTrieMap<>(root, _size - 1);
+    }
+
+    @Override
+    public Set<Entry<String,V>> entrySet()
+    {
+        return new AbstractSet<Entry<String,V>>()
+        {
+            @Override
+            public Iterator<Entry<String,V>> iterator()
+            {
+                return new EntryIterator<>(_root);
+            }
+
+            @Override
+            public int size()
+            {
+                return _size;
+            }
+        };
+    }
+
+    /**
+     * A leaf of the trie.
+     */
+    private static final class Leaf<V> extends SimpleImmutableEntry<String,V>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int _hash;
+
+        Leaf(String key, int hash, V value)
+        {
+            super(key, value);
+            _hash = hash;
+        }
+    }
+
+    /**
+     * An inner node of the trie.  Slots hold either a Leaf or a Node.
+     */
+    private abstract static class Node<V>
+    {
+        abstract V get(String key, int hash, int shift);
+
+        abstract Node<V> plus(String key, int hash, int shift, V value, boolean[] added);
+
+        /**
+         * @return the node without the key, this node if the key is absent
+         * or null if the resulting node is empty.
+         */
+        abstract Node<V> minus(String key, int hash, int shift);
+
+        /**
+         * @return the only Leaf if the node has exactly one slot that holds
+         * a Leaf, null otherwise.
+         */
+        abstract Leaf<V> singleLeaf();
+
+        abstract Object[] slots();
+    }
+
+    /**
+     * A node with up to 32 slots, indexed by five bits of the key's hash.
+     * Only occupied slots are stored.
+     */
+    private static final class BitmapNode<V> extends Node<V>
+    {
+        private final int _bitmap;
+        private final Object[] _slots;
+
+        BitmapNode(int bitmap, Object[] slots)
+        {
+            _bitmap = bitmap;
+            _slots = slots;
+        }
+
+        private int index(int bit)
+        {
+            return Integer.bitCount(_bitmap & (bit - 1));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        V get(String key, int hash, int shift)
+        {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((_bitmap & bit) == 0) {
+                return null;
+            }
+
+            Object slot = _slots[index(bit)];
+            if (slot instanceof Node) {
+                return ((Node<V>) slot).get(key, hash, shift + BITS);
+            }
+
+            Leaf<V> leaf = (Leaf<V>) slot;
+            return key.equals(leaf.getKey()) ? leaf.getValue() : null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<V> plus(String key, int hash, int shift, V value, boolean[] added)
+        {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = index(bit);
+
+            if ((_bitmap & bit) == 0) {
+                Object[] slots = new Object[_slots.length + 1];
+                System.arraycopy(_slots, 0, slots, 0, index);
+                slots[index] = new Leaf<>(key, hash, value);
+                System.arraycopy(_slots, index, slots, index + 1, _slots.length - index);
+                added[0] = true;
+                return new BitmapNode<>(_bitmap | bit, slots);
+            }
+
+            Object slot = _slots[index];
+            Object newSlot;
+            if (slot instanceof Node) {
+                Node<V> child = (Node<V>) slot;
+                Node<V> newChild = child.plus(key, hash, shift + BITS, value, added);
+                if (newChild == child) {
+                    return this;
+                }
+                newSlot = newChild;
+            } else {
+                Leaf<V> leaf = (Leaf<V>) slot;
+                if (key.equals(leaf.getKey())) {
+                    if (leaf.getValue() == value) {
+                        return this;
+                    }
+                    newSlot = new Leaf<>(key, hash, value);
+                } else {
+                    newSlot = merge(leaf, new Leaf<>(key, hash, value), shift + BITS);
+                    added[0] = true;
+                }
+            }
+
+            Object[] slots = _slots.clone();
+            slots[index] = newSlot;
+            return new BitmapNode<>(_bitmap, slots);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<V> minus(String key, int hash, int shift)
+        {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((_bitmap & bit) == 0) {
+                return this;
+            }
+
+            int index = index(bit);
+            Object slot = _slots[index];
+            Object newSlot;
+            if (slot instanceof Node) {
+                Node<V> child = (Node<V>) slot;
+                Node<V> newChild = child.minus(key, hash, shift + BITS);
+                if (newChild == child) {
+                    return this;
+                }
+                if (newChild == null) {
+                    newSlot = null;
+                } else {
+                    Leaf<V> leaf = newChild.singleLeaf();
+                    newSlot = (leaf != null) ? leaf : newChild;
+                }
+            } else {
+                if (!key.equals(((Leaf<V>) slot).getKey())) {
+                    return this;
+                }
+                newSlot = null;
+            }
+
+            if (newSlot != null) {
+                Object[] slots = _slots.clone();
+                slots[index] = newSlot;
+                return new BitmapNode<>(_bitmap, slots);
+            }
+
+            if (_slots.length == 1) {
+                return null;
+            }
+
+            Object[] slots = new Object[_slots.length - 1];
+            System.arraycopy(_slots, 0, slots, 0, index);
+            System.arraycopy(_slots, index + 1, slots, index, slots.length - index);
+            return new BitmapNode<>(_bitmap & ~bit, slots);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Leaf<V> singleLeaf()
+        {
+            return (_slots.length == 1 && _slots[0] instanceof Leaf) ? (Leaf<V>) _slots[0] : null;
+        }
+
+        @Override
+        Object[] slots()
+        {
+            return _slots;
+        }
+    }
+
+    /**
+     * A node holding leaves whose keys have the same hash.
+     */
+    private static final class CollisionNode<V> extends Node<V>
+    {
+        private final int _hash;
+        private final Leaf<V>[] _leaves;
+
+        CollisionNode(int hash, Leaf<V>[] leaves)
+        {
+            _hash = hash;
+            _leaves = leaves;
+        }
+
+        private int indexOf(String key)
+        {
+            for (int i = 0; i < _leaves.length; i++) {
+                if (key.equals(_leaves[i].getKey())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        V get(String key, int hash, int shift)
+        {
+            if (hash != _hash) {
+                return null;
+            }
+            int index = indexOf(key);
+            return index < 0 ? null : _leaves[index].getValue();
+        }
+
+        @Override
+        Node<V> plus(String key, int hash, int shift, V value, boolean[] added)
+        {
+            if (hash != _hash) {
+                int bit = 1 << ((_hash >>> shift) & MASK);
+                return new BitmapNode<V>(bit, new Object[] { this }).plus(key, hash, shift, value, added);
+            }
+
+            int index = indexOf(key);
+            Leaf<V>[] leaves;
+            if (index < 0) {
+                leaves = Arrays.copyOf(_leaves, _leaves.length + 1);
+                leaves[_leaves.length] = new Leaf<>(key, hash, value);
+                added[0] = true;
+            } else {
+                if (_leaves[index].getValue() == value) {
+                    return this;
+                }
+                leaves = _leaves.clone();
+                leaves[index] = new Leaf<>(key, hash, value);
+            }
+            return new CollisionNode<>(_hash, leaves);
+        }
+
+        @Override
+        Node<V> minus(String key, int hash, int shift)
+        {
+            int index = (hash == _hash) ? indexOf(key) : -1;
+            if (index < 0) {
+                return this;
+            }
+            if (_leaves.length == 1) {
+                return null;
+            }
+
+            @SuppressWarnings("unchecked")
+            Leaf<V>[] leaves = new Leaf[_leaves.length - 1];
+            System.arraycopy(_leaves, 0, leaves, 0, index);
+            System.arraycopy(_leaves, index + 1, leaves, index, leaves.length - index);
+            return new CollisionNode<>(_hash, leaves);
+        }
+
+        @Override
+        Leaf<V> singleLeaf()
+        {
+            return _leaves.length == 1 ? _leaves[0] : null;
+        }
+
+        @Override
+        Object[] slots()
+        {
+            return _leaves;
+        }
+    }
+
+    /**
+     * Build the smallest sub-trie holding two leaves with different keys.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> Node<V> merge(Leaf<V> a, Leaf<V> b, int shift)
+    {
+        if (a._hash == b._hash) {
+            return new CollisionNode<>(a._hash, new Leaf[] { a, b });
+        }
+
+        int indexA = (a._hash >>> shift) & MASK;
+        int indexB = (b._hash >>> shift) & MASK;
+
+        if (indexA == indexB) {
+            return new BitmapNode<>(1 << indexA, new Object[] { merge(a, b, shift + BITS) });
+        }
+
+        Object[] slots = indexA < indexB ? new Object[] { a, b } : new Object[] { b, a };
+        return new BitmapNode<>((1 << indexA) | (1 << indexB), slots);
+    }
+
+    /**
+     * Depth-first iteration over all leaves of a trie.
+     */
+    private static final class EntryIterator<V> implements Iterator<Entry<String,V>>
+    {
+        private final Deque<Iterator<Object>> _stack = new ArrayDeque<>();
+        private Leaf<V> _next;
+
+        EntryIterator(Node<V> root)
+        {
+            if (root != null) {
+                _stack.push(Arrays.asList(root.slots()).iterator());
+            }
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance()
+        {
+            _next = null;
+            while (!_stack.isEmpty()) {
+                Iterator<Object> slots = _stack.peek();
+                if (!slots.hasNext()) {
+                    _stack.pop();
+                    continue;
+                }
+                Object slot = slots.next();
+                if (slot instanceof Node) {
+                    _stack.push(Arrays.asList(((Node<V>) slot).slots()).iterator());
+                } else {
+                    _next = (Leaf<V>) slot;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return _next != null;
+        }
+
+        @Override
+        public Entry<String,V> next()
+        {
+            if (_next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<V> current = _next;
+            advance();
+            return current;
+        }
+    }
+}
@@ -8,9 +8,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This singleton class provides a (best-effort) complete representation of
@@ -36,6 +33,11 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * some synchronous classes also use this to build lists from dCache current
  * state (e.g., to send a message requesting data to each currently known
  * pool).
+ * <p>
+ * Updates do not modify the state tree.  Instead, each update builds a new
+ * version of the tree that shares all unaffected branches with the previous
+ * version and then publishes it.  Updates are serialised, whereas visitors
+ * walk whichever version was current when they started, without locking.
  *
  * @author Paul Millar <paul.millar@desy.de>
  */
@@ -53,17 +55,12 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
      * Class member variables...
      */
 
-    /** The root branch of the dCache state */
-    private final StateComposite _state;
+    /** The root branch of the current version of dCache state */
+    private volatile StateComposite _state;
 
     /** All registered StateWatchers */
     private volatile Collection<StateWatcherInfo> _watchers = new ArrayList<>();
 
-    /** Our read/write lock: we use the fair version to reduce the risk of writers constantly blocking a reader */
-    private final ReadWriteLock _stateRWLock = new ReentrantReadWriteLock(true);
-    private final Lock _stateReadLock = _stateRWLock.readLock();
-    private final Lock _stateWriteLock = _stateRWLock.writeLock();
-
     // TODO: remove this completely. It's only needed to support derived
     // metrics
     private StateUpdateManager _updateManager;
@@ -112,6 +109,21 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
         return earliestExpiryDate;
     }
 
+    /**
+     * Return an opaque token identifying the current version of the subtree
+     * at the given path.  The token changes whenever anything within the
+     * subtree changes, so output derived from the subtree may be reused for
+     * as long as the token stays the same.  The tokens of two versions are
+     * compared by identity.
+     *
+     * @param path the root of the subtree, or null for the complete state.
+     * @return the version token of the subtree.
+     */
+    public Object getVersion(StatePath path)
+    {
+        return _state.getDeepestComponent(path);
+    }
+
     /**
      * Update the current dCache state by applying, at most, a single
      * StateUpdate from a Stack of pending updates. If no updates are needed,
@@ -124,11 +136,12 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
      * hierarchy.
      * <li>Check StateWatchers' StatePathPredicates and triggering those
      * affected.
-     * <li>Traverse the tree, applying the StateTransition
+     * <li>Build and publish a new version of the tree with the
+     * StateTransition applied.
      * </ol>
      */
     @Override
-    public void processUpdate(StateUpdate update)
+    public synchronized void processUpdate(StateUpdate update)
     {
         if (LOGGER.isTraceEnabled()) {
             LOGGER.trace("beginning to process update: \n{}", update.debugInfo());
@@ -148,30 +161,23 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
 
         StateTransition transition = new StateTransition();
 
+        /**
+         * Update our new StateTransition based on the StateUpdate.
+         */
         try {
-            _stateReadLock.lock();
-
-            /**
-             * Update our new StateTransition based on the StateUpdate.
-             */
-            try {
-                update.updateTransition(_state, transition);
-            } catch (BadStatePathException e) {
-                LOGGER.error("Error updating state:", e);
-            }
-
-            LOGGER.trace("checking StateWatchers");
+            update.updateTransition(_state, transition);
+        } catch (BadStatePathException e) {
+            LOGGER.error("Error updating state:", e);
+        }
 
-            StateUpdate resultingUpdate = checkWatchers(transition);
+        LOGGER.trace("checking StateWatchers");
 
-            // TODO: don't enqueue the update but merge with existing StateTransition and
-            // look for additional StateWatchers.
-            if (resultingUpdate != null) {
-                _updateManager.enqueueUpdate(resultingUpdate);
-            }
+        StateUpdate resultingUpdate = checkWatchers(transition);
 
-        } finally {
-            _stateReadLock.unlock();
+        // TODO: don't enqueue the update but merge with existing StateTransition and
+        // look for additional StateWatchers.
+        if (resultingUpdate != null) {
+            _updateManager.enqueueUpdate(resultingUpdate);
         }
 
         applyTransition(transition);
@@ -180,7 +186,8 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
     /**
      * Apply a StateTransition to dCache state. This is the final step in
      * updating the dCache state where the proposed changes are made
-     * permanent. This requires obtaining a writer-lock on the state.
+     * permanent. The caller must hold this object's monitor, so that
+     * no update is lost.
      *
      * @param transition
      *            the StateTransition to apply.
@@ -192,14 +199,7 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
                     transition.dumpContents());
         }
 
-        try {
-            _stateWriteLock.lock();
-
-            _state.applyTransition(null, transition);
-
-        } finally {
-            _stateWriteLock.unlock();
-        }
+        _state = _state.withTransition(null, transition);
     }
 
     /**
@@ -222,6 +222,7 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
     @Override
     public StateUpdate checkWatchers(StateTransition transition)
     {
+        StateComposite state = _state;
         StateUpdate update = new StateUpdate();
         StateExhibitor currentState = this;
         StateExhibitor futureState = null;
@@ -241,7 +242,7 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
             for (StatePathPredicate thisPredicate : thisWatcher.getPredicate()) {
                 LOGGER.trace("checking watcher {} predicate {}", thisWatcher, thisPredicate);
 
-                hasBeenTriggered = _state.predicateHasBeenTriggered(null,
+                hasBeenTriggered = state.predicateHasBeenTriggered(null,
                         thisPredicate,
                         transition);
 
@@ -360,7 +361,7 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
     @Override
     public synchronized void removeExpiredMetrics()
     {
-        // A quick check before obtaining the lock
+        // A quick check before building a transition
         Date expDate = getEarliestMetricExpiryDate();
 
         if (expDate == null || expDate.after(new Date())) {
@@ -370,21 +371,14 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
         LOGGER.trace("Building StateTransition for expired StateComponents");
         StateTransition transition = new StateTransition();
 
-        try {
-            _stateReadLock.lock();
+        _state.buildRemovalTransition(null, transition, false);
 
-            _state.buildRemovalTransition(null, transition, false);
-
-            StateUpdate resultingUpdate = checkWatchers(transition);
-
-            // TODO: don't enqueue the update but merge with existing StateTransition and
-            // look for additional StateWatchers.
-            if (resultingUpdate != null) {
-                _updateManager.enqueueUpdate(resultingUpdate);
-            }
+        StateUpdate resultingUpdate = checkWatchers(transition);
 
-        } finally {
-            _stateReadLock.unlock();
+        // TODO: don't enqueue the update but merge with existing StateTransition and
+        // look for additional StateWatchers.
+        if (resultingUpdate != null) {
+            _updateManager.enqueueUpdate(resultingUpdate);
         }
 
         applyTransition(transition);
@@ -397,8 +391,9 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
      * <p>
      * The data obtained from a single call of <code>visitState()</code> is
      * protected from inconsistencies due to data being updated whilst the
-     * iteration is taking place. No such protection is available for
-     * multiple calls to <code>visitState()</code>.
+     * iteration is taking place: the visitor walks a single version of the
+     * state and is not blocked by concurrent updates. No such protection is
+     * available for multiple calls to <code>visitState()</code>.
      *
      * @param visitor
      *            the algorithm that wishes to visit our current state
@@ -408,28 +403,18 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory
     {
         LOGGER.trace("visitor {} wishing to visit current state", visitor);
 
-        try {
-            long beforeLock = System.currentTimeMillis();
-
-            LOGGER.trace("visitor {} acquiring read lock", visitor);
-            _stateReadLock.lock();
-
-            long afterLock = System.currentTimeMillis();
+        StateComposite state = _state;
 
-            LOGGER.trace("visitor {} acquired read lock (took {} ms), starting visit.",
-                    visitor, (afterLock - beforeLock) / 1000.0);
+        long beforeVisit = System.currentTimeMillis();
 
-            if (visitor.isVisitable(null)) {
-                _state.acceptVisitor(null, visitor);
-            }
+        if (visitor.isVisitable(null)) {
+            state.acceptVisitor(null, visitor);
+        }
 
-            long afterVisit = System.currentTimeMillis();
+        long afterVisit = System.currentTimeMillis();
 
-            LOGGER.trace("visitor {} completed visit (took {} ms), releasing read lock.",
-                    visitor, (afterVisit - afterLock) / 1000.0);
-        } finally {
-            _stateReadLock.unlock();
-        }
+        LOGGER.trace("visitor {} completed visit (took {} ms).",
+                visitor, afterVisit - beforeVisit);
 
         LOGGER.trace("visitor {} finished.", visitor);
     }
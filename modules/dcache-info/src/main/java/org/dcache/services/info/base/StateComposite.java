@@ -6,7 +6,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -29,6 +28,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * children) will expire.  This is an optimisation, allowing a quick determination when
  * a tree should next be purged and, with any subtree, whether it is necessary to purge that
  * subtree.
+ * <p>
+ * Children are held in an immutable HashTrieMap.  This allows
+ * {@link #withTransition} to build a new version of the tree that shares all
+ * unaffected subtrees with this version, leaving this version unmodified.
  *
  * @author Paul Millar <paul.millar@desy.de>
  */
@@ -39,7 +42,7 @@ public class StateComposite implements StateComponent
     /** Minimum lifetime for on-the-fly created StateComposites, in seconds */
     static final long DEFAULT_LIFETIME = 10;
 
-    private final Map<String, StateComponent> _children = new HashMap<>();
+    private HashTrieMap<StateComponent> _children = HashTrieMap.empty();
     private StatePersistentMetadata _metadataRef;
     private Date _earliestChildExpiry;
     private Date _whenIShouldExpire;
@@ -114,6 +117,20 @@ public class StateComposite implements StateComponent
         _metadataRef = persistentMetadata;
     }
 
+    /**
+     * Create a copy of this StateComposite.  The copy shares all children
+     * with this StateComposite.
+     */
+    private StateComposite copy()
+    {
+        StateComposite copy = new StateComposite(_metadataRef);
+        copy._children = _children;
+        copy._earliestChildExpiry = _earliestChildExpiry;
+        copy._whenIShouldExpire = _whenIShouldExpire;
+        copy._isEphemeral = _isEphemeral;
+        return copy;
+    }
+
     /**
      * Possibly update our belief of the earliest time that a Mortal child StateComponent
      * will expire.  It is safe to call this method with all child Dates: it will
@@ -316,11 +333,13 @@ public class StateComposite implements StateComponent
             return _children;
         }
 
-        Map<String,StateComponent> futureChildren = new HashMap<>(_children);
+        HashTrieMap<StateComponent> futureChildren = _children;
 
         for (String childName : changeSet.getNewChildren()) {
             StateComponent childValue = changeSet.getNewChildValue(childName);
-            futureChildren.put(childName, childValue);
+            if (childValue != null) {
+                futureChildren = futureChildren.plus(childName, childValue);
+            }
         }
 
         for (String childName : changeSet.getUpdatedChildren()) {
@@ -329,15 +348,15 @@ public class StateComposite implements StateComponent
             // When updating a branch (i.e., not a new branch) updates to child
             // StateComposite objects are children of the existing branch, not
             // the future one.
-            if (childValue instanceof StateComposite) {
+            if (childValue == null || childValue instanceof StateComposite) {
                 continue;
             }
 
-            futureChildren.put(childName, childValue);
+            futureChildren = futureChildren.plus(childName, childValue);
         }
 
         for (String childName : changeSet.getRemovedChildren()) {
-            futureChildren.remove(childName);
+            futureChildren = futureChildren.minus(childName);
         }
 
         return futureChildren;
@@ -360,6 +379,42 @@ public class StateComposite implements StateComponent
             return;
         }
 
+        apply(ourPath, transition, changeSet, false);
+    }
+
+    /**
+     * Build a new version of this StateComposite with the transition
+     * applied.  Unlike {@link #applyTransition}, neither this StateComposite
+     * nor any of its descendants are modified: StateComposites affected by
+     * the transition are copied, all other children are shared between the
+     * two versions.
+     * @param ourPath the path to this within dCache tree, or null for top-most StateComposite
+     * @param transition the StateTransition to apply
+     * @return the new version, or this StateComposite if the transition
+     * does not affect it.
+     */
+    public StateComposite withTransition(StatePath ourPath, StateTransition transition)
+    {
+        StateChangeSet changeSet = transition.getStateChangeSet(ourPath);
+
+        if (changeSet == null) {
+            return this;
+        }
+
+        StateComposite newVersion = copy();
+        newVersion.apply(ourPath, transition, changeSet, true);
+        return newVersion;
+    }
+
+    /**
+     * Apply a StateChangeSet to this StateComposite and iterate into
+     * affected children.
+     * @param copyChildren whether StateComposite children are to be replaced
+     * by new versions rather than modified.
+     */
+    private void apply(StatePath ourPath, StateTransition transition,
+            StateChangeSet changeSet, boolean copyChildren)
+    {
         Date newExpDate = changeSet.getWhenIShouldExpireDate();
         updateWhenIShouldExpireDate(newExpDate);
         if (newExpDate == null) {
@@ -373,7 +428,7 @@ public class StateComposite implements StateComponent
         // First, remove those children we should remove.
         for (String childName : changeSet.getRemovedChildren()) {
             LOGGER.trace("removing child {}", childName);
-            _children.remove(childName);
+            _children = _children.minus(childName);
         }
 
         // Then update our existing children.
@@ -409,7 +464,13 @@ public class StateComposite implements StateComponent
                 continue;
             }
 
-            child.applyTransition(buildChildPath(ourPath, childName), transition);
+            StatePath childPath = buildChildPath(ourPath, childName);
+            if (copyChildren && child instanceof StateComposite) {
+                _children = _children.plus(childName,
+                        ((StateComposite) child).withTransition(childPath, transition));
+            } else {
+                child.applyTransition(childPath, transition);
+            }
         }
 
         recalcEarliestChildExpiry();
@@ -441,6 +502,29 @@ public class StateComposite implements StateComponent
     }
 
 
+    /**
+     * Find the StateComponent at the given path, relative to this
+     * StateComposite.  If there is no such StateComponent then the deepest
+     * existing StateComponent along that path is returned.
+     * @param path the relative path, or null for this StateComposite.
+     * @return the StateComponent at path or its deepest existing ancestor.
+     */
+    StateComponent getDeepestComponent(StatePath path)
+    {
+        StateComponent component = this;
+
+        while (path != null && component instanceof StateComposite) {
+            StateComponent child = ((StateComposite) component)._children.get(path.getFirstElement());
+            if (child == null) {
+                break;
+            }
+            component = child;
+            path = path.childPath();
+        }
+
+        return component;
+    }
+
     /**
      * Look up persistent metadata reference for child and return it.  If none is
      * available, null is returned.
@@ -488,8 +572,8 @@ public class StateComposite implements StateComponent
                 // Copy across the existingComposite's children over to the newComposite
                 for (Map.Entry<String,StateComponent> entry : existingComposite._children.entrySet()) {
                     if (!newComposite._children.containsKey(entry.getKey())) {
-                        newComposite._children
-                                .put(entry.getKey(), entry.getValue());
+                        newComposite._children = newComposite._children
+                                .plus(entry.getKey(), entry.getValue());
                     }
                 }
 
@@ -499,7 +583,7 @@ public class StateComposite implements StateComponent
             }
         }
 
-        _children.put(childName, newChild);
+        _children = _children.plus(childName, newChild);
         LOGGER.trace("Child {} now {}", childName, newChild);
     }
 
@@ -0,0 +1,144 @@
+package org.dcache.services.info;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import dmg.util.HttpRequest;
+
+import org.dcache.cells.CellStub;
+import org.dcache.vehicles.InfoGetSerialisedDataMessage;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class InfoHttpEngineTest
+{
+    private static final String DATA = "<dCache/>";
+
+    private InfoHttpEngine engine;
+    private CellStub info;
+    private HttpRequest request;
+    private Map<String,String> headers;
+    private ByteArrayOutputStream out;
+    private String tag;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        tag = "tag1";
+        info = mock(CellStub.class);
+        when(info.sendAndWait(any(InfoGetSerialisedDataMessage.class))).thenAnswer(invocation -> {
+            InfoGetSerialisedDataMessage message = (InfoGetSerialisedDataMessage) invocation.getArguments()[0];
+            message.setTag(tag);
+            message.setData(DATA);
+            return message;
+        });
+
+        engine = new InfoHttpEngine(new String[] { "-cell=info" });
+        engine.setInfoStub(info);
+
+        headers = new HashMap<>();
+        out = new ByteArrayOutputStream();
+        request = mock(HttpRequest.class);
+        when(request.getRequestTokens()).thenReturn(new String[] { "info" });
+        when(request.getRequestAttributes()).thenReturn(headers);
+        when(request.getOutputStream()).thenReturn(out);
+    }
+
+    @Test
+    public void shouldSendDataWithETag() throws Exception
+    {
+        engine.queryUrl(request);
+
+        verify(request).setHeader("ETag", "\"tag1\"");
+        verify(request).printHttpHeader(DATA.length());
+        verify(request, never()).setStatus(anyInt());
+        assertThat(out.toString("UTF-8"), is(DATA));
+    }
+
+    @Test
+    public void shouldReplyNotModifiedIfETagMatches() throws Exception
+    {
+        headers.put("If-None-Match", "\"tag1\"");
+
+        engine.queryUrl(request);
+
+        verify(request).setStatus(304);
+        verify(request, never()).printHttpHeader(anyInt());
+        assertThat(out.size(), is(0));
+    }
+
+    @Test
+    public void shouldMatchIfNoneMatchHeaderCaseInsensitively() throws Exception
+    {
+        headers.put("if-none-match", "\"tag1\"");
+
+        engine.queryUrl(request);
+
+        verify(request).setStatus(304);
+        assertThat(out.size(), is(0));
+    }
+
+    @Test
+    public void shouldMatchWeakETag() throws Exception
+    {
+        headers.put("If-None-Match", "\"other\", W/\"tag1\"");
+
+        engine.queryUrl(request);
+
+        verify(request).setStatus(304);
+    }
+
+    @Test
+    public void shouldMatchWildcard() throws Exception
+    {
+        headers.put("If-None-Match", "*");
+
+        engine.queryUrl(request);
+
+        verify(request).setStatus(304);
+    }
+
+    @Test
+    public void shouldSendDataIfETagDoesNotMatch() throws Exception
+    {
+        headers.put("If-None-Match", "\"tag0\"");
+
+        engine.queryUrl(request);
+
+        verify(request, never()).setStatus(anyInt());
+        verify(request).printHttpHeader(DATA.length());
+        assertThat(out.toString("UTF-8"), is(DATA));
+    }
+
+    @Test
+    public void shouldNotSendETagWithoutTag() throws Exception
+    {
+        tag = null;
+        headers.put("If-None-Match", "*");
+
+        engine.queryUrl(request);
+
+        verify(request, never()).setHeader(eq("ETag"), anyString());
+        verify(request, never()).setStatus(anyInt());
+        assertThat(out.toString("UTF-8"), is(DATA));
+    }
+
+    @Test
+    public void shouldSelectSerialiserFromAcceptHeaderCaseInsensitively() throws Exception
+    {
+        headers.put("accept", "application/json");
+
+        engine.queryUrl(request);
+
+        verify(request).setContentType("text/json");
+    }
+}
@@ -0,0 +1,108 @@
+package org.dcache.services.info;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.dcache.services.info.base.State;
+import org.dcache.services.info.base.StatePath;
+import org.dcache.services.info.serialisation.StateSerialiser;
+import org.dcache.vehicles.InfoGetSerialisedDataMessage;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class InfoProviderTest
+{
+    private static final String SERIALISER = "xml";
+
+    private InfoProvider provider;
+    private State state;
+    private StateSerialiser serialiser;
+    private Object version;
+
+    @Before
+    public void setUp()
+    {
+        version = new Object();
+        state = mock(State.class);
+        when(state.getVersion(any(StatePath.class))).thenAnswer(invocation -> version);
+
+        serialiser = mock(StateSerialiser.class);
+        when(serialiser.getName()).thenReturn(SERIALISER);
+        when(serialiser.serialise()).thenAnswer(invocation -> "<dCache>" + version + "</dCache>");
+        when(serialiser.serialise(any(StatePath.class))).thenAnswer(invocation -> "<" + invocation.getArguments()[0] + "/>");
+
+        provider = new InfoProvider();
+        provider.setState(state);
+        provider.setDefaultSerialiser(SERIALISER);
+        provider.setSerialisers(Collections.singletonList(serialiser));
+    }
+
+    @Test
+    public void shouldReuseFragmentWhileVersionIsUnchanged()
+    {
+        InfoGetSerialisedDataMessage first = provider.messageArrived(new InfoGetSerialisedDataMessage(SERIALISER));
+        InfoGetSerialisedDataMessage second = provider.messageArrived(new InfoGetSerialisedDataMessage(SERIALISER));
+
+        verify(serialiser, times(1)).serialise();
+        assertThat(second.getSerialisedData(), is(first.getSerialisedData()));
+        assertThat(second.getTag(), is(notNullValue()));
+        assertThat(second.getTag(), is(first.getTag()));
+    }
+
+    @Test
+    public void shouldSerialiseAgainWhenVersionChanges()
+    {
+        InfoGetSerialisedDataMessage first = provider.messageArrived(new InfoGetSerialisedDataMessage(SERIALISER));
+        version = new Object();
+        InfoGetSerialisedDataMessage second = provider.messageArrived(new InfoGetSerialisedDataMessage(SERIALISER));
+
+        verify(serialiser, times(2)).serialise();
+        assertThat(second.getSerialisedData(), is(not(first.getSerialisedData())));
+        assertThat(second.getTag(), is(not(first.getTag())));
+    }
+
+    @Test
+    public void shouldCacheFragmentsPerPath()
+    {
+        provider.messageArrived(new InfoGetSerialisedDataMessage(Arrays.asList("pools"), SERIALISER));
+        provider.messageArrived(new InfoGetSerialisedDataMessage(Arrays.asList("domains"), SERIALISER));
+        provider.messageArrived(new InfoGetSerialisedDataMessage(Arrays.asList("pools"), SERIALISER));
+
+        verify(serialiser, times(2)).serialise(any(StatePath.class));
+        verify(serialiser, never()).serialise();
+    }
+
+    @Test
+    public void shouldOmitDataIfKnownTagIsCurrent()
+    {
+        InfoGetSerialisedDataMessage first = provider.messageArrived(new InfoGetSerialisedDataMessage(SERIALISER));
+        InfoGetSerialisedDataMessage request = new InfoGetSerialisedDataMessage(SERIALISER);
+        request.setKnownTag(first.getTag());
+
+        InfoGetSerialisedDataMessage reply = provider.messageArrived(request);
+
+        assertThat(reply.isUnchanged(), is(true));
+        assertThat(reply.getSerialisedData(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldSendDataIfKnownTagIsStale()
+    {
+        InfoGetSerialisedDataMessage first = provider.messageArrived(new InfoGetSerialisedDataMessage(SERIALISER));
+        version = new Object();
+        InfoGetSerialisedDataMessage request = new InfoGetSerialisedDataMessage(SERIALISER);
+        request.setKnownTag(first.getTag());
+
+        InfoGetSerialisedDataMessage reply = provider.messageArrived(request);
+
+        assertThat(reply.isUnchanged(), is(false));
+        assertThat(reply.getSerialisedData(), is(notNullValue()));
+        assertThat(reply.getTag(), is(not(first.getTag())));
+    }
+}
@@ -0,0 +1,102 @@
+package org.dcache.services.info.base;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HashTrieMapTest {
+
+    @Test
+    public void testEmpty() {
+        HashTrieMap<String> map = HashTrieMap.empty();
+
+        assertEquals( "empty map has entries", 0, map.size());
+        assertTrue( "empty map not empty", map.isEmpty());
+        assertNull( "empty map returned value", map.get( "foo"));
+        assertFalse( "empty map has iterable entries", map.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    public void testPlusLeavesOriginalUnmodified() {
+        HashTrieMap<String> original = HashTrieMap.<String>empty().plus( "foo", "1");
+        HashTrieMap<String> updated = original.plus( "bar", "2");
+
+        assertEquals( "original modified", 1, original.size());
+        assertNull( "original modified", original.get( "bar"));
+        assertEquals( "new entry missing", "2", updated.get( "bar"));
+        assertEquals( "old entry missing", "1", updated.get( "foo"));
+    }
+
+    @Test
+    public void testPlusReplacesValue() {
+        HashTrieMap<String> map = HashTrieMap.<String>empty().plus( "foo", "1").plus( "foo", "2");
+
+        assertEquals( "wrong size", 1, map.size());
+        assertEquals( "value not replaced", "2", map.get( "foo"));
+    }
+
+    @Test
+    public void testPlusSameValueReturnsSameMap() {
+        String value = "1";
+        HashTrieMap<String> map = HashTrieMap.<String>empty().plus( "foo", value);
+
+        assertSame( "map copied", map, map.plus( "foo", value));
+    }
+
+    @Test
+    public void testMinusAbsentKeyReturnsSameMap() {
+        HashTrieMap<String> map = HashTrieMap.<String>empty().plus( "foo", "1");
+
+        assertSame( "map copied", map, map.minus( "bar"));
+    }
+
+    @Test
+    public void testMinusLastEntry() {
+        HashTrieMap<String> map = HashTrieMap.<String>empty().plus( "foo", "1").minus( "foo");
+
+        assertTrue( "map not empty", map.isEmpty());
+        assertNull( "entry not removed", map.get( "foo"));
+    }
+
+    @Test
+    public void testCollidingKeys() {
+        // "Aa" and "BB" have the same hashCode
+        HashTrieMap<String> map = HashTrieMap.<String>empty().plus( "Aa", "1").plus( "BB", "2");
+
+        assertEquals( "wrong size", 2, map.size());
+        assertEquals( "wrong value", "1", map.get( "Aa"));
+        assertEquals( "wrong value", "2", map.get( "BB"));
+
+        map = map.minus( "Aa");
+
+        assertEquals( "wrong size", 1, map.size());
+        assertNull( "entry not removed", map.get( "Aa"));
+        assertEquals( "wrong value", "2", map.get( "BB"));
+    }
+
+    @Test
+    public void testManyEntriesAgreeWithHashMap() {
+        Map<String,String> expected = new HashMap<>();
+        HashTrieMap<String> map = HashTrieMap.empty();
+
+        for (int i = 0; i < 5000; i++) {
+            String key = "pool-" + i;
+            expected.put( key, key);
+            map = map.plus( key, key);
+        }
+
+        for (int i = 0; i < 5000; i += 3) {
+            String key = "pool-" + i;
+            expected.remove( key);
+            map = map.minus( key);
+        }
+
+        assertEquals( "wrong size", expected.size(), map.size());
+        assertEquals( "maps differ", expected, map);
+        assertEquals( "maps differ", map, expected);
+        assertEquals( "hashCode differs", expected.hashCode(), map.hashCode());
+    }
+}
@@ -366,6 +366,41 @@ public class StateCompositeTest extends InfoBaseTestHelper {
         assertTrue( "VerifyingVisitor not satisfied after applying transition", visitor.satisfied());
     }
 
+    /**
+     * Test method for {@link StateComposite#withTransition(StatePath, StateTransition)}.
+     */
+    @Test
+    public void testWithTransition() throws MetricStatePathException {
+        StatePath metricPath = BRANCH_MORTAL_PATH.newChild( "myMetric");
+        StateValue metricValue = new StringStateValue( "some dummy data");
+
+        VerifyingVisitor visitorNoMetric = newDefaultVisitor();
+        VerifyingVisitor visitorWithMetric = newDefaultVisitor();
+        visitorWithMetric.addExpectedMetric( metricPath, metricValue);
+
+        StateTransition transition = new StateTransition();
+        _rootComposite.buildTransition( null, metricPath, metricValue, transition);
+        StateComposite newRoot = _rootComposite.withTransition( null, transition);
+
+        assertNotSame( "withTransition returned same root", _rootComposite, newRoot);
+        visitorWithMetric.assertSatisfied( "new version missing metric", newRoot);
+        visitorNoMetric.assertSatisfied( "old version modified by withTransition", _rootComposite);
+        assertTrue( "old branch modified by withTransition", _mortalComposite.equals( _immortalComposite));
+
+        // Check that unaffected branches are shared between both versions.
+        StateTransition emptyTransition = new StateTransition();
+        assertSame( "unaffected root was copied", newRoot, newRoot.withTransition( null, emptyTransition));
+    }
+
+
+    @Test
+    public void testGetDeepestComponent() {
+        assertSame( "null path", _rootComposite, _rootComposite.getDeepestComponent( null));
+        assertSame( "existing branch", _mortalComposite, _rootComposite.getDeepestComponent( BRANCH_MORTAL_PATH));
+        assertSame( "missing child of existing branch", _mortalComposite,
+                _rootComposite.getDeepestComponent( BRANCH_MORTAL_PATH.newChild( "missing")));
+        assertSame( "missing branch", _rootComposite, _rootComposite.getDeepestComponent( StatePath.parsePath( "missing.child")));
+    }
 
     @Test
     public void testApplyTransitionRemovingMetrics() throws MetricStatePathException {
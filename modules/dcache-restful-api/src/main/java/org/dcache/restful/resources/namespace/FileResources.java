@@ -1,6 +1,14 @@
 package org.dcache.restful.resources.namespace;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Range;
+import com.google.common.io.BaseEncoding;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -22,18 +30,23 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Providers;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
-import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
+import diskCacheV111.poolManager.PoolMonitorV5;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileLocality;
 import diskCacheV111.util.FileNotFoundCacheException;
 import diskCacheV111.util.FsPath;
 import diskCacheV111.util.PermissionDeniedCacheException;
 import diskCacheV111.util.PnfsHandler;
+import diskCacheV111.util.PnfsId;
 
 import org.dcache.auth.Subjects;
 import org.dcache.namespace.FileAttribute;
@@ -47,6 +60,7 @@ import org.dcache.util.list.ListDirectoryHandler;
 import org.dcache.vehicles.FileAttributes;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static org.dcache.namespace.FileAttribute.*;
 import static org.dcache.restful.providers.SuccessfulResponse.successfulResponse;
 
 /**
@@ -58,6 +72,16 @@ import static org.dcache.restful.providers.SuccessfulResponse.successfulResponse
 public class FileResources {
 
 
+    /**
+     * File attributes needed to produce each of the JSON fields that may be
+     * selected with the {@code fields} query parameter.
+     */
+    private static final Map<String, Set<FileAttribute>> FIELDS =
+            ImmutableMap.of("size", EnumSet.of(SIZE),
+                            "mtime", EnumSet.of(MODIFICATION_TIME),
+                            "creationTime", EnumSet.of(CREATION_TIME),
+                            "fileType", EnumSet.of(TYPE));
+
     @Context
     ServletContext ctx;
 
@@ -68,6 +92,9 @@ public class FileResources {
     @Context
     HttpServletRequest request;
 
+    @Context
+    Providers providers;
+
     /**
      * The method offer to list the content of a directory or return metadata of
      * a specified file or directory.
@@ -78,6 +105,14 @@ public class FileResources {
      *                 the specified directory will be displayed.
      * @param isLocality optional boolean parameter, set to false by default.
      *                 When set to true the locality of file (ONLINE/NEARLINE) is displayed as a part of FileAttributes.
+     * @param fields optional comma separated list of the attributes to return (size, mtime,
+     *                 creationTime, fileType). All of them are returned by default. Only the
+     *                 attributes needed for the selected fields are fetched from the name space.
+     * @param limit optional maximum number of children to return. Children are returned in
+     *                 the order of their names. If the directory contains more children, the
+     *                 response contains a nextToken.
+     * @param token optional continuation token from the nextToken of a previous response.
+     *                 The listing continues after the last child returned by that response.
      * @return JsonFileAttributes  Json Object
      * <p>
      * <p>
@@ -117,19 +152,31 @@ public class FileResources {
      * "creationTime": 1459949700167,
      * "size": 512
      * }
+     * <p>
+     * Return the names and sizes of the first 1000 files in the given directory
+     * http://localhost:2880/api/v1/namespace/replica/?children=true&fields=size&limit=1000
+     * The response contains a "nextToken" field if there are more files. The next
+     * page is requested by adding &token=<nextToken> to the same URL.
      */
     @GET
     @Path("{value : .*}")
     @Produces(MediaType.APPLICATION_JSON)
-    public JsonFileAttributes getFileAttributes(@PathParam("value") String value,
-                                                @DefaultValue("false")
-                                                @QueryParam("children") boolean isList,
-                                                @DefaultValue("false")
-                                                @QueryParam("locality") boolean isLocality) throws CacheException {
+    public Response getFileAttributes(@PathParam("value") String value,
+                                      @DefaultValue("false")
+                                      @QueryParam("children") boolean isList,
+                                      @DefaultValue("false")
+                                      @QueryParam("locality") boolean isLocality,
+                                      @QueryParam("fields") String fields,
+                                      @QueryParam("limit") Integer limit,
+                                      @QueryParam("token") String token) throws CacheException {
         JsonFileAttributes fileAttributes = new JsonFileAttributes();
-        Set<FileAttribute> attributes = EnumSet.allOf(FileAttribute.class);
+        Set<FileAttribute> attributes = getRequiredAttributes(fields, isLocality);
         PnfsHandler handler = ServletContextHandlerAttributes.getPnfsHandler(ctx);
 
+        if (limit != null && limit <= 0) {
+            throw new BadRequestException("The limit must be positive.");
+        }
+
         FsPath path;
         if (value == null || value.isEmpty()) {
             path = FsPath.ROOT;
@@ -140,14 +187,23 @@ public class FileResources {
 
         try {
 
-            FileAttributes namespaceAttrributes = handler.getFileAttributes(path, attributes);
+            Set<FileAttribute> dirAttributes = EnumSet.of(PNFSID);
+            dirAttributes.addAll(attributes);
+            FileAttributes namespaceAttrributes = handler.getFileAttributes(path, dirAttributes);
             chimeraToJsonAttributes(fileAttributes, namespaceAttrributes, isLocality);
 
 
-            // fill children list id it's a directory and listing is requested
+            // stream children list if it's a directory and listing is requested
             if (namespaceAttrributes.getFileType() == FileType.DIR && isList) {
+                PnfsId dir = namespaceAttrributes.getPnfsId();
+                String after = (token == null) ? null : decodeToken(dir, token);
 
-                List<JsonFileAttributes> children = new ArrayList<>();
+                /* One more entry than requested is listed to tell whether
+                 * another page follows.
+                 */
+                Range<Integer> range = (limit == null)
+                        ? Range.all()
+                        : Range.closedOpen(0, limit + 1);
 
                 ListDirectoryHandler listDirectoryHandler = ServletContextHandlerAttributes.getListDirectoryHandler(ctx);
 
@@ -156,21 +212,11 @@ public class FileResources {
                         ServletContextHandlerAttributes.getRestriction(),
                         path,
                         null,
-                        Range.<Integer>all(),
+                        after,
+                        range,
                         attributes);
 
-                for (DirectoryEntry entry : stream) {
-                    String fName = entry.getName();
-
-                    JsonFileAttributes childrenAttributes = new JsonFileAttributes();
-
-                    chimeraToJsonAttributes(childrenAttributes, entry.getFileAttributes(), isLocality);
-                    childrenAttributes.setFileName(fName);
-                    children.add(childrenAttributes);
-                }
-
-                fileAttributes.setChildren(children);
-
+                return Response.ok(streamChildren(fileAttributes, stream, isLocality, dir, limit)).build();
             }
 
         } catch (FileNotFoundCacheException e) {
@@ -184,7 +230,114 @@ public class FileResources {
         } catch (CacheException | InterruptedException ex) {
             throw new InternalServerErrorException(ex);
         }
-        return fileAttributes;
+        return Response.ok(fileAttributes).build();
+    }
+
+    /**
+     * Returns the file attributes to fetch for the selected fields.
+     */
+    private static Set<FileAttribute> getRequiredAttributes(String fields, boolean isLocality)
+    {
+        Set<FileAttribute> attributes = EnumSet.of(TYPE);
+        if (fields == null) {
+            FIELDS.values().forEach(attributes::addAll);
+        } else {
+            for (String field : Splitter.on(',').omitEmptyStrings().trimResults().split(fields)) {
+                Set<FileAttribute> required = FIELDS.get(field);
+                if (required == null) {
+                    throw new BadRequestException("Unknown field: " + field);
+                }
+                attributes.addAll(required);
+            }
+        }
+        if (isLocality) {
+            attributes.addAll(PoolMonitorV5.getRequiredAttributesForFileLocality());
+        }
+        return attributes;
+    }
+
+    /**
+     * Returns the directory listing as JSON written while the entries are
+     * received from the directory stream, so that the listing is never held
+     * in memory as a whole.
+     */
+    private StreamingOutput streamChildren(JsonFileAttributes directory, DirectoryStream stream,
+                                           boolean isLocality, PnfsId dir, Integer limit)
+    {
+        ObjectMapper mapper = providers.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE)
+                .getContext(JsonFileAttributes.class);
+        return output -> {
+            try (DirectoryStream entries = stream;
+                 JsonGenerator generator = mapper.getFactory().createGenerator(output)) {
+                if (mapper.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
+                    generator.useDefaultPrettyPrinter();
+                }
+                generator.writeStartObject();
+                ObjectNode node = mapper.valueToTree(directory);
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    generator.writeFieldName(field.getKey());
+                    generator.writeTree(field.getValue());
+                }
+
+                generator.writeArrayFieldStart("children");
+                int count = 0;
+                String last = null;
+                boolean hasMore = false;
+                for (DirectoryEntry entry : entries) {
+                    if (limit != null && count == limit) {
+                        hasMore = true;
+                        break;
+                    }
+                    JsonFileAttributes childrenAttributes = new JsonFileAttributes();
+                    chimeraToJsonAttributes(childrenAttributes, entry.getFileAttributes(), isLocality);
+                    childrenAttributes.setFileName(entry.getName());
+                    mapper.writeValue(generator, childrenAttributes);
+                    last = entry.getName();
+                    count++;
+                }
+                generator.writeEndArray();
+
+                if (hasMore) {
+                    generator.writeStringField("nextToken", encodeToken(dir, last));
+                }
+                generator.writeEndObject();
+            }
+        };
+    }
+
+    /**
+     * Returns an opaque continuation token for resuming the listing of
+     * {@code dir} after the entry called {@code name}.
+     *
+     * As the listing is ordered by name, the next page starts with the
+     * first name following {@code name}. Unlike an offset, this neither
+     * skips nor repeats entries when the directory changes between pages,
+     * and the name space does not have to skip the preceding entries.
+     */
+    private static String encodeToken(PnfsId dir, String name)
+    {
+        return BaseEncoding.base64Url().omitPadding().encode(
+                (dir + ":" + name).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the name encoded in a continuation token for {@code dir}.
+     */
+    private static String decodeToken(PnfsId dir, String token)
+    {
+        try {
+            String decoded = new String(BaseEncoding.base64Url().omitPadding().decode(token),
+                                        StandardCharsets.UTF_8);
+            int i = decoded.indexOf(':');
+            if (i > -1 && i < decoded.length() - 1 && decoded.substring(0, i).equals(dir.toString())) {
+                return decoded.substring(i + 1);
+            }
+        } catch (IllegalArgumentException e) {
+            // Handled below
+        }
+        throw new BadRequestException("Invalid continuation token.");
     }
 
     @POST
@@ -247,10 +400,16 @@ public class FileResources {
      */
     private void chimeraToJsonAttributes(JsonFileAttributes fileAttributes,
                                          FileAttributes namespaceAttrributes,
-                                         boolean isLocality) throws CacheException {
-        fileAttributes.setMtime(namespaceAttrributes.getModificationTime());
-        fileAttributes.setCreationTime(namespaceAttrributes.getCreationTime());
-        fileAttributes.setSize(namespaceAttrributes.getSize());
+                                         boolean isLocality) {
+        if (namespaceAttrributes.isDefined(MODIFICATION_TIME)) {
+            fileAttributes.setMtime(namespaceAttrributes.getModificationTime());
+        }
+        if (namespaceAttrributes.isDefined(CREATION_TIME)) {
+            fileAttributes.setCreationTime(namespaceAttrributes.getCreationTime());
+        }
+        if (namespaceAttrributes.isDefined(SIZE)) {
+            fileAttributes.setSize(namespaceAttrributes.getSize());
+        }
         fileAttributes.setFileType(namespaceAttrributes.getFileType());
 
         // when user set locality param. in the request, the locality should be returned only for directories
@@ -6,12 +6,15 @@ import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.support.JdbcDaoSupport;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -20,8 +23,13 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import diskCacheV111.util.AccessLatency;
@@ -29,6 +37,7 @@ import diskCacheV111.util.PnfsId;
 import diskCacheV111.util.RetentionPolicy;
 import diskCacheV111.util.VOInfo;
 
+import org.dcache.util.FireAndForgetTask;
 import org.dcache.util.SqlGlob;
 
 import static java.util.Arrays.asList;
@@ -104,10 +113,162 @@ public class JdbcSpaceManagerDatabase extends JdbcDaoSupport implements SpaceMan
     */
     private static final String SPACEFILE_TABLE = "srmspacefile";
 
+    /**
+     * Used and allocated space of reservations. Authoritative over the
+     * accumulated fields of srmspace, which are only updated periodically.
+     */
+    private final SpaceUsage usage = new SpaceUsage();
+
+    private ScheduledExecutorService flushExecutor;
+
+    private long usageFlushPeriod = TimeUnit.SECONDS.toMillis(1);
+
+    public void setUsageFlushPeriod(long millis)
+    {
+        usageFlushPeriod = millis;
+    }
+
     public void init() throws DataAccessException
     {
         insertRetentionPolicies();
         insertAccessLatencies();
+        recomputeSpaceUsage();
+
+        flushExecutor = Executors.newSingleThreadScheduledExecutor();
+        flushExecutor.scheduleWithFixedDelay(new FireAndForgetTask(this::flushSpaceUsage),
+                                             usageFlushPeriod, usageFlushPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() throws InterruptedException
+    {
+        if (flushExecutor != null) {
+            flushExecutor.shutdown();
+            flushExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        flushSpaceUsage();
+    }
+
+    /**
+     * Recomputes the accumulated fields of srmspace from srmspacefile.
+     *
+     * The accumulated fields are only written periodically and may thus be
+     * out of date after an unclean shutdown.
+     */
+    private void recomputeSpaceUsage() throws DataAccessException
+    {
+        String used = "(SELECT COALESCE(SUM(sizeinbytes), 0) FROM " + SPACEFILE_TABLE
+                      + " WHERE spacereservationid = " + SPACE_TABLE + ".id AND state = " + FileState.STORED.getStateId() + ")";
+        String allocated = "(SELECT COALESCE(SUM(sizeinbytes), 0) FROM " + SPACEFILE_TABLE
+                           + " WHERE spacereservationid = " + SPACE_TABLE + ".id AND state = " + FileState.TRANSFERRING.getStateId() + ")";
+        int rc = getJdbcTemplate().update(
+                "UPDATE " + SPACE_TABLE + " SET usedspaceinbytes = " + used + ", allocatedspaceinbytes = " + allocated
+                        + " WHERE usedspaceinbytes <> " + used + " OR allocatedspaceinbytes <> " + allocated);
+        if (rc > 0) {
+            LOGGER.warn("Corrected used and allocated space of {} space reservations.", rc);
+        }
+    }
+
+    /**
+     * Writes the used and allocated space of modified reservations to srmspace.
+     */
+    void flushSpaceUsage()
+    {
+        Map<Long, long[]> dirty = usage.takeDirty();
+        if (!dirty.isEmpty()) {
+            try {
+                writeSpaceUsage(dirty);
+            } catch (RuntimeException e) {
+                usage.markDirty(dirty.keySet());
+                throw e;
+            }
+        }
+    }
+
+    @Transactional
+    private void writeSpaceUsage(Map<Long, long[]> values) throws DataAccessException
+    {
+        /* Rows are updated in the order of their id to avoid deadlocks with other
+         * transactions locking multiple reservations.
+         */
+        List<Long> ids = new ArrayList<>(values.keySet());
+        int[] rcs = getJdbcTemplate().batchUpdate(
+                "UPDATE " + SPACE_TABLE + " SET usedspaceinbytes = ?, allocatedspaceinbytes = ? WHERE id = ?",
+                new BatchPreparedStatementSetter()
+                {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException
+                    {
+                        long id = ids.get(i);
+                        ps.setLong(1, values.get(id)[0]);
+                        ps.setLong(2, values.get(id)[1]);
+                        ps.setLong(3, id);
+                    }
+
+                    @Override
+                    public int getBatchSize()
+                    {
+                        return ids.size();
+                    }
+                });
+        for (int i = 0; i < rcs.length; i++) {
+            if (rcs[i] == 0) {
+                /* Reservation was deleted. */
+                usage.removeIfIdle(ids.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the space usage counters of a reservation.
+     */
+    private SpaceUsage.Counters getSpaceUsage(long spaceId) throws DataAccessException
+    {
+        SpaceUsage.Counters counters = usage.get(spaceId);
+        if (counters == null) {
+            Space space = getSpace(spaceId);
+            counters = usage.getOrInit(spaceId, space.getUsedSizeInBytes(), space.getAllocatedSpaceInBytes());
+        }
+        return counters;
+    }
+
+    /**
+     * Adjusts the space usage of a reservation for a file in the given state
+     * once the current transaction commits. The size is negative when the
+     * file is removed from the reservation.
+     */
+    private void adjustSpaceUsage(long spaceId, FileState state, long size) throws DataAccessException
+    {
+        long used = (state == FileState.STORED) ? size : 0;
+        long allocated = (state == FileState.TRANSFERRING) ? size : 0;
+        if (used != 0 || allocated != 0) {
+            SpaceUsage.Counters counters = getSpaceUsage(spaceId);
+            afterCompletion(committed -> {
+                if (committed) {
+                    counters.add(used, allocated);
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs {@code action} once the current transaction completes. The action is
+     * passed whether the transaction committed. Without a transaction the action
+     * is run immediately.
+     */
+    private static void afterCompletion(Consumer<Boolean> action)
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter()
+            {
+                @Override
+                public void afterCompletion(int status)
+                {
+                    action.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            action.accept(true);
+        }
     }
 
     private void insertRetentionPolicies() throws DataAccessException
@@ -148,12 +309,17 @@ public class JdbcSpaceManagerDatabase extends JdbcDaoSupport implements SpaceMan
         }
     }
 
-    @Override
+    @Override @Transactional
     public void removeFile(long fileId) throws DataAccessException
     {
-        int rc = getJdbcTemplate().update("DELETE FROM " + SPACEFILE_TABLE + " WHERE id=?", fileId);
-        if (rc > 1) {
-            throw new JdbcUpdateAffectedIncorrectNumberOfRowsException("delete returned row count = " + rc, 1, rc);
+        File file = DataAccessUtils.singleResult(getJdbcTemplate().query(
+                "SELECT * FROM " + SPACEFILE_TABLE + " WHERE id = ? FOR UPDATE", this::toFile, fileId));
+        if (file != null) {
+            int rc = getJdbcTemplate().update("DELETE FROM " + SPACEFILE_TABLE + " WHERE id=?", fileId);
+            if (rc != 1) {
+                throw new JdbcUpdateAffectedIncorrectNumberOfRowsException("delete returned row count = " + rc, 1, rc);
+            }
+            adjustSpaceUsage(file.getSpaceId(), file.getState(), -file.getSizeInBytes());
         }
     }
 
@@ -400,10 +566,11 @@ public class JdbcSpaceManagerDatabase extends JdbcDaoSupport implements SpaceMan
         }
     }
 
-    @Override
+    @Override @Transactional
     public void updateFile(File f)
             throws DataAccessException
     {
+        File old = selectFileForUpdate(f.getId());
         int rc = getJdbcTemplate().update(
                 "UPDATE " + SPACEFILE_TABLE +
                         " SET vogroup=?, vorole=?, sizeinbytes=?, pnfsid=?, state=? WHERE id=?",
@@ -416,6 +583,8 @@ public class JdbcSpaceManagerDatabase extends JdbcDaoSupport implements SpaceMan
         if (rc != 1) {
             throw new JdbcUpdateAffectedIncorrectNumberOfRowsException("Update failed, row count=" + rc, 1, rc);
         }
+        adjustSpaceUsage(old.getSpaceId(), old.getState(), -old.getSizeInBytes());
+        adjustSpaceUsage(old.getSpaceId(), f.getState(), f.getSizeInBytes());
     }
 
     @Override
@@ -495,20 +664,34 @@ public class JdbcSpaceManagerDatabase extends JdbcDaoSupport implements SpaceMan
                 Integer.class);
     }
 
-    @Override
+    @Override @Transactional
     public int remove(FileCriterion criterion)
     {
         JdbcCriterion c = (JdbcCriterion) criterion;
-        return getJdbcTemplate().update(
-                "DELETE FROM " + SPACEFILE_TABLE + " WHERE " + c.getPredicate(), c.getArguments());
+        List<File> files = getJdbcTemplate().query(
+                "SELECT * FROM " + SPACEFILE_TABLE + " WHERE " + c.getPredicate() + " FOR UPDATE",
+                c.getArguments(), this::toFile);
+        if (files.isEmpty()) {
+            return 0;
+        }
+        getJdbcTemplate().batchUpdate("DELETE FROM " + SPACEFILE_TABLE + " WHERE id = ?", files, files.size(),
+                                      (ps, file) -> ps.setLong(1, file.getId()));
+        for (File file : files) {
+            adjustSpaceUsage(file.getSpaceId(), file.getState(), -file.getSizeInBytes());
+        }
+        return files.size();
     }
 
-    @Override
+    @Override @Transactional
     public int remove(SpaceCriterion criterion)
     {
         JdbcCriterion c = (JdbcCriterion) criterion;
-        return getJdbcTemplate().update(
+        List<Long> ids = getSpaceTokensOf(criterion);
+        int rc = getJdbcTemplate().update(
                 "DELETE FROM " + SPACE_TABLE + " WHERE " + c.getPredicate(), c.getArguments());
+        /* The next flush forgets about the deleted reservations. */
+        afterCompletion(committed -> usage.markDirty(ids));
+        return rc;
     }
 
     @Override
@@ -522,7 +705,11 @@ public class JdbcSpaceManagerDatabase extends JdbcDaoSupport implements SpaceMan
     {
         final long creationTime = System.currentTimeMillis();
 
-        Space space = selectSpaceForUpdate(reservationId);
+        /* Rather than locking the reservation, the space for the file is held in
+         * escrow until the transaction completes. This allows concurrent uploads
+         * into the same reservation.
+         */
+        Space space = getSpace(reservationId);
         long currentTime = System.currentTimeMillis();
         if (space.getExpirationTime() != null && space.getExpirationTime() <= currentTime) {
             throw new SpaceExpiredException("space with id=" + reservationId + " has expired");
@@ -533,34 +720,51 @@ public class JdbcSpaceManagerDatabase extends JdbcDaoSupport implements SpaceMan
         if (space.getState() == SpaceState.RELEASED) {
             throw new SpaceReleasedException("space with id=" + reservationId + " was released");
         }
-        if (space.getAvailableSpaceInBytes() < sizeInBytes) {
+        SpaceUsage.Counters counters = getSpaceUsage(reservationId);
+        if (!counters.tryEscrow(space.getSizeInBytes(), sizeInBytes)) {
             throw new NoFreeSpaceException("space with id=" + reservationId + " does not have enough space");
         }
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
-
-        int rc = getJdbcTemplate().update(
-                con -> {
-                    /* Note that neither prepareStatement(String, String[]) nor prepareStatement(String, int[])
-                     * work for us: The former suffers from different interpretations of case in HSQLDB and
-                     * PostgreSQL and the latter is not support by the PostgreSQL JDBC driver.
-                     */
-                    PreparedStatement stmt = con.prepareStatement(
-                            "INSERT INTO " + SPACEFILE_TABLE
-                                    + " (vogroup,vorole,spacereservationid,sizeinbytes,creationtime,pnfsid,state) "
-                                    + " VALUES  (?,?,?,?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
-                    stmt.setString(1, voGroup);
-                    stmt.setString(2, voRole);
-                    stmt.setLong(3, reservationId);
-                    stmt.setLong(4, sizeInBytes);
-                    stmt.setLong(5, creationTime);
-                    stmt.setString(6, Objects.toString(pnfsId, null));
-                    stmt.setInt(7, state.getStateId());
-                    return stmt;
-                }, keyHolder);
+        int rc;
+        try {
+            rc = getJdbcTemplate().update(
+                    con -> {
+                        /* Note that neither prepareStatement(String, String[]) nor prepareStatement(String, int[])
+                         * work for us: The former suffers from different interpretations of case in HSQLDB and
+                         * PostgreSQL and the latter is not support by the PostgreSQL JDBC driver.
+                         */
+                        PreparedStatement stmt = con.prepareStatement(
+                                "INSERT INTO " + SPACEFILE_TABLE
+                                        + " (vogroup,vorole,spacereservationid,sizeinbytes,creationtime,pnfsid,state) "
+                                        + " VALUES  (?,?,?,?,?,?,?)", Statement.RETURN_GENERATED_KEYS);
+                        stmt.setString(1, voGroup);
+                        stmt.setString(2, voRole);
+                        stmt.setLong(3, reservationId);
+                        stmt.setLong(4, sizeInBytes);
+                        stmt.setLong(5, creationTime);
+                        stmt.setString(6, Objects.toString(pnfsId, null));
+                        stmt.setInt(7, state.getStateId());
+                        return stmt;
+                    }, keyHolder);
+        } catch (RuntimeException e) {
+            counters.settle(sizeInBytes, 0, 0);
+            throw e;
+        }
         if (rc != 1) {
+            counters.settle(sizeInBytes, 0, 0);
             throw new JdbcUpdateAffectedIncorrectNumberOfRowsException("insert returned row count =" + rc, 1, rc);
         }
+
+        long used = (state == FileState.STORED) ? sizeInBytes : 0;
+        long allocated = (state == FileState.TRANSFERRING) ? sizeInBytes : 0;
+        afterCompletion(committed -> {
+            if (committed) {
+                counters.settle(sizeInBytes, used, allocated);
+            } else {
+                counters.settle(sizeInBytes, 0, 0);
+            }
+        });
         return (Long) keyHolder.getKeys().get("id");
     }
 
@@ -816,7 +1020,10 @@ public class JdbcSpaceManagerDatabase extends JdbcDaoSupport implements SpaceMan
 
     private Space toSpace(ResultSet set, int rowNum) throws SQLException
     {
-        return new Space(set.getLong("id"),
+        long id = set.getLong("id");
+        SpaceUsage.Counters counters =
+                usage.getOrInit(id, set.getLong("usedspaceinbytes"), set.getLong("allocatedspaceinbytes"));
+        return new Space(id,
                          set.getString("vogroup"),
                          set.getString("vorole"),
                          RetentionPolicy.getRetentionPolicy(set.getInt("retentionPolicy")),
@@ -827,8 +1034,8 @@ public class JdbcSpaceManagerDatabase extends JdbcDaoSupport implements SpaceMan
                          toNull(set.getLong("expirationtime"), set.wasNull()),
                          set.getString("description"),
                          SpaceState.valueOf(set.getInt("state")),
-                         set.getLong("usedspaceinbytes"),
-                         set.getLong("allocatedspaceinbytes"));
+                         counters.getUsed(),
+                         counters.getAllocated());
     }
 
     private LinkGroup toLinkGroup(ResultSet set, int rowNum) throws SQLException
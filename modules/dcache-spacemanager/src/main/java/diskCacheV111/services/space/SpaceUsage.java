@@ -0,0 +1,159 @@
+package diskCacheV111.services.space;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory accounting of the used and allocated space of space reservations.
+ *
+ * The used and allocated space of a reservation is the sum over the files of
+ * that reservation. Maintaining these sums in the srmspace table means that
+ * every transaction adding a file to a reservation locks the row of that
+ * reservation until it commits, serializing all uploads into the same
+ * reservation. Instead the sums are maintained here and periodically written
+ * to the database. Should the space manager crash before writing the sums,
+ * they are recomputed from srmspacefile on startup.
+ *
+ * Space claimed by uncommitted transactions is held in escrow: it counts
+ * against the available space of the reservation, but is only added to the
+ * allocated space once the transaction commits. Hence the decision whether
+ * a file fits into a reservation is taken in memory, and concurrent
+ * transactions cannot over-commit a reservation.
+ */
+class SpaceUsage
+{
+    private final ConcurrentMap<Long, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the counters of a reservation, or null if not known.
+     */
+    Counters get(long id)
+    {
+        return counters.get(id);
+    }
+
+    /**
+     * Returns the counters of a reservation, initializing them with the given
+     * values if not known.
+     */
+    Counters getOrInit(long id, long used, long allocated)
+    {
+        return counters.computeIfAbsent(id, key -> new Counters(used, allocated));
+    }
+
+    /**
+     * Forgets a reservation unless space is held in escrow for it.
+     */
+    void removeIfIdle(long id)
+    {
+        counters.computeIfPresent(id, (key, c) -> c.isIdle() ? null : c);
+    }
+
+    /**
+     * Returns the used and allocated space of all reservations modified since
+     * the previous call, ordered by reservation id. The reservations are
+     * considered clean afterwards.
+     */
+    Map<Long, long[]> takeDirty()
+    {
+        Map<Long, long[]> dirty = new TreeMap<>();
+        counters.forEach((id, c) -> {
+            long[] values = c.takeDirty();
+            if (values != null) {
+                dirty.put(id, values);
+            }
+        });
+        return dirty;
+    }
+
+    /**
+     * Marks reservations as modified, e.g. after failing to write them to the
+     * database.
+     */
+    void markDirty(Iterable<Long> ids)
+    {
+        for (long id : ids) {
+            Counters c = counters.get(id);
+            if (c != null) {
+                c.markDirty();
+            }
+        }
+    }
+
+    static class Counters
+    {
+        private long used;
+        private long allocated;
+        private long escrowed;
+        private boolean isDirty;
+
+        Counters(long used, long allocated)
+        {
+            this.used = used;
+            this.allocated = allocated;
+        }
+
+        synchronized long getUsed()
+        {
+            return used;
+        }
+
+        synchronized long getAllocated()
+        {
+            return allocated;
+        }
+
+        /**
+         * Places {@code bytes} in escrow if a reservation of {@code size} bytes
+         * has room for them. Returns false otherwise.
+         */
+        synchronized boolean tryEscrow(long size, long bytes)
+        {
+            if (size - used - allocated - escrowed < bytes) {
+                return false;
+            }
+            escrowed += bytes;
+            return true;
+        }
+
+        /**
+         * Releases {@code bytes} from escrow while adjusting the used and
+         * allocated space.
+         */
+        synchronized void settle(long bytes, long usedDelta, long allocatedDelta)
+        {
+            escrowed -= bytes;
+            add(usedDelta, allocatedDelta);
+        }
+
+        synchronized void add(long usedDelta, long allocatedDelta)
+        {
+            if (usedDelta != 0 || allocatedDelta != 0) {
+                used += usedDelta;
+                allocated += allocatedDelta;
+                isDirty = true;
+            }
+        }
+
+        synchronized boolean isIdle()
+        {
+            return escrowed == 0;
+        }
+
+        synchronized void markDirty()
+        {
+            isDirty = true;
+        }
+
+        private synchronized long[] takeDirty()
+        {
+            if (!isDirty) {
+                return null;
+            }
+            isDirty = false;
+            return new long[] { used, allocated };
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package diskCacheV111.services.space;
+
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.util.AccessLatency;
+import diskCacheV111.util.RetentionPolicy;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class JdbcSpaceManagerDatabaseTest
+{
+    private static final long SIZE = 1000;
+
+    private DriverManagerDataSource dataSource;
+    private Connection connection;
+    private Liquibase liquibase;
+    private JdbcTemplate jdbc;
+    private PlatformTransactionManager txManager;
+    private JdbcSpaceManagerDatabase db;
+    private long linkGroupId;
+    private long spaceId;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:spacemanager", "sa", "");
+        connection = dataSource.getConnection();
+        Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+        liquibase = new Liquibase("diskCacheV111/services/space/db/spacemanager.changelog-master.xml",
+                                  new ClassLoaderResourceAccessor(), database);
+        liquibase.update("");
+
+        jdbc = new JdbcTemplate(dataSource);
+        txManager = new DataSourceTransactionManager(dataSource);
+        db = createDatabase();
+
+        linkGroupId = db.updateLinkGroup("linkgroup", 10 * SIZE, System.currentTimeMillis(),
+                                         true, true, true, true, true, null);
+        spaceId = createSpace();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        db.shutdown();
+        connection.createStatement().execute("SHUTDOWN;");
+        connection.close();
+    }
+
+    private JdbcSpaceManagerDatabase createDatabase()
+    {
+        JdbcSpaceManagerDatabase db = new JdbcSpaceManagerDatabase();
+        db.setDataSource(dataSource);
+        /* Counters are flushed explicitly by the tests. */
+        db.setUsageFlushPeriod(TimeUnit.HOURS.toMillis(1));
+        db.init();
+        return db;
+    }
+
+    private long createSpace()
+    {
+        return db.insertSpace("group", "role", RetentionPolicy.REPLICA, AccessLatency.ONLINE, linkGroupId,
+                              SIZE, -1, null, SpaceState.RESERVED, 0, 0).getId();
+    }
+
+    private long insertFile(long size) throws SpaceException
+    {
+        return db.insertFile(spaceId, "group", "role", size, null, FileState.TRANSFERRING);
+    }
+
+    private long getUsed()
+    {
+        return db.getSpace(spaceId).getUsedSizeInBytes();
+    }
+
+    private long getAllocated()
+    {
+        return db.getSpace(spaceId).getAllocatedSpaceInBytes();
+    }
+
+    private long[] getStoredUsage(long id)
+    {
+        return jdbc.queryForObject("SELECT usedspaceinbytes, allocatedspaceinbytes FROM srmspace WHERE id = ?",
+                                   (rs, row) -> new long[] { rs.getLong(1), rs.getLong(2) }, id);
+    }
+
+    private void insertFileWithoutSpaceManager(long space, long size, FileState state)
+    {
+        jdbc.update("INSERT INTO srmspacefile (vogroup,vorole,spacereservationid,sizeinbytes,creationtime,pnfsid,state)"
+                    + " VALUES (?,?,?,?,?,?,?)", "group", "role", space, size, 0, null, state.getStateId());
+    }
+
+    @Test
+    public void shouldHoldSpaceInEscrowUntilCommit() throws Exception
+    {
+        TransactionStatus tx = txManager.getTransaction(new DefaultTransactionDefinition());
+        try {
+            insertFile(600);
+
+            assertThat(getAllocated(), is(0L));
+            try {
+                insertFile(600);
+                fail("Expected NoFreeSpaceException");
+            } catch (NoFreeSpaceException expected) {
+            }
+            insertFile(400);
+        } finally {
+            txManager.commit(tx);
+        }
+
+        assertThat(getAllocated(), is(SIZE));
+    }
+
+    @Test
+    public void shouldReleaseEscrowOnRollback() throws Exception
+    {
+        TransactionStatus tx = txManager.getTransaction(new DefaultTransactionDefinition());
+        try {
+            insertFile(SIZE);
+        } finally {
+            txManager.rollback(tx);
+        }
+
+        assertThat(getAllocated(), is(0L));
+        insertFile(SIZE);
+        assertThat(getAllocated(), is(SIZE));
+    }
+
+    @Test
+    public void shouldSettleUpdatesOnCommit() throws Exception
+    {
+        long id = insertFile(600);
+
+        TransactionStatus tx = txManager.getTransaction(new DefaultTransactionDefinition());
+        try {
+            File file = db.selectFileForUpdate(id);
+            file.setState(FileState.STORED);
+            db.updateFile(file);
+
+            assertThat(getUsed(), is(0L));
+            assertThat(getAllocated(), is(600L));
+        } finally {
+            txManager.commit(tx);
+        }
+
+        assertThat(getUsed(), is(600L));
+        assertThat(getAllocated(), is(0L));
+    }
+
+    @Test
+    public void shouldNotSettleUpdatesOnRollback() throws Exception
+    {
+        long id = insertFile(600);
+
+        TransactionStatus tx = txManager.getTransaction(new DefaultTransactionDefinition());
+        try {
+            db.removeFile(id);
+        } finally {
+            txManager.rollback(tx);
+        }
+
+        assertThat(getAllocated(), is(600L));
+        db.removeFile(id);
+        assertThat(getAllocated(), is(0L));
+    }
+
+    @Test
+    public void shouldFlushModifiedCounters() throws Exception
+    {
+        insertFile(600);
+        assertThat(getStoredUsage(spaceId), is(new long[] { 0, 0 }));
+
+        db.flushSpaceUsage();
+
+        assertThat(getStoredUsage(spaceId), is(new long[] { 0, 600 }));
+    }
+
+    @Test
+    public void shouldOnlyFlushModifiedCounters() throws Exception
+    {
+        long otherSpaceId = createSpace();
+        insertFile(600);
+        db.flushSpaceUsage();
+        jdbc.update("UPDATE srmspace SET allocatedspaceinbytes = 1 WHERE id IN (?, ?)", spaceId, otherSpaceId);
+
+        db.flushSpaceUsage();
+
+        assertThat(getStoredUsage(spaceId), is(new long[] { 0, 1 }));
+        assertThat(getStoredUsage(otherSpaceId), is(new long[] { 0, 1 }));
+    }
+
+    @Test
+    public void shouldFlushCountersOnShutdown() throws Exception
+    {
+        insertFile(600);
+
+        db.shutdown();
+
+        assertThat(getStoredUsage(spaceId), is(new long[] { 0, 600 }));
+    }
+
+    @Test
+    public void shouldRecomputeSpaceUsageLikeTriggers() throws Exception
+    {
+        /* Reinstate the srmspacefile triggers that used to maintain the accumulated fields. */
+        liquibase.rollback(1, "");
+
+        long otherSpaceId = createSpace();
+        insertFileWithoutSpaceManager(spaceId, 100, FileState.TRANSFERRING);
+        insertFileWithoutSpaceManager(spaceId, 200, FileState.STORED);
+        insertFileWithoutSpaceManager(spaceId, 300, FileState.FLUSHED);
+        insertFileWithoutSpaceManager(spaceId, 50, FileState.STORED);
+        insertFileWithoutSpaceManager(otherSpaceId, 400, FileState.TRANSFERRING);
+        insertFileWithoutSpaceManager(otherSpaceId, 500, FileState.STORED);
+        insertFileWithoutSpaceManager(otherSpaceId, 600, FileState.STORED);
+        jdbc.update("UPDATE srmspacefile SET state = ? WHERE sizeinbytes = 400", FileState.STORED.getStateId());
+        jdbc.update("UPDATE srmspacefile SET state = ? WHERE sizeinbytes = 500", FileState.FLUSHED.getStateId());
+        jdbc.update("UPDATE srmspacefile SET spacereservationid = ? WHERE sizeinbytes = 100", otherSpaceId);
+        jdbc.update("DELETE FROM srmspacefile WHERE sizeinbytes = 200");
+
+        long[] expected = getStoredUsage(spaceId);
+        long[] otherExpected = getStoredUsage(otherSpaceId);
+        assertThat(expected, is(new long[] { 50, 0 }));
+        assertThat(otherExpected, is(new long[] { 1000, 100 }));
+
+        liquibase.update("");
+        jdbc.update("UPDATE srmspace SET usedspaceinbytes = 0, allocatedspaceinbytes = 0");
+        createDatabase().shutdown();
+
+        assertThat(getStoredUsage(spaceId), is(expected));
+        assertThat(getStoredUsage(otherSpaceId), is(otherExpected));
+    }
+
+    @Test
+    public void shouldReadRecomputedSpaceUsage() throws Exception
+    {
+        insertFileWithoutSpaceManager(spaceId, 100, FileState.TRANSFERRING);
+        insertFileWithoutSpaceManager(spaceId, 200, FileState.STORED);
+
+        db.shutdown();
+        db = createDatabase();
+
+        assertThat(getUsed(), is(200L));
+        assertThat(getAllocated(), is(100L));
+    }
+}
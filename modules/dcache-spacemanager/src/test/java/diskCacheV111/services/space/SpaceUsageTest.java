@@ -0,0 +1,143 @@
+package diskCacheV111.services.space;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SpaceUsageTest
+{
+    private SpaceUsage usage;
+
+    @Before
+    public void setUp()
+    {
+        usage = new SpaceUsage();
+    }
+
+    @Test
+    public void shouldInitializeCountersOnce()
+    {
+        SpaceUsage.Counters counters = usage.getOrInit(1, 10, 20);
+
+        assertThat(usage.getOrInit(1, 30, 40), is(sameInstance(counters)));
+        assertThat(usage.get(1), is(sameInstance(counters)));
+        assertThat(counters.getUsed(), is(10L));
+        assertThat(counters.getAllocated(), is(20L));
+        assertThat(usage.get(2), is(nullValue()));
+    }
+
+    @Test
+    public void shouldEscrowAgainstAvailableSpace()
+    {
+        SpaceUsage.Counters counters = usage.getOrInit(1, 300, 200);
+
+        assertThat(counters.tryEscrow(1000, 400), is(true));
+        assertThat(counters.tryEscrow(1000, 200), is(false));
+        assertThat(counters.tryEscrow(1000, 100), is(true));
+        assertThat(counters.tryEscrow(1000, 1), is(false));
+        assertThat(counters.getUsed(), is(300L));
+        assertThat(counters.getAllocated(), is(200L));
+    }
+
+    @Test
+    public void shouldSettleCommittedEscrow()
+    {
+        SpaceUsage.Counters counters = usage.getOrInit(1, 0, 0);
+        counters.tryEscrow(1000, 600);
+
+        counters.settle(600, 0, 600);
+
+        assertThat(counters.getAllocated(), is(600L));
+        assertThat(counters.tryEscrow(1000, 400), is(true));
+        assertThat(counters.tryEscrow(1000, 1), is(false));
+    }
+
+    @Test
+    public void shouldReleaseRolledBackEscrow()
+    {
+        SpaceUsage.Counters counters = usage.getOrInit(1, 0, 0);
+        counters.tryEscrow(1000, 600);
+
+        counters.settle(600, 0, 0);
+
+        assertThat(counters.getAllocated(), is(0L));
+        assertThat(counters.isIdle(), is(true));
+        assertThat(counters.tryEscrow(1000, 1000), is(true));
+    }
+
+    @Test
+    public void shouldReturnOnlyModifiedCountersAsDirty()
+    {
+        usage.getOrInit(1, 0, 0).add(100, 0);
+        usage.getOrInit(2, 0, 0);
+        usage.getOrInit(3, 0, 0).add(0, 0);
+
+        Map<Long, long[]> dirty = usage.takeDirty();
+
+        assertThat(dirty.keySet(), contains(1L));
+        assertThat(dirty.get(1L)[0], is(100L));
+        assertThat(dirty.get(1L)[1], is(0L));
+    }
+
+    @Test
+    public void shouldBeCleanAfterTakingDirtyCounters()
+    {
+        usage.getOrInit(1, 0, 0).add(100, 0);
+        usage.takeDirty();
+
+        assertThat(usage.takeDirty().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldNotBeDirtyAfterReleasedEscrow()
+    {
+        SpaceUsage.Counters counters = usage.getOrInit(1, 0, 0);
+        counters.tryEscrow(1000, 600);
+        counters.settle(600, 0, 0);
+
+        assertThat(usage.takeDirty().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldReturnDirtyCountersInOrderOfId()
+    {
+        usage.getOrInit(3, 0, 0).add(1, 0);
+        usage.getOrInit(1, 0, 0).add(1, 0);
+        usage.getOrInit(2, 0, 0).add(1, 0);
+
+        assertThat(usage.takeDirty().keySet(), contains(1L, 2L, 3L));
+    }
+
+    @Test
+    public void shouldReturnLatestValuesWhenMarkedDirty()
+    {
+        SpaceUsage.Counters counters = usage.getOrInit(1, 0, 0);
+        counters.add(100, 50);
+        usage.takeDirty();
+        counters.add(10, 0);
+
+        usage.markDirty(Collections.singleton(1L));
+        Map<Long, long[]> dirty = usage.takeDirty();
+
+        assertThat(dirty.get(1L)[0], is(110L));
+        assertThat(dirty.get(1L)[1], is(50L));
+    }
+
+    @Test
+    public void shouldNotForgetReservationWithEscrow()
+    {
+        usage.getOrInit(1, 0, 0).tryEscrow(1000, 100);
+        usage.getOrInit(2, 0, 0);
+
+        usage.removeIfIdle(1);
+        usage.removeIfIdle(2);
+
+        assertThat(usage.get(1), is(notNullValue()));
+        assertThat(usage.get(2), is(nullValue()));
+    }
+}
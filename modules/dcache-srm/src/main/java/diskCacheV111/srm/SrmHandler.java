@@ -45,16 +45,14 @@ import javax.security.auth.Subject;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.rmi.RemoteException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -80,6 +78,7 @@ import org.dcache.cells.CellStub;
 import org.dcache.cells.CuratorFrameworkAware;
 import org.dcache.commons.stats.RequestCounters;
 import org.dcache.commons.stats.RequestExecutionTimeGauges;
+import org.dcache.commons.stats.RequestExecutionTimeHistogram;
 import org.dcache.commons.stats.rrd.RrdRequestCounters;
 import org.dcache.commons.stats.rrd.RrdRequestExecutionTimeGauges;
 import org.dcache.srm.SRMAuthenticationException;
@@ -104,6 +103,7 @@ import org.dcache.srm.v2_2.ArrayOfTPutRequestFileStatus;
 import org.dcache.srm.v2_2.ArrayOfTRequestSummary;
 import org.dcache.srm.v2_2.ArrayOfTRequestTokenReturn;
 import org.dcache.srm.v2_2.ArrayOfTSURLReturnStatus;
+import org.dcache.srm.v2_2.ISRM;
 import org.dcache.srm.v2_2.SrmAbortFilesRequest;
 import org.dcache.srm.v2_2.SrmAbortFilesResponse;
 import org.dcache.srm.v2_2.SrmAbortRequestRequest;
@@ -227,6 +227,8 @@ public class SrmHandler implements CellInfoProvider, CuratorFrameworkAware
     private final RequestCounters<Class<?>> srmServerCounters = new RequestCounters<>("srmv2");
     private final RequestExecutionTimeGauges<Class<?>> srmServerGauges = new RequestExecutionTimeGauges<>("srmv2");
 
+    private final ImmutableMap<String, SrmOperation> operations = SrmOperation.of(ISRM.class);
+
     private final CertificateFactory cf = CertificateFactories.newX509CertificateFactory();
 
     private final LoadingCache<Class, Optional<Field>> requestTokenFieldCache = CacheBuilder.newBuilder()
@@ -335,6 +337,12 @@ public class SrmHandler implements CellInfoProvider, CuratorFrameworkAware
     {
         pw.println(srmServerCounters);
         pw.println(srmServerGauges);
+        pw.println(RequestExecutionTimeHistogram.header("srmv2"));
+        operations.values().stream()
+                .map(SrmOperation::getHistogram)
+                .filter(histogram -> histogram.getCount() > 0)
+                .sorted(Comparator.comparing(RequestExecutionTimeHistogram::getName))
+                .forEach(histogram -> pw.append("  ").println(histogram));
     }
 
     @Override
@@ -361,6 +369,10 @@ public class SrmHandler implements CellInfoProvider, CuratorFrameworkAware
     public Object handleRequest(String requestName, Object request)  throws RemoteException
     {
         long startTimeStamp = System.currentTimeMillis();
+        SrmOperation operation = operations.get(requestName);
+        if (operation == null) {
+            throw new RemoteException("Unknown SRM operation: " + requestName);
+        }
         // requestName values all start "srm".  This is redundant, so may
         // be removed when creating the session id.  The initial character is
         // converted to lowercase, so "srmPrepareToPut" becomes "prepareToPut".
@@ -369,7 +381,7 @@ public class SrmHandler implements CellInfoProvider, CuratorFrameworkAware
                 requestName.substring(4);
         try (JDC ignored = JDC.createSession(session)) {
             for (RequestLogger logger : loggers) {
-                logger.request(requestName, request);
+                logger.request(operation, request);
             }
 
             Subject user = null;
@@ -389,32 +401,32 @@ public class SrmHandler implements CellInfoProvider, CuratorFrameworkAware
                     response = dispatch(login, credential, remoteHost, requestName, request);
                 } catch (SRMInternalErrorException e) {
                     LOGGER.error(e.getMessage());
-                    response = getFailedResponse(requestName, e.getStatusCode(),
+                    response = getFailedResponse(operation, e.getStatusCode(),
                                                  "Authentication failed (server log contains additional information).");
                 } catch (SRMAuthorizationException e) {
                     LOGGER.info(e.getMessage());
-                    response = getFailedResponse(requestName, e.getStatusCode(), "Permission denied.");
+                    response = getFailedResponse(operation, e.getStatusCode(), "Permission denied.");
                 } catch (SRMAuthenticationException e) {
                     LOGGER.warn(e.getMessage());
-                    response = getFailedResponse(requestName, e.getStatusCode(),
+                    response = getFailedResponse(operation, e.getStatusCode(),
                                                  "Authentication failed (server log contains additional information).");
                 } catch (SRMException e) {
-                    response = getFailedResponse(requestName, e.getStatusCode(), e.getMessage());
+                    response = getFailedResponse(operation, e.getStatusCode(), e.getMessage());
                 } catch (PermissionDeniedCacheException e) {
-                    response = getFailedResponse(requestName, TStatusCode.SRM_AUTHORIZATION_FAILURE, e.getMessage());
+                    response = getFailedResponse(operation, TStatusCode.SRM_AUTHORIZATION_FAILURE, e.getMessage());
                 } catch (CacheException e) {
-                    response = getFailedResponse(requestName, TStatusCode.SRM_INTERNAL_ERROR, e.getMessage());
+                    response = getFailedResponse(operation, TStatusCode.SRM_INTERNAL_ERROR, e.getMessage());
                 } catch (InterruptedException e) {
-                    response = getFailedResponse(requestName, TStatusCode.SRM_FATAL_INTERNAL_ERROR, "Server shutdown.");
+                    response = getFailedResponse(operation, TStatusCode.SRM_FATAL_INTERNAL_ERROR, "Server shutdown.");
                 } catch (NoRouteToCellException e) {
                     LOGGER.error(e.getMessage());
-                    response = getFailedResponse(requestName, TStatusCode.SRM_INTERNAL_ERROR,
+                    response = getFailedResponse(operation, TStatusCode.SRM_INTERNAL_ERROR,
                                                  "SRM backend serving this request is currently offline.");
                 }
             }
             long time = System.currentTimeMillis() - startTimeStamp;
             for (RequestLogger logger : loggers) {
-                logger.response(requestName, request, response, user, time);
+                logger.response(operation, request, response, user, time);
             }
             return response;
         }
@@ -802,52 +814,20 @@ public class SrmHandler implements CellInfoProvider, CuratorFrameworkAware
         return backend + ":" + backendToken;
     }
 
-    private Object getFailedResponse(String requestName, TStatusCode statusCode, String errorMessage)
+    private Object getFailedResponse(SrmOperation operation, TStatusCode statusCode, String errorMessage)
             throws RemoteException
     {
-        char first = requestName.charAt(0);
-        String capitalizedRequestName =  Character.isUpperCase(first) ? requestName :
-                                         (Character.toUpperCase(first) + requestName.substring(1));
-
         try {
-            Class<?> responseClass = Class.forName("org.dcache.srm.v2_2."+capitalizedRequestName+"Response");
-            Constructor<?> responseConstructor = responseClass.getConstructor();
-            Object response;
-            try {
-                response = responseConstructor.newInstance();
-            } catch (InvocationTargetException e) {
-                Throwables.propagateIfPossible(e, Exception.class);
-                throw new RuntimeException("Unexpected exception", e);
-            }
-            try {
-                Method setReturnStatus = responseClass
-                        .getMethod("setReturnStatus", TReturnStatus.class);
-                setReturnStatus.setAccessible(true);
-                try {
-                    setReturnStatus.invoke(response, new TReturnStatus(statusCode, errorMessage));
-                } catch (InvocationTargetException e) {
-                    Throwables.propagateIfPossible(e, Exception.class);
-                    throw new RuntimeException("Unexpected exception", e);
-                }
-            } catch (Exception e) {
-                LOGGER.trace("getFailedResponse invocation failed", e);
-                Method setStatusCode = responseClass.getMethod("setStatusCode", TStatusCode.class);
-                setStatusCode.setAccessible(true);
-                setStatusCode.invoke(response, statusCode);
-                Method setExplanation = responseClass.getMethod("setExplanation", String.class);
-                setExplanation.setAccessible(true);
-                setExplanation.invoke(response, errorMessage);
-            }
-            return response;
-        } catch (Exception e) {
+            return operation.newFailedResponse(statusCode, errorMessage);
+        } catch (RuntimeException e) {
             throw new RemoteException("Failed to generate SRM reply", e);
         }
     }
 
     private interface RequestLogger
     {
-        void request(String requestName, Object request);
-        void response(String requestName, Object request, Object response, Subject user, long time);
+        void request(SrmOperation operation, Object request);
+        void response(SrmOperation operation, Object request, Object response, Subject user, long time);
     }
 
     public class AccessLogger implements RequestLogger
@@ -855,15 +835,15 @@ public class SrmHandler implements CellInfoProvider, CuratorFrameworkAware
         private final Logger ACCESS_LOGGER = LoggerFactory.getLogger("org.dcache.access.srm");
 
         @Override
-        public void request(String requestName, Object request)
+        public void request(SrmOperation operation, Object request)
         {
         }
 
         @Override
-        public void response(String requestName, Object request, Object response, Subject user, long time)
+        public void response(SrmOperation operation, Object request, Object response, Subject user, long time)
         {
             if (ACCESS_LOGGER.isErrorEnabled()) {
-                TReturnStatus status = getReturnStatus(response);
+                TReturnStatus status = operation.getReturnStatus(response);
                 boolean isFailure = status != null && FAILURES.contains(status.getStatusCode());
                 if (!isFailure && !ACCESS_LOGGER.isInfoEnabled()) {
                     return;
@@ -873,18 +853,18 @@ public class SrmHandler implements CellInfoProvider, CuratorFrameworkAware
                 NetLoggerBuilder log = new NetLoggerBuilder(level, "org.dcache.srm.request").omitNullValues();
                 log.add("session", JDC.getSession());
                 log.add("socket.remote", Axis.getRemoteSocketAddress());
-                log.add("request.method", requestName);
+                log.add("request.method", operation.getName());
                 log.add("user.dn", Axis.getDN().orElse("-"));
                 if (user != null) {
                     log.add("user.mapped", user);
                 }
-                String requestToken = getRequestToken(request, response);
+                String requestToken = operation.getRequestToken(request, response);
                 if (requestToken != null) {
                     log.add("request.token", requestToken);
                 } else {
-                    log.add("request.surl", getSurl(request));
+                    log.add("request.surl", operation.getSurl(request));
                 }
-                logOperationSpecific(log, requestName, request, response);
+                logOperationSpecific(log, operation.getName(), request, response);
                 if (status != null) {
                     log.add("status.code", status.getStatusCode());
                     log.add("status.explanation", status.getExplanation());
@@ -1196,15 +1176,15 @@ public class SrmHandler implements CellInfoProvider, CuratorFrameworkAware
     public class CounterLogger implements RequestLogger
     {
         @Override
-        public void request(String requestName, Object request)
+        public void request(SrmOperation operation, Object request)
         {
             srmServerCounters.incrementRequests(request.getClass());
         }
 
         @Override
-        public void response(String requestName, Object request, Object response, Subject user, long time)
+        public void response(SrmOperation operation, Object request, Object response, Subject user, long time)
         {
-            TReturnStatus status = getReturnStatus(response);
+            TReturnStatus status = operation.getReturnStatus(response);
             if (status != null && FAILURES.contains(status.getStatusCode())) {
                 srmServerCounters.incrementFailed(request.getClass());
             }
@@ -1214,84 +1194,15 @@ public class SrmHandler implements CellInfoProvider, CuratorFrameworkAware
     private class RequestExecutionTimeGaugeLogger implements RequestLogger
     {
         @Override
-        public void request(String requestName, Object request)
+        public void request(SrmOperation operation, Object request)
         {
         }
 
         @Override
-        public void response(String requestName, Object request, Object response, Subject user, long time)
+        public void response(SrmOperation operation, Object request, Object response, Subject user, long time)
         {
             srmServerGauges.update(request.getClass(), time);
+            operation.getHistogram().update(time);
         }
     }
-
-    private static String getSurl(Object request)
-    {
-        try {
-            Method getReturnStatus = request.getClass().getDeclaredMethod("getSURL");
-            Class<?> returnType = getReturnStatus.getReturnType();
-            if (org.apache.axis.types.URI.class.isAssignableFrom(returnType)) {
-                Object uri = getReturnStatus.invoke(request);
-                if (uri != null) {
-                    return uri.toString();
-                }
-            }
-        } catch (NoSuchMethodException e) {
-            // Unfortunately, Java standard API provides no nice way of
-            // discovering if a method exists by reflection.  This is perhaps
-            // the least ugly.
-        } catch (InvocationTargetException | IllegalAccessException e) {
-            LOGGER.debug("Failed to extract SURL: {}", e.toString());
-        }
-        return null;
-    }
-
-    private static String getRequestToken(Object request, Object response)
-    {
-        String requestToken = getRequestToken(response);
-        if (requestToken != null) {
-            return requestToken;
-        }
-        requestToken = getRequestToken(request);
-        if (requestToken != null) {
-            return requestToken;
-        }
-        return null;
-    }
-
-    private static String getRequestToken(Object response)
-    {
-        try {
-            Method getReturnStatus = response.getClass().getDeclaredMethod("getRequestToken");
-            Class<?> returnType = getReturnStatus.getReturnType();
-            if (String.class.isAssignableFrom(returnType)) {
-                return (String) getReturnStatus.invoke(response);
-            }
-        } catch (NoSuchMethodException e) {
-            // Unfortunately, Java standard API provides no nice way of
-            // discovering if a method exists by reflection.  This is perhaps
-            // the least ugly.
-        } catch (InvocationTargetException | IllegalAccessException e) {
-            LOGGER.debug("Failed to extract request token: {}", e.toString());
-        }
-        return null;
-    }
-
-    private static TReturnStatus getReturnStatus(Object response)
-    {
-        try {
-            Method getReturnStatus = response.getClass().getDeclaredMethod("getReturnStatus");
-            Class<?> returnType = getReturnStatus.getReturnType();
-            if (TReturnStatus.class.isAssignableFrom(returnType)) {
-                return (TReturnStatus) getReturnStatus.invoke(response);
-            }
-        } catch (NoSuchMethodException e) {
-            // Unfortunately, Java standard API provides no nice way of
-            // discovering if a method exists by reflection.  This is perhaps
-            // the least ugly.
-        } catch (InvocationTargetException | IllegalAccessException e) {
-            LOGGER.debug("Failed to extract status code: {}", e.toString());
-        }
-        return null;
-    }
 }
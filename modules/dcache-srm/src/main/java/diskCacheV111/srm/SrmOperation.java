@@ -0,0 +1,237 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2017 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package diskCacheV111.srm;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import org.apache.axis.types.URI;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import org.dcache.commons.stats.RequestExecutionTimeHistogram;
+import org.dcache.srm.v2_2.TReturnStatus;
+import org.dcache.srm.v2_2.TStatusCode;
+
+/**
+ * An operation of the SRM 2.2 interface.
+ *
+ * The request and response classes generated by Axis share no common interface,
+ * although most of them carry a return status, a request token or a SURL. The
+ * accessors for these properties are resolved once for each operation and bound
+ * to method handles, thus requests are processed without reflective lookups.
+ *
+ * Each operation also keeps a histogram of its execution times.
+ */
+class SrmOperation
+{
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final MethodType NEW_RESPONSE = MethodType.methodType(Object.class);
+    private static final MethodType SET_RETURN_STATUS = MethodType.methodType(void.class, Object.class, TReturnStatus.class);
+    private static final MethodType SET_STATUS_CODE = MethodType.methodType(void.class, Object.class, TStatusCode.class);
+    private static final MethodType SET_EXPLANATION = MethodType.methodType(void.class, Object.class, String.class);
+    private static final MethodType GET_RETURN_STATUS = MethodType.methodType(TReturnStatus.class, Object.class);
+    private static final MethodType GET_REQUEST_TOKEN = MethodType.methodType(String.class, Object.class);
+    private static final MethodType GET_SURL = MethodType.methodType(Object.class, Object.class);
+
+    private final String name;
+    private final Class<?> requestClass;
+    private final Class<?> responseClass;
+
+    private final MethodHandle newResponse;
+    private final MethodHandle setReturnStatus;
+    private final MethodHandle setStatusCode;
+    private final MethodHandle setExplanation;
+    private final MethodHandle getReturnStatus;
+    private final MethodHandle getRequestTokenOfRequest;
+    private final MethodHandle getRequestTokenOfResponse;
+    private final MethodHandle getSurl;
+
+    private final RequestExecutionTimeHistogram histogram;
+
+    private SrmOperation(Method method)
+    {
+        name = method.getName();
+        requestClass = method.getParameterTypes()[0];
+        responseClass = method.getReturnType();
+
+        newResponse = findConstructor(responseClass, NEW_RESPONSE);
+        setReturnStatus = findSetter(responseClass, "setReturnStatus", SET_RETURN_STATUS);
+        setStatusCode = findSetter(responseClass, "setStatusCode", SET_STATUS_CODE);
+        setExplanation = findSetter(responseClass, "setExplanation", SET_EXPLANATION);
+        getReturnStatus = findGetter(responseClass, "getReturnStatus", GET_RETURN_STATUS);
+        getRequestTokenOfRequest = findGetter(requestClass, "getRequestToken", GET_REQUEST_TOKEN);
+        getRequestTokenOfResponse = findGetter(responseClass, "getRequestToken", GET_REQUEST_TOKEN);
+        getSurl = findGetter(requestClass, "getSURL", URI.class, GET_SURL);
+
+        histogram = new RequestExecutionTimeHistogram(requestClass.getSimpleName());
+    }
+
+    /**
+     * Returns the operations of an SRM service interface, indexed by name.
+     */
+    static ImmutableMap<String, SrmOperation> of(Class<?> service)
+    {
+        ImmutableMap.Builder<String, SrmOperation> operations = ImmutableMap.builder();
+        for (Method method : service.getMethods()) {
+            if (method.getParameterCount() == 1) {
+                operations.put(method.getName(), new SrmOperation(method));
+            }
+        }
+        return operations.build();
+    }
+
+    String getName()
+    {
+        return name;
+    }
+
+    RequestExecutionTimeHistogram getHistogram()
+    {
+        return histogram;
+    }
+
+    /**
+     * Returns a response of this operation with the given status.
+     *
+     * @throws IllegalStateException if the response has no settable status
+     */
+    Object newFailedResponse(TStatusCode statusCode, String explanation)
+    {
+        try {
+            if (newResponse == null) {
+                throw new IllegalStateException(responseClass.getName() + " has no default constructor.");
+            }
+            Object response = newResponse.invokeExact();
+            if (setReturnStatus != null) {
+                setReturnStatus.invokeExact(response, new TReturnStatus(statusCode, explanation));
+            } else if (setStatusCode != null && setExplanation != null) {
+                setStatusCode.invokeExact(response, statusCode);
+                setExplanation.invokeExact(response, explanation);
+            } else {
+                throw new IllegalStateException(responseClass.getName() + " has no return status.");
+            }
+            return response;
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    /**
+     * Returns the return status of a response of this operation, or null if the response
+     * does not have a return status.
+     */
+    TReturnStatus getReturnStatus(Object response)
+    {
+        if (getReturnStatus == null) {
+            return null;
+        }
+        try {
+            return (TReturnStatus) getReturnStatus.invokeExact(response);
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    /**
+     * Returns the request token of the response, or if the response has no request token,
+     * of the request. Returns null if neither has a request token.
+     */
+    String getRequestToken(Object request, Object response)
+    {
+        try {
+            String requestToken = null;
+            if (getRequestTokenOfResponse != null && response != null) {
+                requestToken = (String) getRequestTokenOfResponse.invokeExact(response);
+            }
+            if (requestToken == null && getRequestTokenOfRequest != null) {
+                requestToken = (String) getRequestTokenOfRequest.invokeExact(request);
+            }
+            return requestToken;
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    /**
+     * Returns the SURL of a request of this operation, or null if the request is not about
+     * a single SURL.
+     */
+    String getSurl(Object request)
+    {
+        if (getSurl == null) {
+            return null;
+        }
+        try {
+            Object uri = (Object) getSurl.invokeExact(request);
+            return (uri == null) ? null : uri.toString();
+        } catch (Throwable t) {
+            throw propagate(t);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    private static RuntimeException propagate(Throwable t)
+    {
+        Throwables.propagateIfPossible(t);
+        return new RuntimeException("Unexpected exception: " + t, t);
+    }
+
+    private static MethodHandle findConstructor(Class<?> clazz, MethodType type)
+    {
+        try {
+            return LOOKUP.findConstructor(clazz, MethodType.methodType(void.class)).asType(type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle findSetter(Class<?> clazz, String name, MethodType type)
+    {
+        try {
+            return LOOKUP.findVirtual(clazz, name, MethodType.methodType(void.class, type.parameterType(1)))
+                    .asType(type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle findGetter(Class<?> clazz, String name, MethodType type)
+    {
+        return findGetter(clazz, name, type.returnType(), type);
+    }
+
+    private static MethodHandle findGetter(Class<?> clazz, String name, Class<?> returnType, MethodType type)
+    {
+        try {
+            return LOOKUP.findVirtual(clazz, name, MethodType.methodType(returnType)).asType(type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
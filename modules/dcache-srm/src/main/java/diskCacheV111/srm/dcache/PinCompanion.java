@@ -118,9 +118,9 @@ public class PinCompanion extends AbstractFuture<AbstractStorageElement.Pin>
     private final String _clientHost;
     private final long _pinLifetime;
     private final String _requestToken;
-    private final CellStub _pnfsStub;
+    private final PnfsRequestBatcher _pnfsRequestBatcher;
     private final CellStub _poolManagerStub;
-    private final CellStub _pinManagerStub;
+    private final PinRequestBatcher _pinRequestBatcher;
     private final Executor _executor;
     private final PoolMonitor _poolMonitor;
     private final boolean _isOnlinePinningEnabled;
@@ -165,7 +165,7 @@ public class PinCompanion extends AbstractFuture<AbstractStorageElement.Pin>
                 new PnfsGetFileAttributes(_path.toString(), attributes);
             msg.setAccessMask(EnumSet.of(AccessMask.READ_DATA));
             msg.setSubject(_subject);
-            CellStub.addCallback(_pnfsStub.send(msg), this, _executor);
+            CellStub.addCallback(_pnfsRequestBatcher.send(msg), this, _executor);
         }
 
         private boolean isDirectory(FileAttributes attributes)
@@ -253,7 +253,7 @@ public class PinCompanion extends AbstractFuture<AbstractStorageElement.Pin>
                 new PinManagerPinMessage(_attributes, getProtocolInfo(),
                                          _requestToken, _pinLifetime);
             msg.setSubject(_subject);
-            CellStub.addCallback(_pinManagerStub.send(msg), this, _executor);
+            CellStub.addCallback(_pinRequestBatcher.pin(msg), this, _executor);
         }
 
         @Override
@@ -278,9 +278,9 @@ public class PinCompanion extends AbstractFuture<AbstractStorageElement.Pin>
                          String requestToken,
                          boolean isOnlinePinningEnabled,
                          PoolMonitor poolMonitor,
-                         CellStub pnfsStub,
+                         PnfsRequestBatcher pnfsRequestBatcher,
                          CellStub poolManagerStub,
-                         CellStub pinManagerStub, Executor executor)
+                         PinRequestBatcher pinRequestBatcher, Executor executor)
     {
         _subject = subject;
         _path = path;
@@ -289,9 +289,9 @@ public class PinCompanion extends AbstractFuture<AbstractStorageElement.Pin>
         _requestToken = requestToken;
         _isOnlinePinningEnabled = isOnlinePinningEnabled;
         _poolMonitor = poolMonitor;
-        _pnfsStub = pnfsStub;
+        _pnfsRequestBatcher = pnfsRequestBatcher;
         _poolManagerStub = poolManagerStub;
-        _pinManagerStub = pinManagerStub;
+        _pinRequestBatcher = pinRequestBatcher;
         _executor = executor;
         _state = new LookupState();
     }
@@ -349,15 +349,15 @@ public class PinCompanion extends AbstractFuture<AbstractStorageElement.Pin>
             String requestToken,
             boolean isOnlinePinningEnabled,
             PoolMonitor poolMonitor,
-            CellStub pnfsStub,
+            PnfsRequestBatcher pnfsRequestBatcher,
             CellStub poolManagerStub,
-            CellStub pinManagerStub,
+            PinRequestBatcher pinRequestBatcher,
             Executor executor)
     {
         return new PinCompanion(subject, path, clientHost,
                                 pinLifetime, requestToken, isOnlinePinningEnabled,
                                 poolMonitor,
-                                pnfsStub, poolManagerStub, pinManagerStub, executor);
+                                pnfsRequestBatcher, poolManagerStub, pinRequestBatcher, executor);
     }
 }
 
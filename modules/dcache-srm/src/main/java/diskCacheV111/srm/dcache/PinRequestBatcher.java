@@ -0,0 +1,279 @@
+package diskCacheV111.srm.dcache;
+
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+import javax.security.auth.Subject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import diskCacheV111.util.TimeoutCacheException;
+
+import org.dcache.cells.CellStub;
+import org.dcache.pinmanager.PinManagerBulkPinMessage;
+import org.dcache.pinmanager.PinManagerPinMessage;
+import org.dcache.util.CacheExceptionFactory;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Submits pin requests to pin manager in bulk.
+ *
+ * Pin requests belonging to the same SRM request and subject are
+ * collected into batches. A batch is submitted once it has reached
+ * the maximum size or once its first request has waited for the
+ * batch delay. A batch holding a single request is submitted as an
+ * ordinary pin request.
+ *
+ * Pin manager acknowledges a bulk request right away and reports the
+ * outcome of each file in a notification of its own. The notifications
+ * are passed to {@link #notificationArrived} by the cell.
+ */
+public class PinRequestBatcher
+{
+    private static final Logger _log = LoggerFactory.getLogger(PinRequestBatcher.class);
+
+    private CellStub _pinManagerStub;
+    private ScheduledExecutorService _scheduledExecutor;
+    private int _maxBatchSize;
+    private long _batchDelay;
+    private TimeUnit _batchDelayUnit;
+
+    /**
+     * Batches being collected. Guarded by this.
+     */
+    private final Map<BatchKey, Batch> _collecting = new HashMap<>();
+
+    /**
+     * Batches submitted to pin manager that still await notifications,
+     * indexed by bulk ID.
+     */
+    private final ConcurrentMap<String, Batch> _submitted = new ConcurrentHashMap<>();
+
+    @Required
+    public void setPinManagerStub(CellStub stub)
+    {
+        _pinManagerStub = stub;
+    }
+
+    @Required
+    public void setScheduledExecutor(ScheduledExecutorService executor)
+    {
+        _scheduledExecutor = executor;
+    }
+
+    @Required
+    public void setMaxBatchSize(int size)
+    {
+        _maxBatchSize = size;
+    }
+
+    @Required
+    public void setBatchDelay(long delay)
+    {
+        _batchDelay = delay;
+    }
+
+    @Required
+    public void setBatchDelayUnit(TimeUnit unit)
+    {
+        _batchDelayUnit = unit;
+    }
+
+    /**
+     * Submits a pin request. The returned future completes with the reply
+     * of pin manager, just like the future returned by CellStub#send.
+     */
+    public ListenableFuture<PinManagerPinMessage> pin(PinManagerPinMessage msg)
+    {
+        if (msg.getRequestId() == null || _maxBatchSize <= 1) {
+            return _pinManagerStub.send(msg);
+        }
+
+        BatchKey key = new BatchKey(msg.getRequestId(), msg.getSubject());
+        ListenableFuture<PinManagerPinMessage> future;
+        Batch full = null;
+        synchronized (this) {
+            Batch batch = _collecting.get(key);
+            if (batch == null) {
+                batch = new Batch(key);
+                _collecting.put(key, batch);
+                Batch collecting = batch;
+                _scheduledExecutor.schedule(() -> submit(collecting), _batchDelay, _batchDelayUnit);
+            }
+            future = batch.add(msg);
+            if (batch.size() >= _maxBatchSize) {
+                full = batch;
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+        return future;
+    }
+
+    /**
+     * Completes a pin request of a bulk request.
+     *
+     * @return false if the request is unknown, e.g. because it timed out
+     */
+    public boolean notificationArrived(PinManagerPinMessage msg)
+    {
+        Batch batch = (msg.getBulkId() == null) ? null : _submitted.get(msg.getBulkId());
+        return batch != null && batch.complete(msg.getBulkIndex(), msg);
+    }
+
+    private void submit(Batch batch)
+    {
+        synchronized (this) {
+            if (!_collecting.remove(batch.key, batch)) {
+                return;
+            }
+        }
+        batch.submit();
+    }
+
+    private static class BatchKey
+    {
+        private final String requestId;
+        private final Subject subject;
+
+        BatchKey(String requestId, Subject subject)
+        {
+            this.requestId = requestId;
+            this.subject = subject;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey other = (BatchKey) o;
+            return requestId.equals(other.requestId) && Objects.equal(subject, other.subject);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return requestId.hashCode();
+        }
+    }
+
+    private class Batch
+    {
+        private final BatchKey key;
+        private final String id = UUID.randomUUID().toString();
+        private final List<PinManagerPinMessage> requests = new ArrayList<>();
+        private final List<SettableFuture<PinManagerPinMessage>> futures = new ArrayList<>();
+        private final AtomicInteger remaining = new AtomicInteger();
+        private ScheduledFuture<?> timeout;
+
+        Batch(BatchKey key)
+        {
+            this.key = key;
+        }
+
+        ListenableFuture<PinManagerPinMessage> add(PinManagerPinMessage msg)
+        {
+            SettableFuture<PinManagerPinMessage> future = SettableFuture.create();
+            requests.add(msg);
+            futures.add(future);
+            return future;
+        }
+
+        int size()
+        {
+            return requests.size();
+        }
+
+        void submit()
+        {
+            if (requests.size() == 1) {
+                futures.get(0).setFuture(_pinManagerStub.send(requests.get(0)));
+                return;
+            }
+
+            remaining.set(requests.size());
+            _submitted.put(id, this);
+            synchronized (this) {
+                timeout = _scheduledExecutor.schedule(
+                        () -> failAll(new TimeoutCacheException("Request to " +
+                                                                _pinManagerStub.getDestinationPath() +
+                                                                " timed out.")),
+                        _pinManagerStub.getTimeoutInMillis(), MILLISECONDS);
+            }
+
+            PinManagerBulkPinMessage msg = new PinManagerBulkPinMessage(id, requests);
+            msg.setSubject(key.subject);
+            _log.debug("Submitting bulk pin request {} for {} files", id, requests.size());
+            Futures.addCallback(_pinManagerStub.send(msg), new FutureCallback<PinManagerBulkPinMessage>()
+            {
+                @Override
+                public void onSuccess(PinManagerBulkPinMessage reply)
+                {
+                    if (reply.getReturnCode() != 0) {
+                        failAll(CacheExceptionFactory.exceptionOf(reply.getReturnCode(),
+                                                                  String.valueOf(reply.getErrorObject())));
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t)
+                {
+                    failAll(t);
+                }
+            }, directExecutor());
+        }
+
+        boolean complete(int index, PinManagerPinMessage reply)
+        {
+            if (index < 0 || index >= futures.size() || !futures.get(index).set(reply)) {
+                return false;
+            }
+            if (remaining.decrementAndGet() == 0) {
+                done();
+            }
+            return true;
+        }
+
+        void failAll(Throwable t)
+        {
+            for (SettableFuture<PinManagerPinMessage> future : futures) {
+                if (future.setException(t)) {
+                    remaining.decrementAndGet();
+                }
+            }
+            done();
+        }
+
+        private void done()
+        {
+            _submitted.remove(id, this);
+            synchronized (this) {
+                timeout.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package diskCacheV111.srm.dcache;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.vehicles.PnfsBulkMessage;
+import diskCacheV111.vehicles.PnfsMessage;
+
+import org.dcache.cells.CellStub;
+import org.dcache.util.CacheExceptionFactory;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+/**
+ * Submits name space requests to PnfsManager in bulk.
+ *
+ * The file requests of a bulk SRM request are scheduled independently,
+ * but are typically scheduled within a short time of each other. Their
+ * attribute lookups and upload path creations are collected into
+ * batches. A batch is submitted once it has reached the maximum size or
+ * once its first request has waited for the batch delay. A batch holding
+ * a single request is submitted as an ordinary request.
+ *
+ * Each request carries its own subject, thus requests of different users
+ * may share a batch.
+ */
+public class PnfsRequestBatcher
+{
+    private static final Logger _log = LoggerFactory.getLogger(PnfsRequestBatcher.class);
+
+    private CellStub _pnfsStub;
+    private ScheduledExecutorService _scheduledExecutor;
+    private int _maxBatchSize;
+    private long _batchDelay;
+    private TimeUnit _batchDelayUnit;
+
+    /**
+     * Batch being collected. Guarded by this.
+     */
+    private Batch _collecting;
+
+    @Required
+    public void setPnfsStub(CellStub stub)
+    {
+        _pnfsStub = stub;
+    }
+
+    @Required
+    public void setScheduledExecutor(ScheduledExecutorService executor)
+    {
+        _scheduledExecutor = executor;
+    }
+
+    @Required
+    public void setMaxBatchSize(int size)
+    {
+        _maxBatchSize = size;
+    }
+
+    @Required
+    public void setBatchDelay(long delay)
+    {
+        _batchDelay = delay;
+    }
+
+    @Required
+    public void setBatchDelayUnit(TimeUnit unit)
+    {
+        _batchDelayUnit = unit;
+    }
+
+    /**
+     * Submits a name space request. The returned future completes with the
+     * reply of PnfsManager, just like the future returned by CellStub#send.
+     */
+    public <T extends PnfsMessage> ListenableFuture<T> send(T msg)
+    {
+        if (_maxBatchSize <= 1) {
+            return _pnfsStub.send(msg);
+        }
+
+        ListenableFuture<T> future;
+        Batch full = null;
+        synchronized (this) {
+            Batch batch = _collecting;
+            if (batch == null) {
+                batch = new Batch();
+                _collecting = batch;
+                Batch collecting = batch;
+                _scheduledExecutor.schedule(() -> submit(collecting), _batchDelay, _batchDelayUnit);
+            }
+            future = batch.add(msg);
+            if (batch.size() >= _maxBatchSize) {
+                full = batch;
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+        return future;
+    }
+
+    private void submit(Batch batch)
+    {
+        synchronized (this) {
+            if (_collecting != batch) {
+                return;
+            }
+            _collecting = null;
+        }
+        batch.submit();
+    }
+
+    private class Batch
+    {
+        private final List<PnfsMessage> requests = new ArrayList<>();
+        private final List<SettableFuture<PnfsMessage>> futures = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        <T extends PnfsMessage> ListenableFuture<T> add(T msg)
+        {
+            SettableFuture<PnfsMessage> future = SettableFuture.create();
+            requests.add(msg);
+            futures.add(future);
+            return (ListenableFuture<T>) (ListenableFuture<?>) future;
+        }
+
+        int size()
+        {
+            return requests.size();
+        }
+
+        void submit()
+        {
+            if (requests.size() == 1) {
+                futures.get(0).setFuture(_pnfsStub.send(requests.get(0)));
+                return;
+            }
+
+            _log.debug("Submitting bulk name space request for {} files", requests.size());
+            Futures.addCallback(_pnfsStub.send(new PnfsBulkMessage(requests)), new FutureCallback<PnfsBulkMessage>()
+            {
+                @Override
+                public void onSuccess(PnfsBulkMessage reply)
+                {
+                    if (reply.getReturnCode() != 0) {
+                        failAll(CacheExceptionFactory.exceptionOf(reply.getReturnCode(),
+                                                                  String.valueOf(reply.getErrorObject())));
+                    } else {
+                        List<PnfsMessage> replies = reply.getMessages();
+                        for (int i = 0; i < futures.size(); i++) {
+                            futures.get(i).set(replies.get(i));
+                        }
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t)
+                {
+                    failAll(t);
+                }
+            }, directExecutor());
+        }
+
+        void failAll(Throwable t)
+        {
+            for (SettableFuture<PnfsMessage> future : futures) {
+                future.setException(t);
+            }
+        }
+    }
+}
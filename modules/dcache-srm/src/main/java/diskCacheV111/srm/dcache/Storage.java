@@ -274,6 +274,8 @@ public final class Storage
     private CellStub _spaceManagerStub;
     private CellStub _transferManagerStub;
     private CellStub _pinManagerStub;
+    private PinRequestBatcher _pinRequestBatcher;
+    private PnfsRequestBatcher _pnfsRequestBatcher;
     private CellStub _billingStub;
 
     private PnfsHandler _pnfs;
@@ -431,6 +433,12 @@ public final class Storage
         _pnfsStub = pnfsStub;
     }
 
+    @Required
+    public void setPnfsRequestBatcher(PnfsRequestBatcher pnfsRequestBatcher)
+    {
+        _pnfsRequestBatcher = pnfsRequestBatcher;
+    }
+
     @Required
     public void setIsSpaceManagerEnabled(boolean isEnabled)
     {
@@ -466,6 +474,12 @@ public final class Storage
         _pinManagerStub = pinManagerStub;
     }
 
+    @Required
+    public void setPinRequestBatcher(PinRequestBatcher pinRequestBatcher)
+    {
+        _pinRequestBatcher = pinRequestBatcher;
+    }
+
     @Required
     public void setBillingStub(CellStub billingStub)
     {
@@ -617,6 +631,10 @@ public final class Storage
 
     public void messageArrived(PinManagerPinMessage msg)
     {
+        if (_pinRequestBatcher.notificationArrived(msg)) {
+            return;
+        }
+
         // Catches replies for which the callback timed out
         if (msg.isReply() && msg.getReturnCode() == 0) {
             _pinManagerStub.notify(new PinManagerUnpinMessage(msg.getPnfsId(), msg.getPinId()));
@@ -646,9 +664,9 @@ public final class Storage
                                                             requestToken,
                                                             _isOnlinePinningEnabled,
                                                             _poolMonitor,
-                                                            _pnfsStub,
+                                                            _pnfsRequestBatcher,
                                                             _poolManagerStub,
-                                                            _pinManagerStub,
+                                                            _pinRequestBatcher,
                                                             _executor),
                                        new ToSRMException());
         } catch (SRMAuthorizationException | SRMInvalidPathException e) {
@@ -1083,7 +1101,7 @@ public final class Storage
                                              size, al, rp, spaceToken, options);
 
             final SettableFuture<String> future = SettableFuture.create();
-            CellStub.addCallback(_pnfsStub.send(msg),
+            CellStub.addCallback(_pnfsRequestBatcher.send(msg),
                                  new AbstractMessageCallback<PnfsCreateUploadPath>()
                                  {
                                      int failures = 0;
@@ -1119,7 +1137,7 @@ public final class Storage
                                                          new PnfsCreateUploadPath(subject, restriction, fullPath,
                                                                                   user.getRoot(),
                                                                                   size, al, rp, spaceToken, options);
-                                                 CellStub.addCallback(_pnfsStub.send(retry), this, _executor);
+                                                 CellStub.addCallback(_pnfsRequestBatcher.send(retry), this, _executor);
                                              } else {
                                                  future.setException(new SRMInternalErrorException(msg));
                                              }
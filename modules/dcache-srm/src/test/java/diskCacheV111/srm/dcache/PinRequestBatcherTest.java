@@ -0,0 +1,234 @@
+package diskCacheV111.srm.dcache;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.security.auth.Subject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.util.TimeoutCacheException;
+import diskCacheV111.vehicles.Message;
+import diskCacheV111.vehicles.ProtocolInfo;
+
+import org.dcache.auth.Subjects;
+import org.dcache.cells.CellStub;
+import org.dcache.pinmanager.PinManagerBulkPinMessage;
+import org.dcache.pinmanager.PinManagerPinMessage;
+import org.dcache.vehicles.FileAttributes;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class PinRequestBatcherTest
+{
+    private static final String REQUEST_ID1 = "request1";
+    private static final String REQUEST_ID2 = "request2";
+
+    private final List<Message> sent = new ArrayList<>();
+    private final List<SettableFuture<Message>> replies = new ArrayList<>();
+    private final List<Runnable> scheduled = new ArrayList<>();
+
+    private ScheduledFuture<?> timeout;
+    private PinRequestBatcher batcher;
+
+    @Before
+    public void setUp()
+    {
+        CellStub stub = mock(CellStub.class);
+        when(stub.getTimeoutInMillis()).thenReturn(1000L);
+        when(stub.send(any(Message.class))).thenAnswer(invocation -> {
+            SettableFuture<Message> reply = SettableFuture.create();
+            sent.add((Message) invocation.getArguments()[0]);
+            replies.add(reply);
+            return reply;
+        });
+
+        timeout = mock(ScheduledFuture.class);
+        ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+        when(executor.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            scheduled.add((Runnable) invocation.getArguments()[0]);
+            return timeout;
+        });
+
+        batcher = new PinRequestBatcher();
+        batcher.setPinManagerStub(stub);
+        batcher.setScheduledExecutor(executor);
+        batcher.setMaxBatchSize(3);
+        batcher.setBatchDelay(100);
+        batcher.setBatchDelayUnit(TimeUnit.MILLISECONDS);
+    }
+
+    private static PinManagerPinMessage pinMessage(String requestId, Subject subject, int id)
+    {
+        FileAttributes attributes = new FileAttributes();
+        attributes.setPnfsId(new PnfsId(String.format("%024X", id)));
+        PinManagerPinMessage msg = new PinManagerPinMessage(attributes, mock(ProtocolInfo.class), requestId, 30);
+        msg.setSubject(subject);
+        return msg;
+    }
+
+    private void runScheduled()
+    {
+        List<Runnable> tasks = new ArrayList<>(scheduled);
+        scheduled.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    private static void assertFailedWith(ListenableFuture<?> future, Class<? extends Throwable> type)
+            throws InterruptedException
+    {
+        assertThat(future.isDone(), is(true));
+        try {
+            future.get();
+            fail("Expected " + type.getSimpleName());
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(type)));
+        }
+    }
+
+    @Test
+    public void shouldBatchRequestsWithSameRequestIdAndSubject()
+    {
+        batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 1));
+        batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 2));
+        batcher.pin(pinMessage(REQUEST_ID2, Subjects.ROOT, 3));
+        batcher.pin(pinMessage(REQUEST_ID1, Subjects.NOBODY, 4));
+
+        assertThat(sent, is(empty()));
+
+        runScheduled();
+
+        assertThat(sent.size(), is(3));
+        PinManagerBulkPinMessage bulk = (PinManagerBulkPinMessage) sent.stream()
+                .filter(msg -> msg instanceof PinManagerBulkPinMessage).findFirst().get();
+        assertThat(bulk.getRequests().size(), is(2));
+        assertThat(bulk.getSubject(), is(Subjects.ROOT));
+        assertThat(bulk.getRequests().get(0).getRequestId(), is(REQUEST_ID1));
+        assertThat(bulk.getRequests().get(1).getRequestId(), is(REQUEST_ID1));
+    }
+
+    @Test
+    public void shouldSubmitFullBatchWithoutDelay()
+    {
+        batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 1));
+        batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 2));
+        assertThat(sent, is(empty()));
+
+        batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 3));
+
+        assertThat(sent.size(), is(1));
+        assertThat(((PinManagerBulkPinMessage) sent.get(0)).getRequests().size(), is(3));
+
+        /* The delayed submission of the batch must not submit it again. */
+        runScheduled();
+        assertThat(sent.size(), is(1));
+    }
+
+    @Test
+    public void shouldSubmitSingleRequestAsPlainPinRequest() throws Exception
+    {
+        PinManagerPinMessage msg = pinMessage(REQUEST_ID1, Subjects.ROOT, 1);
+        ListenableFuture<PinManagerPinMessage> future = batcher.pin(msg);
+
+        runScheduled();
+
+        assertThat(sent, contains((Message) msg));
+        assertThat(scheduled, is(empty()));
+        replies.get(0).set(msg);
+        assertThat(future.get(), is(msg));
+    }
+
+    @Test
+    public void shouldCompleteRequestsByBulkIndex() throws Exception
+    {
+        ListenableFuture<PinManagerPinMessage> first = batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 1));
+        ListenableFuture<PinManagerPinMessage> second = batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 2));
+        runScheduled();
+        PinManagerBulkPinMessage bulk = (PinManagerBulkPinMessage) sent.get(0);
+        replies.get(0).set(bulk);
+        PinManagerPinMessage firstReply = bulk.getRequests().get(0);
+        PinManagerPinMessage secondReply = bulk.getRequests().get(1);
+
+        assertThat(batcher.notificationArrived(secondReply), is(true));
+
+        assertThat(first.isDone(), is(false));
+        assertThat(second.get(), is(secondReply));
+
+        assertThat(batcher.notificationArrived(firstReply), is(true));
+
+        assertThat(first.get(), is(firstReply));
+        verify(timeout).cancel(false);
+        assertThat(batcher.notificationArrived(firstReply), is(false));
+    }
+
+    @Test
+    public void shouldIgnoreNotificationsOfUnknownBatches()
+    {
+        PinManagerPinMessage msg = pinMessage(REQUEST_ID1, Subjects.ROOT, 1);
+
+        assertThat(batcher.notificationArrived(msg), is(false));
+    }
+
+    @Test
+    public void shouldFailAllRequestsOnTimeout() throws Exception
+    {
+        ListenableFuture<PinManagerPinMessage> first = batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 1));
+        ListenableFuture<PinManagerPinMessage> second = batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 2));
+        runScheduled();
+        PinManagerBulkPinMessage bulk = (PinManagerBulkPinMessage) sent.get(0);
+        replies.get(0).set(bulk);
+        batcher.notificationArrived(bulk.getRequests().get(0));
+
+        runScheduled();
+
+        assertThat(first.get(), is(bulk.getRequests().get(0)));
+        assertFailedWith(second, TimeoutCacheException.class);
+        assertThat(batcher.notificationArrived(bulk.getRequests().get(1)), is(false));
+    }
+
+    @Test
+    public void shouldFailAllRequestsOnErrorReply() throws Exception
+    {
+        ListenableFuture<PinManagerPinMessage> first = batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 1));
+        ListenableFuture<PinManagerPinMessage> second = batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 2));
+        runScheduled();
+        PinManagerBulkPinMessage bulk = (PinManagerBulkPinMessage) sent.get(0);
+
+        bulk.setFailed(CacheException.PERMISSION_DENIED, "denied");
+        replies.get(0).set(bulk);
+
+        assertFailedWith(first, CacheException.class);
+        assertFailedWith(second, CacheException.class);
+        verify(timeout).cancel(false);
+        assertThat(batcher.notificationArrived(bulk.getRequests().get(0)), is(false));
+    }
+
+    @Test
+    public void shouldFailAllRequestsIfBulkRequestFails() throws Exception
+    {
+        ListenableFuture<PinManagerPinMessage> first = batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 1));
+        ListenableFuture<PinManagerPinMessage> second = batcher.pin(pinMessage(REQUEST_ID1, Subjects.ROOT, 2));
+        runScheduled();
+        PinManagerBulkPinMessage bulk = (PinManagerBulkPinMessage) sent.get(0);
+
+        replies.get(0).setException(new TimeoutCacheException("timeout"));
+
+        assertFailedWith(first, TimeoutCacheException.class);
+        assertFailedWith(second, TimeoutCacheException.class);
+        assertThat(batcher.notificationArrived(bulk.getRequests().get(1)), is(false));
+    }
+}
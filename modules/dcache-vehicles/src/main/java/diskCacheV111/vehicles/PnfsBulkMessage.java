@@ -0,0 +1,46 @@
+package diskCacheV111.vehicles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Carries several name space requests in a single message.
+ *
+ * PnfsManager processes the embedded requests one after the other, each
+ * as if it had been received on its own, and replies with the bulk
+ * message. Each embedded request carries its own subject, restriction,
+ * return code and result. The return code of the bulk message itself
+ * only reflects failures affecting the bulk request as a whole.
+ *
+ * Only file attribute lookups and upload path creations may be embedded.
+ */
+public class PnfsBulkMessage extends PnfsMessage
+{
+    private static final long serialVersionUID = 2983474520638129917L;
+
+    private final List<PnfsMessage> _messages;
+
+    public PnfsBulkMessage(List<? extends PnfsMessage> messages)
+    {
+        _messages = new ArrayList<>(messages);
+        setReplyRequired(true);
+    }
+
+    public List<PnfsMessage> getMessages()
+    {
+        return Collections.unmodifiableList(_messages);
+    }
+
+    @Override
+    public boolean invalidates(Message message)
+    {
+        return _messages.stream().anyMatch(m -> m.invalidates(message));
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PnfsBulkMessage[" + _messages.size() + "]";
+    }
+}
@@ -25,6 +25,12 @@ public class InfoGetSerialisedDataMessage  extends Message {
 	/** Our serialised representation of dCache's state */
 	private String _data;
 
+	/** Tag of the serialised data the requestor already holds */
+	private String _knownTag;
+
+	/** Tag of the current serialised data */
+	private String _tag;
+
 	/**
 	 * Request a complete dump of dCache's state in the specified
          * serialisation.
@@ -63,6 +69,43 @@ public class InfoGetSerialisedDataMessage  extends Message {
 		_data = serialisedData;
 	}
 
+	/**
+	 * Tell the info service which serialised data the requestor
+	 * already holds.  If that data is still current, the reply carries
+	 * no data.
+	 */
+	public void setKnownTag(String tag) {
+		_knownTag = tag;
+	}
+
+	public String getKnownTag() {
+		return _knownTag;
+	}
+
+	/**
+	 * Set the tag of the serialised data.  Equal tags identify equal
+	 * serialised data.
+	 */
+	public void setTag(String tag) {
+		_tag = tag;
+	}
+
+	/**
+	 * Provide the tag of the serialised data, or null if the info service
+	 * does not support tags.
+	 */
+	public String getTag() {
+		return _tag;
+	}
+
+	/**
+	 * Is true when the data the requestor already holds is still current.
+	 * In that case the reply carries no serialised data.
+	 */
+	public boolean isUnchanged() {
+		return _data == null && _tag != null && _tag.equals(_knownTag);
+	}
+
 	/**
 	 * Obtain the a List of path elements.
 	 * @return
@@ -0,0 +1,79 @@
+package org.dcache.vehicles;
+
+import java.util.UUID;
+
+import diskCacheV111.vehicles.Message;
+import diskCacheV111.vehicles.PnfsMessage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Grants PnfsManager permission to send further partial replies to a
+ * directory listing, or cancels the listing.
+ *
+ * A PnfsListDirectoryMessage with a non-zero window may only be answered by
+ * as many partial replies as the requestor has granted credits. The initial
+ * window counts as the first grant. The final reply does not consume a
+ * credit. The message is a notification; no reply is sent.
+ *
+ * @see PnfsListDirectoryMessage#getWindow
+ */
+public class PnfsListDirectoryCreditMessage extends PnfsMessage
+{
+    private static final long serialVersionUID = 2716238545062960932L;
+
+    private final UUID _uuid;
+    private final int _credits;
+    private final boolean _isCancelled;
+
+    private PnfsListDirectoryCreditMessage(String path, UUID uuid, int credits, boolean isCancelled)
+    {
+        setPnfsPath(checkNotNull(path));
+        setReplyRequired(false);
+        _uuid = checkNotNull(uuid);
+        _credits = credits;
+        _isCancelled = isCancelled;
+    }
+
+    /**
+     * Grants {@code credits} further partial replies to the listing
+     * identified by {@code uuid}.
+     */
+    public static PnfsListDirectoryCreditMessage grant(String path, UUID uuid, int credits)
+    {
+        checkArgument(credits > 0, "Credits must be positive");
+        return new PnfsListDirectoryCreditMessage(path, uuid, credits, false);
+    }
+
+    /**
+     * Cancels the listing identified by {@code uuid}. No further replies
+     * are sent for the listing.
+     */
+    public static PnfsListDirectoryCreditMessage cancel(String path, UUID uuid)
+    {
+        return new PnfsListDirectoryCreditMessage(path, uuid, 0, true);
+    }
+
+    /** Returns the UUID of the listing. */
+    public UUID getUUID()
+    {
+        return _uuid;
+    }
+
+    public int getCredits()
+    {
+        return _credits;
+    }
+
+    public boolean isCancelled()
+    {
+        return _isCancelled;
+    }
+
+    @Override
+    public boolean invalidates(Message message)
+    {
+        return false;
+    }
+}
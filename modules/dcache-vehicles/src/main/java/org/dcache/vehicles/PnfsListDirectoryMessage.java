@@ -23,6 +23,14 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * is identified by a UUID and the replies will contain the same
  * UUID. The last reply is flagged as final. It is assumed that
  * point-to-point message ordering is guaranteed.
+ *
+ * A requestor may bound the number of replies in flight by setting a
+ * window. PnfsManager then only sends as many partial replies as the
+ * requestor has granted credits through PnfsListDirectoryCreditMessage.
+ *
+ * Entries are listed in the order of their names. A listing may start
+ * after a given name, which allows a requestor to continue a previous
+ * listing after the last entry it received.
  */
 public class PnfsListDirectoryMessage extends PnfsMessage
 {
@@ -35,8 +43,15 @@ public class PnfsListDirectoryMessage extends PnfsMessage
     private final BoundType _upperBoundType;
     private final UUID _uuid = UUID.randomUUID();
     private final Set<FileAttribute> _requestedAttributes;
+    private String _after;
     private Collection<DirectoryEntry> _entries = new ArrayList<>();
 
+    /**
+     * Initial number of partial replies PnfsManager may send, or zero if
+     * replies are not subject to flow control.
+     */
+    private int _window;
+
     /**
      * The last message has the following field set to true and a non-zero
      * message count;
@@ -94,12 +109,42 @@ public class PnfsListDirectoryMessage extends PnfsMessage
         }
     }
 
+    /**
+     * Sets the name after which the listing starts. The range is
+     * relative to the first entry following that name.
+     */
+    public void setAfter(String after)
+    {
+        _after = after;
+    }
+
+    /** Returns the name after which the listing starts, or null. */
+    public String getAfter()
+    {
+        return _after;
+    }
+
     /** True if and only if the reply should include file meta data. */
     public Set<FileAttribute> getRequestedAttributes()
     {
         return _requestedAttributes;
     }
 
+    /**
+     * Sets the number of partial replies PnfsManager may send before
+     * waiting for further credits. Zero disables flow control.
+     */
+    public void setWindow(int window)
+    {
+        _window = window;
+    }
+
+    /** Returns the initial credit window, or zero if flow control is disabled. */
+    public int getWindow()
+    {
+        return _window;
+    }
+
     /** Adds an entry to the entry list. */
     public void addEntry(String name, FileAttributes attr)
     {
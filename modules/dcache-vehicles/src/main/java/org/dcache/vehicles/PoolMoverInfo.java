@@ -0,0 +1,75 @@
+package org.dcache.vehicles;
+
+import javax.annotation.Nullable;
+
+import java.io.Serializable;
+
+import diskCacheV111.vehicles.IoJobInfo;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Information about a mover on a pool, as published in mover updates.
+ *
+ * In addition to the job information reported by {@code mover ls}, the
+ * record carries the user and client host of the transfer, so that
+ * subscribers can index movers by these without querying the door.
+ */
+public class PoolMoverInfo implements Serializable
+{
+    private static final long serialVersionUID = -1436870893402826718L;
+
+    private final String _pool;
+    private final IoJobInfo _job;
+    private final String _user;
+    private final String _clientHost;
+
+    public PoolMoverInfo(String pool, IoJobInfo job, @Nullable String user, @Nullable String clientHost)
+    {
+        _pool = checkNotNull(pool);
+        _job = checkNotNull(job);
+        _user = user;
+        _clientHost = clientHost;
+    }
+
+    public String getPool()
+    {
+        return _pool;
+    }
+
+    public IoJobInfo getJob()
+    {
+        return _job;
+    }
+
+    public int getJobId()
+    {
+        return (int) _job.getJobId();
+    }
+
+    /**
+     * Returns the address of the door that created the mover.
+     */
+    public String getDoor()
+    {
+        return _job.getClientName();
+    }
+
+    @Nullable
+    public String getUser()
+    {
+        return _user;
+    }
+
+    @Nullable
+    public String getClientHost()
+    {
+        return _clientHost;
+    }
+
+    @Override
+    public String toString()
+    {
+        return _pool + ";" + _job + ';' + _user + ';' + _clientHost;
+    }
+}
@@ -0,0 +1,56 @@
+package org.dcache.vehicles;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import diskCacheV111.vehicles.Message;
+
+/**
+ * Requests the complete set of movers from a pool.
+ *
+ * The reply carries the movers as described by the pool's most recent
+ * PoolMoverUpdateMessage, together with the sequence number of that
+ * update. Subsequent updates apply on top of the snapshot.
+ */
+public class PoolMoverSnapshotMessage extends Message
+{
+    private static final long serialVersionUID = -4637154796316958417L;
+
+    private String _pool;
+    private long _sequence;
+    private long _updateTime;
+    private Collection<PoolMoverInfo> _movers = Collections.emptyList();
+
+    public PoolMoverSnapshotMessage()
+    {
+        setReplyRequired(true);
+    }
+
+    public void setSnapshot(String pool, long sequence, long updateTime, Collection<PoolMoverInfo> movers)
+    {
+        _pool = pool;
+        _sequence = sequence;
+        _updateTime = updateTime;
+        _movers = movers;
+    }
+
+    public String getPool()
+    {
+        return _pool;
+    }
+
+    public long getSequence()
+    {
+        return _sequence;
+    }
+
+    public long getUpdateTime()
+    {
+        return _updateTime;
+    }
+
+    public Collection<PoolMoverInfo> getMovers()
+    {
+        return _movers;
+    }
+}
@@ -0,0 +1,86 @@
+package org.dcache.vehicles;
+
+import java.util.Collection;
+
+import diskCacheV111.vehicles.Message;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Notification published by a pool about changes to its movers.
+ *
+ * Each update describes the movers that were created or made progress, and
+ * the movers that have finished, since the previous update of that pool.
+ * Updates are numbered consecutively, allowing subscribers to detect lost
+ * updates and to request a PoolMoverSnapshotMessage to resynchronize.
+ *
+ * A pool sends an update at least once per update time, even if nothing
+ * changed. Subscribers may consider a pool gone if no update has been
+ * received for a while.
+ */
+public class PoolMoverUpdateMessage extends Message
+{
+    private static final long serialVersionUID = 4170633547806473417L;
+
+    private final String _pool;
+    private final long _sequence;
+    private final long _updateTime;
+    private final Collection<PoolMoverInfo> _updated;
+    private final Collection<Integer> _finished;
+
+    public PoolMoverUpdateMessage(String pool, long sequence, long updateTime,
+                                  Collection<PoolMoverInfo> updated, Collection<Integer> finished)
+    {
+        _pool = checkNotNull(pool);
+        _sequence = sequence;
+        _updateTime = updateTime;
+        _updated = checkNotNull(updated);
+        _finished = checkNotNull(finished);
+        setReplyRequired(false);
+    }
+
+    public String getPool()
+    {
+        return _pool;
+    }
+
+    /**
+     * Returns the sequence number of this update. The sequence number of
+     * each update is one higher than that of the previous update.
+     */
+    public long getSequence()
+    {
+        return _sequence;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds until the next update.
+     */
+    public long getUpdateTime()
+    {
+        return _updateTime;
+    }
+
+    /**
+     * Returns the movers that were created or changed since the previous update.
+     */
+    public Collection<PoolMoverInfo> getUpdated()
+    {
+        return _updated;
+    }
+
+    /**
+     * Returns the job ids of movers that finished since the previous update.
+     */
+    public Collection<Integer> getFinished()
+    {
+        return _finished;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s: (pool %s) (seq %d) (updated %d) (finished %d) – %s", getMessageName(),
+                             _pool, _sequence, _updated.size(), _finished.size(), super.toString());
+    }
+}
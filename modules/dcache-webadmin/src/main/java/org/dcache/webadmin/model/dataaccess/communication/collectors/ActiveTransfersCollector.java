@@ -9,6 +9,7 @@ import java.util.concurrent.ExecutionException;
 
 import dmg.cells.services.login.LoginBrokerInfo;
 
+import org.dcache.util.PoolMoverSubscriber;
 import org.dcache.util.TransferCollector;
 import org.dcache.util.backoff.IBackoffAlgorithm.Status;
 import org.dcache.webadmin.controller.util.BeanDataMapper;
@@ -19,6 +20,7 @@ public class ActiveTransfersCollector extends Collector
 {
     private TransferCollector collector;
     private Collection<LoginBrokerInfo> doors;
+    private PoolMoverSubscriber movers;
 
     @Required
     public void setDoors(Collection<LoginBrokerInfo> doors)
@@ -26,11 +28,16 @@ public class ActiveTransfersCollector extends Collector
         this.doors = doors;
     }
 
+    public void setMovers(PoolMoverSubscriber movers)
+    {
+        this.movers = movers;
+    }
+
     @Override
     public void initialize()
     {
         super.initialize();
-        collector = new TransferCollector(_cellStub, doors);
+        collector = new TransferCollector(_cellStub, doors, movers);
     }
 
     @Override
@@ -544,6 +544,7 @@ public class DcacheResourceFactory
     {
         pw.println("Allowed paths: " + getAllowedPaths());
         pw.println("IO queue     : " + getIoQueue());
+        pw.println(Transfer.getPhaseGauges());
     }
 
     @Override
@@ -1043,9 +1044,8 @@ public class DcacheResourceFactory
         _transfers.put((int) transfer.getId(), transfer);
         try {
             transfer.setProxyTransfer(isProxyTransfer);
-            transfer.readNameSpaceEntry(false);
             try {
-                transfer.selectPoolAndStartMover(_retryPolicy);
+                transfer.readNameSpaceEntryAndStartMover(_retryPolicy);
                 uri = transfer.waitForRedirect(_moverTimeout, _moverTimeoutUnit);
                 if (uri == null) {
                     throw new TimeoutCacheException("Server is busy (internal timeout)");
@@ -309,6 +309,7 @@ public class XrootdDoor
         pw.println(String.format("Protocol Version %d.%d",
                                  XROOTD_PROTOCOL_MAJOR_VERSION,
                                  XROOTD_PROTOCOL_MINOR_VERSION));
+        pw.println(Transfer.getPhaseGauges());
     }
 
     private XrootdTransfer
@@ -366,8 +367,7 @@ public class XrootdDoor
         _transfers.put(handle, transfer);
         String explanation = "unspecified problem";
         try {
-            transfer.readNameSpaceEntry(false);
-            transfer.selectPoolAndStartMover(RETRY_POLICY);
+            transfer.readNameSpaceEntryAndStartMover(RETRY_POLICY);
             address = transfer.waitForRedirect(_moverTimeout, _moverTimeoutUnit);
             if (address == null) {
                 throw new CacheException(transfer.getPool() + " failed to open TCP socket");
@@ -38,8 +38,11 @@ import dmg.cells.services.login.LoginManagerChildrenInfo;
 import org.dcache.cells.CellStub;
 import org.dcache.util.Args;
 import org.dcache.util.NetworkUtils;
+import org.dcache.util.PoolMoverSubscriber;
 import org.dcache.util.TransferCollector;
 import org.dcache.util.TransferCollector.Transfer;
+import org.dcache.vehicles.PoolMoverSnapshotMessage;
+import org.dcache.vehicles.PoolMoverUpdateMessage;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.dcache.util.ByteUnit.BYTES;
@@ -55,6 +58,7 @@ public class TransferObserverV1
     private TransferCollector _collector;
     private Thread _workerThread;
     private LoginBrokerSubscriber _loginBrokerSource;
+    private PoolMoverSubscriber _moverSource;
     private long _update = 120000L;
     private long _timeUsed;
     private long _processCounter;
@@ -291,7 +295,11 @@ public class TransferObserverV1
         _loginBrokerSource.setCellEndpoint(this);
         _loginBrokerSource.setTopic(_args.getOpt("loginBroker"));
 
-        _collector = new TransferCollector(_cellStub, _loginBrokerSource.doors());
+        _moverSource = new PoolMoverSubscriber();
+        addCommandListener(_moverSource);
+        _moverSource.setCellEndpoint(this);
+
+        _collector = new TransferCollector(_cellStub, _loginBrokerSource.doors(), _moverSource);
 
         String updateString = _args.getOpt("update");
         try {
@@ -407,6 +415,10 @@ public class TransferObserverV1
             _loginBrokerSource.messageArrived((LoginBrokerInfo) message);
         } else if (message instanceof NoRouteToCellException) {
             _loginBrokerSource.messageArrived((NoRouteToCellException) message);
+        } else if (message instanceof PoolMoverUpdateMessage) {
+            _moverSource.messageArrived((PoolMoverUpdateMessage) message);
+        } else if (message instanceof PoolMoverSnapshotMessage) {
+            _moverSource.messageArrived((PoolMoverSnapshotMessage) message);
         }
     }
 
@@ -212,10 +212,17 @@ public interface NameSpaceProvider
 
     /**
      * Lists the content of a directory. The content is returned as a
-     * directory stream. An optional glob pattern andc optional
+     * directory stream. An optional glob pattern and an optional
      * zero-based range can be used to limit the listing. For each
      * entry the ListHandler is invoked.
      *
+     * Entries are listed in the order of their names. If {@code after}
+     * is specified, the listing starts with the first entry following
+     * that name, and the range is relative to that entry. A listing
+     * may thus be resumed after the last entry it returned without
+     * skipping or repeating entries that have not been added or
+     * removed in the meantime.
+     *
      * The glob syntax is limitted to single character (question mark)
      * and multi character (asterix) wildcards. If glob is null, then
      * no filtering is applied.
@@ -225,17 +232,17 @@ public interface NameSpaceProvider
      * the result set from two invocations is the same. For instance,
      * there is no guarantee that first listing [0;999] and then
      * listing [1000;1999] will actually cover the first 2000 entries:
-     * Files may have been added or deleted from the directory, or the
-     * ordering may have changed for some reason.
+     * Files may have been added or deleted from the directory.
      *
      * @param subject Subject of user who invoked this method
      * @param path Path to directory to list
      * @param glob Pattern to limit the result set; may be null
+     * @param after Name after which to start the listing; may be null
      * @param range The range of entries to return; may be null
      * @param attrs The file attributes to query for each entry
      * @param handler Handler called for each entry
      */
-    void list(Subject subject, String path, Glob glob, Range<Integer> range,
+    void list(Subject subject, String path, Glob glob, String after, Range<Integer> range,
               Set<FileAttribute> attrs, ListHandler handler)
         throws CacheException;
 
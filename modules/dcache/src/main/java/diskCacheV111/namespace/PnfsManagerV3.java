@@ -3,6 +3,8 @@ package diskCacheV111.namespace;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -21,17 +23,23 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.security.auth.Subject;
 
@@ -48,9 +56,11 @@ import diskCacheV111.util.MissingResourceCacheException;
 import diskCacheV111.util.NotDirCacheException;
 import diskCacheV111.util.PermissionDeniedCacheException;
 import diskCacheV111.util.PnfsId;
+import diskCacheV111.util.TimeoutCacheException;
 import diskCacheV111.vehicles.DoorCancelledUploadNotificationMessage;
 import diskCacheV111.vehicles.Message;
 import diskCacheV111.vehicles.PnfsAddCacheLocationMessage;
+import diskCacheV111.vehicles.PnfsBulkMessage;
 import diskCacheV111.vehicles.PnfsCancelUpload;
 import diskCacheV111.vehicles.PnfsClearCacheLocationMessage;
 import diskCacheV111.vehicles.PnfsCommitUpload;
@@ -63,8 +73,10 @@ import diskCacheV111.vehicles.PnfsGetParentMessage;
 import diskCacheV111.vehicles.PnfsMapPathMessage;
 import diskCacheV111.vehicles.PnfsMessage;
 import diskCacheV111.vehicles.PnfsRenameMessage;
+import diskCacheV111.vehicles.PnfsSelectReadPoolMessage;
 import diskCacheV111.vehicles.PnfsSetChecksumMessage;
 import diskCacheV111.vehicles.PoolFileFlushedMessage;
+import diskCacheV111.vehicles.PoolMgrSelectReadPoolMsg;
 import diskCacheV111.vehicles.StorageInfo;
 import diskCacheV111.vehicles.StorageInfos;
 
@@ -103,6 +115,7 @@ import org.dcache.util.PrefixMap;
 import org.dcache.vehicles.FileAttributes;
 import org.dcache.vehicles.PnfsCreateSymLinkMessage;
 import org.dcache.vehicles.PnfsGetFileAttributes;
+import org.dcache.vehicles.PnfsListDirectoryCreditMessage;
 import org.dcache.vehicles.PnfsListDirectoryMessage;
 import org.dcache.vehicles.PnfsRemoveChecksumMessage;
 import org.dcache.vehicles.PnfsSetFileAttributes;
@@ -153,9 +166,20 @@ public class PnfsManagerV3
         PnfsListDirectoryMessage.class
     };
 
+    /**
+     * Requests that may be embedded in a PnfsBulkMessage. Subclasses are
+     * not allowed, as they may require post processing of their own.
+     */
+    private static final Set<Class<?>> BULK_MESSAGES =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(PnfsGetFileAttributes.class,
+                                                                    PnfsCreateUploadPath.class)));
+
     private int _threads;
     private int _threadGroups;
     private int _directoryListLimit;
+    private long _listCursorTimeout;
+    private TimeUnit _listCursorTimeoutUnit;
+    private int _suspendedListLimit;
     private int _queueMaxSize;
     private int _listThreads;
     private long _logSlowThreshold;
@@ -171,6 +195,28 @@ public class PnfsManagerV3
      */
     private BlockingQueue<CellMessage>[] _listQueues;
 
+    /**
+     * Directory listings in progress, by the UUID of the list request.
+     */
+    private final Map<UUID, ListHandlerImpl> _listings = new ConcurrentHashMap<>();
+
+    /**
+     * Bulk requests with embedded requests in progress, by the UOID of the
+     * envelope of each embedded request.
+     */
+    private final Map<UOID, BulkRequest> _bulkRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Number of directory listings suspended while waiting for credits.
+     */
+    private final AtomicInteger _suspendedListings = new AtomicInteger();
+
+    /**
+     * Expires suspended directory listings.
+     */
+    private final ScheduledExecutorService _listExpiry =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("list-expiry").build());
+
     /**
      * Tasks queues used for messages that do not operate on cache
      * locations.
@@ -214,12 +260,14 @@ public class PnfsManagerV3
         _gauges.addGauge(PnfsGetParentMessage.class);
         _gauges.addGauge(PnfsSetFileAttributes.class);
         _gauges.addGauge(PnfsGetFileAttributes.class);
+        _gauges.addGauge(PnfsSelectReadPoolMessage.class);
         _gauges.addGauge(PnfsListDirectoryMessage.class);
         _gauges.addGauge(PnfsRemoveChecksumMessage.class);
         _gauges.addGauge(PnfsCreateSymLinkMessage.class);
         _gauges.addGauge(PnfsCreateUploadPath.class);
         _gauges.addGauge(PnfsCommitUpload.class);
         _gauges.addGauge(PnfsCancelUpload.class);
+        _gauges.addGauge(PnfsBulkMessage.class);
     }
 
     public PnfsManagerV3()
@@ -296,6 +344,24 @@ public class PnfsManagerV3
         _directoryListLimit = limit;
     }
 
+    @Required
+    public void setListCursorTimeout(long timeout)
+    {
+        _listCursorTimeout = timeout;
+    }
+
+    @Required
+    public void setListCursorTimeoutUnit(TimeUnit unit)
+    {
+        _listCursorTimeoutUnit = unit;
+    }
+
+    @Required
+    public void setSuspendedListLimit(int limit)
+    {
+        _suspendedListLimit = limit;
+    }
+
     @Required
     public void setAtimeGap(long gap) {
         if (gap < 0) {
@@ -350,6 +416,10 @@ public class PnfsManagerV3
     {
         drainQueues(_fifos);
         drainQueues(_listQueues);
+        _listExpiry.shutdownNow();
+        for (ListHandlerImpl handler : _listings.values()) {
+            handler.fail(CacheException.SERVICE_UNAVAILABLE, "Name space is shutting down.");
+        }
         MoreExecutors.shutdownAndAwaitTermination(executor, 1, TimeUnit.SECONDS);
     }
 
@@ -363,9 +433,12 @@ public class PnfsManagerV3
             for (CellMessage envelope : drained) {
                 Message msg = (Message) envelope.getMessageObject();
                 if (msg.getReplyRequired()) {
-                    envelope.setMessageObject(new NoRouteToCellException(envelope, error));
-                    envelope.revertDirection();
-                    sendMessage(envelope);
+                    if (_bulkRequests.containsKey(envelope.getUOID())) {
+                        msg.setFailed(CacheException.SERVICE_UNAVAILABLE, error);
+                    } else {
+                        envelope.setMessageObject(new NoRouteToCellException(envelope, error));
+                    }
+                    sendReply(envelope);
                 }
             }
             queue.offer(SHUTDOWN_SENTINEL);
@@ -385,6 +458,7 @@ public class PnfsManagerV3
         for (int i = 0; i < _listQueues.length; i++) {
             pw.println("    [" + i + "] " + _listQueues[i].size());
         }
+        pw.println("Suspended listings: " + _suspendedListings.get());
         pw.println();
         pw.println("Threads (" + _fifos.length + ") Queue");
         for (int i = 0; i < _fifos.length; i++) {
@@ -1497,9 +1571,20 @@ public class PnfsManagerV3
      * PnfsListDirectoryMessage when a certain number of entries have
      * been collected. The filter will not send the final reply (the
      * caller has to do that).
+     *
+     * If the requestor asked for flow control, a partial reply is only
+     * sent once the requestor has granted a credit for it. This bounds
+     * the number of entries buffered by the requestor. Rather than
+     * waiting for credits, a listing that has run out of credits is
+     * suspended: the directory stream is closed and the list thread is
+     * released, while the pending entries stay with the handler. When
+     * a credit arrives, the request is queued again and the listing
+     * continues after the last name it has seen. If no credit arrives
+     * within the list cursor timeout, the listing is aborted.
      */
     private class ListHandlerImpl implements ListHandler
     {
+        private final CellMessage _envelope;
         private final CellPath _requestor;
         private final PnfsListDirectoryMessage _msg;
         private final long _delay;
@@ -1507,16 +1592,30 @@ public class PnfsManagerV3
         private final FsPath _directory;
         private final Subject _subject;
         private final Restriction _restriction;
+        private final boolean _hasFlowControl;
+        private volatile boolean _isCancelled;
         private long _deadline;
         private int _messageCount;
 
-        public ListHandlerImpl(CellPath requestor, UOID uoid,
+        /** Name of the last entry passed to the handler. */
+        private String _last;
+
+        /** Number of entries passed to the handler. */
+        private int _listed;
+
+        /* Guarded by this. */
+        private int _credits;
+        private boolean _isSuspended;
+        private ScheduledFuture<?> _expiry;
+
+        public ListHandlerImpl(CellMessage envelope,
                                PnfsListDirectoryMessage msg,
                                long initialDelay, long delay)
         {
+            _envelope = envelope;
             _msg = msg;
-            _requestor = requestor;
-            _uoid = uoid;
+            _requestor = envelope.getSourcePath().revert();
+            _uoid = envelope.getUOID();
             _delay = delay;
             _directory = checkNotNull(_msg.getFsPath());
             _subject = _msg.getSubject();
@@ -1525,10 +1624,152 @@ public class PnfsManagerV3
                 (delay == Long.MAX_VALUE)
                 ? Long.MAX_VALUE
                 : System.currentTimeMillis() + initialDelay;
+            _hasFlowControl = msg.getWindow() > 0;
+            _credits = msg.getWindow();
+        }
+
+        public boolean isListing(PnfsListDirectoryMessage msg)
+        {
+            return _msg == msg;
+        }
+
+        /**
+         * Lists the directory, continuing after the last entry seen if
+         * the listing was suspended before. Returns false if the listing
+         * had to be suspended because the requestor ran out of credits.
+         */
+        public boolean list() throws CacheException
+        {
+            while (true) {
+                try {
+                    checkCancelled();
+                    if (!_msg.getEntries().isEmpty()) {
+                        sendPartialReply();
+                    }
+                    _nameSpaceProvider.list(_subject, _msg.getPnfsPath(),
+                                            _msg.getPattern(),
+                                            (_last == null) ? _msg.getAfter() : _last,
+                                            getRemainingRange(),
+                                            _msg.getRequestedAttributes(),
+                                            this);
+                    return true;
+                } catch (ListingSuspendedException e) {
+                    if (suspend()) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the part of the requested range that has not been
+         * listed yet, relative to the first entry after the last entry
+         * seen.
+         */
+        private Range<Integer> getRemainingRange()
+        {
+            Range<Integer> range = _msg.getRange();
+            if (_last == null) {
+                return range;
+            }
+            if (!range.hasUpperBound()) {
+                return Range.atLeast(0);
+            }
+            int lower = !range.hasLowerBound() ? 0
+                    : (range.lowerBoundType() == BoundType.CLOSED) ? range.lowerEndpoint()
+                    : range.lowerEndpoint() + 1;
+            int upper = (range.upperBoundType() == BoundType.CLOSED)
+                    ? range.upperEndpoint() + 1 : range.upperEndpoint();
+            return Range.closedOpen(0, Math.max(0, upper - lower - _listed));
+        }
+
+        /**
+         * Suspends the listing unless credits have arrived in the
+         * meantime or the listing was cancelled. Returns true if the
+         * listing was suspended, in which case it will be queued again
+         * once credits arrive.
+         */
+        private synchronized boolean suspend() throws MissingResourceCacheException
+        {
+            if (_credits > 0 || _isCancelled) {
+                return false;
+            }
+            if (_suspendedListings.incrementAndGet() > _suspendedListLimit) {
+                _suspendedListings.decrementAndGet();
+                throw new MissingResourceCacheException("Too many suspended directory listings");
+            }
+            _isSuspended = true;
+            _expiry = _listExpiry.schedule(() -> fail(CacheException.TIMEOUT,
+                                                          "Directory listing expired while waiting for the client"),
+                                           _listCursorTimeout, _listCursorTimeoutUnit);
+            return true;
+        }
+
+        private boolean resume()
+        {
+            if (!_isSuspended) {
+                return false;
+            }
+            _isSuspended = false;
+            _suspendedListings.decrementAndGet();
+            _expiry.cancel(false);
+            return true;
+        }
+
+        public synchronized void grant(int credits)
+        {
+            _credits += credits;
+            if (resume()) {
+                _deadline = (_delay == Long.MAX_VALUE) ? Long.MAX_VALUE : System.currentTimeMillis() + _delay;
+                _listQueues[pathToThreadGroup(_msg.getPnfsPath())].offer(_envelope);
+            }
+        }
+
+        public synchronized void cancel()
+        {
+            _isCancelled = true;
+            if (resume()) {
+                _listings.remove(_msg.getUUID());
+            }
+        }
+
+        /**
+         * Fails the listing if it is suspended.
+         */
+        public synchronized void fail(int rc, String error)
+        {
+            if (resume()) {
+                _listings.remove(_msg.getUUID());
+                _msg.clear();
+                _msg.setFailed(rc, error);
+                _envelope.revertDirection();
+                sendMessage(_envelope);
+            }
+        }
+
+        public boolean isCancelled()
+        {
+            return _isCancelled;
+        }
+
+        private void checkCancelled() throws CacheException
+        {
+            if (_isCancelled) {
+                throw new CacheException("Directory listing was cancelled");
+            }
         }
 
-        private void sendPartialReply()
+        private void sendPartialReply() throws CacheException
         {
+            if (_hasFlowControl) {
+                synchronized (this) {
+                    if (_credits == 0) {
+                        throw new ListingSuspendedException();
+                    }
+                    _credits--;
+                }
+            }
+
             _msg.setReply();
 
             CellMessage envelope = new CellMessage(_requestor, _msg);
@@ -1540,8 +1781,11 @@ public class PnfsManagerV3
         }
 
         @Override
-        public void addEntry(String name, FileAttributes attrs)
+        public void addEntry(String name, FileAttributes attrs) throws CacheException
         {
+            checkCancelled();
+            _last = name;
+            _listed++;
             if (Subjects.isRoot(_subject)
                     || !_restriction.isRestricted(READ_METADATA, _directory, name)) {
                 long now = System.currentTimeMillis();
@@ -1561,43 +1805,84 @@ public class PnfsManagerV3
         }
     }
 
-    private void listDirectory(CellMessage envelope, PnfsListDirectoryMessage msg)
+    /**
+     * Thrown by ListHandlerImpl to abort the directory stream when a
+     * listing has to wait for credits.
+     */
+    private static class ListingSuspendedException extends CacheException
+    {
+        private static final long serialVersionUID = 3094860174245436207L;
+
+        public ListingSuspendedException()
+        {
+            super("Directory listing suspended");
+        }
+    }
+
+    /**
+     * Lists a directory. Returns false if the listing was suspended, in
+     * which case no reply must be sent yet.
+     */
+    private boolean listDirectory(CellMessage envelope, PnfsListDirectoryMessage msg)
     {
         if (!msg.getReplyRequired()) {
-            return;
+            return true;
         }
 
+        ListHandlerImpl handler = _listings.get(msg.getUUID());
         try {
-            String path = msg.getPnfsPath();
-
-            checkMask(msg.getSubject(), path, msg.getAccessMask());
-            checkRestriction(msg, LIST);
-
-            long delay = envelope.getAdjustedTtl();
-            long initialDelay =
-                (delay == Long.MAX_VALUE)
-                ? Long.MAX_VALUE
-                : delay - envelope.getLocalAge();
-            CellPath source = envelope.getSourcePath().revert();
-            ListHandlerImpl handler =
-                new ListHandlerImpl(source, envelope.getUOID(),
-                                    msg, initialDelay, delay);
-            _nameSpaceProvider.list(msg.getSubject(), path,
-                                    msg.getPattern(),
-                                    msg.getRange(),
-                                    msg.getRequestedAttributes(),
-                                    handler);
+            if (handler == null || !handler.isListing(msg)) {
+                String path = msg.getPnfsPath();
+
+                checkMask(msg.getSubject(), path, msg.getAccessMask());
+                checkRestriction(msg, LIST);
+
+                long delay = envelope.getAdjustedTtl();
+                long initialDelay =
+                    (delay == Long.MAX_VALUE)
+                    ? Long.MAX_VALUE
+                    : delay - envelope.getLocalAge();
+                handler = new ListHandlerImpl(envelope, msg, initialDelay, delay);
+                _listings.put(msg.getUUID(), handler);
+            }
+            if (!handler.list()) {
+                return false;
+            }
             msg.setSucceeded(handler.getMessageCount() + 1);
         } catch (FileNotFoundCacheException | NotDirCacheException e) {
             msg.setFailed(e.getRc(), e.getMessage());
         } catch (CacheException e) {
-            _log.warn(e.toString());
+            if (handler != null && handler.isCancelled()) {
+                /* The requestor is no longer interested in the result. */
+                msg.setReplyRequired(false);
+            } else {
+                _log.warn(e.toString());
+            }
             msg.setFailed(e.getRc(), e.getMessage());
         } catch (RuntimeException e) {
             _log.error(e.toString(), e);
             msg.setFailed(CacheException.UNEXPECTED_SYSTEM_EXCEPTION,
                           e.getMessage());
         }
+        _listings.remove(msg.getUUID());
+        return true;
+    }
+
+    /**
+     * Credits and cancellations for ongoing directory listings are processed
+     * directly on the message thread. A credit for a suspended listing queues
+     * the listing again.
+     */
+    public void messageArrived(CellMessage envelope, PnfsListDirectoryCreditMessage message)
+    {
+        ListHandlerImpl handler = _listings.get(message.getUUID());
+        if (handler != null) {
+            if (message.isCancelled()) {
+                handler.cancel();
+            } else {
+                handler.grant(message.getCredits());
+            }
+        }
     }
 
     private class ProcessThread implements Runnable
@@ -1659,9 +1944,7 @@ public class PnfsManagerV3
                         _foldedCounters.incrementRequests(message.getClass());
 
                         i.remove();
-                        envelope.revertDirection();
-
-                        sendMessage(envelope);
+                        sendReply(envelope);
                     }
                 }
             }
@@ -1684,6 +1967,83 @@ public class PnfsManagerV3
 
     public void messageArrived(CellMessage envelope, PnfsMessage message)
         throws CacheException
+    {
+        enqueue(envelope, message);
+    }
+
+    /**
+     * The requests embedded in a PnfsBulkMessage are queued one by one,
+     * exactly as if each had been received on its own. They are thus
+     * ordered with, and may be folded with, other requests for the same
+     * file. The bulk reply is sent once all of them have been processed.
+     */
+    public void messageArrived(CellMessage envelope, PnfsBulkMessage message)
+    {
+        BulkRequest bulk = new BulkRequest(envelope);
+        for (PnfsMessage request : message.getMessages()) {
+            if (BULK_MESSAGES.contains(request.getClass())) {
+                bulk.add(request);
+            } else {
+                request.setFailed(CacheException.INVALID_ARGS,
+                                  request.getClass().getSimpleName() + " is not allowed in a bulk request.");
+            }
+        }
+        bulk.complete();
+    }
+
+    /**
+     * A PnfsBulkMessage whose embedded requests are being processed. Each
+     * embedded request is queued with an envelope of its own, which is a
+     * copy of the envelope of the bulk request with a distinct UOID.
+     */
+    private class BulkRequest
+    {
+        private final CellMessage _envelope;
+        private final long _ctime = System.currentTimeMillis();
+
+        /* The bulk request itself counts as outstanding until all embedded
+         * requests have been queued.
+         */
+        private final AtomicInteger _outstanding = new AtomicInteger(1);
+
+        BulkRequest(CellMessage envelope)
+        {
+            _envelope = envelope;
+        }
+
+        void add(PnfsMessage request)
+        {
+            CellMessage envelope = _envelope.clone();
+            envelope.setMessageObject(request);
+            envelope.setUOID(new UOID());
+            request.setReplyRequired(true);
+
+            _outstanding.incrementAndGet();
+            _bulkRequests.put(envelope.getUOID(), this);
+            try {
+                enqueue(envelope, request);
+            } catch (CacheException e) {
+                _bulkRequests.remove(envelope.getUOID());
+                request.setFailed(e.getRc(), e.getMessage());
+                complete();
+            }
+        }
+
+        void complete()
+        {
+            if (_outstanding.decrementAndGet() == 0) {
+                _gauges.update(PnfsBulkMessage.class, System.currentTimeMillis() - _ctime);
+                Message message = (Message) _envelope.getMessageObject();
+                if (message.getReplyRequired()) {
+                    _envelope.revertDirection();
+                    sendMessage(_envelope);
+                }
+            }
+        }
+    }
+
+    private void enqueue(CellMessage envelope, PnfsMessage message)
+        throws CacheException
     {
         PnfsId pnfsId = message.getPnfsId();
         String path = message.getPnfsPath();
@@ -1715,11 +2075,18 @@ public class PnfsManagerV3
 
     @VisibleForTesting
     void processPnfsMessage(CellMessage message, PnfsMessage pnfsMessage)
+    {
+        if (processSingleMessage(message, pnfsMessage)) {
+            postProcessMessage(message, pnfsMessage);
+        }
+    }
+
+    private boolean processSingleMessage(CellMessage message, PnfsMessage pnfsMessage)
     {
         long ctime = System.currentTimeMillis();
         try {
             if (!processMessageTransactionally(message, pnfsMessage)) {
-                return;
+                return false;
             }
         } catch (TransactionException e) {
             if (pnfsMessage.getReturnCode() == 0) {
@@ -1740,8 +2107,7 @@ public class PnfsManagerV3
         } else {
             _log.info("{} processed in {} ms", pnfsMessage.getClass(), duration);
         }
-
-        postProcessMessage(message, pnfsMessage);
+        return true;
     }
 
     @Transactional
@@ -1776,7 +2142,7 @@ public class PnfsManagerV3
         } else if (pnfsMessage instanceof PnfsGetParentMessage) {
             getParent((PnfsGetParentMessage) pnfsMessage);
         } else if (pnfsMessage instanceof PnfsListDirectoryMessage) {
-            listDirectory(message, (PnfsListDirectoryMessage) pnfsMessage);
+            return listDirectory(message, (PnfsListDirectoryMessage) pnfsMessage);
         } else if (pnfsMessage instanceof PnfsGetFileAttributes) {
             getFileAttributes((PnfsGetFileAttributes) pnfsMessage);
         } else if (pnfsMessage instanceof PnfsSetFileAttributes) {
@@ -1795,11 +2161,12 @@ public class PnfsManagerV3
     {
         if (message instanceof PoolFileFlushedMessage && message.getReturnCode() == 0) {
             postProcessFlush(envelope, (PoolFileFlushedMessage) message);
+        } else if (message instanceof PnfsSelectReadPoolMessage && message.getReturnCode() == 0) {
+            postProcessSelectReadPool(envelope, (PnfsSelectReadPoolMessage) message);
         } else if (_cacheModificationRelay != null && message.getReturnCode() == 0) {
             postProcessLocationModificationMessage(envelope, message);
         } else if (message.getReplyRequired()) {
-            envelope.revertDirection();
-            sendMessage(envelope);
+            sendReply(envelope);
         }
     }
 
@@ -1844,6 +2211,29 @@ public class PnfsManagerV3
                             });
     }
 
+    /**
+     * Forwards the pool selection request of a PnfsSelectReadPoolMessage to
+     * pool manager. The envelope is passed along such that pool manager
+     * replies directly to the requestor.
+     */
+    private void postProcessSelectReadPool(CellMessage envelope, PnfsSelectReadPoolMessage message)
+    {
+        try {
+            PoolMgrSelectReadPoolMsg request = message.toPoolManagerMessage();
+            message.getPoolManagerHandler().send(getCellEndpoint(), envelope, request);
+        } catch (CacheException e) {
+            message.setFailed(e.getRc(), e.getMessage());
+            envelope.revertDirection();
+            sendMessage(envelope);
+        } catch (RuntimeException e) {
+            _log.error("Failed to forward pool selection request: {}", e.toString());
+            message.setFailed(CacheException.UNEXPECTED_SYSTEM_EXCEPTION, e);
+            envelope.setMessageObject(message);
+            envelope.revertDirection();
+            sendMessage(envelope);
+        }
+    }
+
     public void processFlushMessage(PoolFileFlushedMessage pnfsMessage)
     {
         try {
@@ -1865,8 +2255,7 @@ public class PnfsManagerV3
                                                         PnfsMessage message)
     {
         if (message.getReplyRequired()) {
-            envelope.revertDirection();
-            sendMessage(envelope);
+            sendReply(envelope);
         }
 
         if (message instanceof PnfsAddCacheLocationMessage) {
@@ -2028,6 +2417,11 @@ public class PnfsManagerV3
 
     private boolean useEarlyDiscard(PnfsMessage message)
     {
+        if (message instanceof PnfsListDirectoryMessage &&
+                _listings.containsKey(((PnfsListDirectoryMessage) message).getUUID())) {
+            /* A resumed listing has already sent replies. */
+            return false;
+        }
         Class<? extends PnfsMessage> msgClass = message.getClass();
         for (Class<?> c: DISCARD_EARLY) {
             if (c.equals(msgClass)) {
@@ -2042,6 +2436,21 @@ public class PnfsManagerV3
         Message msg = (Message) envelope.getMessageObject();
         if (msg.getReplyRequired()) {
             msg.setFailed(CacheException.TIMEOUT, error);
+            sendReply(envelope);
+        }
+    }
+
+    /**
+     * Returns a processed request to its requestor. A request embedded in a
+     * PnfsBulkMessage instead counts towards the completion of the bulk
+     * request.
+     */
+    private void sendReply(CellMessage envelope)
+    {
+        BulkRequest bulk = _bulkRequests.remove(envelope.getUOID());
+        if (bulk != null) {
+            bulk.complete();
+        } else {
             envelope.revertDirection();
             sendMessage(envelope);
         }
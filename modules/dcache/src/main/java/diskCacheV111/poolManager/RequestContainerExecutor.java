@@ -28,21 +28,41 @@ import dmg.cells.nucleus.CellSetupProvider;
 import dmg.util.command.Argument;
 import dmg.util.command.Command;
 
+/**
+ * Executor for the request container state engines.
+ *
+ * State engines do not block, thus the number of threads is bounded and
+ * additional state engines are queued rather than triggering the creation
+ * of further threads.
+ */
 public class RequestContainerExecutor
         extends ThreadPoolExecutor
         implements CellCommandListener, CellSetupProvider
 {
     public RequestContainerExecutor()
     {
-        super(Runtime.getRuntime().availableProcessors(), Integer.MAX_VALUE,
+        super(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(),
               60L, TimeUnit.SECONDS,
-              new LinkedBlockingQueue<>(128));
+              new LinkedBlockingQueue<>());
+        allowCoreThreadTimeOut(true);
+    }
+
+    private synchronized void setThreadLimit(int count)
+    {
+        if (count > getMaximumPoolSize()) {
+            setMaximumPoolSize(count);
+            setCorePoolSize(count);
+        } else {
+            setCorePoolSize(count);
+            setMaximumPoolSize(count);
+        }
     }
 
     @AffectsSetup
     @Command(name = "rc set max threads", hint = "set request container thread limit",
-             description = "Sets the maximum number of requests allocated for " +
-                     "processing read requests.")
+             description = "Sets the maximum number of threads allocated for " +
+                     "processing read requests. Requests exceeding this limit " +
+                     "are queued. A value of 0 removes the limit.")
     class SetMaxThreadsCommand implements Callable<String>
     {
         @Argument
@@ -54,7 +74,7 @@ public class RequestContainerExecutor
             if (count == 0) {
                 count = Integer.MAX_VALUE;
             }
-            setMaximumPoolSize(count);
+            setThreadLimit(count);
             return "New max thread count : " + count;
         }
     }
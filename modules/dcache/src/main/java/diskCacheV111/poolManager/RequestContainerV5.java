@@ -20,10 +20,13 @@ import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -86,6 +89,12 @@ public class RequestContainerV5
 
     private static final String POOL_UNKNOWN_STRING  = "<unknown>" ;
 
+    /**
+     * Placeholder for null input to a state engine, as the input fifo
+     * does not accept null elements.
+     */
+    private static final Object WAKE_UP = new Object();
+
     private static final String STRING_NEVER      = "never" ;
     private static final String STRING_BESTEFFORT = "besteffort" ;
     private static final String STRING_NOTCHECKED = "notchecked" ;
@@ -95,8 +104,13 @@ public class RequestContainerV5
 
     private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("MM.dd HH:mm:ss");
 
-    private final Map<UOID, PoolRequestHandler>     _messageHash   = new HashMap<>() ;
-    private final Map<String, PoolRequestHandler>   _handlerHash   = new HashMap<>() ;
+    /*
+     * The request bookkeeping is kept in concurrent maps. Admin commands and
+     * periodic tasks iterate over weakly consistent views of these maps and
+     * thus never block request processing.
+     */
+    private final ConcurrentMap<UOID, PoolRequestHandler>     _messageHash   = new ConcurrentHashMap<>() ;
+    private final ConcurrentMap<String, PoolRequestHandler>   _handlerHash   = new ConcurrentHashMap<>() ;
 
     private CellStub _billing;
     private CellStub _poolStub;
@@ -121,7 +135,7 @@ public class RequestContainerV5
     private PnfsHandler        _pnfsHandler;
 
     private Executor _executor;
-    private final Map<PnfsId, CacheException>            _selections       = new HashMap<>() ;
+    private final ConcurrentMap<PnfsId, CacheException>  _selections       = new ConcurrentHashMap<>() ;
     private PartitionManager   _partitionManager ;
     private volatile long               _checkFilePingTimer = 10 * 60 * 1000 ;
     /** value in milliseconds */
@@ -219,16 +233,10 @@ public class RequestContainerV5
     public void messageArrived(CellMessage envelope, Object message)
     {
         UOID uoid = envelope.getLastUOID();
-        PoolRequestHandler handler;
-
-        synchronized (_messageHash) {
-            handler = _messageHash.remove(uoid);
-            if (handler == null) {
-                return;
-            }
+        PoolRequestHandler handler = _messageHash.remove(uoid);
+        if (handler != null) {
+            handler.mailForYou(message);
         }
-
-        handler.mailForYou(message);
     }
 
     @Override
@@ -238,14 +246,8 @@ public class RequestContainerV5
             try {
                 Thread.sleep(_ticketInterval) ;
 
-                List<PoolRequestHandler> list;
-                synchronized (_handlerHash) {
-                    list = new ArrayList<>(_handlerHash.values());
-                }
-                for (PoolRequestHandler handler: list) {
-                    if (handler != null) {
-                        handler.alive();
-                    }
+                for (PoolRequestHandler handler: _handlerHash.values()) {
+                    handler.alive();
                 }
             } catch (InterruptedException e) {
                 break;
@@ -262,18 +264,7 @@ public class RequestContainerV5
     public void poolStatusChanged(String poolName, int poolStatus) {
         _log.info("Restore Manager : got 'poolRestarted' for " + poolName);
         try {
-            List<PoolRequestHandler> list;
-            synchronized (_handlerHash) {
-                list = new ArrayList<>(_handlerHash.values());
-            }
-
-            for (PoolRequestHandler rph : list) {
-
-                if (rph == null) {
-                    continue;
-                }
-
-
+            for (PoolRequestHandler rph : _handlerHash.values()) {
                 switch( poolStatus ) {
                     case PoolStatusChangedMessage.UP:
                         /*
@@ -319,6 +310,8 @@ public class RequestContainerV5
        pw.println( "Allow stage on cost : "+(def._stageOnCost ? "on":"off") ) ;
        pw.println( "      Restore Limit : "+(_maxRestore<0?"unlimited":(String.valueOf(_maxRestore))));
        pw.println( "   Restore Exceeded : "+_restoreExceeded ) ;
+       pw.println( "   Pending Requests : "+_handlerHash.size() ) ;
+       pw.println( "   Pending Messages : "+_messageHash.size() ) ;
        if( _suspendIncoming ) {
            pw.println("   Suspend Incoming : on (not persistent)");
        }
@@ -378,30 +371,28 @@ public class RequestContainerV5
     public static final String hh_rc_select = "[<pnfsId> [<errorNumber> [<errorMessage>]] [-remove]]" ;
     public String ac_rc_select_$_0_3( Args args ){
 
-       synchronized( _selections ){
-          if( args.argc() == 0 ){
-             StringBuilder sb = new StringBuilder() ;
-             for( Map.Entry<PnfsId, CacheException > entry: _selections.entrySet() ){
-
-                sb.append(entry.getKey().toString()).
-                   append("  ").
-                   append(entry.getValue().toString()).
-                   append("\n");
-             }
-             return sb.toString() ;
-          }
-          boolean remove = args.hasOption("remove") ;
-          PnfsId  pnfsId = new PnfsId(args.argv(0));
+       if( args.argc() == 0 ){
+          StringBuilder sb = new StringBuilder() ;
+          for( Map.Entry<PnfsId, CacheException > entry: _selections.entrySet() ){
 
-          if( remove ){
-             _selections.remove( pnfsId ) ;
-             return "" ;
+             sb.append(entry.getKey().toString()).
+                append("  ").
+                append(entry.getValue().toString()).
+                append("\n");
           }
-          int    errorNumber  = args.argc() > 1 ? Integer.parseInt(args.argv(1)) : 1 ;
-          String errorMessage = args.argc() > 2 ? args.argv(2) : ("Failed-"+errorNumber);
+          return sb.toString() ;
+       }
+       boolean remove = args.hasOption("remove") ;
+       PnfsId  pnfsId = new PnfsId(args.argv(0));
 
-          _selections.put( pnfsId , new CacheException(errorNumber,errorMessage) ) ;
+       if( remove ){
+          _selections.remove( pnfsId ) ;
+          return "" ;
        }
+       int    errorNumber  = args.argc() > 1 ? Integer.parseInt(args.argv(1)) : 1 ;
+       String errorMessage = args.argc() > 2 ? args.argv(2) : ("Failed-"+errorNumber);
+
+       _selections.put( pnfsId , new CacheException(errorNumber,errorMessage) ) ;
        return "" ;
     }
     public static final String hh_rc_set_warning_path = " # obsolete";
@@ -502,28 +493,17 @@ public class RequestContainerV5
     {
        boolean forceAll = args.hasOption("force-all") ;
        if( args.argv(0).equals("*") ){
-          List<PoolRequestHandler> all;
-          //
-          // Remember : we are not allowed to call 'retry' as long
-          // as we  are holding the _handlerHash lock.
-          //
-          synchronized( _handlerHash ){
-             all = new ArrayList<>( _handlerHash.values() ) ;
-          }
-          for (PoolRequestHandler rph : all) {
+          for (PoolRequestHandler rph : _handlerHash.values()) {
               if( forceAll || ( rph._currentRc != 0 ) ) {
                   rph.retry();
               }
           }
        }else{
-          PoolRequestHandler rph;
-          synchronized( _handlerHash ){
-             rph = _handlerHash.get(args.argv(0));
-             if( rph == null ) {
-                 throw new
-                         IllegalArgumentException("Not found : " + args
-                         .argv(0));
-             }
+          PoolRequestHandler rph = _handlerHash.get(args.argv(0));
+          if( rph == null ) {
+              throw new
+                      IllegalArgumentException("Not found : " + args
+                      .argv(0));
           }
           rph.retry() ;
        }
@@ -535,14 +515,10 @@ public class RequestContainerV5
        int    errorNumber = args.argc() > 1 ? Integer.parseInt(args.argv(1)) : 1;
        String errorString = args.argc() > 2 ? args.argv(2) : "Operator Intervention" ;
 
-       PoolRequestHandler rph;
-
-       synchronized( _handlerHash ){
-          rph = _handlerHash.get(args.argv(0));
-          if( rph == null ) {
-              throw new
-                      IllegalArgumentException("Not found : " + args.argv(0));
-          }
+       PoolRequestHandler rph = _handlerHash.get(args.argv(0));
+       if( rph == null ) {
+           throw new
+                   IllegalArgumentException("Not found : " + args.argv(0));
        }
        rph.failed(errorNumber,errorString) ;
        return "" ;
@@ -556,16 +532,7 @@ public class RequestContainerV5
        boolean isLongListing = args.hasOption("l");
 
        if( !args.hasOption("w") ){
-          List<PoolRequestHandler>    allRequestHandlers;
-          synchronized( _handlerHash ){
-              allRequestHandlers = new ArrayList<>( _handlerHash.values() ) ;
-          }
-
-          for( PoolRequestHandler h : allRequestHandlers ){
-
-              if( h == null ) {
-                  continue;
-              }
+          for( PoolRequestHandler h : _handlerHash.values() ){
               String line = h.toString() ;
               if( ( pattern == null ) || pattern.matcher(line).matches() ) {
                   sb.append(line).append("\n");
@@ -579,20 +546,11 @@ public class RequestContainerV5
               }
           }
        }else{
-
-           Map<UOID, PoolRequestHandler>  allPendingRequestHandlers   = new HashMap<>() ;
-          synchronized(_messageHash){
-              allPendingRequestHandlers.putAll( _messageHash ) ;
-          }
-
-          for (Map.Entry<UOID, PoolRequestHandler> requestHandler : allPendingRequestHandlers.entrySet()) {
+          for (Map.Entry<UOID, PoolRequestHandler> requestHandler : _messageHash.entrySet()) {
 
                 UOID uoid = requestHandler.getKey();
                 PoolRequestHandler h = requestHandler.getValue();
 
-                if (h == null) {
-                    continue;
-                }
                 String line = uoid.toString() + " " + h.toString();
                 if ((pattern == null) || pattern.matcher(line).matches()) {
                     sb.append(line).append("\n");
@@ -605,17 +563,9 @@ public class RequestContainerV5
     public static final String hh_xrc_ls = " # lists pending requests (binary)" ;
     public Object ac_xrc_ls( Args args ){
 
-       List<PoolRequestHandler> all;
-       synchronized( _handlerHash ){
-          all = new ArrayList<>( _handlerHash.values() ) ;
-       }
-
        List<RestoreHandlerInfo>          list = new ArrayList<>() ;
 
-       for( PoolRequestHandler h: all  ){
-          if( h  == null ) {
-              continue;
-          }
+       for( PoolRequestHandler h: _handlerHash.values() ){
           list.add( h.getRestoreHandlerInfo() ) ;
        }
        return list.toArray( new RestoreHandlerInfo[list.size()] ) ;
@@ -656,12 +606,19 @@ public class RequestContainerV5
         String canonicalName = pnfsId +"@"+netName+"-"+protocolName+(enforceP2P?"-p2p":"")  ;
         //
         //
-        PoolRequestHandler handler;
         _log.info( "Adding request for : "+canonicalName ) ;
-        synchronized( _handlerHash ){
-           handler = _handlerHash.computeIfAbsent(canonicalName, n -> new PoolRequestHandler(pnfsId, n, allowedStates));
-           handler.addRequest(envelope) ;
-        }
+        /* The request is added while holding the lock of the map entry. This
+         * guarantees that the request is not added to a handler that is in the
+         * process of removing itself from _handlerHash.
+         */
+        PoolRequestHandler handler = _handlerHash.compute(canonicalName, (n, h) -> {
+            if (h == null) {
+                h = new PoolRequestHandler(pnfsId, n, allowedStates);
+            }
+            h.addRequest(envelope) ;
+            return h;
+        });
+        handler.startEngine();
     }
 
 
@@ -701,6 +658,10 @@ public class RequestContainerV5
     private class PoolRequestHandler  {
 
         protected final PnfsId       _pnfsId;
+        /**
+         * Request messages waiting for a reply. Guarded by the monitor of
+         * the list itself.
+         */
         protected final List<CellMessage>    _messages = new ArrayList<>() ;
         protected int _retryCounter;
         private final CDC _cdc = new CDC();
@@ -795,11 +756,15 @@ public class RequestContainerV5
         // at any time.
         //...........................................................
         //
-        // add request is assumed to be synchronized by a higher level.
+        // add request is assumed to be called while holding the lock of
+        // the _handlerHash entry of this handler. The caller has to start
+        // the state engine after releasing that lock.
         //
         public void addRequest( CellMessage message ){
 
-           _messages.add(message);
+           synchronized (_messages) {
+               _messages.add(message);
+           }
            _stagingDenied = false;
 
            long ttl = message.getTtl();
@@ -838,11 +803,11 @@ public class RequestContainerV5
            //
            //
            //
-           add(null) ;
+           _fifo.addFirst(WAKE_UP) ;
         }
 
         public List<CellMessage> getMessages() {
-            synchronized( _handlerHash ){
+            synchronized (_messages) {
                 return new ArrayList<>(_messages);
             }
         }
@@ -941,9 +906,7 @@ public class RequestContainerV5
         //
         private void clearSteering() {
             if (_waitingFor != null) {
-                synchronized (_messageHash) {
-                  _messageHash.remove(_waitingFor);
-                }
+                _messageHash.remove(_waitingFor);
                 _waitingFor = null;
             }
         }
@@ -959,18 +922,19 @@ public class RequestContainerV5
                     new CellPath(pool.address()),
                     new PoolFetchFileMessage(pool.name(), _fileAttributes)
             );
-            synchronized (_messageHash) {
-                if (_maxRestore >= 0 && _messageHash.size() >= _maxRestore) {
-                    return false;
-                }
-                if (_waitingFor != null) {
-                    _messageHash.remove(_waitingFor);
-                }
-                _waitingFor = cellMessage.getUOID();
-                _messageHash.put(_waitingFor, this);
-                sendMessage(cellMessage);
-                _status = "Staging " + LocalDateTime.now().format(DATE_TIME_FORMAT);
+            /* The restore limit is checked without holding a lock and may thus
+             * be exceeded by the number of concurrently running state engines.
+             */
+            if (_maxRestore >= 0 && _messageHash.size() >= _maxRestore) {
+                return false;
             }
+            if (_waitingFor != null) {
+                _messageHash.remove(_waitingFor);
+            }
+            _waitingFor = cellMessage.getUOID();
+            _messageHash.put(_waitingFor, this);
+            _status = "Staging " + LocalDateTime.now().format(DATE_TIME_FORMAT);
+            sendMessage(cellMessage);
             return true;
         }
 
@@ -984,15 +948,13 @@ public class RequestContainerV5
             CellMessage cellMessage =
                     new CellMessage(new CellPath(destPool.address()), pool2pool);
 
-            synchronized (_messageHash) {
-                if (_waitingFor != null) {
-                    _messageHash.remove(_waitingFor);
-                }
-                _waitingFor = cellMessage.getUOID();
-                _messageHash.put(_waitingFor, this);
-                sendMessage(cellMessage);
-                _status = "[P2P " + LocalDateTime.now().format(DATE_TIME_FORMAT) + "]";
+            if (_waitingFor != null) {
+                _messageHash.remove(_waitingFor);
             }
+            _waitingFor = cellMessage.getUOID();
+            _messageHash.put(_waitingFor, this);
+            _status = "[P2P " + LocalDateTime.now().format(DATE_TIME_FORMAT) + "]";
+            sendMessage(cellMessage);
         }
 
         /**
@@ -1003,10 +965,7 @@ public class RequestContainerV5
          */
         private void expireRequests()
         {
-            /* Access to _messages is controlled by a lock on
-             * _handlerHash.
-             */
-            synchronized (_handlerHash) {
+            synchronized (_messages) {
                 long now = System.currentTimeMillis();
                 _nextTtlTimeout = Long.MAX_VALUE;
 
@@ -1035,25 +994,27 @@ public class RequestContainerV5
             }
             //
 
-            Iterator<CellMessage> messages = _messages.iterator();
-            for (int i = 0; (i < count) && messages.hasNext(); i++) {
-                CellMessage m =  messages.next();
-                PoolMgrSelectReadPoolMsg rpm =
-                    (PoolMgrSelectReadPoolMsg) m.getMessageObject();
-                rpm.setContext(_retryCounter + 1, _stageCandidateHost, _stageCandidatePool);
-                if (_currentRc == 0) {
-                    rpm.setPoolName(_poolCandidate.name());
-                    rpm.setPoolAddress(_poolCandidate.info().getAddress());
-                    rpm.setAssumption(_poolCandidate.assumption());
-                    rpm.setSucceeded();
-                } else {
-                    rpm.setFailed(_currentRc, _currentRm);
+            synchronized (_messages) {
+                Iterator<CellMessage> messages = _messages.iterator();
+                for (int i = 0; (i < count) && messages.hasNext(); i++) {
+                    CellMessage m =  messages.next();
+                    PoolMgrSelectReadPoolMsg rpm =
+                        (PoolMgrSelectReadPoolMsg) m.getMessageObject();
+                    rpm.setContext(_retryCounter + 1, _stageCandidateHost, _stageCandidatePool);
+                    if (_currentRc == 0) {
+                        rpm.setPoolName(_poolCandidate.name());
+                        rpm.setPoolAddress(_poolCandidate.info().getAddress());
+                        rpm.setAssumption(_poolCandidate.assumption());
+                        rpm.setSucceeded();
+                    } else {
+                        rpm.setFailed(_currentRc, _currentRm);
+                    }
+                    m.revertDirection();
+                    sendMessage(m);
+                    messages.remove();
                 }
-                m.revertDirection();
-                sendMessage(m);
-                messages.remove();
+                return messages.hasNext();
             }
-            return messages.hasNext();
         }
         //
         // and the heart ...
@@ -1071,8 +1032,14 @@ public class RequestContainerV5
         private static final int CONTINUE        = 0 ;
         private static final int WAIT            = 1 ;
 
-        private final Deque<Object> _fifo              = new LinkedList<>() ;
-        private boolean    _stateEngineActive;
+        /**
+         * Input to the state engine. At most one thread runs the state engine
+         * of a handler at any time; _stateEngineActive is set by the thread
+         * that schedules the engine and cleared by the engine once the fifo
+         * has been drained.
+         */
+        private final Deque<Object> _fifo              = new ConcurrentLinkedDeque<>() ;
+        private final AtomicBoolean _stateEngineActive = new AtomicBoolean();
         private boolean    _forceContinue;
         private boolean    _overwriteCost;
 
@@ -1081,18 +1048,15 @@ public class RequestContainerV5
            public void run(){
               try (CDC ignored = _cdc.restore()) {
                  stateLoop() ;
-              }finally{
-                 synchronized( _fifo ){
-                   _stateEngineActive = false ;
-                 }
+              } catch (RuntimeException | Error e) {
+                 _stateEngineActive.set(false);
+                 throw e;
               }
            }
 
            @Override
            public void runFailed(){
-              synchronized( _fifo ){
-                   _stateEngineActive = false ;
-              }
+              _stateEngineActive.set(false);
            }
 
            @Override
@@ -1101,20 +1065,20 @@ public class RequestContainerV5
            }
         }
         private void add( Object obj ){
-           synchronized( _fifo ){
-               _log.info( "Adding Object : "+obj ) ;
-               _fifo.addFirst(obj) ;
-               if( _stateEngineActive ) {
-                   return;
-               }
-               _log.info( "Starting Engine" ) ;
-               _stateEngineActive = true ;
-               try {
-                   _executor.execute(new FireAndForgetTask(new RunEngine()));
-               } catch (RuntimeException e) {
-                   _stateEngineActive = false;
-                   throw e;
-               }
+           _log.info( "Adding Object : "+obj ) ;
+           _fifo.addFirst(obj == null ? WAKE_UP : obj) ;
+           startEngine();
+        }
+        private void startEngine(){
+           if( _fifo.isEmpty() || !_stateEngineActive.compareAndSet(false, true) ) {
+               return;
+           }
+           _log.info( "Starting Engine" ) ;
+           try {
+               _executor.execute(new FireAndForgetTask(new RunEngine()));
+           } catch (RuntimeException e) {
+               _stateEngineActive.set(false);
+               throw e;
            }
         }
         private void stateLoop(){
@@ -1126,12 +1090,21 @@ public class RequestContainerV5
 
               if( ! _forceContinue ){
 
-                 synchronized( _fifo ){
-                    if(_fifo.isEmpty()){
-                       _stateEngineActive = false ;
+                 inputObject = _fifo.pollLast() ;
+                 if( inputObject == null ){
+                    _stateEngineActive.set(false);
+                    /* An object may have been added after the poll, but
+                     * before the flag was cleared. The thread adding it did
+                     * not start the engine, so we continue unless somebody
+                     * else has started the engine in the meantime.
+                     */
+                    if( _fifo.isEmpty() || !_stateEngineActive.compareAndSet(false, true) ){
                        return ;
                     }
-                    inputObject = _fifo.removeLast() ;
+                    continue ;
+                 }
+                 if( inputObject == WAKE_UP ){
+                    inputObject = null ;
                  }
               }else{
                  inputObject = null ;
@@ -1157,6 +1130,7 @@ public class RequestContainerV5
                   _log.error("Unexpected Exception in state loop for " + _pnfsId, e);
               }
            }
+           _stateEngineActive.set(false);
         }
 
         private boolean canStage()
@@ -1171,7 +1145,7 @@ public class RequestContainerV5
             /* Staging is allowed if just one of the requests has
              * permission to stage.
              */
-            for (CellMessage envelope: _messages) {
+            for (CellMessage envelope: getMessages()) {
                 try {
                     PoolMgrSelectReadPoolMsg msg =
                         (PoolMgrSelectReadPoolMsg) envelope.getMessageObject();
@@ -1343,15 +1317,11 @@ public class RequestContainerV5
 
               case ST_INIT :
                  _log.debug( "stateEngine: case ST_INIT");
-                 synchronized( _selections ){
-
-                    CacheException ce = _selections.get(_pnfsId) ;
-                    if( ce != null ){
-                       setError(ce.getRc(),ce.getMessage());
-                       nextStep(RequestState.ST_DONE , CONTINUE ) ;
-                       return ;
-                    }
-
+                 CacheException ce = _selections.get(_pnfsId) ;
+                 if( ce != null ){
+                    setError(ce.getRc(),ce.getMessage());
+                    nextStep(RequestState.ST_DONE , CONTINUE ) ;
+                    return ;
                  }
 
 
@@ -1661,12 +1631,10 @@ public class RequestContainerV5
 
                     clearSteering();
                     //
-                    // it is essential that we are not within any other
-                    // lock when trying to get the handlerHash lock.
+                    // once removed, no further requests are added to this
+                    // handler; see messageArrived.
                     //
-                    synchronized (_handlerHash) {
-                        _handlerHash.remove(_name);
-                    }
+                    _handlerHash.remove(_name, this);
                     while (answerRequest(MAX_REQUEST_CLUMPING)) {
                         setError(CacheException.OUT_OF_DATE,
                                  "Request clumping limit reached");
@@ -2087,13 +2055,9 @@ public class RequestContainerV5
                         long now = System.currentTimeMillis();
 
                         // Determine which pools to query
-                        List<PoolRequestHandler> list;
-                        synchronized (_handlerHash) {
-                            list = new ArrayList<>(_handlerHash.values());
-                        }
                         Multimap<CellAddressCore, PoolRequestHandler> p2pRequests = ArrayListMultimap.create();
                         Multimap<CellAddressCore, PoolRequestHandler> stageRequests = ArrayListMultimap.create();
-                        for (PoolRequestHandler handler : list) {
+                        for (PoolRequestHandler handler : _handlerHash.values()) {
                             if (handler._started < now - _checkFilePingTimer) {
                                 SelectedPool pool;
                                 switch (handler._state) {
@@ -42,6 +42,19 @@ public class CheckStagePermission {
         _isEnabled = true;
     }
 
+    /**
+     * Check whether staging is allowed for a particular subject regardless of
+     * the object to stage.
+     *
+     * @param subject The subject
+     * @return true if the subject is allowed to stage any file, false if
+     * the decision depends on the file
+     */
+    public boolean canPerformStaging(Subject subject)
+    {
+        return !_isEnabled || Subjects.isRoot(subject);
+    }
+
     /**
      * Check whether staging is allowed for a particular subject on a particular object.
      *
@@ -53,7 +66,7 @@ public class CheckStagePermission {
     public boolean canPerformStaging(Subject subject, FileAttributes fileAttributes)
         throws PatternSyntaxException, IOException
     {
-        if (!_isEnabled || Subjects.isRoot(subject)) {
+        if (canPerformStaging(subject)) {
             return true;
         }
 
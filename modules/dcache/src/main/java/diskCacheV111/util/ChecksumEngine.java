@@ -0,0 +1,243 @@
+package diskCacheV111.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.util.BoundedCachedExecutor;
+import org.dcache.util.Checksum;
+
+import static com.google.common.base.Throwables.propagateIfPossible;
+import static org.dcache.util.ByteUnit.BYTES;
+import static org.dcache.util.ByteUnit.MiB;
+
+/**
+ * Computes checksums of several types in a single pass over a file.
+ *
+ * The file is read into two direct buffers in turn. While the digests
+ * are updated from one buffer, the next block of the file is read into
+ * the other buffer by a readahead thread, thus overlapping disk I/O with
+ * checksum computation.
+ */
+class ChecksumEngine
+{
+    private static final Logger _log =
+        LoggerFactory.getLogger(ChecksumEngine.class);
+
+    private static final long MILLISECONDS_IN_SECOND = 1000;
+
+    private static final int BUFFER_SIZE = MiB.toBytes(1);
+
+    private static final int MAX_READAHEAD_THREADS = 16;
+
+    private static final int MAX_POOLED_BUFFERS = 2 * MAX_READAHEAD_THREADS;
+
+    private static final ExecutorService READAHEAD =
+            new BoundedCachedExecutor(new ThreadFactoryBuilder()
+                                              .setNameFormat("checksum-readahead-%d")
+                                              .setDaemon(true)
+                                              .build(),
+                                      MAX_READAHEAD_THREADS);
+
+    private static final BlockingQueue<ByteBuffer> BUFFERS =
+            new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    private ChecksumEngine()
+    {
+    }
+
+    /**
+     * Compute checksums for a file with a limit on how many bytes/second to
+     * checksum.
+     *
+     * @param channel           the file to compute checksums for.
+     * @param factories         factories of the checksum types to compute.
+     * @param throughputLimit   a limit on how many bytes/second that may be
+     *                          checksummed.
+     * @return                  the computed checksums, in the order of
+     *                          <code>factories</code>.
+     */
+    static List<Checksum> computeChecksums(RepositoryChannel channel,
+                                           List<ChecksumFactory> factories,
+                                           double throughputLimit)
+            throws IOException, InterruptedException
+    {
+        long start = System.currentTimeMillis();
+        List<MessageDigest> digests = new ArrayList<>(factories.size());
+        for (ChecksumFactory factory : factories) {
+            digests.add(factory.create());
+        }
+
+        ByteBuffer[] buffers = { acquireBuffer(), acquireBuffer() };
+        int current = 0;
+        long pos = 0L;
+        Future<Integer> read = readahead(channel, buffers[current], pos);
+        try {
+            int rc;
+            while ((rc = await(read)) > 0) {
+                ByteBuffer buffer = buffers[current];
+                long adjust = throughputAdjustment(throughputLimit, pos + rc,
+                                                   System.currentTimeMillis() - start);
+                if (adjust > 0) {
+                    Thread.sleep(adjust);
+                }
+
+                current = 1 - current;
+                read = readahead(channel, buffers[current], pos + rc);
+
+                buffer.flip();
+                for (MessageDigest digest : digests) {
+                    buffer.rewind();
+                    digest.update(buffer);
+                }
+                buffer.clear();
+                pos += rc;
+
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            /* Don't leave the readahead thread writing to a buffer or reading
+             * from a channel the caller is about to close.
+             */
+            try {
+                Uninterruptibles.getUninterruptibly(read);
+            } catch (ExecutionException ignored) {
+            }
+            releaseBuffer(buffers[0]);
+            releaseBuffer(buffers[1]);
+        }
+
+        List<Checksum> checksums = new ArrayList<>(factories.size());
+        for (int i = 0; i < factories.size(); i++) {
+            checksums.add(factories.get(i).create(digests.get(i).digest()));
+        }
+
+        _log.debug("Computed checksums, length {}, checksums {} in {} ms{}", pos, checksums,
+                   System.currentTimeMillis() - start, pos == 0 ? ""
+                            : ", throughput " +
+                              throughputAsString(pos, System.currentTimeMillis() - start) +
+                              " MiB/s" +
+                              (Double.isInfinite(throughputLimit)
+                               ? ""
+                               : " (limit " + BYTES.toMiB(throughputLimit) + " MiB/s)"));
+        return checksums;
+    }
+
+    /**
+     * Returns a pooled buffer, or a new buffer if the pool is empty.
+     */
+    private static ByteBuffer acquireBuffer()
+    {
+        ByteBuffer buffer = BUFFERS.poll();
+        return (buffer != null) ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer is left to the garbage
+     * collector if the pool is full.
+     */
+    private static void releaseBuffer(ByteBuffer buffer)
+    {
+        buffer.clear();
+        BUFFERS.offer(buffer);
+    }
+
+    /**
+     * Reads the block of the file starting at <code>pos</code> into
+     * <code>buffer</code> in the background.
+     *
+     * @return future of the number of bytes read, 0 at the end of the file
+     */
+    private static Future<Integer> readahead(RepositoryChannel channel, ByteBuffer buffer, long pos)
+    {
+        return READAHEAD.submit(() -> {
+            int total = 0;
+            while (buffer.hasRemaining()) {
+                int rc = channel.read(buffer, pos + total);
+                if (rc <= 0) {
+                    break;
+                }
+                total += rc;
+            }
+            return total;
+        });
+    }
+
+    private static int await(Future<Integer> read) throws IOException, InterruptedException
+    {
+        try {
+            return read.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            propagateIfPossible(cause, IOException.class);
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Compute how much to sleep for current throughput not to exceed
+     * <code>throughputLimit</code> given how many bytes read/written for a
+     * certain amount of time.
+     * <h3>Formula</h3>
+     * <p><code>throughputLimit = numBytes/(elapsedTime + adjust)</code>
+     * <p>gives:<p>
+     * <code>adjust = numBytes/throughputLimit - elapsedTime</code>
+     *
+     * @param throughputLimit  max throughput (bytes/second). Must not be <= 0.
+     * @param numBytes         no. of bytes read/written for <code>elapsedTime
+     *                         </code> milliseconds. If 0, adjust will be 0.
+     * @param elapsedTime      elapsed time (milliseconds) when <code>numBytes
+     *                         </code> bytes were read/written.
+     * @return                 how much to sleep (milliseconds) for throughput
+     *                         not to exceed <code>throughputLimit</code>.
+     *                         Guaranteed to be >= 0.
+     */
+    private static long throughputAdjustment(double throughputLimit, long numBytes,
+                                             long elapsedTime)
+    {
+        assert throughputLimit > 0 && numBytes >= 0 && elapsedTime >= 0;
+        /**
+         * Adjust is < 0 when numBytes/elapsedTime < throughputLimit
+         * (-elapsedTime when throughputLimit is ∞). Adjust is 0 when numBytes
+         * is 0.
+         */
+        long desiredDuration = (long) Math.ceil(MILLISECONDS_IN_SECOND *
+                                                (numBytes / throughputLimit));
+        long adjust = desiredDuration - elapsedTime;
+        return Math.max(0, adjust);
+    }
+
+    /**
+     * Return the string representation of throughput given the amount of bytes
+     * read/written over a certain time period.
+     * @param numBytes  no. of bytes read/written for <code>millis</code>
+     *                  milliseconds.
+     * @param millis    elapsed time (milliseconds) when <code>numBytes</code>
+     *                  bytes were read/written. If 0 increment by 1 to avoid
+     *                  printing Infinity or NaN.
+     * @return          throughput in (MiB/s) as the string representation of a
+     *                  floating point number. Neither NaN or Infinity will be
+     *                  printed due to the incrementing of <code>millis</code>
+     *                  to 1 if it has a value of 0.
+     */
+    private static String throughputAsString(long numBytes, long millis)
+    {
+        return Double.toString(BYTES.toMiB((double) numBytes)
+                        / (( millis == 0 ? 1 : millis ) / (double) MILLISECONDS_IN_SECOND));
+    }
+}
@@ -131,6 +131,12 @@ public class PnfsHandler implements CellMessageSender
      * Sends a PnfsMessage to PnfsManager.
      */
     public void send(PnfsMessage msg) {
+        prepare(msg);
+        _cellStub.notify(msg);
+    }
+
+    private void prepare(PnfsMessage msg)
+    {
         if (_cellStub == null) {
             throw new IllegalStateException("Missing endpoint");
         }
@@ -142,8 +148,6 @@ public class PnfsHandler implements CellMessageSender
         if (_restriction != null) {
             msg.setRestriction(_restriction);
         }
-
-        _cellStub.notify(msg);
     }
 
     /**
@@ -157,6 +161,19 @@ public class PnfsHandler implements CellMessageSender
         send(msg);
     }
 
+    /**
+     * Sends a PnfsMessage notification to a particular PnfsManager
+     * instance, such as the one that sent a reply. No reply is expected
+     * for a notification and no failure is reported if the message
+     * could not be delivered.
+     */
+    public void notify(CellPath destination, PnfsMessage msg)
+    {
+        msg.setReplyRequired(false);
+        prepare(msg);
+        _cellStub.notify(destination, msg);
+    }
+
    public void clearCacheLocation(PnfsId id)
    {
        clearCacheLocation(id, false);
@@ -247,6 +264,25 @@ public class PnfsHandler implements CellMessageSender
         return _cellStub.send(msg, timeout);
     }
 
+    /**
+     * Sends a message to the pnfs manager and returns a promise of a future reply
+     * of the given type. Used for requests that pnfs manager forwards to other
+     * services, in which case the reply may be of a different type than the request.
+     */
+    public <T> ListenableFuture<T> requestAsync(PnfsMessage msg, Class<T> type, long timeout)
+    {
+        checkState(_cellStub != null, "Missing endpoint");
+
+        msg.setReplyRequired(true);
+        if (_subject != null) {
+            msg.setSubject(_subject);
+        }
+        if (_restriction != null) {
+            msg.setRestriction(_restriction);
+        }
+        return _cellStub.send(msg, type, timeout);
+    }
+
     public PnfsCreateEntryMessage createPnfsDirectory(String path)
         throws CacheException
     {
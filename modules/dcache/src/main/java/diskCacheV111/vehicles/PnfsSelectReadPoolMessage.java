@@ -0,0 +1,155 @@
+package diskCacheV111.vehicles;
+
+import javax.security.auth.Subject;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import diskCacheV111.poolManager.RequestContainerV5;
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.FileIsNewCacheException;
+import diskCacheV111.util.NotFileCacheException;
+import diskCacheV111.util.PnfsId;
+
+import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.FileType;
+import org.dcache.poolmanager.SerializablePoolManagerHandler;
+import org.dcache.vehicles.FileAttributes;
+import org.dcache.vehicles.PnfsGetFileAttributes;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.dcache.namespace.FileAttribute.TYPE;
+
+/**
+ * Combined request to read the name space entry of a file and to select a
+ * read pool for it.
+ *
+ * PnfsManager processes the message like a PnfsGetFileAttributes request.
+ * If successful, it does not reply to the requestor, but forwards a
+ * PoolMgrSelectReadPoolMsg carrying the resolved attributes to pool manager
+ * through the embedded pool manager handler. The reply from pool manager is
+ * delivered directly to the requestor. Thus the requestor receives either a
+ * PoolMgrSelectReadPoolMsg or a failed PnfsSelectReadPoolMessage.
+ *
+ * Only files that are not new can be selected for reading.
+ */
+public class PnfsSelectReadPoolMessage extends PnfsGetFileAttributes
+{
+    private static final long serialVersionUID = 4617024561580632163L;
+
+    private final ProtocolInfo _protocolInfo;
+    private final PoolMgrSelectReadPoolMsg.Context _context;
+    private final EnumSet<RequestContainerV5.RequestState> _allowedStates;
+    private final SerializablePoolManagerHandler _poolManager;
+
+    private long _transferId;
+    private Subject _transferSubject;
+    private String _transferPath;
+    private String _ioQueueName;
+
+    public PnfsSelectReadPoolMessage(PnfsId pnfsId, Set<FileAttribute> attributes,
+                                     ProtocolInfo protocolInfo,
+                                     PoolMgrSelectReadPoolMsg.Context context,
+                                     EnumSet<RequestContainerV5.RequestState> allowedStates,
+                                     SerializablePoolManagerHandler poolManager)
+    {
+        super(pnfsId, withRequiredAttributes(attributes));
+        _protocolInfo = checkNotNull(protocolInfo);
+        _context = context;
+        _allowedStates = checkNotNull(allowedStates);
+        _poolManager = checkNotNull(poolManager);
+    }
+
+    public PnfsSelectReadPoolMessage(String path, Set<FileAttribute> attributes,
+                                     ProtocolInfo protocolInfo,
+                                     PoolMgrSelectReadPoolMsg.Context context,
+                                     EnumSet<RequestContainerV5.RequestState> allowedStates,
+                                     SerializablePoolManagerHandler poolManager)
+    {
+        super(path, withRequiredAttributes(attributes));
+        _protocolInfo = checkNotNull(protocolInfo);
+        _context = context;
+        _allowedStates = checkNotNull(allowedStates);
+        _poolManager = checkNotNull(poolManager);
+    }
+
+    private static Set<FileAttribute> withRequiredAttributes(Set<FileAttribute> attributes)
+    {
+        EnumSet<FileAttribute> required = PoolMgrSelectReadPoolMsg.getRequiredAttributes();
+        required.add(TYPE);
+        required.addAll(attributes);
+        return required;
+    }
+
+    public SerializablePoolManagerHandler getPoolManagerHandler()
+    {
+        return _poolManager;
+    }
+
+    /**
+     * Sets the ID of the transfer. Used as the message ID of the pool
+     * selection request.
+     */
+    public void setTransferId(long id)
+    {
+        _transferId = id;
+    }
+
+    /**
+     * Sets the subject of the transfer. Used as the subject of the pool
+     * selection request; the subject of this message is used for the name
+     * space lookup.
+     */
+    public void setTransferSubject(Subject subject)
+    {
+        _transferSubject = subject;
+    }
+
+    public void setTransferPath(String path)
+    {
+        _transferPath = path;
+    }
+
+    public void setIoQueueName(String ioQueueName)
+    {
+        _ioQueueName = ioQueueName;
+    }
+
+    /**
+     * Returns the pool selection request for the file attributes of this
+     * message.
+     *
+     * @throws NotFileCacheException if the file is not a regular file
+     * @throws FileIsNewCacheException if the file is still being written
+     */
+    public PoolMgrSelectReadPoolMsg toPoolManagerMessage() throws CacheException
+    {
+        FileAttributes attributes = getFileAttributes();
+        FileType type = attributes.getFileType();
+        if (type == FileType.DIR || type == FileType.SPECIAL) {
+            throw new NotFileCacheException("Not a regular file");
+        }
+        if (attributes.getStorageInfo().isCreatedOnly()) {
+            throw new FileIsNewCacheException();
+        }
+
+        PoolMgrSelectReadPoolMsg request =
+                new PoolMgrSelectReadPoolMsg(attributes, _protocolInfo, _context, _allowedStates);
+        request.setId(_transferId);
+        request.setSubject(_transferSubject == null ? getSubject() : _transferSubject);
+        String billingPath = attributes.getStorageInfo().getKey("path");
+        request.setBillingPath(billingPath != null ? billingPath : _transferPath);
+        request.setTransferPath(_transferPath);
+        request.setIoQueueName(_ioQueueName);
+        request.setReplyRequired(true);
+        return request;
+    }
+
+    @Override
+    public boolean fold(Message message)
+    {
+        /* Folding would answer the requestor without selecting a pool.
+         */
+        return false;
+    }
+}
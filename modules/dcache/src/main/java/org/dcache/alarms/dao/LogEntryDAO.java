@@ -59,6 +59,8 @@ documents or software obtained from this server.
  */
 package org.dcache.alarms.dao;
 
+import java.util.Collection;
+
 import org.dcache.alarms.LogEntry;
 
 /**
@@ -68,9 +70,7 @@ import org.dcache.alarms.LogEntry;
  */
 public interface LogEntryDAO {
     /**
-     * As it is unlikely that the log service will be bombarded by error
-     * messages, a collection/batch method is not really necessary; single-insert
-     * should not create a bottleneck.<br>
+     * Stores a single entry.<br>
      * <br>
      *
      * It is the responsibility of the implementation to handle duplicates; in
@@ -79,6 +79,17 @@ public interface LogEntryDAO {
      */
     void put(LogEntry alarm);
 
+    /**
+     * Stores several entries at once.  Each entry stands for as many
+     * occurrences as its received field indicates; for an existing entry,
+     * the received field of the stored entry is incremented by that amount.
+     * On return, the received field of each entry holds the stored value.<br>
+     * <br>
+     *
+     * The keys of the entries must be distinct.
+     */
+    void put(Collection<LogEntry> alarms);
+
     void initialize();
 
     void shutdown();
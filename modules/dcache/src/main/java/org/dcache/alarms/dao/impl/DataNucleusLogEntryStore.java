@@ -59,16 +59,19 @@ documents or software obtained from this server.
  */
 package org.dcache.alarms.dao.impl;
 
+import com.google.common.collect.Iterables;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.jdo.FetchPlan;
 import javax.jdo.PersistenceManager;
 import javax.jdo.PersistenceManagerFactory;
-import javax.jdo.Query;
 import javax.jdo.Transaction;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.dcache.alarms.LogEntry;
@@ -86,6 +89,11 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * @author arossi
  */
 public final class DataNucleusLogEntryStore implements LogEntryDAO, Runnable {
+    /**
+     * Maximum number of alarms looked up and stored in one transaction.
+     */
+    private static final int MAX_BATCH_SIZE = 500;
+
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
     private final PersistenceManagerFactory pmf;
@@ -118,68 +126,76 @@ public final class DataNucleusLogEntryStore implements LogEntryDAO, Runnable {
 
     @Override
     public void put(LogEntry entry) {
+        put(Collections.singletonList(entry));
+    }
+
+    @Override
+    public void put(Collection<LogEntry> entries) {
+        for (List<LogEntry> batch : Iterables.partition(entries, MAX_BATCH_SIZE)) {
+            putBatch(batch);
+        }
+    }
+
+    private void putBatch(Collection<LogEntry> entries) {
         PersistenceManager insertManager = pmf.getPersistenceManager();
         try {
             Transaction tx = insertManager.currentTransaction();
             tx.begin();
             try {
-                Query query = insertManager.newQuery(LogEntry.class);
-                query.setFilter("key==k");
-                query.declareParameters("java.lang.String k");
-                query.addExtension("datanucleus.query.resultCacheType", "none");
-                query.getFetchPlan().setFetchSize(FetchPlan.FETCH_SIZE_OPTIMAL);
-
-                Collection<LogEntry> dup
-                        = (Collection<LogEntry>) query.executeWithArray(entry.getKey());
-                logger.trace("duplicate? {}", dup);
-
-                if (dup != null && !dup.isEmpty()) {
-                    if (dup.size() > 1) {
+                AlarmDAOFilter filter = AlarmJDOUtils.getIdFilter(entries);
+                Map<String, LogEntry> originals = new HashMap<>();
+                for (LogEntry original : AlarmJDOUtils.execute(insertManager, filter)) {
+                    if (originals.put(original.getKey(), original) != null) {
                         throw new RuntimeException
                                 ("data store inconsistency!"
                                  + " more than one alarm with the same id: "
-                                 + entry.getKey());
+                                 + original.getKey());
                     }
+                }
+                logger.trace("duplicates? {}", originals.keySet());
+
+                for (LogEntry entry : entries) {
+                    LogEntry original = originals.get(entry.getKey());
+                    if (original != null) {
+                        entry.setLastUpdate(original.getLastUpdate());
+
+                        int received = original.getReceived();
+
+                        if (original.isClosed()) {
+                            /*
+                             * this needs to be done or else newly arriving instances will
+                             * not be tracked if this type has been closed previously
+                             */
+                            original.setClosed(false);
+
+                            /*
+                             * Treat the alarm as a new instance by restarting
+                             * its history.  This guarantees a new alert will
+                             * be sent and plugins called as if it were a
+                             * first occurrence.
+                             */
+                            received = entry.getReceived();
+                        } else {
+                            received += entry.getReceived();
+                        }
+
+                        original.setReceived(received);
+                        entry.setReceived(received);
 
-                    LogEntry original = dup.iterator().next();
-                    entry.setLastUpdate(original.getLastUpdate());
-
-                    int received = original.getReceived();
-
-                    if (original.isClosed()) {
                         /*
-                         * this needs to be done or else newly arriving instances will
-                         * not be tracked if this type has been closed previously
+                         * original is not detached so it will be updated on commit
                          */
-                        original.setClosed(false);
-
+                    } else {
                         /*
-                         * Treat the alarm as a new instance by restarting
-                         * its history.  This guarantees a new alert will
-                         * be sent and plugins called as if it were a
-                         * first occurrence.
+                         * first instance of this alarm
                          */
-                        received = 1;
-                    } else {
-                        ++received;
+                        logger.trace("makePersistent alarm, key={}", entry.getKey());
+                        insertManager.makePersistent(entry);
                     }
-
-                    original.setReceived(received);
-                    entry.setReceived(received);
-
-                    /*
-                     * original is not detached so it will be updated on commit
-                     */
-                } else {
-                    /*
-                     * first instance of this alarm
-                     */
-                    logger.trace("makePersistent alarm, key={}", entry.getKey());
-                    insertManager.makePersistent(entry);
-                    logger.trace("committing");
                 }
+                logger.trace("committing");
                 tx.commit();
-                logger.debug("finished putting alarm, key={}", entry.getKey());
+                logger.debug("finished putting {} alarms", entries.size());
             } finally {
                 AlarmJDOUtils.rollbackIfActive(tx);
             }
@@ -59,6 +59,8 @@ documents or software obtained from this server.
  */
 package org.dcache.alarms.dao.impl;
 
+import java.util.Collection;
+
 import org.dcache.alarms.LogEntry;
 import org.dcache.alarms.dao.LogEntryDAO;
 
@@ -75,6 +77,10 @@ public class NOPLogEntryStore implements LogEntryDAO {
         // NOP
     }
 
+    public void put(Collection<LogEntry> alarms) {
+        // NOP
+    }
+
     public void initialize() {
         // NOP
     }
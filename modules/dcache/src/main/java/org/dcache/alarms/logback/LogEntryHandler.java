@@ -67,6 +67,7 @@ package org.dcache.alarms.logback;
   import ch.qos.logback.core.spi.CyclicBufferTracker;
   import com.google.common.base.Preconditions;
   import com.google.common.base.Strings;
+  import com.google.common.util.concurrent.ThreadFactoryBuilder;
   import org.slf4j.Logger;
   import org.slf4j.LoggerFactory;
   import org.springframework.beans.BeansException;
@@ -77,9 +78,16 @@ package org.dcache.alarms.logback;
   import java.util.ArrayList;
   import java.util.Collection;
   import java.util.Collections;
+  import java.util.List;
+  import java.util.Map;
   import java.util.ServiceLoader;
   import java.util.concurrent.AbstractExecutorService;
+  import java.util.concurrent.ConcurrentHashMap;
+  import java.util.concurrent.ConcurrentMap;
+  import java.util.concurrent.Executors;
   import java.util.concurrent.RejectedExecutionException;
+  import java.util.concurrent.ScheduledExecutorService;
+  import java.util.concurrent.TimeUnit;
   import java.util.concurrent.atomic.AtomicBoolean;
 
   import org.dcache.alarms.AlarmMarkerFactory;
@@ -102,6 +110,12 @@ package org.dcache.alarms.logback;
  * <p>The logic is encapsulated by a task run by an executor service.
  *    It is recommended that the queue be bounded (upon
  *    a rejected execution the event is discarded).</p>
+ *
+ * <p>Duplicates are coalesced by alarm key.  The first occurrence
+ *    of an alarm within a coalescing period is stored and post-processed
+ *    immediately.  Further occurrences within the same period are only
+ *    counted; at the end of the period, the counts of all alarms are
+ *    added to the store in a single batch.</p>
  */
 public class LogEntryHandler implements ApplicationContextAware {
     private static final Logger LOGGER
@@ -109,6 +123,11 @@ public class LogEntryHandler implements ApplicationContextAware {
 
     private static final String MDC_TYPE = "type";
 
+    /**
+     * Seconds to wait for pending alarms to be stored on stop.
+     */
+    private static final long TERMINATION_TIMEOUT = 10;
+
     /**
      * Future runnable worker task.
      */
@@ -131,32 +150,80 @@ public class LogEntryHandler implements ApplicationContextAware {
 
             LogEntry entry = converter.createEntryFromEvent(event);
 
-            int priority = priorityMap.getPriority(
-                            entry.getType()).ordinal();
             event.getMDCPropertyMap().put(MDC_TYPE, entry.getType());
 
+            /*
+             * Only the first occurrence within the coalescing period
+             * is stored right away; further occurrences are counted
+             * and stored in a batch by flush().
+             */
+            Occurrences current = new Occurrences(event);
+            Occurrences existing;
+            while ((existing = occurrences.putIfAbsent(entry.getKey(), current)) != null) {
+                if (existing.addDuplicate()) {
+                    return;
+                }
+                occurrences.remove(entry.getKey(), existing);
+            }
+
            /*
             * Store the alarm.
             *
             * If this is a duplicate, the store will increment the received field.
             */
-            store.put(entry);
+            try {
+                store.put(entry);
+            } finally {
+                current.setStored();
+            }
 
             /*
              * Post-process if this is a new alarm.
              */
             if (entry.getReceived() == 1) {
-                if (emailEnabled && priority >= emailThreshold.ordinal()) {
-                    emailAppender.doAppend(event);
-                }
+                postProcess(entry, event);
+            }
+        }
+    }
 
-                for (LogEntryListenerFactory factory : listenerFactories) {
-                    Collection<LogEntryListener> listeners
-                                    = factory.getConfiguredListeners();
-                    listeners.stream().forEach(
-                                    (l) -> l.handleLogEntry(entry));
-                }
+    /**
+     * Occurrences of an alarm within the current coalescing period.
+     */
+    private static class Occurrences {
+        private final ILoggingEvent first;
+        private int duplicates;
+        private boolean isStored;
+        private boolean isFlushed;
+
+        Occurrences(ILoggingEvent first) {
+            this.first = first;
+        }
+
+        /**
+         * @return false if the occurrences have already been flushed.
+         */
+        synchronized boolean addDuplicate() {
+            if (isFlushed) {
+                return false;
+            }
+            duplicates++;
+            return true;
+        }
+
+        synchronized void setStored() {
+            isStored = true;
+        }
+
+        /**
+         * @return the number of duplicates to store, or -1 if the
+         *         first occurrence is still being stored.
+         */
+        synchronized int flush() {
+            if (!isStored) {
+                return -1;
             }
+            isFlushed = true;
+            return duplicates;
         }
     }
 
@@ -211,6 +278,15 @@ public class LogEntryHandler implements ApplicationContextAware {
      */
     private final AbstractExecutorService executor;
 
+    /**
+     * Coalescing of duplicates, by alarm key.
+     */
+    private final ConcurrentMap<String, Occurrences> occurrences
+                    = new ConcurrentHashMap<>();
+    private long coalescingPeriod = 1;
+    private TimeUnit coalescingPeriodUnit = TimeUnit.SECONDS;
+    private ScheduledExecutorService flusher;
+
     /**
      * Bean application context
      */
@@ -231,6 +307,15 @@ public class LogEntryHandler implements ApplicationContextAware {
         beanFactory = applicationContext.getAutowireCapableBeanFactory();
     }
 
+    public void setCoalescingPeriod(long coalescingPeriod) {
+        Preconditions.checkArgument(coalescingPeriod > 0);
+        this.coalescingPeriod = coalescingPeriod;
+    }
+
+    public void setCoalescingPeriodUnit(TimeUnit coalescingPeriodUnit) {
+        this.coalescingPeriodUnit = Preconditions.checkNotNull(coalescingPeriodUnit);
+    }
+
     public void setConverter(LoggingEventConverter converter) {
         this.converter = converter;
     }
@@ -308,17 +393,96 @@ public class LogEntryHandler implements ApplicationContextAware {
             if (emailEnabled) {
                 startEmailAppender();
             }
+
+            flusher = Executors.newSingleThreadScheduledExecutor(
+                            new ThreadFactoryBuilder()
+                                            .setNameFormat("alarm-flusher-%d")
+                                            .build());
+            flusher.scheduleWithFixedDelay(this::flush,
+                                           coalescingPeriod,
+                                           coalescingPeriod,
+                                           coalescingPeriodUnit);
         }
     }
 
     public void stop() {
         if (started.getAndSet(false)) {
+            executor.shutdown();
+
+            if (flusher != null) {
+                flusher.shutdown();
+                try {
+                    /*
+                     * Duplicates counted by tasks still running would
+                     * otherwise be lost, as would the counts of alarms
+                     * still being stored.
+                     */
+                    executor.awaitTermination(TERMINATION_TIMEOUT, TimeUnit.SECONDS);
+                    flusher.awaitTermination(TERMINATION_TIMEOUT, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                flusher = null;
+                flush();
+            }
+
             if (emailAppender != null) {
                 emailAppender.stop();
                 emailAppender = null;
             }
+        }
+    }
 
-            executor.shutdown();
+    /**
+     * Stores the duplicates counted during the last coalescing period
+     * as a single batch and starts a new period.
+     */
+    protected void flush() {
+        List<LogEntry> batch = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        List<ILoggingEvent> events = new ArrayList<>();
+
+        for (Map.Entry<String, Occurrences> e : occurrences.entrySet()) {
+            Occurrences o = e.getValue();
+            int count = o.flush();
+            if (count < 0) {
+                continue;
+            }
+
+            occurrences.remove(e.getKey(), o);
+
+            if (count > 0) {
+                LogEntry entry = converter.createEntryFromEvent(o.first);
+                entry.setReceived(count);
+                batch.add(entry);
+                counts.add(count);
+                events.add(o.first);
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            store.put(batch);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to store {} coalesced alarms: {}.",
+                            batch.size(), e.toString());
+            return;
+        }
+
+        LOGGER.debug("Stored {} coalesced alarms.", batch.size());
+
+        /*
+         * The stored count equals the number of duplicates only if
+         * the alarm was closed or removed in the meantime.
+         */
+        for (int i = 0; i < batch.size(); i++) {
+            LogEntry entry = batch.get(i);
+            if (entry.getReceived().equals(counts.get(i))) {
+                postProcess(entry, events.get(i));
+            }
         }
     }
 
@@ -338,6 +502,21 @@ public class LogEntryHandler implements ApplicationContextAware {
         }
     }
 
+    private void postProcess(LogEntry entry, ILoggingEvent event) {
+        int priority = priorityMap.getPriority(entry.getType()).ordinal();
+
+        if (emailEnabled && priority >= emailThreshold.ordinal()) {
+            emailAppender.doAppend(event);
+        }
+
+        for (LogEntryListenerFactory factory : listenerFactories) {
+            Collection<LogEntryListener> listeners
+                            = factory.getConfiguredListeners();
+            listeners.stream().forEach(
+                            (l) -> l.handleLogEntry(entry));
+        }
+    }
+
     protected void loadListeners() {
         ServiceLoader<LogEntryListenerFactory> serviceLoader
                         = ServiceLoader.load(LogEntryListenerFactory.class);
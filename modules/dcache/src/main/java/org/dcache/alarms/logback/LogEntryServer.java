@@ -78,6 +78,7 @@ COPYRIGHT STATUS:
  */
 package org.dcache.alarms.logback;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -89,6 +90,8 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -101,6 +104,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
  *
  * This is achieved via a special implementation of the logback SocketNode
  * which calls the LogEntryHandler directly.
+ * <p>
+ *
+ * Socket nodes are run by an executor shared by all connections, rather
+ * than by a new thread per connection.
  *
  * @author Ceki G&uuml;lc&uuml;
  * @author S&eacute;bastien Pennec
@@ -112,6 +119,8 @@ public final class LogEntryServer implements Runnable {
 
     private final List<LogEntryServerSocketNode> socketNodeList = new ArrayList<>();
 
+    private ExecutorService socketNodeExecutor;
+
     private LogEntryHandler handler;
     private Integer port;
     private ServerSocket serverSocket;
@@ -142,7 +151,7 @@ public final class LogEntryServer implements Runnable {
                 synchronized(socketNodeList) {
                     socketNodeList.add(newSocketNode);
                 }
-                new Thread(newSocketNode).start();
+                socketNodeExecutor.execute(newSocketNode);
             } catch (SocketException t) {
                 if (!t.getMessage().contains("closed")) {
                    LOGGER.error("There was a problem connecting to client: {}; "
@@ -179,6 +188,10 @@ public final class LogEntryServer implements Runnable {
      */
     public void start() {
         if (serverSocket == null || serverSocket.isClosed()) {
+            socketNodeExecutor = Executors.newCachedThreadPool(
+                            new ThreadFactoryBuilder()
+                                            .setNameFormat("alarm-socket-node-%d")
+                                            .build());
             new Thread(this).start();
         }
     }
@@ -201,6 +214,7 @@ public final class LogEntryServer implements Runnable {
                     socketNode.close();
                 }
             }
+            socketNodeExecutor.shutdown();
         }
     }
 }
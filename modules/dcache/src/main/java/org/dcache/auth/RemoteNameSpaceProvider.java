@@ -205,11 +205,11 @@ public class RemoteNameSpaceProvider implements NameSpaceProvider
     }
 
     @Override
-    public void list(Subject subject, String path, Glob glob,
+    public void list(Subject subject, String path, Glob glob, String after,
             Range<Integer> range, Set<FileAttribute> attrs, ListHandler handler)
             throws CacheException
     {
-        try (DirectoryStream stream = _handler.list(subject, Restrictions.none(), FsPath.create(path), glob, range, attrs)) {
+        try (DirectoryStream stream = _handler.list(subject, Restrictions.none(), FsPath.create(path), glob, after, range, attrs)) {
             for (DirectoryEntry entry : stream) {
                 handler.addEntry(entry.getName(), entry.getFileAttributes());
             }
@@ -20,6 +20,7 @@ package org.dcache.pinmanager;
 
 import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.support.JdbcDaoSupport;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
@@ -36,10 +37,12 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import diskCacheV111.util.PnfsId;
@@ -48,8 +51,10 @@ import org.dcache.auth.Subjects;
 import org.dcache.pinmanager.model.Pin;
 import org.dcache.util.SqlGlob;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 
 @ParametersAreNonnullByDefault
 public class JdbcDao extends JdbcDaoSupport implements PinDao
@@ -140,6 +145,13 @@ public class JdbcDao extends JdbcDaoSupport implements PinDao
         return getJdbcTemplate().update("DELETE FROM pins WHERE " + c.getPredicate(), c.getArgumentsAsArray());
     }
 
+    @Override
+    public int delete(Collection<Pin> pins)
+    {
+        List<Object[]> arguments = pins.stream().map(pin -> new Object[] { pin.getPinId() }).collect(toList());
+        return IntStream.of(getJdbcTemplate().batchUpdate("DELETE FROM pins WHERE id = ?", arguments)).sum();
+    }
+
     @Override
     public void foreach(PinCriterion criterion, InterruptibleConsumer<Pin> f)
             throws InterruptedException
@@ -239,6 +251,13 @@ public class JdbcDao extends JdbcDaoSupport implements PinDao
             return this;
         }
 
+        @Override
+        public JdbcPinCriterion expirationTimeNotBefore(Date date)
+        {
+            addClause("expires_at >= ?", new Timestamp(date.getTime()));
+            return this;
+        }
+
         @Override
         public JdbcPinCriterion state(Pin.State state)
         {
@@ -389,6 +408,43 @@ public class JdbcDao extends JdbcDaoSupport implements PinDao
         return toPin(u);
     }
 
+    @Override
+    public List<Pin> create(List<PinUpdate> updates)
+    {
+        if (updates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<JdbcUpdate> rows = updates.stream().map(JdbcUpdate.class::cast).collect(toList());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        rows.forEach(u -> u.set("created_at", now));
+        String insert = rows.get(0).getInsert();
+        checkArgument(rows.stream().allMatch(u -> u.getInsert().equals(insert)),
+                      "Pins created in a batch must define the same fields");
+
+        return getJdbcTemplate().execute((ConnectionCallback<List<Pin>>) con -> {
+            try (PreparedStatement ps = con.prepareStatement(
+                    "INSERT INTO pins " + insert, Statement.RETURN_GENERATED_KEYS)) {
+                for (JdbcUpdate u : rows) {
+                    int i = 1;
+                    for (Object argument : u.getArguments()) {
+                        ps.setObject(i++, argument);
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (JdbcUpdate u : rows) {
+                        if (!keys.next()) {
+                            throw new SQLException("Generated keys missing for batch insert");
+                        }
+                        u.set("id", keys.getLong("id"));
+                    }
+                }
+            }
+            return rows.stream().map(this::toPin).collect(toList());
+        });
+    }
+
     private Pin toPin(JdbcUpdate update)
     {
         Timestamp createdAt = (Timestamp) update.get("created_at");
@@ -7,6 +7,7 @@ import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.security.auth.Subject;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -14,6 +15,8 @@ import diskCacheV111.util.PnfsId;
 
 import org.dcache.pinmanager.model.Pin;
 
+import static java.util.stream.Collectors.toList;
+
 /**
  * Data Access Object abstraction for pin persistence.
  *
@@ -37,6 +40,16 @@ public interface PinDao
      */
     Pin create(PinUpdate update);
 
+    /**
+     * Creates new pins with the given field values. All updates must
+     * define the same fields.
+     *
+     * @return The created pins in the order of the updates
+     */
+    default List<Pin> create(List<PinUpdate> updates) {
+        return updates.stream().map(this::create).collect(toList());
+    }
+
     /**
      * Returns the pins matching a selection criterion.
      */
@@ -102,6 +115,13 @@ public interface PinDao
         return delete(where().id(pin.getPinId()));
     }
 
+    /**
+     * Deletes several specific pins.
+     */
+    default int delete(Collection<Pin> pins) {
+        return pins.stream().mapToInt(this::delete).sum();
+    }
+
     /**
      * Performs the given action for every pin matching the selection criterion.
      */
@@ -120,6 +140,8 @@ public interface PinDao
 
         PinCriterion expirationTimeBefore(Date date);
 
+        PinCriterion expirationTimeNotBefore(Date date);
+
         PinCriterion state(Pin.State state);
 
         PinCriterion stateIsNot(Pin.State state);
@@ -141,6 +163,8 @@ public interface PinDao
 
         PnfsIdPinCriterion expirationTimeBefore(Date date);
 
+        PnfsIdPinCriterion expirationTimeNotBefore(Date date);
+
         PnfsIdPinCriterion state(Pin.State state);
 
         PnfsIdPinCriterion stateIsNot(Pin.State state);
@@ -160,6 +184,8 @@ public interface PinDao
 
         RequestIdPinCriterion expirationTimeBefore(Date date);
 
+        RequestIdPinCriterion expirationTimeNotBefore(Date date);
+
         RequestIdPinCriterion state(Pin.State state);
 
         RequestIdPinCriterion stateIsNot(Pin.State state);
@@ -183,6 +209,8 @@ public interface PinDao
 
         UniquePinCriterion expirationTimeBefore(Date date);
 
+        UniquePinCriterion expirationTimeNotBefore(Date date);
+
         UniquePinCriterion state(Pin.State state);
 
         UniquePinCriterion stateIsNot(Pin.State state);
@@ -31,6 +31,7 @@ import org.dcache.poolmanager.PoolMonitor;
 import org.dcache.util.FireAndForgetTask;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.dcache.pinmanager.model.Pin.State.UNPINNING;
 
@@ -42,6 +43,17 @@ public class PinManager
     private static final long INITIAL_EXPIRATION_DELAY = SECONDS.toMillis(15);
     private static final long INITIAL_UNPIN_DELAY = SECONDS.toMillis(30);
 
+    /**
+     * Every this many runs the expiration task covers all expired pins.
+     */
+    private static final int FULL_EXPIRATION_SWEEP = 60;
+
+    /**
+     * Overlap between consecutive slices of the expiration time index,
+     * covering transactions that committed after the previous run.
+     */
+    private static final long EXPIRATION_SLICE_OVERLAP = MINUTES.toMillis(5);
+
     private ScheduledExecutorService executor;
     private PinDao dao;
     private CellStub poolStub;
@@ -148,17 +160,42 @@ public class PinManager
         return ZKPaths.makePath("/dcache/pinmanager", serviceName, "leader");
     }
 
-    private class ExpirationTask implements Runnable
-    {
+    /**
+     * Moves expired pins to UNPINNING.
+     *
+     * Rather than scanning all pins that expired at any time in the
+     * past, each run only covers the slice of the expiration time
+     * index between the previous run and now. Pins that expired in
+     * earlier slices have already been moved to UNPINNING and are
+     * not visited again.
+     *
+     * A pin may be given an expiration time that already lies in an
+     * earlier slice, e.g. when a pin with a very short lifetime
+     * completes. To catch those, every FULL_EXPIRATION_SWEEP-th run
+     * and the first run after becoming leader cover all expired pins.
+     */
+    class ExpirationTask implements Runnable
+    {
+        private Date lastRun;
+        private int runs;
+
         @Override
         public void run()
         {
             try {
-                dao.update(dao.where()
-                                    .expirationTimeBefore(new Date())
-                                    .stateIsNot(UNPINNING),
-                           dao.set().
-                                    state(UNPINNING));
+                Date now = new Date();
+                PinDao.PinCriterion criterion =
+                        dao.where().expirationTimeBefore(now).stateIsNot(UNPINNING);
+                if (lastRun != null && runs % FULL_EXPIRATION_SWEEP != 0) {
+                    criterion = criterion.expirationTimeNotBefore(
+                            new Date(lastRun.getTime() - EXPIRATION_SLICE_OVERLAP));
+                }
+                int count = dao.update(criterion, dao.set().state(UNPINNING));
+                if (count > 0) {
+                    _log.debug("Expired {} pins", count);
+                }
+                lastRun = now;
+                runs++;
             } catch (JDOException | DataAccessException e) {
                 _log.error("Database failure while expiring pins: {}",
                            e.getMessage());
@@ -172,8 +209,6 @@ public class PinManager
     {
         private final FireAndForgetTask unpinTask =
                 new FireAndForgetTask(new UnpinProcessor(dao, poolStub, poolMonitor));
-        private final ExpirationTask expirationTask =
-                new ExpirationTask();
         private ScheduledFuture<?> unpinFuture;
         private ScheduledFuture<?> expirationFuture;
 
@@ -181,7 +216,7 @@ public class PinManager
         public void isLeader()
         {
             expirationFuture = executor.scheduleWithFixedDelay(
-                    new FireAndForgetTask(expirationTask),
+                    new FireAndForgetTask(new ExpirationTask()),
                     INITIAL_EXPIRATION_DELAY,
                     expirationPeriodUnit.toMillis(expirationPeriod),
                     MILLISECONDS);
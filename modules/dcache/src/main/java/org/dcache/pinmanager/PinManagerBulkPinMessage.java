@@ -0,0 +1,61 @@
+package org.dcache.pinmanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import diskCacheV111.vehicles.Message;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Requests several files to be pinned.
+ *
+ * The reply merely acknowledges that the pin requests have been
+ * accepted. The outcome of each individual request is reported
+ * asynchronously by sending the PinManagerPinMessage back to the
+ * sender once the file has been pinned or pinning failed. These
+ * notifications carry the bulk ID and the index of the request
+ * within the bulk request.
+ */
+public class PinManagerBulkPinMessage extends Message
+{
+    private static final long serialVersionUID = -3245907340117478593L;
+
+    private final String _bulkId;
+    private List<PinManagerPinMessage> _requests;
+
+    public PinManagerBulkPinMessage(String bulkId, List<PinManagerPinMessage> requests)
+    {
+        _bulkId = checkNotNull(bulkId);
+        _requests = new ArrayList<>(requests);
+        for (int i = 0; i < _requests.size(); i++) {
+            _requests.get(i).setBulk(bulkId, i);
+        }
+    }
+
+    public String getBulkId()
+    {
+        return _bulkId;
+    }
+
+    public List<PinManagerPinMessage> getRequests()
+    {
+        return Collections.unmodifiableList(_requests);
+    }
+
+    /**
+     * Drops the pin requests, thus avoiding that they are sent back
+     * with the acknowledgement.
+     */
+    public void clearRequests()
+    {
+        _requests = Collections.emptyList();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "PinManagerBulkPinMessage[" + _bulkId + "," + _requests.size() + "]";
+    }
+}
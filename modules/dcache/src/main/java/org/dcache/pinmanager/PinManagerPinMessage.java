@@ -26,6 +26,8 @@ public class PinManagerPinMessage extends Message
     private String _pool;
     private final String _requestId;
     private Date _expirationTime;
+    private String _bulkId;
+    private int _bulkIndex;
 
     public PinManagerPinMessage(FileAttributes fileAttributes,
                                 ProtocolInfo protocolInfo,
@@ -103,6 +105,29 @@ public class PinManagerPinMessage extends Message
         return _expirationTime;
     }
 
+    /**
+     * Returns the ID of the bulk request this request is part of, or
+     * null if it was submitted on its own.
+     */
+    public String getBulkId()
+    {
+        return _bulkId;
+    }
+
+    /**
+     * Returns the position of this request within its bulk request.
+     */
+    public int getBulkIndex()
+    {
+        return _bulkIndex;
+    }
+
+    void setBulk(String bulkId, int index)
+    {
+        _bulkId = bulkId;
+        _bulkIndex = index;
+    }
+
     public void setPin(Pin pin)
     {
         setPool(pin.getPool());
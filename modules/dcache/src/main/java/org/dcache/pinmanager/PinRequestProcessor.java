@@ -9,8 +9,12 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.security.auth.Subject;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Executor;
@@ -27,6 +31,9 @@ import diskCacheV111.vehicles.PoolMgrSelectReadPoolMsg;
 import diskCacheV111.vehicles.PoolSetStickyMessage;
 
 import dmg.cells.nucleus.CellAddressCore;
+import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellMessageSender;
 import dmg.cells.nucleus.CellPath;
 
 import org.dcache.cells.AbstractMessageCallback;
@@ -42,6 +49,7 @@ import org.dcache.poolmanager.SelectedPool;
 import org.dcache.vehicles.PnfsGetFileAttributes;
 
 import static java.util.concurrent.TimeUnit.*;
+import static java.util.stream.Collectors.toMap;
 import static org.dcache.pinmanager.model.Pin.State.*;
 import static org.springframework.transaction.annotation.Isolation.REPEATABLE_READ;
 
@@ -66,9 +74,14 @@ import static org.springframework.transaction.annotation.Isolation.REPEATABLE_RE
  *
  * Database operations are blocking. Communication with PoolManager
  * and pools is asynchronous.
+ *
+ * Bulk pin requests create the DB entries of all files in a single
+ * batch. The outcome of each file is sent to the requester as a
+ * separate notification once the file has been pinned or pinning
+ * failed.
  */
 public class PinRequestProcessor
-    implements CellMessageReceiver
+    implements CellMessageReceiver, CellMessageSender
 {
     private static final Logger _log =
         LoggerFactory.getLogger(PinRequestProcessor.class);
@@ -104,6 +117,14 @@ public class PinRequestProcessor
 
     private PoolMonitor _poolMonitor;
 
+    private CellEndpoint _endpoint;
+
+    @Override
+    public void setCellEndpoint(CellEndpoint endpoint)
+    {
+        _endpoint = endpoint;
+    }
+
     @Required
     public void setScheduledExecutor(ScheduledExecutorService executor)
     {
@@ -208,6 +229,47 @@ public class PinRequestProcessor
         return reply;
     }
 
+    public PinManagerBulkPinMessage messageArrived(CellMessage envelope,
+                                                   PinManagerBulkPinMessage message)
+    {
+        CellPath requester = envelope.getSourcePath().revert();
+        long ttl = envelope.getTtl() - envelope.getLocalAge();
+        long deadline = (envelope.getTtl() == Long.MAX_VALUE)
+                        ? Long.MAX_VALUE
+                        : System.currentTimeMillis() + ttl;
+
+        List<PinManagerPinMessage> requests = message.getRequests();
+        List<MessageReply<PinManagerPinMessage>> replies = new ArrayList<>(requests.size());
+        for (PinManagerPinMessage request : requests) {
+            request.setSubject(message.getSubject());
+            enforceLifetimeLimit(request);
+            replies.add(new NotificationReply(requester, deadline));
+        }
+
+        for (PinTask task : createTasks(requests, replies)) {
+            _executor.execute(() -> start(task));
+        }
+
+        _log.debug("Accepted bulk pin request {} for {} files", message.getBulkId(), requests.size());
+        message.clearRequests();
+        return message;
+    }
+
+    private void start(PinTask task)
+    {
+        try {
+            if (!task.getFileAttributes().isDefined(PoolMgrSelectReadPoolMsg.getRequiredAttributes())) {
+                rereadNameSpaceEntry(task);
+            } else {
+                selectReadPool(task);
+            }
+        } catch (CacheException e) {
+            fail(task, e.getRc(), e.getMessage());
+        } catch (RuntimeException e) {
+            fail(task, CacheException.UNEXPECTED_SYSTEM_EXCEPTION, e.toString());
+        }
+    }
+
     protected EnumSet<RequestContainerV5.RequestState>
         checkStaging(PinTask task)
     {
@@ -564,6 +626,72 @@ public class PinRequestProcessor
         return new PinTask(message, reply, pin);
     }
 
+    /**
+     * Creates the DB entries of a bulk request. Resubmissions are detected
+     * with a single query per request ID, and new entries are inserted
+     * in a single batch.
+     *
+     * @return tasks for the requests that have to be processed, in the
+     * order of the requests
+     */
+    @Transactional(isolation = REPEATABLE_READ)
+    protected List<PinTask> createTasks(List<PinManagerPinMessage> messages,
+                                        List<MessageReply<PinManagerPinMessage>> replies)
+    {
+        Map<String, Map<PnfsId, Pin>> previousPins = new HashMap<>();
+        for (PinManagerPinMessage message : messages) {
+            String requestId = message.getRequestId();
+            if (requestId != null && !previousPins.containsKey(requestId)) {
+                previousPins.put(requestId,
+                                 _dao.get(_dao.where().requestId(requestId)).stream()
+                                         .collect(toMap(Pin::getPnfsId, pin -> pin, (a, b) -> a)));
+            }
+        }
+
+        List<PinManagerPinMessage> created = new ArrayList<>(messages.size());
+        List<MessageReply<PinManagerPinMessage>> createdReplies = new ArrayList<>(messages.size());
+        List<PinDao.PinUpdate> updates = new ArrayList<>(messages.size());
+        Date expirationTime = getExpirationTimeForPoolSelection();
+        for (int i = 0; i < messages.size(); i++) {
+            PinManagerPinMessage message = messages.get(i);
+            PnfsId pnfsId = message.getFileAttributes().getPnfsId();
+
+            if (message.getRequestId() != null) {
+                Pin pin = previousPins.get(message.getRequestId()).remove(pnfsId);
+                if (pin != null) {
+                    /* In this case the request is a resubmission. If the
+                     * previous pin completed then use it. Otherwise abort
+                     * the previous pin and create a new one.
+                     */
+                    if (pin.getState() == PINNED) {
+                        message.setPin(pin);
+                        replies.get(i).reply(message);
+                        continue;
+                    }
+
+                    _dao.update(pin, _dao.set().state(UNPINNING).requestId(null));
+                }
+            }
+
+            created.add(message);
+            createdReplies.add(replies.get(i));
+            updates.add(_dao.set()
+                                .subject(message.getSubject())
+                                .state(PINNING)
+                                .pnfsId(pnfsId)
+                                .requestId(message.getRequestId())
+                                .sticky("PinManager-" + UUID.randomUUID().toString())
+                                .expirationTime(expirationTime));
+        }
+
+        List<Pin> pins = _dao.create(updates);
+        List<PinTask> tasks = new ArrayList<>(pins.size());
+        for (int i = 0; i < pins.size(); i++) {
+            tasks.add(new PinTask(created.get(i), createdReplies.get(i), pins.get(i)));
+        }
+        return tasks;
+    }
+
     private void updateTask(PinTask task, PinDao.PinUpdate update) throws CacheException
     {
         Pin pin = _dao.update(_dao.where().id(task.getPinId()).sticky(task.getSticky()).state(PINNING), update);
@@ -623,4 +751,34 @@ public class PinRequestProcessor
             _dao.delete(task.getPin());
         }
     }
+
+    /**
+     * Reply to a pin request that is part of a bulk request. Rather than
+     * being returned in the envelope of the request, the reply is sent
+     * to the requester as a notification of its own.
+     */
+    private class NotificationReply extends MessageReply<PinManagerPinMessage>
+    {
+        private final CellPath _requester;
+        private final long _deadline;
+
+        NotificationReply(CellPath requester, long deadline)
+        {
+            _requester = requester;
+            _deadline = deadline;
+        }
+
+        @Override
+        public boolean isValidIn(long delay)
+        {
+            return delay <= _deadline - System.currentTimeMillis();
+        }
+
+        @Override
+        public void reply(PinManagerPinMessage msg)
+        {
+            msg.setReply();
+            _endpoint.sendMessage(new CellMessage(_requester, msg));
+        }
+    }
 }
@@ -8,6 +8,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.jdo.JDOException;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -30,24 +36,50 @@ import org.dcache.poolmanager.PoolMonitor;
  * When an unpin request is received a pin is put into state
  * UNPINNING. The actual work to unpin a file is performed
  * independently of the unpin request.
+ *
+ * Pins are queued per pool and the sticky flags are cleared with a
+ * bounded number of concurrent requests per pool and overall. Pools
+ * that are held back by the overall limit are served in turn as
+ * requests complete, thus a slow pool does not hold up unpinning on
+ * other pools. The number of pins held in memory is bounded separately.
+ * Pins that have been unpinned are deleted from the database in
+ * batches.
  */
 public class UnpinProcessor implements Runnable
 {
     private static final Logger _logger =
         LoggerFactory.getLogger(UnpinProcessor.class);
 
+    private static final int MAX_QUEUED = 10000;
+
     private static final int MAX_RUNNING = 1000;
 
+    private static final int MAX_RUNNING_PER_POOL = 50;
+
+    private static final int DELETE_BATCH_SIZE = 100;
+
     private final PinDao _dao;
     private final CellStub _poolStub;
     private final PoolMonitor _poolMonitor;
+    private final int _maxQueued;
+    private final int _maxRunning;
+    private final int _maxRunningPerPool;
 
     public UnpinProcessor(PinDao dao, CellStub poolStub,
                           PoolMonitor poolMonitor)
+    {
+        this(dao, poolStub, poolMonitor, MAX_QUEUED, MAX_RUNNING, MAX_RUNNING_PER_POOL);
+    }
+
+    UnpinProcessor(PinDao dao, CellStub poolStub, PoolMonitor poolMonitor,
+                   int maxQueued, int maxRunning, int maxRunningPerPool)
     {
         _dao = dao;
         _poolStub = poolStub;
         _poolMonitor = poolMonitor;
+        _maxQueued = maxQueued;
+        _maxRunning = maxRunning;
+        _maxRunningPerPool = maxRunningPerPool;
     }
 
     @Override
@@ -55,9 +87,11 @@ public class UnpinProcessor implements Runnable
     {
         final ExecutorService executor = Executors.newSingleThreadExecutor();
         try {
-            Semaphore idle = new Semaphore(MAX_RUNNING);
-            unpin(idle, executor);
-            idle.acquire(MAX_RUNNING);
+            Semaphore queued = new Semaphore(_maxQueued);
+            Run run = new Run(queued, executor);
+            unpin(run);
+            queued.acquire(_maxQueued);
+            run.deleteUnpinned();
         } catch (InterruptedException e) {
             _logger.debug(e.toString());
         } catch (JDOException | DataAccessException e) {
@@ -73,59 +107,171 @@ public class UnpinProcessor implements Runnable
     }
 
     @Transactional
-    protected void unpin(final Semaphore idle, final Executor executor) throws InterruptedException
+    protected void unpin(Run run) throws InterruptedException
     {
-        _dao.foreach(_dao.where().state(Pin.State.UNPINNING), pin -> upin(idle, executor, pin));
+        _dao.foreach(_dao.where().state(Pin.State.UNPINNING), run::submit);
     }
 
-    private void upin(Semaphore idle, Executor executor, Pin pin) throws InterruptedException
+    /**
+     * State of a single run of the unpin processor.
+     *
+     * Except for submitting pins, all methods are called on the
+     * executor, which confines the pool queues, the request counts
+     * and the list of pins to delete to a single thread.
+     *
+     * A pin holds a permit of the queued semaphore from being
+     * submitted until it is done, which bounds the number of pins in
+     * memory. The number of requests sent to pools is bounded by
+     * counting them when they are sent.
+     */
+    private class Run
     {
-        if (pin.getPool() == null) {
-            _dao.delete(pin);
-        } else {
-            clearStickyFlag(idle, pin, executor);
+        private final Semaphore _queued;
+        private final Executor _executor;
+        private final Map<String, PoolQueue> _pools = new HashMap<>();
+        private final Deque<PoolQueue> _blocked = new ArrayDeque<>();
+        private final List<Pin> _unpinned = new ArrayList<>();
+        private int _requests;
+
+        Run(Semaphore queued, Executor executor)
+        {
+            _queued = queued;
+            _executor = executor;
         }
-    }
 
-    private void clearStickyFlag(final Semaphore idle, final Pin pin, Executor executor)
-        throws InterruptedException
-    {
-        PoolSelectionUnit.SelectionPool pool = _poolMonitor.getPoolSelectionUnit().getPool(pin.getPool());
-        if (pool == null || !pool.isActive()) {
-            _logger.warn("Unable to clear sticky flag because pool {} is unavailable", pin.getPool());
-            return;
+        void submit(Pin pin) throws InterruptedException
+        {
+            _queued.acquire();
+            _executor.execute(() -> {
+                if (pin.getPool() == null) {
+                    done(pin, true);
+                } else {
+                    _pools.computeIfAbsent(pin.getPool(), PoolQueue::new).add(pin);
+                }
+            });
+        }
+
+        private void done(Pin pin, boolean isUnpinned)
+        {
+            if (isUnpinned) {
+                _unpinned.add(pin);
+                if (_unpinned.size() >= DELETE_BATCH_SIZE) {
+                    deleteUnpinned();
+                }
+            }
+            _queued.release();
         }
 
-        idle.acquire();
-        PoolSetStickyMessage msg =
-            new PoolSetStickyMessage(pin.getPool(),
-                                     pin.getPnfsId(),
-                                     false,
-                                     pin.getSticky(),
-                                     0);
-        CellStub.addCallback(_poolStub.send(new CellPath(pool.getAddress()), msg),
-                             new AbstractMessageCallback<PoolSetStickyMessage>()
-                             {
-                                 @Override
-                                 public void success(PoolSetStickyMessage msg)
-                                 {
-                                     idle.release();
-                                     _dao.delete(pin);
-                                 }
-
-                                 @Override
-                                 public void failure(int rc, Object error)
-                                 {
-                                     idle.release();
-                                     switch (rc) {
-                                     case CacheException.FILE_NOT_IN_REPOSITORY:
-                                         _dao.delete(pin);
-                                         break;
-                                     default:
-                                         _logger.warn("Failed to clear sticky flag: {} [{}]", error, rc);
-                                         break;
-                                     }
-                                 }
-                             }, executor);
+        /**
+         * Lets the pools held back by the overall limit send requests,
+         * in the order in which they were held back.
+         */
+        private void resumeBlocked()
+        {
+            while (_requests < _maxRunning && !_blocked.isEmpty()) {
+                PoolQueue pool = _blocked.remove();
+                pool._isBlocked = false;
+                pool.sendMore();
+            }
+        }
+
+        void deleteUnpinned()
+        {
+            if (!_unpinned.isEmpty()) {
+                try {
+                    _dao.delete(_unpinned);
+                } catch (JDOException | DataAccessException e) {
+                    _logger.error("Database failure while deleting unpinned pins: {}",
+                                  e.getMessage());
+                }
+                _unpinned.clear();
+            }
+        }
+
+        private class PoolQueue
+        {
+            private final String _name;
+            private final Deque<Pin> _queue = new ArrayDeque<>();
+            private final PoolSelectionUnit.SelectionPool _pool;
+            private int _running;
+            private boolean _isBlocked;
+
+            PoolQueue(String name)
+            {
+                _name = name;
+                _pool = _poolMonitor.getPoolSelectionUnit().getPool(name);
+                if (_pool == null || !_pool.isActive()) {
+                    _logger.warn("Unable to clear sticky flags because pool {} is unavailable", name);
+                }
+            }
+
+            void add(Pin pin)
+            {
+                if (_pool == null || !_pool.isActive()) {
+                    done(pin, false);
+                } else {
+                    _queue.add(pin);
+                    sendMore();
+                }
+            }
+
+            private void sendMore()
+            {
+                while (_running < _maxRunningPerPool && !_queue.isEmpty()) {
+                    if (_requests >= _maxRunning) {
+                        if (!_isBlocked) {
+                            _isBlocked = true;
+                            _blocked.add(this);
+                        }
+                        break;
+                    }
+                    _running++;
+                    _requests++;
+                    clearStickyFlag(_queue.remove());
+                }
+            }
+
+            private void completed(Pin pin, boolean isUnpinned)
+            {
+                _running--;
+                _requests--;
+                done(pin, isUnpinned);
+                resumeBlocked();
+                sendMore();
+            }
+
+            private void clearStickyFlag(Pin pin)
+            {
+                PoolSetStickyMessage msg =
+                    new PoolSetStickyMessage(_name,
+                                             pin.getPnfsId(),
+                                             false,
+                                             pin.getSticky(),
+                                             0);
+                CellStub.addCallback(_poolStub.send(new CellPath(_pool.getAddress()), msg),
+                                     new AbstractMessageCallback<PoolSetStickyMessage>()
+                                     {
+                                         @Override
+                                         public void success(PoolSetStickyMessage msg)
+                                         {
+                                             completed(pin, true);
+                                         }
+
+                                         @Override
+                                         public void failure(int rc, Object error)
+                                         {
+                                             switch (rc) {
+                                             case CacheException.FILE_NOT_IN_REPOSITORY:
+                                                 completed(pin, true);
+                                                 break;
+                                             default:
+                                                 _logger.warn("Failed to clear sticky flag: {} [{}]", error, rc);
+                                                 completed(pin, false);
+                                                 break;
+                                             }
+                                         }
+                                     }, _executor);
+            }
+        }
     }
 }
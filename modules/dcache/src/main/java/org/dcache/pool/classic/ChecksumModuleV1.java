@@ -23,8 +23,10 @@ import com.google.common.collect.Maps;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
@@ -62,6 +64,8 @@ public class ChecksumModuleV1
     private final EnumSet<PolicyFlag> _policy = EnumSet.of(ON_TRANSFER, ENFORCE_CRC);
 
     private double _throughputLimit = Double.POSITIVE_INFINITY;
+    private double _fileRateLimit = Double.POSITIVE_INFINITY;
+    private int _scrubThreads = 1;
     private long _scrubPeriod = TimeUnit.HOURS.toMillis(24L);
     private ChecksumType _defaultChecksumType = ADLER32;
 
@@ -92,6 +96,22 @@ public class ChecksumModuleV1
         return _throughputLimit;
     }
 
+    /**
+     * Returns the maximum number of files per second verified by the scrubber.
+     */
+    public synchronized double getFileRateLimit()
+    {
+        return _fileRateLimit;
+    }
+
+    /**
+     * Returns the number of files the scrubber verifies in parallel.
+     */
+    public synchronized int getScrubThreads()
+    {
+        return _scrubThreads;
+    }
+
     @Override
     public synchronized void printSetup(PrintWriter pw)
     {
@@ -100,6 +120,8 @@ public class ChecksumModuleV1
             pw.print("csm set policy -scrub=on");
             pw.print(" -limit=" +
                     (Double.isInfinite(_throughputLimit) ? "off" : BYTES.toMiB(_throughputLimit)));
+            pw.print(" -iops=" + (Double.isInfinite(_fileRateLimit) ? "off" : _fileRateLimit));
+            pw.print(" -threads=" + _scrubThreads);
             pw.println(" -period=" + TimeUnit.MILLISECONDS.toHours(_scrubPeriod));
         } else {
             pw.println("csm set policy -scrub=off");
@@ -143,6 +165,10 @@ public class ChecksumModuleV1
                 pw.print("scrub(");
                 pw.print("limit=" + (Double.isInfinite(_throughputLimit) ? "off" : BYTES.toMiB(_throughputLimit)));
                 pw.print(",");
+                pw.print("iops=" + (Double.isInfinite(_fileRateLimit) ? "off" : _fileRateLimit));
+                pw.print(",");
+                pw.print("threads=" + _scrubThreads);
+                pw.print(",");
                 pw.print("period=" + TimeUnit.MILLISECONDS.toHours(_scrubPeriod));
                 pw.print(") ");
             }
@@ -169,6 +195,12 @@ public class ChecksumModuleV1
             } else {
                 sb.append("             limit  = ").append(BYTES.toMiB(_throughputLimit)).append(" MiB/s\n");
             }
+            if (Double.isInfinite(_fileRateLimit)) {
+                sb.append("             iops   = off\n");
+            } else {
+                sb.append("             iops   = ").append(_fileRateLimit).append(" files/s\n");
+            }
+            sb.append("             threads = ").append(_scrubThreads).append("\n");
             sb.append("             period = ").append(TimeUnit.MILLISECONDS.toHours(_scrubPeriod)).append(" hours\n");
         }
         return sb.toString();
@@ -199,10 +231,24 @@ public class ChecksumModuleV1
 
         @Option(name = "limit",
                 category = "Scrubber options",
-                usage = "Checksum computation throughput limit.",
+                usage = "Checksum computation throughput limit. The limit is shared by " +
+                        "all scrubber threads.",
                 valueSpec = "<MiB/s>|off")
         String limit;
 
+        @Option(name = "iops",
+                category = "Scrubber options",
+                usage = "Maximum number of files verified per second. The limit is " +
+                        "shared by all scrubber threads.",
+                valueSpec = "<files/s>|off")
+        String iops;
+
+        @Option(name = "threads",
+                category = "Scrubber options",
+                usage = "Number of files verified in parallel.",
+                metaVar = "threads")
+        Integer threads;
+
         @Option(name = "period",
                 category = "Scrubber options",
                 usage = "Run scrubber every HOURS hours.",
@@ -317,6 +363,25 @@ public class ChecksumModuleV1
                     }
                 }
 
+                if (iops != null) {
+                    if (iops.equals("off")) {
+                        _fileRateLimit = Double.POSITIVE_INFINITY;
+                    } else {
+                        double value = Double.parseDouble(iops);
+                        if (value <= 0) {
+                            throw new IllegalArgumentException("File rate limit must be > 0");
+                        }
+                        _fileRateLimit = value;
+                    }
+                }
+
+                if (threads != null) {
+                    if (threads <= 0) {
+                        throw new IllegalArgumentException("Number of scrubber threads must be > 0");
+                    }
+                    _scrubThreads = threads;
+                }
+
                 if (period != null) {
                     long value = TimeUnit.HOURS.toMillis(period);
                     if (value <= 0) {
@@ -380,12 +445,11 @@ public class ChecksumModuleV1
         Iterable<Checksum> expectedChecksums = handle.getChecksums();
         if (hasPolicy(ON_WRITE)
                 || (hasPolicy(ENFORCE_CRC) && isEmpty(expectedChecksums) && isEmpty(actualChecksums))) {
-            ChecksumFactory factory = ChecksumFactory.getFactory(
-                    concat(expectedChecksums, actualChecksums), getDefaultChecksumType());
+            List<ChecksumFactory> factories = getFactories(concat(expectedChecksums, actualChecksums));
             try (RepositoryChannel channel = handle.createChannel()) {
                 actualChecksums
                         = concat(actualChecksums,
-                                 Collections.singleton(factory.computeChecksum(channel)));
+                                 ChecksumFactory.computeChecksums(channel, factories, Double.POSITIVE_INFINITY));
             }
         }
         compareChecksums(expectedChecksums, actualChecksums);
@@ -423,24 +487,35 @@ public class ChecksumModuleV1
     public Iterable<Checksum> verifyChecksum(RepositoryChannel channel, Iterable<Checksum> expectedChecksums)
             throws NoSuchAlgorithmException, IOException, InterruptedException, CacheException
     {
-        return verifyChecksum(channel, expectedChecksums, Double.POSITIVE_INFINITY);
+        List<ChecksumFactory> factories = getFactories(expectedChecksums);
+        Iterable<Checksum> actualChecksums =
+                ChecksumFactory.computeChecksums(channel, factories, Double.POSITIVE_INFINITY);
+        compareChecksums(expectedChecksums, actualChecksums);
+        return actualChecksums;
     }
 
-    public Iterable<Checksum> verifyChecksumWithThroughputLimit(ReplicaDescriptor handle)
-            throws IOException, InterruptedException, NoSuchAlgorithmException, CacheException
+    /**
+     * Returns factories for all supported types of the given checksums, in
+     * order of preference. If none of the types is supported, a factory for
+     * the default checksum type is returned.
+     */
+    private List<ChecksumFactory> getFactories(Iterable<Checksum> checksums)
+            throws NoSuchAlgorithmException
     {
-        try (RepositoryChannel channel = handle.createChannel()) {
-            return verifyChecksum(channel, handle.getChecksums(), getThroughputLimit());
+        Map<ChecksumType, ChecksumFactory> factories = new LinkedHashMap<>();
+        for (Checksum checksum : Checksums.preferrredOrder().sortedCopy(checksums)) {
+            ChecksumType type = checksum.getType();
+            if (!factories.containsKey(type)) {
+                try {
+                    factories.put(type, ChecksumFactory.getFactory(type));
+                } catch (NoSuchAlgorithmException ignored) {
+                }
+            }
         }
-    }
-
-    private Iterable<Checksum> verifyChecksum(RepositoryChannel channel, Iterable<Checksum> expectedChecksums, double throughputLimit)
-            throws NoSuchAlgorithmException, IOException, InterruptedException, CacheException
-    {
-        ChecksumFactory factory = ChecksumFactory.getFactory(expectedChecksums, getDefaultChecksumType());
-        Iterable<Checksum> actualChecksums = Collections.singleton(factory.computeChecksum(channel, throughputLimit));
-        compareChecksums(expectedChecksums, actualChecksums);
-        return actualChecksums;
+        if (factories.isEmpty()) {
+            return Collections.singletonList(ChecksumFactory.getFactory(getDefaultChecksumType()));
+        }
+        return new ArrayList<>(factories.values());
     }
 
     private void compareChecksums(Iterable<Checksum> expected, Iterable<Checksum> actual) throws CacheException
@@ -1,7 +1,10 @@
 package org.dcache.pool.classic;
 
-import com.google.common.collect.Iterables;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ComparisonChain;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -9,15 +12,26 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileCorruptedCacheException;
@@ -32,9 +46,11 @@ import dmg.util.command.Command;
 
 import org.dcache.alarms.AlarmMarkerFactory;
 import org.dcache.alarms.PredefinedAlarm;
+import org.dcache.pool.repository.FileStore;
 import org.dcache.pool.repository.ReplicaState;
 import org.dcache.pool.repository.ReplicaDescriptor;
 import org.dcache.pool.repository.Repository;
+import org.dcache.pool.repository.RepositoryChannel;
 import org.dcache.pool.repository.Repository.OpenFlags;
 import org.dcache.util.Checksum;
 
@@ -51,6 +67,8 @@ public class ChecksumScanner
     private final SingleScan _singleScan = new SingleScan();
 
     private Repository _repository;
+    private FileStore _fileStore;
+    private IoQueueManager _ioQueueManager;
     private ChecksumModuleV1 _csm;
     private String poolName;
 
@@ -65,6 +83,7 @@ public class ChecksumScanner
 
     private void onConfigChange()
     {
+        _scrubber.updateLimits();
         if (_csm.hasPolicy(ChecksumModule.PolicyFlag.SCRUB)) {
             startScrubber();
         } else {
@@ -87,6 +106,16 @@ public class ChecksumScanner
         _repository = repository;
     }
 
+    public void setFileStore(FileStore fileStore)
+    {
+        _fileStore = fileStore;
+    }
+
+    public void setIoQueueManager(IoQueueManager ioQueueManager)
+    {
+        _ioQueueManager = ioQueueManager;
+    }
+
     public void setChecksumModule(ChecksumModuleV1 csm)
     {
         _csm = csm;
@@ -221,18 +250,68 @@ public class ChecksumScanner
         }
     }
 
+    /**
+     * Position of a replica in the scrubber's scan order. Replicas are ordered
+     * by their placement on the underlying storage and then by PNFS id.
+     */
+    private static class ScanEntry implements Comparable<ScanEntry>
+    {
+        private final long placement;
+        private final PnfsId id;
+
+        private ScanEntry(long placement, PnfsId id)
+        {
+            this.placement = placement;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(ScanEntry other)
+        {
+            return ComparisonChain.start()
+                    .compare(placement, other.placement)
+                    .compare(id, other.id)
+                    .result();
+        }
+
+        @Override
+        public String toString()
+        {
+            return placement + " " + id;
+        }
+    }
+
     private class Scrubber extends Singleton
     {
         private final long CHECKPOINT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
         private final long FAILURE_RATELIMIT_DELAY =
             TimeUnit.SECONDS.toMillis(10);
+        private final long MIN_BACKOFF_DELAY = TimeUnit.SECONDS.toMillis(1);
+        private final long MAX_BACKOFF_DELAY = TimeUnit.MINUTES.toMillis(1);
 
-        private volatile int _badCount;
+        private final AtomicInteger _badCount = new AtomicInteger();
         private volatile int _numFiles;
-        private volatile int _totalCount;
-        private volatile int _unableCount;
+        private final AtomicInteger _totalCount = new AtomicInteger();
+        private final AtomicInteger _unableCount = new AtomicInteger();
+        private final AtomicInteger _backingOff = new AtomicInteger();
+        private volatile int _threads;
+
+        /**
+         * Token buckets shared by all scrubber threads.
+         */
+        private final RateLimiter _bandwidth = RateLimiter.create(1);
+        private final RateLimiter _files = RateLimiter.create(1);
+        private volatile boolean _isBandwidthLimited;
+        private volatile boolean _isFileRateLimited;
+
+        /**
+         * Index of the next file to verify and the indexes of the files being
+         * verified. Guarded by _inFlight.
+         */
+        private int _next;
+        private final SortedSet<Integer> _inFlight = new TreeSet<>();
 
-        private PnfsId _lastFileChecked;
+        private ScanEntry _lastFileChecked;
         private long _lastCheckpoint;
         private long _lastStart;
 
@@ -241,14 +320,33 @@ public class ChecksumScanner
             super("Scrubber");
         }
 
+        /**
+         * Updates the token buckets from the checksum module configuration.
+         */
+        private void updateLimits()
+        {
+            double bandwidth = _csm.getThroughputLimit();
+            if (!Double.isInfinite(bandwidth)) {
+                _bandwidth.setRate(bandwidth);
+            }
+            _isBandwidthLimited = !Double.isInfinite(bandwidth);
+
+            double files = _csm.getFileRateLimit();
+            if (!Double.isInfinite(files)) {
+                _files.setRate(files);
+            }
+            _isFileRateLimited = !Double.isInfinite(files);
+        }
+
         /**
          * Save scrubber state to <code>_scrubberStateFile</code>. The format is
          * the start time of the last scrub (<code>_lastStart</code>) separated
-         * by a whitespace followed by the pnfs id of the file last checked
-         * (<code>_lastFileChecked</code>). If there's no last checked file,
-         * write a dash instead.
+         * by a whitespace followed by the placement hint and the pnfs id of the
+         * position up to which all files have been checked
+         * (<code>_lastFileChecked</code>). If there's no such position, write a
+         * dash instead.
          */
-        private void saveState()
+        private synchronized void saveState()
         {
             String line = _lastStart + " " +
                           ((_lastFileChecked == null) ? "-" : _lastFileChecked);
@@ -262,12 +360,16 @@ public class ChecksumScanner
         /**
          * Read the saved state information from disk written by <code>
          * saveState()</code>. The following fields are initialized:<code>
-         * _lastFileChecked</code> - the pnfs id of the file that was last
+         * _lastFileChecked</code> - the position up to which all files were
          * checksummed; <code>_lastStart</code> - time when the last scrub
          * started, if there's no saved state it's initialized to the current
          * time.
+         *
+         * State files written by earlier versions only contain the pnfs id of
+         * the last file checked in pnfs id order. Since the scan order has
+         * changed, such a scrub is resumed from the beginning.
          */
-        private void initializeFromSavedState()
+        private synchronized void initializeFromSavedState()
         {
             String line;
             try {
@@ -286,7 +388,7 @@ public class ChecksumScanner
             }
 
             String[] fields = line.split(" ");
-            if (fields.length != 2) {
+            if (fields.length != 2 && fields.length != 3) {
                 _log.error("scrubber saved state in {} has an invalid format: {}",
                           _scrubberStateFile, line);
                 return;
@@ -300,13 +402,22 @@ public class ChecksumScanner
                 return;
             }
 
-            if (PnfsId.isValid(fields[1])) {
-                _log.debug("Resuming scrubbing from the first file with a pnfs id greater than {}",
-                           fields[1]);
-                _lastFileChecked = new PnfsId(fields[1]);
-            } else if (!fields[1].equals("-")) {
+            String id = fields[fields.length - 1];
+            if (PnfsId.isValid(id)) {
+                long placement = Long.MIN_VALUE;
+                if (fields.length == 3) {
+                    try {
+                        placement = Long.parseLong(fields[1]);
+                    } catch (NumberFormatException e) {
+                        _log.error("Failed to read the last scrubber position from {}: {}",
+                                   _scrubberStateFile, e.getMessage());
+                    }
+                }
+                _lastFileChecked = new ScanEntry(placement, new PnfsId(id));
+                _log.debug("Resuming scrubbing after {}", _lastFileChecked);
+            } else if (!id.equals("-")) {
                 _log.error("Last checked pnfs id within {} has an invalid format: {}",
-                           _scrubberStateFile, fields[1]);
+                           _scrubberStateFile, id);
             }
         }
 
@@ -315,7 +426,7 @@ public class ChecksumScanner
             return !_scrubberStateFile.exists();
         }
 
-        private boolean isResuming()
+        private synchronized boolean isResuming()
         {
             return (_lastFileChecked != null);
         }
@@ -360,13 +471,13 @@ public class ChecksumScanner
                     }
 
                     try {
-                        PnfsId[] toScan = getFilesToVerify();
+                        ScanEntry[] toScan = getFilesToVerify();
                         _numFiles = toScan.length;
-                        _badCount = 0;
-                        _totalCount = 0;
-                        _unableCount = 0;
+                        _badCount.set(0);
+                        _totalCount.set(0);
+                        _unableCount.set(0);
                         scanFiles(toScan);
-                        if (_badCount > 0) {
+                        if (_badCount.get() > 0) {
                             _log.warn("Finished scrubbing. Found {} bad files of {}",
                                        _badCount, _numFiles);
                         }
@@ -392,22 +503,37 @@ public class ChecksumScanner
         }
 
         /**
-         * Return array of pnfs id's that has not yet been verified. Any files
-         * added to the pool after this array has been generated will be
-         * included the next time the array is generated.
-         * @return array of pnfs id's that needs to be verified. No check is
+         * Return array of files that have not yet been verified, ordered by
+         * their placement on disk. Any files added to the pool after this
+         * array has been generated will be included the next time the array
+         * is generated.
+         * @return array of files that needs to be verified. No check is
          *         done on in which state the files are in.
          */
-        private PnfsId[] getFilesToVerify()
+        private ScanEntry[] getFilesToVerify() throws IOException
         {
-            PnfsId[] repcopy = Iterables.toArray(_repository, PnfsId.class);
+            List<ScanEntry> entries = new ArrayList<>();
+            for (PnfsId id : _repository) {
+                try {
+                    long placement = (_fileStore == null) ? 0 : _fileStore.getPlacementHint(id);
+                    entries.add(new ScanEntry(placement, id));
+                } catch (NoSuchFileException e) {
+                    /* It was removed before we could get it. No problem.
+                     */
+                }
+            }
+            ScanEntry[] repcopy = entries.toArray(new ScanEntry[entries.size()]);
             Arrays.sort(repcopy);
 
-            if (!isResuming()) {
+            ScanEntry lastFileChecked;
+            synchronized (this) {
+                lastFileChecked = _lastFileChecked;
+            }
+            if (lastFileChecked == null) {
                 return repcopy;
             }
 
-            int index = Arrays.binarySearch(repcopy, _lastFileChecked);
+            int index = Arrays.binarySearch(repcopy, lastFileChecked);
             if (index >= 0) {
                 /**
                  * Found. 0 <= index <= repcopy.length - 1
@@ -422,71 +548,193 @@ public class ChecksumScanner
             }
         }
 
+        /**
+         * Returns the index of the next file to verify, or -1 if all files
+         * have been claimed.
+         */
+        private int claim(ScanEntry[] toScan)
+        {
+            synchronized (_inFlight) {
+                if (_next >= toScan.length) {
+                    return -1;
+                }
+                _inFlight.add(_next);
+                return _next++;
+            }
+        }
+
+        private void release(int index)
+        {
+            synchronized (_inFlight) {
+                _inFlight.remove(index);
+            }
+        }
+
         /**
          * Save state information only every <code>CHECKPOINT_INTERVAL</code>
-         * period.
+         * period. Since files are verified in parallel, the saved position is
+         * the last file before the first file still being verified.
          */
-        private void checkpointIfNeeded()
+        private void checkpointIfNeeded(ScanEntry[] toScan)
         {
-            if (System.currentTimeMillis() - _lastCheckpoint > CHECKPOINT_INTERVAL) {
-                saveState();
+            synchronized (this) {
+                if (System.currentTimeMillis() - _lastCheckpoint <= CHECKPOINT_INTERVAL) {
+                    return;
+                }
+                int done;
+                synchronized (_inFlight) {
+                    done = (_inFlight.isEmpty() ? _next : _inFlight.first()) - 1;
+                }
+                if (done >= 0) {
+                    _lastFileChecked = toScan[done];
+                }
                 _lastCheckpoint = System.currentTimeMillis();
             }
+            saveState();
         }
 
-        private void scanFiles(PnfsId[] repository)
-                throws InterruptedException, NoSuchAlgorithmException, IOException
+        /**
+         * Blocks until the scrubber may verify another file. Waits for the
+         * file rate budget and backs off while movers are queued on the pool.
+         */
+        private void awaitBudget() throws InterruptedException
         {
-            for (PnfsId id : repository) {
+            if (_isFileRateLimited) {
+                _files.acquire();
+            }
+            if (isPoolBusy()) {
+                _backingOff.incrementAndGet();
                 try {
-                    if (_repository.getState(id) == ReplicaState.CACHED ||
-                        _repository.getState(id) == ReplicaState.PRECIOUS) {
-                        ReplicaDescriptor handle =
-                            _repository.openEntry(id, EnumSet.of(OpenFlags.NOATIME));
-                        try {
-                            _csm.verifyChecksumWithThroughputLimit(handle);
-                        } finally {
-                            handle.close();
-                        }
-                    }
-                } catch (FileCorruptedCacheException e) {
-                    _badCount++;
-                    _log.error(AlarmMarkerFactory.getMarker(PredefinedAlarm.CHECKSUM,
-                                                            id.toString(),
-                                                            poolName),
-                                    "Marking {} on {} as BROKEN: {}",
-                                    id,
-                                    poolName,
-                                    e.getMessage());
+                    long delay = MIN_BACKOFF_DELAY;
+                    do {
+                        Thread.sleep(delay);
+                        delay = Math.min(2 * delay, MAX_BACKOFF_DELAY);
+                    } while (isPoolBusy());
+                } finally {
+                    _backingOff.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Returns true if any mover queue of the pool has requests waiting
+         * for a free slot.
+         */
+        private boolean isPoolBusy()
+        {
+            return _ioQueueManager != null &&
+                   _ioQueueManager.queues().stream().anyMatch(queue -> queue.getQueueSize() > 0);
+        }
+
+        private void scanFiles(ScanEntry[] toScan)
+                throws InterruptedException, NoSuchAlgorithmException, IOException
+        {
+            updateLimits();
+            synchronized (_inFlight) {
+                _next = 0;
+                _inFlight.clear();
+            }
+
+            int threads = _csm.getScrubThreads();
+            _threads = threads;
+            ExecutorService executor =
+                    Executors.newFixedThreadPool(threads,
+                                                 new ThreadFactoryBuilder().setNameFormat("Scrubber-%d").build());
+            try {
+                CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+                for (int i = 0; i < threads; i++) {
+                    completionService.submit(() -> {
+                        verifyFiles(toScan);
+                        return null;
+                    });
+                }
+                for (int i = 0; i < threads; i++) {
                     try {
-                        _repository.setState(id, ReplicaState.BROKEN);
-                    } catch (CacheException f) {
-                        _log.warn("Failed to mark {} as BROKEN: {}", id, f.getMessage());
+                        completionService.take().get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        Throwables.propagateIfPossible(cause, IOException.class, NoSuchAlgorithmException.class);
+                        Throwables.propagateIfInstanceOf(cause, InterruptedException.class);
+                        throw new RuntimeException(cause);
                     }
-                } catch (IOException e) {
-                    _unableCount++;
-                    throw new IOException("Unable to read " + id + ": " + e.getMessage(), e);
-                } catch (FileNotInCacheException | NotInTrashCacheException e) {
-                    /* It was removed before we could get it. No problem.
-                     */
-                } catch (CacheException e) {
-                    _log.warn("Scrubber unable to verify {}: {}", id, e.getMessage());
-                    _unableCount++;
                 }
-                _lastFileChecked = id;
-                _totalCount++;
-                checkpointIfNeeded();
+            } finally {
+                executor.shutdownNow();
+                _threads = 0;
+            }
+            synchronized (this) {
+                _lastFileChecked = null;
+            }
+        }
+
+        private void verifyFiles(ScanEntry[] toScan)
+                throws InterruptedException, NoSuchAlgorithmException, IOException
+        {
+            int index;
+            while ((index = claim(toScan)) >= 0) {
+                try {
+                    awaitBudget();
+                    verify(toScan[index].id);
+                } finally {
+                    release(index);
+                }
+                _totalCount.incrementAndGet();
+                checkpointIfNeeded(toScan);
+            }
+        }
+
+        private void verify(PnfsId id)
+                throws InterruptedException, NoSuchAlgorithmException, IOException
+        {
+            try {
+                if (_repository.getState(id) == ReplicaState.CACHED ||
+                    _repository.getState(id) == ReplicaState.PRECIOUS) {
+                    ReplicaDescriptor handle =
+                        _repository.openEntry(id, EnumSet.of(OpenFlags.NOATIME));
+                    try (RepositoryChannel channel = _isBandwidthLimited
+                            ? new RateLimitedRepositoryChannel(handle.createChannel(), _bandwidth)
+                            : handle.createChannel()) {
+                        _csm.verifyChecksum(channel, handle.getChecksums());
+                    } finally {
+                        handle.close();
+                    }
+                }
+            } catch (FileCorruptedCacheException e) {
+                _badCount.incrementAndGet();
+                _log.error(AlarmMarkerFactory.getMarker(PredefinedAlarm.CHECKSUM,
+                                                        id.toString(),
+                                                        poolName),
+                                "Marking {} on {} as BROKEN: {}",
+                                id,
+                                poolName,
+                                e.getMessage());
+                try {
+                    _repository.setState(id, ReplicaState.BROKEN);
+                } catch (CacheException f) {
+                    _log.warn("Failed to mark {} as BROKEN: {}", id, f.getMessage());
+                }
+            } catch (IOException e) {
+                _unableCount.incrementAndGet();
+                throw new IOException("Unable to read " + id + ": " + e.getMessage(), e);
+            } catch (FileNotInCacheException | NotInTrashCacheException e) {
+                /* It was removed before we could get it. No problem.
+                 */
+            } catch (CacheException e) {
+                _log.warn("Scrubber unable to verify {}: {}", id, e.getMessage());
+                _unableCount.incrementAndGet();
             }
-            _lastFileChecked = null;
         }
 
         @Override
         public String toString()
         {
+            int backingOff = _backingOff.get();
             return super.toString() + " processed "
-                + _totalCount + " of " + _numFiles + " files: "
+                + _totalCount + " of " + _numFiles + " files using "
+                + _threads + " threads: "
                 + _badCount + " corrupt, "
-                + _unableCount + " unable to check";
+                + _unableCount + " unable to check"
+                + (backingOff > 0 ? ", " + backingOff + " threads backing off due to queued movers" : "");
         }
     }
 
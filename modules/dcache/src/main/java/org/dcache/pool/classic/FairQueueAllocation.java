@@ -1,27 +1,57 @@
-// $Id: FairQueueAllocation.java,v 1.7 2007-07-03 13:51:31 tigran Exp $
 package org.dcache.pool.classic;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 import org.dcache.pool.repository.Account;
 import org.dcache.pool.repository.Allocator;
 
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
 /**
- * Implementation of the SpaceMonitor interface, which serves requests
- * in FIFO order.
+ * Allocator which serves requests in FIFO order.
+ *
+ * Requests that cannot be served immediately are queued. A single
+ * allocation thread waits on the account for space to become available
+ * and serves the queue from the head. Callers waiting for space block
+ * on the future of their own request and are woken individually once
+ * it has been served, rather than all callers being woken whenever
+ * the head of the queue changes.
+ *
+ * The space of the request at the head of the queue is registered as
+ * requested with the account, thus letting the sweeper know that
+ * space has to be freed.
+ *
+ * The queue is guarded by the monitor of the account, thus the
+ * allocator observes the account changes in the same critical
+ * section in which they happen.
  */
 public class FairQueueAllocation
     implements Allocator
 {
+    private static final Logger _log =
+        LoggerFactory.getLogger(FairQueueAllocation.class);
+
     private Account _account;
 
     /**
-     * A list of threads waiting for space. Requests are served in the
-     * order they appear in this list.
+     * Requests waiting for space. Requests are served in the order
+     * they appear in this queue. Guarded by the account.
      */
-    private final List<Thread> _list =
-        new ArrayList<>();
+    private final Deque<Request> _queue = new ArrayDeque<>();
+
+    private Thread _thread;
 
     public FairQueueAllocation()
     {
@@ -32,22 +62,17 @@ public class FairQueueAllocation
         _account = account;
     }
 
-    private synchronized void enqueue(Thread thread)
-    {
-        _list.add(thread);
-    }
-
-    private synchronized void dequeue(Thread thread)
+    public synchronized void start()
     {
-        _list.remove(thread);
-        notifyAll();
+        _thread = new Thread(this::run, "allocator");
+        _thread.start();
     }
 
-    private synchronized void waitForTurn(Thread thread)
-        throws InterruptedException
+    public synchronized void stop() throws InterruptedException
     {
-        while (_list.get(0) != thread) {
-            wait();
+        if (_thread != null) {
+            _thread.interrupt();
+            _thread.join(1000);
         }
     }
 
@@ -55,48 +80,211 @@ public class FairQueueAllocation
      * Allocate space. If not enough free space is available, the
      * thread blocks until free space is made available.
      *
-     * In case not enough space is available, a callback is triggered
-     * such that the sweeper knows that additional space is required.
+     * In case not enough space is available, the sweeper is notified
+     * that additional space is required.
      */
     @Override
     public void allocate(long space)
         throws InterruptedException
+    {
+        await(submit(space, false), space);
+    }
+
+    @Override
+    public boolean allocateNow(long space)
+        throws InterruptedException
+    {
+        return await(submit(space, true), space);
+    }
+
+    /**
+     * Allocate space if it is free and no other request is waiting.
+     */
+    @Override
+    public boolean tryAllocate(long space)
     {
         if (space < 0) {
             throw new IllegalArgumentException("Cannot allocate negative space");
         }
-
-        final Thread self = Thread.currentThread();
-        enqueue(self);
-        try {
-            waitForTurn(self);
-            _account.allocate(space);
-        } finally {
-            dequeue(self);
+        synchronized (_account) {
+            return _queue.isEmpty() && _account.tryAllocate(space);
         }
     }
 
     @Override
-    public boolean allocateNow(long space)
-        throws InterruptedException
+    public ListenableFuture<Void> allocateAsync(long space)
+    {
+        return Futures.transform(submit(space, false), (Function<Boolean, Void>) isAllocated -> null);
+    }
+
+    @Override
+    public void free(long space)
+    {
+        _account.free(space);
+    }
+
+    /**
+     * Submits a request. The request is served immediately if no other
+     * request is waiting and enough space is free. Otherwise it is queued.
+     *
+     * @param space the number of bytes to allocate
+     * @param failIfUnavailable whether to give up if the request cannot be
+     *                          served even after removing all removable files
+     * @return future completing with whether the space was allocated
+     */
+    private ListenableFuture<Boolean> submit(long space, boolean failIfUnavailable)
     {
         if (space < 0) {
             throw new IllegalArgumentException("Cannot allocate negative space");
         }
 
-        final Thread self = Thread.currentThread();
-        enqueue(self);
+        Request request = new Request(space, failIfUnavailable);
+        synchronized (_account) {
+            if (_queue.isEmpty() && _account.tryAllocate(space)) {
+                return Futures.immediateFuture(true);
+            }
+            _queue.add(request);
+            _account.notifyAll();
+        }
+        request.future.addListener(() -> {
+            if (request.future.isCancelled()) {
+                withdraw(request);
+            }
+        }, directExecutor());
+        return request.future;
+    }
+
+    /**
+     * Removes a cancelled request from the queue.
+     */
+    private void withdraw(Request request)
+    {
+        synchronized (_account) {
+            if (_queue.remove(request)) {
+                if (request.isRequested) {
+                    _account.adjustRequested(-request.space);
+                }
+                _account.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits for a request to be served. Should the calling thread be
+     * interrupted, the request is cancelled and any space allocated for
+     * it in the meantime is freed.
+     */
+    private boolean await(ListenableFuture<Boolean> future, long space)
+        throws InterruptedException
+    {
         try {
-            waitForTurn(self);
-            return _account.allocateNow(space);
+            return future.get();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false) && future.isDone() && Futures.getUnchecked(future)) {
+                free(space);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) e.getCause();
+            }
+            throw new IllegalStateException("Allocation failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (CancellationException e) {
+            throw new InterruptedException("Allocation was cancelled");
+        }
+    }
+
+    private void run()
+    {
+        try {
+            while (true) {
+                for (Request request : takeServed()) {
+                    if (!request.future.set(request.isAllocated) && request.isAllocated) {
+                        free(request.space);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            _log.debug("Allocator was interrupted");
         } finally {
-            dequeue(self);
+            failAll();
         }
     }
 
-    @Override
-    public void free(long space)
+    /**
+     * Blocks until at least one request at the head of the queue has been
+     * served, and returns the served requests. Requests are completed by
+     * the caller outside the monitor of the account.
+     */
+    private List<Request> takeServed() throws InterruptedException
     {
-        _account.free(space);
+        List<Request> served = new ArrayList<>();
+        synchronized (_account) {
+            while (true) {
+                Request head = _queue.peek();
+                if (head != null) {
+                    if (_account.tryAllocate(head.space)) {
+                        head.isAllocated = true;
+                    } else if (head.failIfUnavailable &&
+                               head.space > _account.getFree() + _account.getRemovable()) {
+                        head.isAllocated = false;
+                    } else {
+                        if (!head.isRequested) {
+                            head.isRequested = true;
+                            _account.adjustRequested(head.space);
+                        }
+                        head = null;
+                    }
+                }
+
+                if (head != null) {
+                    _queue.remove();
+                    if (head.isRequested) {
+                        _account.adjustRequested(-head.space);
+                    }
+                    served.add(head);
+                } else if (!served.isEmpty()) {
+                    return served;
+                } else {
+                    _account.wait();
+                }
+            }
+        }
+    }
+
+    private void failAll()
+    {
+        List<Request> requests;
+        synchronized (_account) {
+            requests = new ArrayList<>(_queue);
+            for (Request request : requests) {
+                if (request.isRequested) {
+                    _account.adjustRequested(-request.space);
+                }
+            }
+            _queue.clear();
+        }
+        for (Request request : requests) {
+            request.future.setException(new InterruptedException("Allocator was shut down"));
+        }
+    }
+
+    private static class Request
+    {
+        final SettableFuture<Boolean> future = SettableFuture.create();
+        final long space;
+        final boolean failIfUnavailable;
+
+        /** Whether the space of this request was registered as requested. */
+        boolean isRequested;
+
+        /** Whether the space of this request was allocated. */
+        boolean isAllocated;
+
+        Request(long space, boolean failIfUnavailable)
+        {
+            this.space = space;
+            this.failIfUnavailable = failIfUnavailable;
+        }
     }
 }
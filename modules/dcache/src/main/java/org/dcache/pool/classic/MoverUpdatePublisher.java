@@ -0,0 +1,185 @@
+package org.dcache.pool.classic;
+
+import org.springframework.beans.factory.annotation.Required;
+
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import diskCacheV111.vehicles.IoJobInfo;
+import diskCacheV111.vehicles.IpProtocolInfo;
+import diskCacheV111.vehicles.ProtocolInfo;
+
+import dmg.cells.nucleus.CellInfoProvider;
+import dmg.cells.nucleus.CellMessageReceiver;
+
+import org.dcache.auth.Subjects;
+import org.dcache.cells.CellStub;
+import org.dcache.pool.movers.Mover;
+import org.dcache.util.FireAndForgetTask;
+import org.dcache.vehicles.PoolMoverInfo;
+import org.dcache.vehicles.PoolMoverSnapshotMessage;
+import org.dcache.vehicles.PoolMoverUpdateMessage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Publishes changes to the movers of this pool on a topic.
+ *
+ * Once per period the current movers are compared with those of the
+ * previous update, and the movers that were created, changed state or
+ * transferred data, as well as the movers that finished, are published.
+ * If nothing changed, an empty update is still sent every KEEP_ALIVE_PERIODS
+ * periods to let subscribers know the pool is alive.
+ *
+ * Subscribers that missed an update request a snapshot of the movers
+ * described by the most recent update.
+ */
+public class MoverUpdatePublisher implements CellMessageReceiver, CellInfoProvider
+{
+    private static final int KEEP_ALIVE_PERIODS = 15;
+
+    private final FireAndForgetTask _task = new FireAndForgetTask(this::publish);
+
+    private String _poolName;
+    private IoQueueManager _ioQueues;
+    private CellStub _topic;
+    private ScheduledExecutorService _executor;
+    private long _period = 2;
+    private TimeUnit _periodUnit = TimeUnit.SECONDS;
+
+    private ScheduledFuture<?> _future;
+
+    /** Movers as described by the most recent update. */
+    private Map<Integer, PoolMoverInfo> _published = new HashMap<>();
+    private long _sequence;
+    private long _lastSent;
+    private long _updates;
+
+    @Required
+    public void setPoolName(String poolName)
+    {
+        _poolName = poolName;
+    }
+
+    @Required
+    public void setIoQueueManager(IoQueueManager queues)
+    {
+        _ioQueues = queues;
+    }
+
+    @Required
+    public void setTopic(CellStub topic)
+    {
+        _topic = topic;
+    }
+
+    @Required
+    public void setExecutor(ScheduledExecutorService executor)
+    {
+        _executor = executor;
+    }
+
+    public void setPeriod(long period)
+    {
+        checkArgument(period > 0, "Period must be positive");
+        _period = period;
+    }
+
+    public void setPeriodUnit(TimeUnit unit)
+    {
+        _periodUnit = unit;
+    }
+
+    private long getUpdateTime()
+    {
+        return _periodUnit.toMillis(_period) * KEEP_ALIVE_PERIODS;
+    }
+
+    public synchronized void start()
+    {
+        _future = _executor.scheduleWithFixedDelay(_task, _period, _period, _periodUnit);
+    }
+
+    public synchronized void stop()
+    {
+        if (_future != null) {
+            _future.cancel(false);
+        }
+    }
+
+    private synchronized void publish()
+    {
+        Map<Integer, PoolMoverInfo> current = new HashMap<>();
+        List<PoolMoverInfo> updated = new ArrayList<>();
+        for (MoverRequestScheduler queue : _ioQueues.queues()) {
+            queue.getJobs().forEach(request -> {
+                PoolMoverInfo info = toPoolMoverInfo(request);
+                current.put(request.getId(), info);
+                if (hasChanged(_published.get(request.getId()), info.getJob())) {
+                    updated.add(info);
+                }
+            });
+        }
+
+        List<Integer> finished = new ArrayList<>();
+        for (Integer id : _published.keySet()) {
+            if (!current.containsKey(id)) {
+                finished.add(id);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (!updated.isEmpty() || !finished.isEmpty() || now - _lastSent >= getUpdateTime()) {
+            _sequence++;
+            _topic.notify(new PoolMoverUpdateMessage(_poolName, _sequence, getUpdateTime(), updated, finished));
+            _published = current;
+            _lastSent = now;
+            _updates++;
+        }
+    }
+
+    private static boolean hasChanged(PoolMoverInfo old, IoJobInfo job)
+    {
+        return old == null ||
+               old.getJob().getBytesTransferred() != job.getBytesTransferred() ||
+               old.getJob().getStartTime() != job.getStartTime() ||
+               !old.getJob().getStatus().equals(job.getStatus());
+    }
+
+    private PoolMoverInfo toPoolMoverInfo(MoverRequestScheduler.PrioritizedRequest request)
+    {
+        Mover<?> mover = request.getMover();
+        String clientHost = null;
+        ProtocolInfo protocolInfo = mover.getProtocolInfo();
+        if (protocolInfo instanceof IpProtocolInfo) {
+            InetSocketAddress address = ((IpProtocolInfo) protocolInfo).getSocketAddress();
+            if (address != null) {
+                clientHost = address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+            }
+        }
+        return new PoolMoverInfo(_poolName, request.toJobInfo(), Subjects.getDisplayName(mover.getSubject()), clientHost);
+    }
+
+    public synchronized PoolMoverSnapshotMessage messageArrived(PoolMoverSnapshotMessage message)
+    {
+        message.setSnapshot(_poolName, _sequence, getUpdateTime(), new ArrayList<>(_published.values()));
+        message.setSucceeded();
+        return message;
+    }
+
+    @Override
+    public synchronized void getInfo(PrintWriter pw)
+    {
+        pw.println("Mover updates");
+        pw.println("  Period           : " + _period + " " + _periodUnit);
+        pw.println("  Updates sent     : " + _updates);
+        pw.println("  Published movers : " + _published.size());
+    }
+}
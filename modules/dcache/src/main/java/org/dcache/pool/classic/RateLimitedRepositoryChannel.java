@@ -0,0 +1,143 @@
+package org.dcache.pool.classic;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.dcache.pool.repository.RepositoryChannel;
+
+/**
+ * A RepositoryChannel decorator that limits the rate at which data is read.
+ *
+ * Every byte read acquires a permit from a rate limiter, which may be shared
+ * between several channels to enforce an aggregate bandwidth limit.
+ */
+class RateLimitedRepositoryChannel implements RepositoryChannel
+{
+    private final RepositoryChannel channel;
+    private final RateLimiter limiter;
+
+    RateLimitedRepositoryChannel(RepositoryChannel channel, RateLimiter limiter)
+    {
+        this.channel = channel;
+        this.limiter = limiter;
+    }
+
+    private <T extends Number> T acquire(T bytes)
+    {
+        long n = bytes.longValue();
+        while (n > 0) {
+            int permits = (int) Math.min(n, Integer.MAX_VALUE);
+            limiter.acquire(permits);
+            n -= permits;
+        }
+        return bytes;
+    }
+
+    @Override
+    public int write(ByteBuffer buffer, long position) throws IOException
+    {
+        return channel.write(buffer, position);
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, long position) throws IOException
+    {
+        return acquire(channel.read(buffer, position));
+    }
+
+    @Override
+    public void sync() throws IOException
+    {
+        channel.sync();
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException
+    {
+        return acquire(channel.transferTo(position, count, target));
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException
+    {
+        return channel.transferFrom(src, position, count);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException
+    {
+        return channel.write(srcs, offset, length);
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException
+    {
+        return channel.write(srcs);
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException
+    {
+        return acquire(channel.read(dsts, offset, length));
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException
+    {
+        return acquire(channel.read(dsts));
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException
+    {
+        return acquire(channel.read(dst));
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException
+    {
+        return channel.write(src);
+    }
+
+    @Override
+    public long position() throws IOException
+    {
+        return channel.position();
+    }
+
+    @Override
+    public RepositoryChannel position(long newPosition) throws IOException
+    {
+        channel.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException
+    {
+        return channel.size();
+    }
+
+    @Override
+    public RepositoryChannel truncate(long size) throws IOException
+    {
+        channel.truncate(size);
+        return this;
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
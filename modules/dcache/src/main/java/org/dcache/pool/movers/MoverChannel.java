@@ -20,6 +20,8 @@ import org.dcache.pool.repository.RepositoryChannel;
 import org.dcache.vehicles.FileAttributes;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static org.dcache.namespace.FileAttribute.SIZE;
+import static org.dcache.util.ByteUnit.GiB;
 import static org.dcache.util.ByteUnit.MiB;
 
 /**
@@ -41,6 +43,13 @@ public class MoverChannel<T extends ProtocolInfo> implements RepositoryChannel
      */
     private static final long SPACE_INC = MiB.toBytes(50);
 
+    /**
+     * The maximum number of bytes to increment the space
+     * allocation. The increment doubles with every allocation
+     * until this limit is reached.
+     */
+    private static final long MAX_SPACE_INC = GiB.toBytes(1);
+
     /**
      * Inner channel to which most operations are delegated.
      */
@@ -90,6 +99,12 @@ public class MoverChannel<T extends ProtocolInfo> implements RepositoryChannel
      */
     private volatile long _reserved;
 
+    /**
+     * The number of bytes to allocate with the next allocation, unless
+     * more is needed. Only accessed while the monitor lock is held.
+     */
+    private long _increment = SPACE_INC;
+
     /**
      * Tells, should allocator block for available space or not.
      */
@@ -324,14 +339,26 @@ public class MoverChannel<T extends ProtocolInfo> implements RepositoryChannel
             checkArgument(pos >= 0);
 
             if (pos > _reserved) {
-                long delta = Math.max(pos - _reserved, SPACE_INC);
+                long needed = pos - _reserved;
+                long delta = Math.max(needed, getIncrement());
                 _logSpaceAllocation.trace("preallocate: {}", delta);
-                if (_allocatorMode == AllocatorMode.HARD) {
-                    _allocator.allocate(delta);
-                } else if (!_allocator.allocateNow(delta)) {
-                    throw new OutOfDiskException();
+                if (!_allocator.tryAllocate(delta)) {
+                    /* The increment is speculative and only taken if it
+                     * is free, as it could otherwise cause the sweeper
+                     * to remove cached files. Fall back to what is
+                     * actually needed. In HARD mode only that much is
+                     * waited for, as the channel is locked while waiting.
+                     */
+                    _increment = SPACE_INC;
+                    if (_allocatorMode == AllocatorMode.HARD) {
+                        _allocator.allocate(needed);
+                    } else if (!_allocator.allocateNow(needed)) {
+                        throw new OutOfDiskException();
+                    }
+                    delta = needed;
                 }
                 _reserved += delta;
+                _increment = Math.min(2 * _increment, MAX_SPACE_INC);
             }
         } catch (InterruptedException e) {
             throw new InterruptedIOException(e.getMessage());
@@ -339,4 +366,22 @@ public class MoverChannel<T extends ProtocolInfo> implements RepositoryChannel
             throw new ClosedChannelException();
         }
     }
+
+    /**
+     * Returns the number of bytes to allocate with the next allocation.
+     * Writers of large files allocate in increasingly large chunks, thus
+     * reducing the number of round trips through the allocator, while
+     * the chunk never extends beyond the expected size of the file.
+     * Unused space is returned when the replica is committed.
+     */
+    private long getIncrement()
+    {
+        if (_fileAttributes != null && _fileAttributes.isDefined(SIZE)) {
+            long remaining = _fileAttributes.getSize() - _reserved;
+            if (remaining > 0) {
+                return Math.min(_increment, remaining);
+            }
+        }
+        return _increment;
+    }
 }
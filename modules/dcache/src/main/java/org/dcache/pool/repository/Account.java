@@ -80,6 +80,40 @@ public class Account
         _timeOfLastFree = System.currentTimeMillis();
     }
 
+    /**
+     * Allocates <code>request</code> bytes if that much space is
+     * free. Never blocks.
+     *
+     * @return true if and only if the request was served
+     */
+    public synchronized boolean tryAllocate(long request)
+    {
+        if (request < 0) {
+            throw new IllegalArgumentException("Cannot allocate negative space.");
+        }
+        if (request > getFree()) {
+            return false;
+        }
+        _used += request;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Adjusts the amount of space requested by allocations waiting for
+     * free space. Used by allocators that queue requests outside of
+     * this object.
+     */
+    public synchronized void adjustRequested(long delta)
+    {
+        long requested = _requested + delta;
+        if (requested < 0) {
+            throw new IllegalArgumentException("Negative requested space is not allowed.");
+        }
+        _requested = requested;
+        notifyAll();
+    }
+
     /**
      * Allocates up to <code>request</code> bytes. If less space is
      * free, then nothing is allocated.
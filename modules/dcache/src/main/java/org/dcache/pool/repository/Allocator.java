@@ -1,5 +1,7 @@
 package org.dcache.pool.repository;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 /**
  * An allocator supports methods for allocating and freeing space.
  */
@@ -33,6 +35,33 @@ public interface Allocator
             IllegalArgumentException,
             InterruptedException;
 
+    /**
+     * Allocates space if it is free. Never blocks and never causes
+     * cached files to be removed to make room.
+     *
+     * @param size in bytes
+     * @throws IllegalStateException if operation is not allowed at this point
+     * @throws IllegalArgumentException if <code>size</code> is less than 0.
+     * @return true if and only if the request space was allocated
+     */
+    boolean tryAllocate(long size)
+            throws IllegalStateException,
+            IllegalArgumentException;
+
+    /**
+     * Allocates space without blocking the calling thread. The returned
+     * future completes once the space has been allocated. Cancelling the
+     * future withdraws the request.
+     *
+     * @param size in bytes
+     * @throws IllegalStateException if operation is not allowed at this point
+     * @throws IllegalArgumentException if <code>size</code> is less than 0.
+     * @return future that completes when the space is allocated
+     */
+    ListenableFuture<Void> allocateAsync(long size)
+            throws IllegalStateException,
+            IllegalArgumentException;
+
     /**
      * Frees space previously allocated with one of the allocate
      * methods.
@@ -71,4 +71,15 @@ public interface FileStore
      * determined is up to the implementation.
      */
     boolean isOk();
+
+    /**
+     * Returns a hint about the placement of the data file for the given
+     * PNFS id on the underlying storage. Reading data files in the order of
+     * their placement hints approximates reading them in the order in which
+     * they are stored. The default implementation provides no ordering.
+     */
+    default long getPlacementHint(PnfsId id) throws IOException
+    {
+        return 0;
+    }
 }
@@ -108,6 +108,20 @@ public class FlatFileStore implements FileStore
         return Files.getFileStore(_dataDir).getTotalSpace();
     }
 
+    /**
+     * Returns the inode number of the data file, which on most local file
+     * systems correlates with the location of the file on disk.
+     */
+    @Override
+    public long getPlacementHint(PnfsId id) throws IOException
+    {
+        try {
+            return ((Number) Files.getAttribute(getPath(id), "unix:ino")).longValue();
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return 0;
+        }
+    }
+
     @Override
     public boolean isOk()
     {
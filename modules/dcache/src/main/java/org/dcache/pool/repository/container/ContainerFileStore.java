@@ -0,0 +1,853 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2016 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.repository.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import diskCacheV111.util.PnfsId;
+
+import dmg.cells.nucleus.CellInfoProvider;
+
+import org.dcache.pool.movers.IoMode;
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.FileStore;
+import org.dcache.pool.repository.RepositoryChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A file store that packs small replicas into large append-only segment files.
+ *
+ * Replicas are created and written as individual files in the "data"
+ * subdirectory, exactly like in {@link org.dcache.pool.repository.FlatFileStore}.
+ * When a channel opened for writing is closed, the replica is queued for
+ * packing. {@link #pack} periodically appends the queued replicas no larger
+ * than the configured limit to the current segment in the "containers"
+ * subdirectory and deletes the individual files. Larger replicas stay in the
+ * data directory. Existing pools can thus be switched to this store without
+ * migration.
+ *
+ * The location of packed replicas is kept in memory and persisted in an
+ * append-only {@link IndexJournal}. Packed replicas are read through a
+ * {@link RepositoryChannel} view onto the segment, sharing one open file per
+ * segment. Opening a packed replica for writing unpacks it into the data
+ * directory first.
+ *
+ * Replicas are appended to segments without holding the monitor of the
+ * store, such that removing and unpacking replicas is not blocked by packing
+ * or compaction. Segments and the journal are forced to disk once per batch.
+ *
+ * Removing a packed replica only marks its space in the segment as dead.
+ * Compaction copies the live replicas of segments with too much dead space to
+ * the current segment and deletes the old segment once it is no longer read.
+ *
+ * Note that packed replicas are not accessible as regular files. Their URI
+ * uses the "container" scheme and cannot be used by nearline storage
+ * scripts that expect a path to the replica.
+ */
+public class ContainerFileStore implements FileStore, CellInfoProvider
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContainerFileStore.class);
+
+    private static final String INDEX = "index";
+
+    private final Path dataDir;
+    private final Path containerDir;
+    private final long maxReplicaSize;
+    private final long segmentSize;
+    private final double compactionThreshold;
+
+    private final ConcurrentMap<PnfsId, Extent> extents = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final IndexJournal journal;
+
+    /**
+     * Replicas waiting to be packed, mapped to the channel that last wrote
+     * them. Removing or reopening a replica for writing removes its entry,
+     * which discards a copy made by a concurrent {@link #pack}.
+     */
+    private final ConcurrentMap<PnfsId, PackingRepositoryChannel> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Serializes packing and compaction, the only operations appending to
+     * segments.
+     */
+    private final Object appendLock = new Object();
+
+    /**
+     * Segment to which replicas are appended. Guarded by appendLock.
+     */
+    private Segment current;
+
+    /**
+     * Id of the next segment to create. Ids of retired segments are not reused
+     * as they may still be read. Guarded by appendLock.
+     */
+    private int nextSegmentId;
+
+    private final AtomicLong packed = new AtomicLong();
+    private final AtomicLong unpacked = new AtomicLong();
+    private final AtomicLong compacted = new AtomicLong();
+
+    public ContainerFileStore(Path baseDir, long maxReplicaSize, long segmentSize,
+                              double compactionThreshold) throws IOException
+    {
+        checkArgument(maxReplicaSize <= segmentSize, "Maximum replica size must not exceed segment size");
+        checkArgument(compactionThreshold > 0 && compactionThreshold <= 1,
+                      "Compaction threshold must be in (0, 1]");
+
+        if (!Files.isDirectory(baseDir)) {
+            throw new FileNotFoundException("No such directory: " + baseDir);
+        }
+
+        this.maxReplicaSize = maxReplicaSize;
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+
+        dataDir = createDirectory(baseDir.resolve("data"));
+        containerDir = createDirectory(baseDir.resolve("containers"));
+
+        Path index = containerDir.resolve(INDEX);
+        Map<PnfsId, Extent> replayed = IndexJournal.replay(index);
+        loadSegments(replayed);
+        journal = new IndexJournal(index);
+        journal.rewrite(extents);
+    }
+
+    private static Path createDirectory(Path dir) throws IOException
+    {
+        if (!Files.exists(dir)) {
+            Files.createDirectory(dir);
+        } else if (!Files.isDirectory(dir)) {
+            throw new FileNotFoundException("No such directory: " + dir);
+        }
+        return dir;
+    }
+
+    /**
+     * Opens all segments and reconciles them with the replayed index.
+     */
+    private void loadSegments(Map<PnfsId, Extent> replayed) throws IOException
+    {
+        try (Stream<Path> files = Files.list(containerDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                int id = Segment.toId(file);
+                if (id >= 0) {
+                    segments.put(id, Segment.open(containerDir, id));
+                }
+            }
+        }
+
+        Map<Integer, Long> live = new HashMap<>();
+        for (Map.Entry<PnfsId, Extent> entry : replayed.entrySet()) {
+            PnfsId id = entry.getKey();
+            Extent extent = entry.getValue();
+            Segment segment = segments.get(extent.segment);
+            if (segment == null || extent.offset + extent.length > segment.size()) {
+                LOGGER.warn("Dropping {} from container index: segment {} is missing or truncated.",
+                            id, extent.segment);
+            } else if (Files.exists(getPath(id))) {
+                /* The replica was either packed or unpacked when the pool went down. In
+                 * both cases the individual file is at least as recent as the packed copy.
+                 */
+                LOGGER.info("Dropping {} from container index as it exists as a file.", id);
+            } else {
+                extents.put(id, extent);
+                live.merge(extent.segment, extent.length, Long::sum);
+            }
+        }
+
+        int last = -1;
+        for (Segment segment : segments.values()) {
+            segment.setDeadBytes(segment.size() - live.getOrDefault(segment.id, 0L));
+            last = Math.max(last, segment.id);
+        }
+        nextSegmentId = last + 1;
+        if (last >= 0 && segments.get(last).size() < segmentSize) {
+            current = segments.get(last);
+        }
+    }
+
+    /**
+     * Returns a human readable description of the file store.
+     */
+    public String toString()
+    {
+        return dataDir.toString() + " (" + containerDir + ")";
+    }
+
+    private Path getPath(PnfsId id)
+    {
+        return dataDir.resolve(id.toString());
+    }
+
+    @Override
+    public URI get(PnfsId id)
+    {
+        Extent extent = extents.get(id);
+        if (extent == null) {
+            return getPath(id).toUri();
+        }
+        Segment segment = segments.get(extent.segment);
+        String path = (segment == null) ? containerDir.toAbsolutePath().toString() : segment.path.toAbsolutePath().toString();
+        try {
+            return new URI("container", null, path, extent.offset + ":" + extent.length);
+        } catch (URISyntaxException e) {
+            throw new RuntimeException("Failed to build URI", e);
+        }
+    }
+
+    /**
+     * Returns the extent of a replica that was packed after a reader failed
+     * to find it in the index, or rethrows {@code e} if the replica is not
+     * packed either.
+     *
+     * Packing adds the extent to the index before deleting the individual
+     * file, so a reader that misses both the extent and the file finds the
+     * extent on the second lookup.
+     */
+    private Extent getPackedExtent(PnfsId id, NoSuchFileException e) throws NoSuchFileException
+    {
+        Extent extent = extents.get(id);
+        if (extent == null) {
+            throw e;
+        }
+        return extent;
+    }
+
+    @Override
+    public boolean contains(PnfsId id)
+    {
+        /* The index is checked again as the replica may have been packed concurrently. */
+        return extents.containsKey(id) || Files.exists(getPath(id)) || extents.containsKey(id);
+    }
+
+    @Override
+    public BasicFileAttributeView getFileAttributeView(PnfsId id) throws IOException
+    {
+        return new ReplicaAttributeView(id);
+    }
+
+    @Override
+    public URI create(PnfsId id) throws IOException
+    {
+        if (extents.containsKey(id)) {
+            throw new FileAlreadyExistsException(id.toString());
+        }
+        Path p = getPath(id);
+        Files.createFile(p);
+        return p.toUri();
+    }
+
+    @Override
+    public RepositoryChannel openDataChannel(PnfsId id, IoMode ioMode) throws IOException
+    {
+        if (ioMode == IoMode.WRITE) {
+            unpack(id);
+            return new PackingRepositoryChannel(id, ioMode);
+        }
+
+        while (true) {
+            Extent extent;
+            while ((extent = extents.get(id)) != null) {
+                Segment segment = segments.get(extent.segment);
+                if (segment != null && segment.acquire()) {
+                    return new SegmentRepositoryChannel(segment, extent);
+                }
+                /* The replica was moved by compaction; retry with its new location. */
+            }
+            try {
+                return new FileRepositoryChannel(getPath(id), ioMode.toOpenString());
+            } catch (NoSuchFileException e) {
+                /* Retry if the replica was packed concurrently. */
+                getPackedExtent(id, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void remove(PnfsId id) throws IOException
+    {
+        pending.remove(id);
+        Files.deleteIfExists(getPath(id));
+        removeExtent(id);
+    }
+
+    private void removeExtent(PnfsId id) throws IOException
+    {
+        synchronized (journal) {
+            Extent extent = extents.remove(id);
+            if (extent != null) {
+                Segment segment = segments.get(extent.segment);
+                if (segment != null) {
+                    segment.addDeadBytes(extent.length);
+                }
+                journal.remove(id);
+            }
+        }
+    }
+
+    @Override
+    public Set<PnfsId> index() throws IOException
+    {
+        Set<PnfsId> ids;
+        try (Stream<Path> files = Files.list(dataDir)) {
+            ids = files
+                    .map(p -> p.getFileName().toString())
+                    .filter(PnfsId::isValid)
+                    .map(PnfsId::new)
+                    .collect(Collectors.toCollection(HashSet::new));
+        }
+        ids.addAll(extents.keySet());
+        return ids;
+    }
+
+    @Override
+    public long getFreeSpace() throws IOException
+    {
+        return Files.getFileStore(dataDir).getUsableSpace();
+    }
+
+    @Override
+    public long getTotalSpace() throws IOException
+    {
+        return Files.getFileStore(dataDir).getTotalSpace();
+    }
+
+    @Override
+    public boolean isOk()
+    {
+        try {
+            Path tmp = dataDir.resolve(".repository_is_ok");
+            Files.deleteIfExists(tmp);
+            Files.createFile(tmp);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Packed replicas are ordered by segment and offset and precede replicas
+     * stored as individual files, which are ordered by inode number.
+     */
+    @Override
+    public long getPlacementHint(PnfsId id) throws IOException
+    {
+        Extent extent = extents.get(id);
+        if (extent != null) {
+            return ((long) extent.segment << 40) + extent.offset;
+        }
+        try {
+            return Long.MAX_VALUE / 2 + ((Number) Files.getAttribute(getPath(id), "unix:ino")).longValue();
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return Long.MAX_VALUE / 2;
+        }
+    }
+
+    /**
+     * Packs the replicas queued since the last call that are small enough.
+     *
+     * The replicas are appended to the current segment without holding the
+     * monitor of this store. The segments and the journal are then forced to
+     * disk once for the whole batch before the individual files are deleted.
+     * Replicas removed or reopened for writing while being copied are not
+     * packed and their copy counts as dead space.
+     */
+    public void pack() throws IOException
+    {
+        if (pending.isEmpty()) {
+            return;
+        }
+        synchronized (appendLock) {
+            Map<PnfsId, PackingRepositoryChannel> batch = new HashMap<>(pending);
+            Map<PnfsId, Extent> copied = new HashMap<>();
+            try {
+                Set<Segment> written = new HashSet<>();
+                for (Map.Entry<PnfsId, PackingRepositoryChannel> entry : batch.entrySet()) {
+                    PnfsId id = entry.getKey();
+                    Path path = getPath(id);
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        long size = attributes.size();
+                        if (size > maxReplicaSize) {
+                            pending.remove(id, entry.getValue());
+                            continue;
+                        }
+                        Segment segment = getSegmentFor(size);
+                        long offset;
+                        try (FileChannel src = FileChannel.open(path, READ)) {
+                            offset = segment.append(src, 0, size);
+                        }
+                        written.add(segment);
+                        copied.put(id, new Extent(segment.id, offset, size,
+                                                  attributes.creationTime().toMillis(),
+                                                  attributes.lastModifiedTime().toMillis(),
+                                                  attributes.lastAccessTime().toMillis()));
+                    } catch (NoSuchFileException e) {
+                        /* Removed in the meantime. */
+                        pending.remove(id, entry.getValue());
+                    }
+                }
+                for (Segment segment : written) {
+                    segment.force();
+                }
+                commit(batch, copied);
+            } finally {
+                copied.values().forEach(this::discard);
+            }
+        }
+    }
+
+    /**
+     * Adds the copied replicas that are still queued for packing to the index
+     * and deletes their individual files. Committed replicas are removed from
+     * {@code copied}.
+     */
+    private synchronized void commit(Map<PnfsId, PackingRepositoryChannel> batch,
+                                     Map<PnfsId, Extent> copied) throws IOException
+    {
+        Map<PnfsId, Extent> committed = new HashMap<>();
+        for (Map.Entry<PnfsId, Extent> entry : copied.entrySet()) {
+            PnfsId id = entry.getKey();
+            if (pending.remove(id, batch.get(id))) {
+                committed.put(id, entry.getValue());
+            }
+        }
+        synchronized (journal) {
+            journal.add(committed);
+            extents.putAll(committed);
+        }
+        copied.keySet().removeAll(committed.keySet());
+        for (PnfsId id : committed.keySet()) {
+            Files.delete(getPath(id));
+        }
+        packed.addAndGet(committed.size());
+    }
+
+    /**
+     * Marks the space of a copy that did not make it into the index as dead.
+     */
+    private void discard(Extent extent)
+    {
+        Segment segment = segments.get(extent.segment);
+        if (segment != null) {
+            segment.addDeadBytes(extent.length);
+        }
+    }
+
+    /**
+     * Copies a packed replica back into the data directory.
+     *
+     * The copy is made without holding the monitor of this store. Readers
+     * keep using the packed replica until the copy is complete and the
+     * replica is removed from the index.
+     */
+    private void unpack(PnfsId id) throws IOException
+    {
+        Extent extent;
+        Segment segment;
+        synchronized (this) {
+            pending.remove(id);
+            do {
+                extent = extents.get(id);
+                if (extent == null) {
+                    return;
+                }
+                segment = segments.get(extent.segment);
+                /* Retry if the replica was moved by compaction. */
+            } while (segment == null || !segment.acquire());
+        }
+
+        Path path = getPath(id);
+        try (FileChannel dst = FileChannel.open(path, WRITE, CREATE_NEW)) {
+            try {
+                long transferred = 0;
+                while (transferred < extent.length) {
+                    long n = segment.channel.transferTo(extent.offset + transferred,
+                                                        extent.length - transferred, dst);
+                    if (n <= 0) {
+                        throw new IOException("Unexpected end of segment " + segment.path);
+                    }
+                    transferred += n;
+                }
+                dst.force(false);
+            } catch (IOException e) {
+                /* A partial copy would take precedence over the packed replica on restart. */
+                Files.deleteIfExists(path);
+                throw e;
+            }
+        } finally {
+            segment.release();
+        }
+
+        synchronized (this) {
+            Extent current = extents.get(id);
+            if (current == null) {
+                /* Removed while being copied. */
+                Files.deleteIfExists(path);
+                throw new NoSuchFileException(id.toString());
+            }
+            Files.getFileAttributeView(path, BasicFileAttributeView.class)
+                    .setTimes(FileTime.fromMillis(current.lastModifiedTime),
+                              FileTime.fromMillis(current.lastAccessTime),
+                              FileTime.fromMillis(current.creationTime));
+            removeExtent(id);
+        }
+        unpacked.incrementAndGet();
+    }
+
+    /**
+     * Returns a segment with room for {@code size} additional bytes, starting
+     * a new segment if necessary. Must be called while holding appendLock.
+     */
+    private Segment getSegmentFor(long size) throws IOException
+    {
+        if (current == null || current.size() + size > segmentSize) {
+            int id = nextSegmentId++;
+            current = Segment.open(containerDir, id);
+            segments.put(id, current);
+        }
+        return current;
+    }
+
+    /**
+     * Reclaims the space of removed replicas by moving the live replicas out
+     * of segments in which the fraction of removed data exceeds the compaction
+     * threshold.
+     */
+    public void compact() throws IOException
+    {
+        synchronized (appendLock) {
+            List<Segment> candidates = new ArrayList<>();
+            for (Segment segment : segments.values()) {
+                if (segment != current && segment.deadRatio() >= compactionThreshold) {
+                    candidates.add(segment);
+                }
+            }
+            if (candidates.isEmpty()) {
+                return;
+            }
+
+            Map<Integer, List<Map.Entry<PnfsId, Extent>>> live = new HashMap<>();
+            for (Segment segment : candidates) {
+                live.put(segment.id, new ArrayList<>());
+            }
+            for (Map.Entry<PnfsId, Extent> entry : extents.entrySet()) {
+                List<Map.Entry<PnfsId, Extent>> list = live.get(entry.getValue().segment);
+                if (list != null) {
+                    list.add(entry);
+                }
+            }
+
+            for (Segment segment : candidates) {
+                compact(segment, live.get(segment.id));
+            }
+        }
+        synchronized (journal) {
+            journal.rewrite(extents);
+        }
+    }
+
+    /**
+     * Moves the live replicas of {@code segment} to the current segment and
+     * retires it. Must be called while holding appendLock.
+     */
+    private void compact(Segment segment, List<Map.Entry<PnfsId, Extent>> live) throws IOException
+    {
+        Map<PnfsId, Extent> moved = new HashMap<>();
+        Set<Segment> written = new HashSet<>();
+        for (Map.Entry<PnfsId, Extent> entry : live) {
+            PnfsId id = entry.getKey();
+            Extent extent = entry.getValue();
+            if (extents.get(id) != extent) {
+                continue;
+            }
+            Segment target = getSegmentFor(extent.length);
+            long offset = target.append(segment.channel, extent.offset, extent.length);
+            written.add(target);
+            moved.put(id, extent.moveTo(target.id, offset));
+        }
+        for (Segment target : written) {
+            target.force();
+        }
+        synchronized (journal) {
+            for (Map.Entry<PnfsId, Extent> entry : live) {
+                PnfsId id = entry.getKey();
+                Extent target = moved.get(id);
+                if (target != null && !extents.replace(id, entry.getValue(), target)) {
+                    /* Removed or unpacked while being copied. */
+                    discard(target);
+                    moved.remove(id);
+                }
+            }
+            journal.add(moved);
+        }
+        segments.remove(segment.id);
+        segment.retire();
+        compacted.incrementAndGet();
+        LOGGER.debug("Compacted segment {} with {} live replicas.", segment.path, moved.size());
+    }
+
+    public void shutdown() throws IOException
+    {
+        synchronized (appendLock) {
+            synchronized (this) {
+                journal.close();
+                for (Segment segment : segments.values()) {
+                    segment.close();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw)
+    {
+        long size = 0;
+        long dead = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size();
+            dead += segment.deadBytes();
+        }
+        pw.println("Container file store:");
+        pw.append("    Packed replicas    : ").println(extents.size());
+        pw.append("    Pending replicas   : ").println(pending.size());
+        pw.append("    Segments           : ").println(segments.size());
+        pw.append("    Segment bytes      : ").println(size);
+        pw.append("    Dead bytes         : ").println(dead);
+        pw.append("    Packed/unpacked    : ").append(String.valueOf(packed.get()))
+                .append("/").println(unpacked.get());
+        pw.append("    Compacted segments : ").println(compacted.get());
+    }
+
+    /**
+     * Channel to an individual replica file that queues the replica for
+     * packing when closed.
+     */
+    private class PackingRepositoryChannel extends FileRepositoryChannel
+    {
+        private final PnfsId id;
+        private final AtomicBoolean isClosed = new AtomicBoolean();
+
+        PackingRepositoryChannel(PnfsId id, IoMode mode) throws IOException
+        {
+            super(getPath(id), mode.toOpenString());
+            this.id = id;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            super.close();
+            if (isClosed.compareAndSet(false, true)) {
+                pending.put(id, this);
+            }
+        }
+    }
+
+    /**
+     * Attribute view of a replica that looks up the location of the replica
+     * on every access, as the replica may be packed or unpacked concurrently.
+     */
+    private class ReplicaAttributeView implements BasicFileAttributeView
+    {
+        private final PnfsId id;
+
+        ReplicaAttributeView(PnfsId id)
+        {
+            this.id = id;
+        }
+
+        @Override
+        public String name()
+        {
+            return "basic";
+        }
+
+        @Override
+        public BasicFileAttributes readAttributes() throws IOException
+        {
+            Extent extent = extents.get(id);
+            if (extent == null) {
+                try {
+                    return Files.readAttributes(getPath(id), BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    extent = getPackedExtent(id, e);
+                }
+            }
+            return new ExtentAttributeView(id, extent).readAttributes();
+        }
+
+        @Override
+        public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime)
+                throws IOException
+        {
+            Extent extent = extents.get(id);
+            if (extent == null) {
+                try {
+                    Files.getFileAttributeView(getPath(id), BasicFileAttributeView.class)
+                            .setTimes(lastModifiedTime, lastAccessTime, createTime);
+                    return;
+                } catch (NoSuchFileException e) {
+                    extent = getPackedExtent(id, e);
+                }
+            }
+            new ExtentAttributeView(id, extent).setTimes(lastModifiedTime, lastAccessTime, createTime);
+        }
+    }
+
+    /**
+     * Attribute view of a packed replica.
+     */
+    private class ExtentAttributeView implements BasicFileAttributeView
+    {
+        private final PnfsId id;
+        private final Extent extent;
+
+        ExtentAttributeView(PnfsId id, Extent extent)
+        {
+            this.id = id;
+            this.extent = extent;
+        }
+
+        @Override
+        public String name()
+        {
+            return "basic";
+        }
+
+        @Override
+        public BasicFileAttributes readAttributes()
+        {
+            FileTime creationTime = FileTime.fromMillis(extent.creationTime);
+            FileTime lastModifiedTime = FileTime.fromMillis(extent.lastModifiedTime);
+            FileTime lastAccessTime = FileTime.fromMillis(extent.lastAccessTime);
+            long size = extent.length;
+            return new BasicFileAttributes()
+            {
+                @Override
+                public FileTime lastModifiedTime()
+                {
+                    return lastModifiedTime;
+                }
+
+                @Override
+                public FileTime lastAccessTime()
+                {
+                    return lastAccessTime;
+                }
+
+                @Override
+                public FileTime creationTime()
+                {
+                    return creationTime;
+                }
+
+                @Override
+                public boolean isRegularFile()
+                {
+                    return true;
+                }
+
+                @Override
+                public boolean isDirectory()
+                {
+                    return false;
+                }
+
+                @Override
+                public boolean isSymbolicLink()
+                {
+                    return false;
+                }
+
+                @Override
+                public boolean isOther()
+                {
+                    return false;
+                }
+
+                @Override
+                public long size()
+                {
+                    return size;
+                }
+
+                @Override
+                public Object fileKey()
+                {
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime)
+                throws IOException
+        {
+            synchronized (journal) {
+                Extent current = extents.get(id);
+                if (current == null) {
+                    /* Unpacked in the meantime. */
+                    Files.getFileAttributeView(getPath(id), BasicFileAttributeView.class)
+                            .setTimes(lastModifiedTime, lastAccessTime, createTime);
+                    return;
+                }
+                if (lastModifiedTime != null) {
+                    current.lastModifiedTime = lastModifiedTime.toMillis();
+                }
+                if (lastAccessTime != null) {
+                    current.lastAccessTime = lastAccessTime.toMillis();
+                }
+                journal.times(id, current);
+            }
+        }
+    }
+}
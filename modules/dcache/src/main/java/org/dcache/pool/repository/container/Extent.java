@@ -0,0 +1,55 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2016 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.repository.container;
+
+/**
+ * Location of a packed replica within a segment.
+ *
+ * The location is immutable; moving a replica to another segment creates
+ * a new extent. The time stamps are mutable as they are updated in place
+ * by the repository.
+ */
+class Extent
+{
+    final int segment;
+    final long offset;
+    final long length;
+    final long creationTime;
+    volatile long lastModifiedTime;
+    volatile long lastAccessTime;
+
+    Extent(int segment, long offset, long length,
+           long creationTime, long lastModifiedTime, long lastAccessTime)
+    {
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+        this.creationTime = creationTime;
+        this.lastModifiedTime = lastModifiedTime;
+        this.lastAccessTime = lastAccessTime;
+    }
+
+    /**
+     * Returns an extent describing the same replica at a different location.
+     */
+    Extent moveTo(int segment, long offset)
+    {
+        return new Extent(segment, offset, length, creationTime, lastModifiedTime, lastAccessTime);
+    }
+}
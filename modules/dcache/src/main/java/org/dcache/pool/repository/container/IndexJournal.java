@@ -0,0 +1,202 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2016 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.repository.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import diskCacheV111.util.PnfsId;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only journal of the locations of packed replicas.
+ *
+ * The index of the container file store is kept in memory and every change
+ * is appended to the journal. On startup the journal is replayed to rebuild
+ * the index. Since the journal grows with every change, it is periodically
+ * rewritten to contain only the live entries.
+ *
+ * Records that add or remove a replica are forced to disk before returning,
+ * as the caller subsequently deletes the only other copy of the data. Time
+ * stamp updates are only flushed to the operating system.
+ */
+class IndexJournal implements Closeable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexJournal.class);
+
+    private static final byte ADD = 'A';
+    private static final byte TIMES = 'T';
+    private static final byte REMOVE = 'R';
+
+    private final Path path;
+    private FileChannel channel;
+    private DataOutputStream out;
+
+    IndexJournal(Path path) throws IOException
+    {
+        this.path = path;
+        open(path, APPEND);
+    }
+
+    private void open(Path file, OpenOption mode) throws IOException
+    {
+        channel = FileChannel.open(file, WRITE, CREATE, mode);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Reads the journal at {@code path}. A truncated last record, as left
+     * behind by a crash, is ignored.
+     */
+    static Map<PnfsId, Extent> replay(Path path) throws IOException
+    {
+        Map<PnfsId, Extent> extents = new HashMap<>();
+        if (!Files.exists(path)) {
+            return extents;
+        }
+        try (InputStream is = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+            while (true) {
+                int type = in.read();
+                if (type == -1) {
+                    break;
+                }
+                PnfsId id = new PnfsId(in.readUTF());
+                switch (type) {
+                case ADD:
+                    extents.put(id, new Extent(in.readInt(), in.readLong(), in.readLong(),
+                                               in.readLong(), in.readLong(), in.readLong()));
+                    break;
+                case TIMES:
+                    long modified = in.readLong();
+                    long accessed = in.readLong();
+                    Extent extent = extents.get(id);
+                    if (extent != null) {
+                        extent.lastModifiedTime = modified;
+                        extent.lastAccessTime = accessed;
+                    }
+                    break;
+                case REMOVE:
+                    extents.remove(id);
+                    break;
+                default:
+                    throw new IOException("Corrupted container index " + path + ": unknown record type " + type);
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.warn("Ignoring truncated record at the end of {}.", path);
+        }
+        return extents;
+    }
+
+    /**
+     * Adds all {@code extents} to the journal, forcing them to disk once.
+     */
+    synchronized void add(Map<PnfsId, Extent> extents) throws IOException
+    {
+        if (!extents.isEmpty()) {
+            for (Map.Entry<PnfsId, Extent> entry : extents.entrySet()) {
+                writeAdd(out, entry.getKey(), entry.getValue());
+            }
+            force();
+        }
+    }
+
+    synchronized void times(PnfsId id, Extent extent) throws IOException
+    {
+        out.writeByte(TIMES);
+        out.writeUTF(id.toString());
+        out.writeLong(extent.lastModifiedTime);
+        out.writeLong(extent.lastAccessTime);
+        out.flush();
+    }
+
+    synchronized void remove(PnfsId id) throws IOException
+    {
+        out.writeByte(REMOVE);
+        out.writeUTF(id.toString());
+        force();
+    }
+
+    /**
+     * Replaces the journal by one containing only {@code extents}.
+     */
+    synchronized void rewrite(Map<PnfsId, Extent> extents) throws IOException
+    {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel tmpChannel = FileChannel.open(tmp, WRITE, CREATE, TRUNCATE_EXISTING)) {
+            DataOutputStream tmpOut =
+                    new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(tmpChannel)));
+            for (Map.Entry<PnfsId, Extent> entry : extents.entrySet()) {
+                writeAdd(tmpOut, entry.getKey(), entry.getValue());
+            }
+            tmpOut.flush();
+            tmpChannel.force(false);
+        }
+        close();
+        Files.move(tmp, path, ATOMIC_MOVE, REPLACE_EXISTING);
+        open(path, APPEND);
+    }
+
+    private static void writeAdd(DataOutputStream out, PnfsId id, Extent extent) throws IOException
+    {
+        out.writeByte(ADD);
+        out.writeUTF(id.toString());
+        out.writeInt(extent.segment);
+        out.writeLong(extent.offset);
+        out.writeLong(extent.length);
+        out.writeLong(extent.creationTime);
+        out.writeLong(extent.lastModifiedTime);
+        out.writeLong(extent.lastAccessTime);
+    }
+
+    private void force() throws IOException
+    {
+        out.flush();
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        out.close();
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2016 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.repository.container;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An append-only file holding the data of many packed replicas.
+ *
+ * A single file channel is shared by all readers of the segment. Since
+ * readers only use positional reads, they do not interfere with each other
+ * or with appends. Appends are serialized by the container file store.
+ *
+ * Once retired by compaction, the segment is closed and deleted as soon as
+ * the last reader releases it.
+ */
+class Segment
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(Segment.class);
+
+    private static final String PREFIX = "segment-";
+
+    final int id;
+    final Path path;
+    final FileChannel channel;
+
+    private long size;
+    private long deadBytes;
+    private int references;
+    private boolean isRetired;
+
+    private Segment(int id, Path path) throws IOException
+    {
+        this.id = id;
+        this.path = path;
+        this.channel = FileChannel.open(path, READ, WRITE, CREATE);
+        this.size = channel.size();
+    }
+
+    static Segment open(Path dir, int id) throws IOException
+    {
+        return new Segment(id, dir.resolve(String.format("%s%08d", PREFIX, id)));
+    }
+
+    /**
+     * Returns the id of the segment stored in {@code file}, or -1 if the file
+     * is not a segment.
+     */
+    static int toId(Path file)
+    {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Appends {@code length} bytes of {@code src} starting at {@code position}
+     * to the end of the segment. The data is not forced to disk; callers
+     * appending several replicas call {@link #force} once for all of them.
+     *
+     * @return the offset within the segment at which the data was written
+     */
+    synchronized long append(FileChannel src, long position, long length) throws IOException
+    {
+        long offset = size;
+        channel.position(offset);
+        long transferred = 0;
+        while (transferred < length) {
+            long n = src.transferTo(position + transferred, length - transferred, channel);
+            if (n <= 0) {
+                throw new IOException("Unexpected end of file while appending to " + path);
+            }
+            transferred += n;
+        }
+        size += length;
+        return offset;
+    }
+
+    /**
+     * Forces all data appended to the segment to disk.
+     */
+    void force() throws IOException
+    {
+        channel.force(false);
+    }
+
+    synchronized long size()
+    {
+        return size;
+    }
+
+    synchronized long deadBytes()
+    {
+        return deadBytes;
+    }
+
+    synchronized void setDeadBytes(long deadBytes)
+    {
+        this.deadBytes = deadBytes;
+    }
+
+    synchronized void addDeadBytes(long length)
+    {
+        deadBytes += length;
+    }
+
+    /**
+     * Returns the fraction of the segment occupied by removed replicas.
+     */
+    synchronized double deadRatio()
+    {
+        return (size == 0) ? 0 : (double) deadBytes / size;
+    }
+
+    /**
+     * Registers a reader. Returns false if the segment has been retired.
+     */
+    synchronized boolean acquire()
+    {
+        if (isRetired) {
+            return false;
+        }
+        references++;
+        return true;
+    }
+
+    synchronized void release()
+    {
+        references--;
+        if (isRetired && references == 0) {
+            delete();
+        }
+    }
+
+    /**
+     * Marks the segment as no longer used. The segment is deleted once all
+     * readers have released it.
+     */
+    synchronized void retire()
+    {
+        isRetired = true;
+        if (references == 0) {
+            delete();
+        }
+    }
+
+    synchronized void close() throws IOException
+    {
+        channel.close();
+    }
+
+    private void delete()
+    {
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete segment {}: {}", path, e.toString());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2016 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pool.repository.container;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.dcache.pool.repository.RepositoryChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Read-only {@link RepositoryChannel} of a replica packed into a segment.
+ *
+ * The channel is a window onto the shared channel of the segment. Closing
+ * the channel releases the segment, but does not close the shared channel.
+ */
+class SegmentRepositoryChannel implements RepositoryChannel
+{
+    private final Segment segment;
+    private final long offset;
+    private final long length;
+    private final AtomicBoolean isClosed = new AtomicBoolean();
+    private long position;
+
+    /**
+     * Creates a channel for {@code extent}. The caller must have acquired
+     * the segment; the channel releases it when closed.
+     */
+    SegmentRepositoryChannel(Segment segment, Extent extent)
+    {
+        this.segment = segment;
+        this.offset = extent.offset;
+        this.length = extent.length;
+    }
+
+    private void ensureOpen() throws ClosedChannelException
+    {
+        if (isClosed.get()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public synchronized long position() throws IOException
+    {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized RepositoryChannel position(long position) throws IOException
+    {
+        checkArgument(position >= 0, "Negative position");
+        ensureOpen();
+        this.position = position;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException
+    {
+        ensureOpen();
+        return length;
+    }
+
+    @Override
+    public void sync() throws IOException
+    {
+        ensureOpen();
+    }
+
+    @Override
+    public RepositoryChannel truncate(long size) throws IOException
+    {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return !isClosed.get();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (isClosed.compareAndSet(false, true)) {
+            segment.release();
+        }
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException
+    {
+        int n = read(dst, position);
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, long position) throws IOException
+    {
+        checkArgument(position >= 0, "Negative position");
+        ensureOpen();
+        long remaining = length - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        if (buffer.remaining() <= remaining) {
+            return segment.channel.read(buffer, offset + position);
+        }
+        ByteBuffer window = buffer.duplicate();
+        window.limit(window.position() + (int) remaining);
+        int n = segment.channel.read(window, offset + position);
+        buffer.position(window.position());
+        return n;
+    }
+
+    @Override
+    public synchronized long read(ByteBuffer[] dsts, int offset, int length) throws IOException
+    {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            ByteBuffer dst = dsts[i];
+            int expected = dst.remaining();
+            int n = read(dst);
+            if (n == -1) {
+                return (total == 0) ? -1 : total;
+            }
+            total += n;
+            if (n < expected) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException
+    {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException
+    {
+        checkArgument(position >= 0 && count >= 0, "Negative position or count");
+        ensureOpen();
+        long remaining = length - position;
+        if (remaining <= 0) {
+            return 0;
+        }
+        return segment.channel.transferTo(offset + position, Math.min(count, remaining), target);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException
+    {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public int write(ByteBuffer buffer, long position) throws IOException
+    {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException
+    {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException
+    {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException
+    {
+        throw new NonWritableChannelException();
+    }
+}
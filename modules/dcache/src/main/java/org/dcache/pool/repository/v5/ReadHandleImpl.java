@@ -1,5 +1,7 @@
 package org.dcache.pool.repository.v5;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import java.io.IOException;
 import java.net.URI;
 import java.util.EnumSet;
@@ -121,6 +123,16 @@ class ReadHandleImpl implements ReplicaDescriptor
         throw new IllegalStateException("Read-only handle");
     }
 
+    @Override
+    public boolean tryAllocate(long size) throws IllegalStateException, IllegalArgumentException {
+        throw new IllegalStateException("Read-only handle");
+    }
+
+    @Override
+    public ListenableFuture<Void> allocateAsync(long size) throws IllegalStateException, IllegalArgumentException {
+        throw new IllegalStateException("Read-only handle");
+    }
+
     @Override
     public void free(long size) throws IllegalStateException, IllegalArgumentException {
         throw new IllegalStateException("Read-only handle");
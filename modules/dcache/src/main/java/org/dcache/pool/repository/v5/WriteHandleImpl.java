@@ -1,13 +1,19 @@
 package org.dcache.pool.repository.v5;
 
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileCorruptedCacheException;
@@ -29,6 +35,7 @@ import org.dcache.vehicles.FileAttributes;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.*;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.util.Collections.singleton;
 import static org.dcache.namespace.FileAttribute.*;
 
@@ -81,6 +88,9 @@ class WriteHandleImpl implements ReplicaDescriptor
     /** Current thread which performs allocation. */
     private Thread _allocationThread;
 
+    /** Asynchronous allocations that have not completed yet. */
+    private final Set<ListenableFuture<Void>> _pendingAllocations = new HashSet<>();
+
     /** Last access time of new replica. */
     private Long _atime;
 
@@ -110,8 +120,13 @@ class WriteHandleImpl implements ReplicaDescriptor
     private synchronized void setState(HandleState state)
     {
         _state = state;
-        if (state != HandleState.OPEN && _allocationThread != null) {
-            _allocationThread.interrupt();
+        if (state != HandleState.OPEN) {
+            if (_allocationThread != null) {
+                _allocationThread.interrupt();
+            }
+            for (ListenableFuture<Void> allocation : new ArrayList<>(_pendingAllocations)) {
+                allocation.cancel(false);
+            }
         }
     }
 
@@ -227,6 +242,79 @@ class WriteHandleImpl implements ReplicaDescriptor
         return  isAllocated;
     }
 
+    /**
+     * Allocate space if free. Never blocks.
+     *
+     * @param size in bytes
+     * @throws IllegalStateException if handle is closed
+     * @throws IllegalArgumentException if <i>size</i> &lt; 0
+     * @return true if and only if the request space was allocated
+     */
+    @Override
+    public synchronized boolean tryAllocate(long size)
+            throws IllegalStateException, IllegalArgumentException
+    {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size is negative");
+        }
+        if (!isOpen()) {
+            throw new IllegalStateException("Handle is closed");
+        }
+
+        boolean isAllocated = _allocator.tryAllocate(size);
+        if (isAllocated) {
+            _allocated += size;
+        }
+        return isAllocated;
+    }
+
+    /**
+     * Allocate space without blocking. Space allocated after the handle
+     * was closed is returned to the allocator.
+     *
+     * @param size in bytes
+     * @throws IllegalStateException if handle is closed
+     * @throws IllegalArgumentException if <i>size</i> &lt; 0
+     */
+    @Override
+    public synchronized ListenableFuture<Void> allocateAsync(long size)
+            throws IllegalStateException, IllegalArgumentException
+    {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size is negative");
+        }
+        if (!isOpen()) {
+            throw new IllegalStateException("Handle is closed");
+        }
+
+        ListenableFuture<Void> allocation = _allocator.allocateAsync(size);
+        _pendingAllocations.add(allocation);
+        Futures.addCallback(allocation, new FutureCallback<Void>()
+        {
+            @Override
+            public void onSuccess(Void result)
+            {
+                synchronized (WriteHandleImpl.this) {
+                    _pendingAllocations.remove(allocation);
+                    if (isOpen()) {
+                        _allocated += size;
+                        return;
+                    }
+                }
+                _allocator.free(size);
+            }
+
+            @Override
+            public void onFailure(Throwable t)
+            {
+                synchronized (WriteHandleImpl.this) {
+                    _pendingAllocations.remove(allocation);
+                }
+            }
+        }, directExecutor());
+        return allocation;
+    }
+
     /**
      * Freeing space through a write handle is not supported. This
      * method always throws IllegalStateException.
@@ -19,7 +19,12 @@
 package org.dcache.poolmanager;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 
+import javax.annotation.Nullable;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import diskCacheV111.vehicles.PoolIoFileMessage;
@@ -72,6 +77,32 @@ public class PoolManagerStub implements CellMessageSender, CellIdentityAware
         this.handler = handler;
     }
 
+    /**
+     * Returns the current handler if it may be passed on to other services.
+     *
+     * <p>Other services may use the handler to submit requests to pool manager on
+     * behalf of the caller of this method. Returns null if no such handler is
+     * currently available.
+     */
+    @Nullable
+    public SerializablePoolManagerHandler getSerializableHandler()
+    {
+        if (handler instanceof SerializablePoolManagerHandler) {
+            return (SerializablePoolManagerHandler) handler;
+        }
+        if (handler instanceof PoolManagerHandlerSubscriber) {
+            ListenableFuture<SerializablePoolManagerHandler> current =
+                    ((PoolManagerHandlerSubscriber) handler).current();
+            if (current.isDone()) {
+                try {
+                    return Uninterruptibles.getUninterruptibly(current);
+                } catch (ExecutionException | CancellationException ignored) {
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Sets a maximum timeout for pool manager requests.
      *
@@ -129,6 +129,16 @@ public class StandardHttpRequest implements HttpRequest {
         response.setContentType(type);
     }
 
+    @Override
+    public void setHeader(String name, String value) {
+        response.setHeader(name, value);
+    }
+
+    @Override
+    public void setStatus(int status) {
+        response.setStatus(status);
+    }
+
     private synchronized void doAuthorization() {
         if (authDone) {
             return;
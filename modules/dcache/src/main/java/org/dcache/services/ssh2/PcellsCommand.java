@@ -42,6 +42,7 @@ import dmg.util.CommandException;
 
 import org.dcache.cells.CellStub;
 import org.dcache.util.Args;
+import org.dcache.util.PoolMoverSubscriber;
 import org.dcache.util.TransferCollector;
 import org.dcache.util.TransferCollector.Transfer;
 
@@ -70,14 +71,15 @@ public class PcellsCommand implements Command, Runnable
                          CellStub spaceManager,
                          CellStub poolManager,
                          CellStub pnfsManager,
-                         LoginBrokerSource loginBrokerSource)
+                         LoginBrokerSource loginBrokerSource,
+                         PoolMoverSubscriber moverSource)
     {
         _endpoint = endpoint;
         _spaceManager = spaceManager;
         _poolManager = poolManager;
         _pnfsManager = pnfsManager;
         _loginBrokerSource = loginBrokerSource;
-        _collector = new TransferCollector(new CellStub(endpoint), loginBrokerSource.doors());
+        _collector = new TransferCollector(new CellStub(endpoint), loginBrokerSource.doors(), moverSource);
     }
 
     @Override
@@ -9,6 +9,7 @@ import dmg.cells.nucleus.CellMessageSender;
 import dmg.cells.services.login.LoginBrokerSource;
 
 import org.dcache.cells.CellStub;
+import org.dcache.util.PoolMoverSubscriber;
 
 public class PcellsSubsystemFactory implements NamedFactory<Command>, CellMessageSender
 {
@@ -17,6 +18,7 @@ public class PcellsSubsystemFactory implements NamedFactory<Command>, CellMessag
     private CellStub poolManager;
     private CellStub pnfsManager;
     private LoginBrokerSource loginBrokerSource;
+    private PoolMoverSubscriber moverSource;
 
     @Override
     public void setCellEndpoint(CellEndpoint endpoint)
@@ -48,6 +50,12 @@ public class PcellsSubsystemFactory implements NamedFactory<Command>, CellMessag
         this.loginBrokerSource = source;
     }
 
+    @Required
+    public void setMoverSource(PoolMoverSubscriber source)
+    {
+        this.moverSource = source;
+    }
+
     @Override
     public String getName()
     {
@@ -57,6 +65,6 @@ public class PcellsSubsystemFactory implements NamedFactory<Command>, CellMessag
     @Override
     public Command create()
     {
-        return new PcellsCommand(endpoint, spaceManager, poolManager, pnfsManager, loginBrokerSource);
+        return new PcellsCommand(endpoint, spaceManager, poolManager, pnfsManager, loginBrokerSource, moverSource);
     }
 }
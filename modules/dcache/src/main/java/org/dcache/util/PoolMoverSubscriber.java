@@ -0,0 +1,340 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2016 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import dmg.cells.nucleus.CellAddressCore;
+import dmg.cells.nucleus.CellCommandListener;
+import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellMessageReceiver;
+import dmg.cells.nucleus.CellMessageSender;
+import dmg.util.command.Command;
+import dmg.util.command.Option;
+
+import org.dcache.vehicles.PoolMoverInfo;
+import org.dcache.vehicles.PoolMoverSnapshotMessage;
+import org.dcache.vehicles.PoolMoverUpdateMessage;
+
+import static java.util.Collections.unmodifiableCollection;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Subscriber of mover updates published by pools.
+ *
+ * Maintains the movers of all pools, indexed by pool, door, user and client
+ * host. Applying an update takes time proportional to the number of movers
+ * in the update, independent of the total number of movers.
+ *
+ * When an update is missed, a snapshot of the movers is requested from the
+ * pool. A pool is removed when an update hasn't been received for 2.5 times
+ * the update time of that pool.
+ */
+public class PoolMoverSubscriber implements CellMessageReceiver, CellMessageSender, CellCommandListener
+{
+    public static final double EXPIRATION_FACTOR = 2.5;
+
+    private final ConcurrentMap<String, PoolEntry> pools = new ConcurrentHashMap<>();
+    private final Index byDoor = new Index();
+    private final Index byUser = new Index();
+    private final Index byClient = new Index();
+
+    private CellEndpoint cellEndpoint;
+
+    @Override
+    public void setCellEndpoint(CellEndpoint endpoint)
+    {
+        this.cellEndpoint = endpoint;
+    }
+
+    public void messageArrived(PoolMoverUpdateMessage update)
+    {
+        PoolEntry entry = pools.computeIfAbsent(update.getPool(), PoolEntry::new);
+        if (entry.apply(update)) {
+            cellEndpoint.sendMessage(new CellMessage(new CellAddressCore(update.getPool()),
+                                                     new PoolMoverSnapshotMessage()));
+        }
+    }
+
+    public void messageArrived(PoolMoverSnapshotMessage snapshot)
+    {
+        if (snapshot.getReturnCode() == 0) {
+            pools.computeIfAbsent(snapshot.getPool(), PoolEntry::new).apply(snapshot);
+        }
+    }
+
+    /**
+     * Returns all known movers.
+     */
+    public Collection<PoolMoverInfo> movers()
+    {
+        expire();
+        return pools.values().stream().flatMap(PoolEntry::movers).collect(toList());
+    }
+
+    /**
+     * Returns the movers of a pool.
+     */
+    public Collection<PoolMoverInfo> moversOfPool(String pool)
+    {
+        expire();
+        PoolEntry entry = pools.get(pool);
+        return (entry == null) ? Collections.emptyList() : entry.movers().collect(toList());
+    }
+
+    /**
+     * Returns the movers created by a door.
+     *
+     * @param door the address of the door
+     */
+    public Collection<PoolMoverInfo> moversOfDoor(String door)
+    {
+        expire();
+        return byDoor.get(door);
+    }
+
+    /**
+     * Returns the movers of a user.
+     */
+    public Collection<PoolMoverInfo> moversOfUser(String user)
+    {
+        expire();
+        return byUser.get(user);
+    }
+
+    /**
+     * Returns the movers of a client host.
+     */
+    public Collection<PoolMoverInfo> moversOfClient(String host)
+    {
+        expire();
+        return byClient.get(host);
+    }
+
+    private void expire()
+    {
+        long now = System.currentTimeMillis();
+        pools.values().stream().filter(e -> e.isExpired(now)).forEach(e -> {
+            if (pools.remove(e.pool, e)) {
+                e.clear();
+            }
+        });
+    }
+
+    private void index(PoolMoverInfo info)
+    {
+        byDoor.add(info.getDoor(), info);
+        byUser.add(info.getUser(), info);
+        byClient.add(info.getClientHost(), info);
+    }
+
+    private void unindex(PoolMoverInfo info)
+    {
+        byDoor.remove(info.getDoor(), info);
+        byUser.remove(info.getUser(), info);
+        byClient.remove(info.getClientHost(), info);
+    }
+
+    @Command(name = "movers ls", hint = "list collected mover information",
+            description = "Lists the movers reported by pools. At most one filter may be given.")
+    class ListCommand implements Callable<String>
+    {
+        @Option(name = "pool", usage = "Only show movers of this pool.")
+        String pool;
+
+        @Option(name = "door", usage = "Only show movers of this door.")
+        String door;
+
+        @Option(name = "user", usage = "Only show movers of this user.")
+        String user;
+
+        @Option(name = "client", usage = "Only show movers of this client host.")
+        String client;
+
+        @Override
+        public String call() throws Exception
+        {
+            Collection<PoolMoverInfo> movers;
+            if (pool != null) {
+                movers = moversOfPool(pool);
+            } else if (door != null) {
+                movers = moversOfDoor(door);
+            } else if (user != null) {
+                movers = moversOfUser(user);
+            } else if (client != null) {
+                movers = moversOfClient(client);
+            } else {
+                movers = movers();
+            }
+            StringBuilder sb = new StringBuilder();
+            for (PoolMoverInfo info : movers) {
+                sb.append(info).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Movers of a single pool.
+     */
+    private class PoolEntry
+    {
+        private final String pool;
+        private final Map<Integer, PoolMoverInfo> movers = new ConcurrentHashMap<>();
+
+        private long sequence;
+        private boolean isSynchronized;
+        private long snapshotRequestedAt;
+        private long expirationTime;
+
+        PoolEntry(String pool)
+        {
+            this.pool = pool;
+        }
+
+        Stream<PoolMoverInfo> movers()
+        {
+            return movers.values().stream();
+        }
+
+        synchronized boolean isExpired(long now)
+        {
+            return expirationTime < now;
+        }
+
+        /**
+         * Applies an update. Returns true if the caller must request a snapshot
+         * from the pool.
+         */
+        synchronized boolean apply(PoolMoverUpdateMessage update)
+        {
+            long now = System.currentTimeMillis();
+            expirationTime = now + (long) (EXPIRATION_FACTOR * update.getUpdateTime());
+
+            update.getFinished().forEach(this::remove);
+            update.getUpdated().forEach(this::put);
+
+            if (update.getSequence() != sequence + 1) {
+                isSynchronized = false;
+            }
+            sequence = update.getSequence();
+
+            if (!isSynchronized && now - snapshotRequestedAt >= update.getUpdateTime()) {
+                snapshotRequestedAt = now;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void apply(PoolMoverSnapshotMessage snapshot)
+        {
+            if (snapshot.getSequence() < sequence) {
+                /* Updates were received after the snapshot was taken; as the
+                 * snapshot cannot be combined with those, we wait for the next
+                 * one.
+                 */
+                return;
+            }
+            expirationTime = System.currentTimeMillis() + (long) (EXPIRATION_FACTOR * snapshot.getUpdateTime());
+
+            Set<Integer> stale = new HashSet<>(movers.keySet());
+            for (PoolMoverInfo info : snapshot.getMovers()) {
+                put(info);
+                stale.remove(info.getJobId());
+            }
+            stale.forEach(this::remove);
+
+            sequence = snapshot.getSequence();
+            isSynchronized = true;
+        }
+
+        synchronized void clear()
+        {
+            new HashSet<>(movers.keySet()).forEach(this::remove);
+        }
+
+        private void put(PoolMoverInfo info)
+        {
+            PoolMoverInfo old = movers.put(info.getJobId(), info);
+            if (old != null) {
+                unindex(old);
+            }
+            index(info);
+        }
+
+        private void remove(Integer id)
+        {
+            PoolMoverInfo old = movers.remove(id);
+            if (old != null) {
+                unindex(old);
+            }
+        }
+    }
+
+    /**
+     * Secondary index of movers by some attribute. Movers without a value
+     * for the attribute are not indexed.
+     */
+    private static class Index
+    {
+        private final ConcurrentMap<String, Map<String, PoolMoverInfo>> movers = new ConcurrentHashMap<>();
+
+        private static String keyOf(PoolMoverInfo info)
+        {
+            return info.getPool() + '#' + info.getJobId();
+        }
+
+        void add(String value, PoolMoverInfo info)
+        {
+            if (value != null) {
+                movers.compute(value, (k, m) -> {
+                    if (m == null) {
+                        m = new ConcurrentHashMap<>();
+                    }
+                    m.put(keyOf(info), info);
+                    return m;
+                });
+            }
+        }
+
+        void remove(String value, PoolMoverInfo info)
+        {
+            if (value != null) {
+                movers.computeIfPresent(value, (k, m) -> {
+                    m.remove(keyOf(info), info);
+                    return m.isEmpty() ? null : m;
+                });
+            }
+        }
+
+        Collection<PoolMoverInfo> get(String value)
+        {
+            Map<String, PoolMoverInfo> m = movers.get(value);
+            return (m == null) ? Collections.emptyList() : unmodifiableCollection(m.values());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.google.common.collect.Sets;
 import com.google.common.io.BaseEncoding;
 import com.google.common.primitives.Longs;
 import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListenableScheduledFuture;
@@ -49,6 +50,8 @@ import diskCacheV111.vehicles.DoorRequestInfoMessage;
 import diskCacheV111.vehicles.DoorTransferFinishedMessage;
 import diskCacheV111.vehicles.IoDoorEntry;
 import diskCacheV111.vehicles.IoJobInfo;
+import diskCacheV111.vehicles.Message;
+import diskCacheV111.vehicles.PnfsSelectReadPoolMessage;
 import diskCacheV111.vehicles.PnfsCreateEntryMessage;
 import diskCacheV111.vehicles.PoolAcceptFileMessage;
 import diskCacheV111.vehicles.PoolDeliverFileMessage;
@@ -68,10 +71,12 @@ import dmg.util.TimebasedCounter;
 import org.dcache.acl.enums.AccessMask;
 import org.dcache.auth.attributes.Restriction;
 import org.dcache.cells.CellStub;
+import org.dcache.commons.stats.RequestExecutionTimeGauges;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.namespace.FileType;
 import org.dcache.pool.assumption.Assumption;
 import org.dcache.poolmanager.PoolManagerStub;
+import org.dcache.poolmanager.SerializablePoolManagerHandler;
 import org.dcache.vehicles.FileAttributes;
 import org.dcache.vehicles.PnfsGetFileAttributes;
 
@@ -95,6 +100,31 @@ public class Transfer implements Comparable<Transfer>
 
     private static final BaseEncoding SESSION_ENCODING = BaseEncoding.base64().omitPadding();
 
+    /**
+     * The phases of opening a file that involve a round trip to another
+     * service.
+     */
+    public enum Phase
+    {
+        /** Reading the name space entry from PnfsManager. */
+        NAME_SPACE_LOOKUP,
+        /** Selecting a pool at PoolManager. */
+        POOL_SELECTION,
+        /** Reading the name space entry and selecting a pool in a single request. */
+        NAME_SPACE_LOOKUP_AND_POOL_SELECTION,
+        /** Creating the mover at the pool. */
+        MOVER_CREATION
+    }
+
+    private static final RequestExecutionTimeGauges<Phase> _phaseGauges =
+            new RequestExecutionTimeGauges<>("Transfer phases");
+
+    static {
+        for (Phase phase : Phase.values()) {
+            _phaseGauges.addGauge(phase);
+        }
+    }
+
     protected final PnfsHandler _pnfs;
 
     /**
@@ -767,9 +797,7 @@ public class Transfer implements Comparable<Transfer>
 
     private ListenableFuture<Void> readNameSpaceEntryAsync(boolean allowWrite, long timeout)
     {
-        Set<FileAttribute> attr = EnumSet.of(PNFSID, TYPE, STORAGEINFO, SIZE);
-        attr.addAll(_additionalAttributes);
-        attr.addAll(PoolMgrSelectReadPoolMsg.getRequiredAttributes());
+        Set<FileAttribute> attr = getAttributesForRead();
         Set<AccessMask> mask;
         if (allowWrite) {
             mask = EnumSet.of(AccessMask.READ_DATA, AccessMask.WRITE_DATA);
@@ -785,31 +813,122 @@ public class Transfer implements Comparable<Transfer>
         }
         request.setAccessMask(mask);
         request.setUpdateAtime(true);
-        ListenableFuture<PnfsGetFileAttributes> reply = _pnfs.requestAsync(request, timeout);
+        ListenableFuture<PnfsGetFileAttributes> reply =
+                measure(Phase.NAME_SPACE_LOOKUP, _pnfs.requestAsync(request, timeout));
 
         setStatusUntil("PnfsManager: Fetching storage info", reply);
 
         return CellStub.transformAsync(reply,
                                        msg -> {
-                                           FileAttributes attributes = msg.getFileAttributes();
-                                           /* We can only transfer regular files.
-                                            */
-                                           FileType type = attributes.getFileType();
-                                           if (type == FileType.DIR || type == FileType.SPECIAL) {
-                                               throw new NotFileCacheException("Not a regular file");
-                                           }
+                                           setFileAttributesForRead(msg.getFileAttributes(), allowWrite);
+                                           return immediateFuture(null);
+                                       });
+    }
 
-                                           /* I/O mode must match completeness of the file.
-                                            */
-                                           if (!attributes.getStorageInfo().isCreatedOnly()) {
-                                               setWrite(false);
-                                           } else if (allowWrite) {
-                                               setWrite(true);
-                                           } else {
-                                               throw new FileIsNewCacheException();
-                                           }
+    /**
+     * Returns the attributes to fetch when reading the name space entry.
+     */
+    private Set<FileAttribute> getAttributesForRead()
+    {
+        Set<FileAttribute> attr = EnumSet.of(PNFSID, TYPE, STORAGEINFO, SIZE);
+        attr.addAll(_additionalAttributes);
+        attr.addAll(PoolMgrSelectReadPoolMsg.getRequiredAttributes());
+        return attr;
+    }
+
+    /**
+     * Sets the file attributes read from the name space entry and adjusts the
+     * I/O mode to the completeness of the file.
+     */
+    private void setFileAttributesForRead(FileAttributes attributes, boolean allowWrite)
+            throws CacheException
+    {
+        /* We can only transfer regular files.
+         */
+        FileType type = attributes.getFileType();
+        if (type == FileType.DIR || type == FileType.SPECIAL) {
+            throw new NotFileCacheException("Not a regular file");
+        }
+
+        /* I/O mode must match completeness of the file.
+         */
+        if (!attributes.getStorageInfo().isCreatedOnly()) {
+            setWrite(false);
+        } else if (allowWrite) {
+            setWrite(true);
+        } else {
+            throw new FileIsNewCacheException();
+        }
 
-                                           setFileAttributes(attributes);
+        setFileAttributes(attributes);
+    }
+
+    /**
+     * Reads the name space entry of the file to transfer and selects a pool
+     * for reading it. This fills in the PnfsId, FileAttributes and pool of
+     * the transfer.
+     * <p>
+     * If possible, PnfsManager is asked to forward the pool selection request
+     * to PoolManager once the name space entry has been read. The reply from
+     * PoolManager then arrives in a single round trip. Otherwise, or if
+     * staging permissions depend on the file, the name space entry is read
+     * and the pool is selected in two separate requests.
+     * <p>
+     * Only valid for downloads; fails if the file is still being written.
+     *
+     * @param timeout timeout in milliseconds
+     */
+    public ListenableFuture<Void> readNameSpaceEntryAndSelectPoolAsync(long timeout)
+    {
+        long deadline = addWithInfinity(System.currentTimeMillis(), timeout);
+        SerializablePoolManagerHandler handler = _poolManager.getSerializableHandler();
+        if (handler == null || !_checkStagePermission.canPerformStaging(_subject)) {
+            return transformAsync(readNameSpaceEntryAsync(false, getTimeoutFor(_pnfs, deadline)),
+                                  ignored -> selectPoolAsync(getTimeoutFor(deadline)));
+        }
+
+        Set<FileAttribute> attr = getAttributesForRead();
+        ProtocolInfo protocolInfo = getProtocolInfoForPoolManager();
+        PoolMgrSelectReadPoolMsg.Context context = getReadPoolSelectionContext();
+        PnfsId pnfsId = getPnfsId();
+        PnfsSelectReadPoolMessage request;
+        if (pnfsId != null) {
+            request = new PnfsSelectReadPoolMessage(pnfsId, attr, protocolInfo, context,
+                                                    RequestContainerV5.allStates, handler);
+        } else {
+            request = new PnfsSelectReadPoolMessage(_path.toString(), attr, protocolInfo, context,
+                                                    RequestContainerV5.allStates, handler);
+        }
+        request.setAccessMask(EnumSet.of(AccessMask.READ_DATA));
+        request.setUpdateAtime(true);
+        request.setTransferId(_id);
+        request.setTransferSubject(_subject);
+        request.setTransferPath(getTransferPath());
+        request.setIoQueueName(getIoQueue());
+
+        ListenableFuture<Message> reply =
+                measure(Phase.NAME_SPACE_LOOKUP_AND_POOL_SELECTION,
+                        _pnfs.requestAsync(request, Message.class, timeout));
+
+        setStatusUntil("PnfsManager: Fetching storage info and selecting pool", reply);
+
+        return CellStub.transformAsync(reply,
+                                       msg -> {
+                                           if (msg instanceof PnfsSelectReadPoolMessage) {
+                                               /* The name space entry was read, but the request was
+                                                * not forwarded to PoolManager.
+                                                */
+                                               setFileAttributesForRead(
+                                                       ((PnfsSelectReadPoolMessage) msg).getFileAttributes(), false);
+                                               return selectPoolAsync(getTimeoutFor(deadline));
+                                           }
+                                           PoolMgrSelectReadPoolMsg selected = (PoolMgrSelectReadPoolMsg) msg;
+                                           setWrite(false);
+                                           setReadPoolSelectionContext(selected.getContext());
+                                           setPool(selected.getPoolName());
+                                           setPoolAddress(selected.getPoolAddress());
+                                           setAssumption(selected.getAssumption());
+                                           setFileAttributes(selected.getFileAttributes());
                                            return immediateFuture(null);
                                        });
     }
@@ -952,7 +1071,7 @@ public class Transfer implements Comparable<Transfer>
             request.setTransferPath(getTransferPath());
             request.setIoQueueName(getIoQueue());
 
-            reply = _poolManager.sendAsync(request, timeout);
+            reply = measure(Phase.POOL_SELECTION, _poolManager.sendAsync(request, timeout));
         } else {
             EnumSet<RequestContainerV5.RequestState> allowedStates;
             try {
@@ -975,7 +1094,7 @@ public class Transfer implements Comparable<Transfer>
             request.setTransferPath(getTransferPath());
             request.setIoQueueName(getIoQueue());
 
-            reply = Futures.transform(_poolManager.sendAsync(request, timeout),
+            reply = Futures.transform(measure(Phase.POOL_SELECTION, _poolManager.sendAsync(request, timeout)),
                                       (PoolMgrSelectReadPoolMsg msg) -> {
                                           setReadPoolSelectionContext(msg.getContext());
                                           return msg;
@@ -1025,7 +1144,8 @@ public class Transfer implements Comparable<Transfer>
         message.setId(_id);
         message.setSubject(_subject);
 
-        ListenableFuture<PoolIoFileMessage> reply = _poolManager.startAsync(getPoolAddress(), message, timeout);
+        ListenableFuture<PoolIoFileMessage> reply =
+                measure(Phase.MOVER_CREATION, _poolManager.startAsync(getPoolAddress(), message, timeout));
         setStatusUntil("Pool " + pool + ": Creating mover", reply);
         return CellStub.transformAsync(reply, msg -> {
             setMoverId(msg.getMoverId());
@@ -1210,6 +1330,40 @@ public class Transfer implements Comparable<Transfer>
     }
 
     public ListenableFuture<Void> selectPoolAndStartMoverAsync(TransferRetryPolicy policy)
+    {
+        return selectPoolAndStartMoverAsync(policy, false);
+    }
+
+    /**
+     * Read the name space entry, select a pool and start a mover for
+     * a download. Failed attempts are handled according to the
+     * {@link TransferRetryPolicy}.
+     * <p>
+     * Uses {@link #readNameSpaceEntryAndSelectPoolAsync} and thus saves
+     * a round trip compared to calling {@link #readNameSpaceEntry} and
+     * {@link #selectPoolAndStartMover} in sequence.
+     *
+     * @param policy to handle error cases
+     * @throws CacheException
+     * @throws InterruptedException
+     */
+    public void readNameSpaceEntryAndStartMover(TransferRetryPolicy policy)
+            throws CacheException, InterruptedException
+    {
+        try {
+            getCancellable(readNameSpaceEntryAndStartMoverAsync(policy));
+        } catch (NoRouteToCellException e) {
+            throw new TimeoutCacheException(e.getMessage(), e);
+        }
+    }
+
+    public ListenableFuture<Void> readNameSpaceEntryAndStartMoverAsync(TransferRetryPolicy policy)
+    {
+        return selectPoolAndStartMoverAsync(policy, true);
+    }
+
+    private ListenableFuture<Void> selectPoolAndStartMoverAsync(TransferRetryPolicy policy,
+                                                                boolean readNameSpaceEntryFirst)
     {
         long deadLine = addWithInfinity(System.currentTimeMillis(), policy.getTotalTimeOut());
 
@@ -1217,8 +1371,8 @@ public class Transfer implements Comparable<Transfer>
                 ignored -> selectPoolAsync(getTimeoutFor(deadLine));
         AsyncFunction<Void, Void> startMover =
                 ignored -> startMoverAsync(getTimeoutFor(deadLine));
-        AsyncFunction<Void, Void> readNameSpaceEntry =
-                ignored -> readNameSpaceEntryAsync(false, getTimeoutFor(_pnfs, deadLine));
+        AsyncFunction<Void, Void> readNameSpaceEntryAndSelectPool =
+                ignored -> readNameSpaceEntryAndSelectPoolAsync(getTimeoutFor(deadLine));
 
         AsyncFunction<CacheException,Void> retry =
                 new AsyncFunction<CacheException, Void>()
@@ -1246,6 +1400,8 @@ public class Transfer implements Comparable<Transfer>
                         case CacheException.FILE_IN_CACHE:
                         case CacheException.INVALID_ARGS:
                         case CacheException.FILE_NOT_FOUND:
+                        case CacheException.NOT_FILE:
+                        case CacheException.FILE_IS_NEW:
                             return immediateFailedFuture(t);
                         case CacheException.NO_POOL_CONFIGURED:
                             _log.error(t.getMessage());
@@ -1285,15 +1441,51 @@ public class Transfer implements Comparable<Transfer>
                     public ListenableFuture<Void> retryWhen(ListenableFuture<Void> future)
                     {
                         if (!isWrite()) {
-                            future = transformAsync(future, readNameSpaceEntry);
+                            future = transformAsync(future, readNameSpaceEntryAndSelectPool);
+                        } else {
+                            future = transformAsync(future, selectPool);
                         }
                         start = System.currentTimeMillis();
-                        return catchingAsync(transformAsync(transformAsync(future, selectPool), startMover), CacheException.class, this);
+                        return catchingAsync(transformAsync(future, startMover), CacheException.class, this);
                     }
                 };
 
-        return catchingAsync(transformAsync(
-                selectPoolAsync(getTimeoutFor(deadLine)), startMover), CacheException.class, retry);
+        ListenableFuture<Void> selected = readNameSpaceEntryFirst
+                                          ? readNameSpaceEntryAndSelectPoolAsync(getTimeoutFor(deadLine))
+                                          : selectPoolAsync(getTimeoutFor(deadLine));
+        return catchingAsync(transformAsync(selected, startMover), CacheException.class, retry);
+    }
+
+    /**
+     * Returns latency statistics of the phases of opening files, aggregated
+     * over all transfers of this JVM.
+     */
+    public static RequestExecutionTimeGauges<Phase> getPhaseGauges()
+    {
+        return _phaseGauges;
+    }
+
+    /**
+     * Records the latency of {@code future} under {@code phase} once it
+     * completes successfully.
+     */
+    private static <T> ListenableFuture<T> measure(Phase phase, ListenableFuture<T> future)
+    {
+        long start = System.currentTimeMillis();
+        Futures.addCallback(future, new FutureCallback<T>()
+        {
+            @Override
+            public void onSuccess(T result)
+            {
+                _phaseGauges.update(phase, System.currentTimeMillis() - start);
+            }
+
+            @Override
+            public void onFailure(Throwable t)
+            {
+            }
+        });
+        return future;
     }
 
     /**
@@ -44,6 +44,7 @@ import dmg.cells.services.login.LoginBrokerInfo;
 import dmg.cells.services.login.LoginManagerChildrenInfo;
 
 import org.dcache.cells.CellStub;
+import org.dcache.vehicles.PoolMoverInfo;
 
 import static com.google.common.util.concurrent.Futures.*;
 import static java.util.stream.Collectors.toList;
@@ -56,7 +57,9 @@ import static java.util.stream.Collectors.toSet;
  *
  *     LoginBrokers -> LoginManagers -> Doors -> Transfers -> Movers
  *
- * These entities are queried in the order shown.
+ * These entities are queried in the order shown. If a PoolMoverSubscriber
+ * is provided, movers are taken from the updates published by pools rather
+ * than by querying the pools.
  *
  * The class logs and otherwise ignores all errors.
  */
@@ -66,6 +69,7 @@ public class TransferCollector
 
     private final CellStub stub;
     private final Collection<LoginBrokerInfo> doors;
+    private final PoolMoverSubscriber movers;
 
     /**
      * @param stub communication stub
@@ -73,9 +77,22 @@ public class TransferCollector
      *              the data collected by this class
      */
     public TransferCollector(CellStub stub, Collection<LoginBrokerInfo> doors)
+    {
+        this(stub, doors, null);
+    }
+
+    /**
+     * @param stub communication stub
+     * @param doors doors to query - if the collection is updated the changes will be reflected in
+     *              the data collected by this class
+     * @param movers source of movers, or null to query pools
+     */
+    public TransferCollector(CellStub stub, Collection<LoginBrokerInfo> doors,
+                             @Nullable PoolMoverSubscriber movers)
     {
         this.stub = stub;
         this.doors = doors;
+        this.movers = movers;
     }
 
     public Collection<LoginBrokerInfo> getLoginBrokerInfo()
@@ -99,6 +116,12 @@ public class TransferCollector
 
     public ListenableFuture<Collection<IoJobInfo>> collectMovers(Set<CellPath> pools)
     {
+        if (movers != null) {
+            return immediateFuture(pools.stream()
+                                           .flatMap(pool -> movers.moversOfPool(pool.getCellName()).stream())
+                                           .map(PoolMoverInfo::getJob)
+                                           .collect(toList()));
+        }
         return transform(query(pools, "mover ls -binary", IoJobInfo[].class,
                                "Failed to query pool: {}", new IoJobInfo[0]),
                          flatten());
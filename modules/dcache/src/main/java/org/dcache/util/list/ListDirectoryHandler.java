@@ -21,13 +21,16 @@ import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FsPath;
 import diskCacheV111.util.PnfsHandler;
 
+import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellMessageReceiver;
+import dmg.cells.nucleus.CellPath;
 
 import org.dcache.auth.attributes.Restriction;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.util.CacheExceptionFactory;
 import org.dcache.util.Glob;
 import org.dcache.vehicles.FileAttributes;
+import org.dcache.vehicles.PnfsListDirectoryCreditMessage;
 import org.dcache.vehicles.PnfsListDirectoryMessage;
 
 /**
@@ -43,6 +46,11 @@ import org.dcache.vehicles.PnfsListDirectoryMessage;
  * thread. Any attempt to do so will cause the message thread to
  * block, as the replies cannot be delivered to the
  * ListDirectoryHandler.
+ *
+ * To bound the memory used for buffering replies, PnfsManager is only
+ * allowed to have a small window of replies in flight. Further replies
+ * are requested as the consumer drains the stream. Such credits are
+ * sent to the PnfsManager instance that sent the replies.
  */
 public class ListDirectoryHandler
     implements CellMessageReceiver, DirectoryListSource
@@ -50,6 +58,11 @@ public class ListDirectoryHandler
     private static final Logger _log =
         LoggerFactory.getLogger(ListDirectoryHandler.class);
 
+    /**
+     * Maximum number of partial replies buffered per stream.
+     */
+    private static final int WINDOW = 2;
+
     private final PnfsHandler _pnfs;
     private final Map<UUID,Stream> _replies =
             new ConcurrentHashMap<>();
@@ -99,10 +112,29 @@ public class ListDirectoryHandler
         list(Subject subject, Restriction restriction, FsPath path, Glob pattern,
                 Range<Integer> range, Set<FileAttribute> attributes)
                 throws InterruptedException, CacheException
+    {
+        return list(subject, restriction, path, pattern, null, range, attributes);
+    }
+
+    /**
+     * Sends a directory list request to PnfsManager. The result is
+     * provided as a stream of directory entries ordered by name,
+     * starting after the given name.
+     * <p>
+     * The range is relative to the first entry after {@code after}.
+     *
+     * @see #list(Subject, Restriction, FsPath, Glob, Range, Set)
+     */
+    public DirectoryStream
+        list(Subject subject, Restriction restriction, FsPath path, Glob pattern,
+                String after, Range<Integer> range, Set<FileAttribute> attributes)
+                throws InterruptedException, CacheException
     {
         String dir = path.toString();
         PnfsListDirectoryMessage msg =
             new PnfsListDirectoryMessage(dir, pattern, range, attributes);
+        msg.setAfter(after);
+        msg.setWindow(WINDOW);
         UUID uuid = msg.getUUID();
         boolean success = false;
         Stream stream = new Stream(dir, uuid);
@@ -116,7 +148,7 @@ public class ListDirectoryHandler
             return stream;
         } finally {
             if (!success) {
-                _replies.remove(uuid);
+                stream.close();
             }
         }
     }
@@ -162,14 +194,14 @@ public class ListDirectoryHandler
      * PnfsManager. PnfsListDirectoryMessage have to be routed to this
      * message.
      */
-    public void messageArrived(PnfsListDirectoryMessage reply)
+    public void messageArrived(CellMessage envelope, PnfsListDirectoryMessage reply)
     {
         if (reply.isReply()) {
             try {
                 UUID uuid = reply.getUUID();
                 Stream stream = _replies.get(uuid);
                 if (stream != null) {
-                    stream.put(reply);
+                    stream.put(envelope.getSourcePath().revert(), reply);
                 } else {
                     _log.warn("Received list result for an unknown request. Directory listing was possibly incomplete.");
                 }
@@ -194,6 +226,7 @@ public class ListDirectoryHandler
                 new LinkedBlockingQueue<>();
         private final UUID _uuid;
         private final String _path;
+        private volatile CellPath _source;
         private boolean _isFinal;
         private Iterator<DirectoryEntry> _iterator;
         private int _count;
@@ -208,15 +241,32 @@ public class ListDirectoryHandler
         @Override
         public void close()
         {
-            _replies.remove(_uuid);
+            if (_replies.remove(_uuid) != null && !_isFinal) {
+                notifyPnfsManager(PnfsListDirectoryCreditMessage.cancel(_path, _uuid));
+            }
         }
 
-        private void put(PnfsListDirectoryMessage msg)
+        private void put(CellPath source, PnfsListDirectoryMessage msg)
             throws InterruptedException
         {
+            _source = source;
             _queue.put(msg);
         }
 
+        /**
+         * Sends a credit message to the PnfsManager that sent the replies,
+         * or to the default PnfsManager if no reply has been received yet.
+         */
+        private void notifyPnfsManager(PnfsListDirectoryCreditMessage msg)
+        {
+            CellPath source = _source;
+            if (source == null) {
+                _pnfs.notify(msg);
+            } else {
+                _pnfs.notify(source, msg);
+            }
+        }
+
         private void waitForMoreEntries()
             throws InterruptedException, CacheException
         {
@@ -244,6 +294,12 @@ public class ListDirectoryHandler
                 throw CacheExceptionFactory.exceptionOf(msg);
             }
 
+            /* The reply is consumed now, so PnfsManager may send another one.
+             */
+            if (!msg.isFinal()) {
+                notifyPnfsManager(PnfsListDirectoryCreditMessage.grant(_path, _uuid, 1));
+            }
+
             _iterator = msg.getEntries().iterator();
 
             /* If the message is empty, then the iterator has no next
@@ -0,0 +1,127 @@
+package diskCacheV111.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.util.Checksum;
+import org.dcache.util.ChecksumType;
+
+import static org.dcache.util.ByteUnit.MiB;
+import static org.junit.Assert.assertEquals;
+
+public class ChecksumFactoryTest
+{
+    private Path file;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        /* Larger than the buffers of the checksum engine and not a multiple
+         * of their size.
+         */
+        data = new byte[MiB.toBytes(3) + 12345];
+        new Random().nextBytes(data);
+        file = Files.createTempFile("ChecksumFactoryTest", ".tmp");
+        Files.write(file, data);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.delete(file);
+    }
+
+    @Test
+    public void shouldComputeSingleChecksum() throws Exception
+    {
+        ChecksumFactory factory = ChecksumFactory.getFactory(ChecksumType.ADLER32);
+
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, "r")) {
+            assertEquals(factory.create(factory.create().digest(data)), factory.computeChecksum(channel));
+        }
+    }
+
+    @Test
+    public void shouldComputeSeveralChecksumsInOnePass() throws Exception
+    {
+        ChecksumFactory adler32 = ChecksumFactory.getFactory(ChecksumType.ADLER32);
+        ChecksumFactory md5 = ChecksumFactory.getFactory(ChecksumType.MD5_TYPE);
+
+        List<Checksum> checksums;
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, "r")) {
+            checksums = ChecksumFactory.computeChecksums(channel, Arrays.asList(adler32, md5),
+                                                         Double.POSITIVE_INFINITY);
+        }
+
+        assertEquals(Arrays.asList(adler32.create(adler32.create().digest(data)),
+                                   md5.create(md5.create().digest(data))),
+                     checksums);
+    }
+
+    @Test
+    public void shouldComputeChecksumOfEmptyFile() throws Exception
+    {
+        Files.write(file, new byte[0]);
+        ChecksumFactory md5 = ChecksumFactory.getFactory(ChecksumType.MD5_TYPE);
+
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, "r")) {
+            assertEquals(md5.create(md5.create().digest()), md5.computeChecksum(channel));
+        }
+    }
+
+    @Test
+    public void shouldComputeChecksumOfSmallFileAfterLargeFile() throws Exception
+    {
+        ChecksumFactory md5 = ChecksumFactory.getFactory(ChecksumType.MD5_TYPE);
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, "r")) {
+            md5.computeChecksum(channel);
+        }
+
+        /* Buffers of the previous computation may be reused. */
+        byte[] small = Arrays.copyOf(data, 100);
+        Files.write(file, small);
+
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, "r")) {
+            assertEquals(md5.create(md5.create().digest(small)), md5.computeChecksum(channel));
+        }
+    }
+
+    @Test
+    public void shouldComputeChecksumsConcurrently() throws Exception
+    {
+        ChecksumFactory adler32 = ChecksumFactory.getFactory(ChecksumType.ADLER32);
+        Checksum expected = adler32.create(adler32.create().digest(data));
+
+        ExecutorService executor = Executors.newFixedThreadPool(40);
+        try {
+            List<Future<Checksum>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                results.add(executor.submit(() -> {
+                    try (RepositoryChannel channel = new FileRepositoryChannel(file, "r")) {
+                        return adler32.computeChecksum(channel);
+                    }
+                }));
+            }
+            for (Future<Checksum> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
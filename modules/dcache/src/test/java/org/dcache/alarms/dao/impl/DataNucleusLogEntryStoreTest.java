@@ -0,0 +1,153 @@
+package org.dcache.alarms.dao.impl;
+
+import com.google.common.collect.ImmutableMap;
+import org.datanucleus.api.jdo.JDOPersistenceManagerFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.jdo.PersistenceManager;
+import javax.jdo.PersistenceManagerFactory;
+import javax.jdo.Transaction;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.dcache.alarms.LogEntry;
+import org.dcache.alarms.dao.AlarmJDOUtils;
+import org.dcache.alarms.logback.LogEntryXMLInitializer;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests storing batches of alarms using the XML store.
+ */
+public class DataNucleusLogEntryStoreTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private PersistenceManagerFactory pmf;
+    private DataNucleusLogEntryStore store;
+
+    @Before
+    public void setup() throws Exception {
+        File xml = new File(folder.getRoot(), "store.xml");
+        new LogEntryXMLInitializer(xml.getPath());
+        pmf = new JDOPersistenceManagerFactory(
+                        ImmutableMap.of("datanucleus.PersistenceUnitName", "AlarmsXML",
+                                        "datanucleus.ConnectionURL", "xml:file:" + xml.getPath()));
+        store = new DataNucleusLogEntryStore(pmf);
+        store.initialize();
+    }
+
+    @After
+    public void teardown() {
+        store.shutdown();
+        pmf.close();
+    }
+
+    @Test
+    public void shouldStoreNewAlarmsOfBatch() {
+        store.put(Arrays.asList(newEntry("a", 1), newEntry("b", 3)));
+
+        assertThat(get("a").getReceived(), is(1));
+        assertThat(get("b").getReceived(), is(3));
+    }
+
+    @Test
+    public void shouldAddReceivedCountsOfBatchToExistingAlarms() {
+        store.put(newEntry("a", 1));
+        store.put(newEntry("b", 1));
+        LogEntry a = newEntry("a", 5);
+        LogEntry b = newEntry("b", 2);
+
+        store.put(Arrays.asList(a, b));
+
+        assertThat(a.getReceived(), is(6));
+        assertThat(b.getReceived(), is(3));
+        assertThat(get("a").getReceived(), is(6));
+        assertThat(get("b").getReceived(), is(3));
+    }
+
+    @Test
+    public void shouldReopenClosedAlarmWithCountOfBatch() {
+        store.put(newEntry("a", 1));
+        store.put(newEntry("a", 4));
+        close("a");
+        LogEntry a = newEntry("a", 3);
+
+        store.put(Collections.singletonList(a));
+
+        assertThat(a.getReceived(), is(3));
+        assertThat(get("a").getReceived(), is(3));
+        assertThat(get("a").isClosed(), is(false));
+    }
+
+    @Test
+    public void shouldCountSingleAlarmAsOneOccurrence() {
+        LogEntry first = newEntry("a", 1);
+        LogEntry second = newEntry("a", 1);
+
+        store.put(first);
+        store.put(second);
+
+        assertThat(first.getReceived(), is(1));
+        assertThat(second.getReceived(), is(2));
+    }
+
+    private static LogEntry newEntry(String key, int received) {
+        long now = System.currentTimeMillis();
+        LogEntry entry = new LogEntry();
+        entry.setKey(key);
+        entry.setType("GENERIC");
+        entry.setAlarm(true);
+        entry.setClosed(false);
+        entry.setFirstArrived(now);
+        entry.setLastUpdate(now);
+        entry.setReceived(received);
+        return entry;
+    }
+
+    private LogEntry get(String key) {
+        PersistenceManager pm = pmf.getPersistenceManager();
+        try {
+            Transaction tx = pm.currentTransaction();
+            tx.begin();
+            try {
+                Collection<LogEntry> entries = AlarmJDOUtils.execute(pm,
+                                AlarmJDOUtils.getIdFilter(Collections.singletonList(newEntry(key, 0))));
+                assertThat(entries.size(), is(1));
+                LogEntry entry = pm.detachCopy(entries.iterator().next());
+                tx.commit();
+                return entry;
+            } finally {
+                AlarmJDOUtils.rollbackIfActive(tx);
+            }
+        } finally {
+            pm.close();
+        }
+    }
+
+    private void close(String key) {
+        PersistenceManager pm = pmf.getPersistenceManager();
+        try {
+            Transaction tx = pm.currentTransaction();
+            tx.begin();
+            try {
+                for (LogEntry entry : AlarmJDOUtils.execute(pm,
+                                AlarmJDOUtils.getIdFilter(Collections.singletonList(newEntry(key, 0))))) {
+                    entry.setClosed(true);
+                }
+                tx.commit();
+            } finally {
+                AlarmJDOUtils.rollbackIfActive(tx);
+            }
+        } finally {
+            pm.close();
+        }
+    }
+}
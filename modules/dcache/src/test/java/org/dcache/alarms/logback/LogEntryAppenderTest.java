@@ -121,6 +121,11 @@ public class LogEntryAppenderTest {
             lastEntry = alarm;
         }
 
+        @Override
+        public void put(Collection<LogEntry> alarms) {
+            alarms.forEach(this::put);
+        }
+
         @Override
         public void initialize() {
         }
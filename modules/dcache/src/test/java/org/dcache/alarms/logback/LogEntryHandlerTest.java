@@ -0,0 +1,266 @@
+package org.dcache.alarms.logback;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.dcache.alarms.AlarmMarkerFactory;
+import org.dcache.alarms.LogEntry;
+import org.dcache.alarms.PredefinedAlarm;
+import org.dcache.alarms.dao.LogEntryDAO;
+import org.dcache.alarms.file.FileBackedAlarmPriorityMap;
+import org.dcache.alarms.spi.LogEntryListener;
+import org.dcache.alarms.spi.LogEntryListenerFactory;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests coalescing of duplicate alarms by the handler.
+ */
+public class LogEntryHandlerTest {
+    /**
+     * Adds the received field of each entry to the stored alarm, like
+     * the real store.  Closed alarms restart their count.
+     */
+    private class TestStore implements LogEntryDAO {
+        final Map<String, Integer> received = new HashMap<>();
+        final Set<String> closed = new HashSet<>();
+        final List<LogEntry> single = new ArrayList<>();
+        final List<List<LogEntry>> batches = new ArrayList<>();
+
+        @Override
+        public synchronized void put(LogEntry entry) {
+            single.add(entry);
+            store(entry);
+        }
+
+        @Override
+        public synchronized void put(Collection<LogEntry> entries) {
+            batches.add(new ArrayList<>(entries));
+            entries.forEach(this::store);
+        }
+
+        private void store(LogEntry entry) {
+            int count = entry.getReceived();
+            if (!closed.remove(entry.getKey())) {
+                count += received.getOrDefault(entry.getKey(), 0);
+            }
+            received.put(entry.getKey(), count);
+            entry.setReceived(count);
+        }
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    private final List<LogEntry> processed =
+                    Collections.synchronizedList(new ArrayList<>());
+
+    private final LogEntryListener listener = processed::add;
+
+    private final LogEntryListenerFactory factory = new LogEntryListenerFactory() {
+        @Override
+        public Collection getConfiguredListeners() {
+            return Collections.singletonList(listener);
+        }
+
+        @Override
+        public void load() {
+        }
+    };
+
+    private TestStore store;
+    private LogEntryHandler handler;
+
+    @Before
+    public void setup() throws Exception {
+        store = new TestStore();
+        handler = new LogEntryHandler(1, Integer.MAX_VALUE) {
+            @Override
+            protected void loadListeners() {
+                listenerFactories.add(factory);
+            }
+
+            @Override
+            public void setApplicationContext(ApplicationContext applicationContext)
+                            throws BeansException {
+            }
+        };
+        handler.setEmailEnabled(false);
+        handler.setRootLevel("ERROR");
+        handler.setStore(store);
+        handler.setCoalescingPeriod(1);
+        handler.setCoalescingPeriodUnit(TimeUnit.HOURS);
+        FileBackedAlarmPriorityMap pmap = new FileBackedAlarmPriorityMap();
+        pmap.setPropertiesPath("dummy.properties");
+        pmap.initialize();
+        handler.setPriorityMap(pmap);
+        handler.setConverter(new LoggingEventConverter());
+        handler.loadListeners();
+    }
+
+    @Test
+    public void shouldStoreAndProcessFirstOccurrenceImmediately() {
+        whenAlarmIsReceived("pool1");
+
+        assertThat(store.single.size(), is(1));
+        assertThat(store.received.get(keyOf("pool1")), is(1));
+        assertThat(processed.size(), is(1));
+    }
+
+    @Test
+    public void shouldOnlyCountDuplicatesUntilFlushed() {
+        whenAlarmIsReceived("pool1");
+        whenAlarmIsReceived("pool1");
+        whenAlarmIsReceived("pool1");
+
+        assertThat(store.single.size(), is(1));
+        assertThat(store.batches, is(empty()));
+        assertThat(store.received.get(keyOf("pool1")), is(1));
+    }
+
+    @Test
+    public void shouldStoreCountOfDuplicatesOnFlush() {
+        whenAlarmIsReceived("pool1");
+        whenAlarmIsReceived("pool1");
+        whenAlarmIsReceived("pool1");
+
+        handler.flush();
+
+        assertThat(store.batches.size(), is(1));
+        assertThat(store.batches.get(0).size(), is(1));
+        assertThat(store.received.get(keyOf("pool1")), is(3));
+        assertThat(processed.size(), is(1));
+    }
+
+    @Test
+    public void shouldCoalesceByKey() {
+        whenAlarmIsReceived("pool1");
+        whenAlarmIsReceived("pool2");
+        whenAlarmIsReceived("pool1");
+        whenAlarmIsReceived("pool2");
+        whenAlarmIsReceived("pool2");
+
+        handler.flush();
+
+        assertThat(store.single.size(), is(2));
+        assertThat(store.batches.size(), is(1));
+        assertThat(store.batches.get(0).size(), is(2));
+        assertThat(store.received.get(keyOf("pool1")), is(2));
+        assertThat(store.received.get(keyOf("pool2")), is(3));
+    }
+
+    @Test
+    public void shouldNotStoreBatchWithoutDuplicates() {
+        whenAlarmIsReceived("pool1");
+
+        handler.flush();
+
+        assertThat(store.batches, is(empty()));
+    }
+
+    @Test
+    public void shouldStoreNextOccurrenceImmediatelyAfterFlush() {
+        whenAlarmIsReceived("pool1");
+        whenAlarmIsReceived("pool1");
+        handler.flush();
+
+        whenAlarmIsReceived("pool1");
+
+        assertThat(store.single.size(), is(2));
+        assertThat(store.received.get(keyOf("pool1")), is(3));
+        assertThat(processed.size(), is(1));
+    }
+
+    @Test
+    public void shouldProcessAlarmReopenedByFlush() {
+        whenAlarmIsReceived("pool1");
+        whenAlarmIsReceived("pool1");
+        whenAlarmIsReceived("pool1");
+        store.closed.add(keyOf("pool1"));
+
+        handler.flush();
+
+        assertThat(store.received.get(keyOf("pool1")), is(2));
+        assertThat(processed.size(), is(2));
+    }
+
+    @Test
+    public void shouldStoreDuplicatesOfRunningTasksOnStop() throws Exception {
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        handler.setStore(new TestStore() {
+            @Override
+            public void put(LogEntry entry) {
+                storing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.put(entry);
+            }
+
+            @Override
+            public synchronized void put(Collection<LogEntry> entries) {
+                store.put(entries);
+            }
+        });
+        handler.start();
+        handler.handle(newEvent("pool1"));
+        handler.handle(newEvent("pool1"));
+        storing.await();
+
+        Thread stopper = new Thread(handler::stop);
+        stopper.start();
+        stopper.join(100);
+        release.countDown();
+        stopper.join();
+
+        assertThat(store.batches.size(), is(1));
+        assertThat(store.batches.get(0).get(0).getReceived(), is(1));
+    }
+
+    private void whenAlarmIsReceived(String pool) {
+        handler.new LogEntryTask(newEvent(pool)).run();
+    }
+
+    private static ILoggingEvent newEvent(String pool) {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        LoggingEvent event = new LoggingEvent(LogEntryHandlerTest.class.getName(),
+                                              context.getLogger(LogEntryHandlerTest.class),
+                                              Level.ERROR,
+                                              "Checksum mismatch on " + pool,
+                                              null, null);
+        event.setMarker(AlarmMarkerFactory.getMarker(PredefinedAlarm.CHECKSUM, pool));
+        event.setMDCPropertyMap(new HashMap<>());
+        return event;
+    }
+
+    private static String keyOf(String pool) {
+        return PredefinedAlarm.CHECKSUM + ":" + pool;
+    }
+}
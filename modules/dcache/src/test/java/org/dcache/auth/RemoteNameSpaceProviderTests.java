@@ -37,6 +37,7 @@ import diskCacheV111.vehicles.PnfsMapPathMessage;
 import diskCacheV111.vehicles.PnfsMessage;
 import diskCacheV111.vehicles.StorageInfo;
 
+import dmg.cells.nucleus.CellAddressCore;
 import dmg.cells.nucleus.CellEndpoint;
 import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellMessageAnswerable;
@@ -52,6 +53,7 @@ import org.dcache.util.list.DirectoryEntry;
 import org.dcache.util.list.ListDirectoryHandler;
 import org.dcache.vehicles.FileAttributes;
 import org.dcache.vehicles.PnfsGetFileAttributes;
+import org.dcache.vehicles.PnfsListDirectoryCreditMessage;
 import org.dcache.vehicles.PnfsListDirectoryMessage;
 import org.dcache.vehicles.PnfsRemoveChecksumMessage;
 import org.dcache.vehicles.PnfsSetFileAttributes;
@@ -105,6 +107,9 @@ public class RemoteNameSpaceProviderTests
     private static final CellPath CELLPATH_PNFSMANAGER =
             new CellPath("PnfsManager");
 
+    private static final CellAddressCore REPLYING_PNFSMANAGER =
+            new CellAddressCore("PnfsManager", "namespaceDomain");
+
     private static final PnfsId A_PNFSID =
             new PnfsId("0123456789abcdef0123456789abcdef0123");
     private static final PnfsId ANOTHER_PNFSID =
@@ -478,7 +483,7 @@ public class RemoteNameSpaceProviderTests
                 entry().name("file-2").id(ANOTHER_PNFSID).size(2000).build()));
 
         ListCapture capture = new ListCapture();
-        _namespace.list(ROOT, "/path/to/dir", null, ALL_ENTRIES,
+        _namespace.list(ROOT, "/path/to/dir", null, null, ALL_ENTRIES,
                 EnumSet.of(SIZE), capture);
 
         Map<String,FileAttributes> results = capture.getNames();
@@ -505,7 +510,7 @@ public class RemoteNameSpaceProviderTests
                 entry().name("file-4").id(PNFSID_4).size(4000).build()));
 
         ListCapture capture = new ListCapture();
-        _namespace.list(ROOT, "/path/to/dir", null, ALL_ENTRIES,
+        _namespace.list(ROOT, "/path/to/dir", null, null, ALL_ENTRIES,
                 EnumSet.of(SIZE), capture);
 
         Map<String,FileAttributes> results = capture.getNames();
@@ -528,6 +533,26 @@ public class RemoteNameSpaceProviderTests
         assertThat(file4Attr.getPnfsId(), is(PNFSID_4));
     }
 
+    @Test(timeout=60_000)
+    public void shouldGrantCreditsToPnfsManagerThatReplied() throws Exception
+    {
+        givenListResponses(
+            Lists.newArrayList(
+                entry().name("file-1").id(A_PNFSID).size(1000).build()),
+            Lists.newArrayList(
+                entry().name("file-2").id(ANOTHER_PNFSID).size(2000).build()));
+
+        _namespace.list(ROOT, "/path/to/dir", null, null, ALL_ENTRIES,
+                EnumSet.of(SIZE), new ListCapture());
+
+        ArgumentCaptor<CellMessage> argument =
+                ArgumentCaptor.forClass(CellMessage.class);
+        verify(_endpoint, times(2)).sendMessage(argument.capture());
+        CellMessage credit = argument.getAllValues().get(1);
+        assertThat(credit.getMessageObject(), is(instanceOf(PnfsListDirectoryCreditMessage.class)));
+        assertThat(credit.getDestinationPath(), is(new CellPath(REPLYING_PNFSMANAGER)));
+    }
+
 
     @Test
     public void shouldSucceedForPathToPnfsidWithKnownPathAndResolvingSymlinks()
@@ -718,7 +743,14 @@ public class RemoteNameSpaceProviderTests
                     CellMessage request =
                             (CellMessage) invocation.getArguments() [0];
 
-                    List<PnfsListDirectoryMessage> replies =
+                    /* Credits granted for further replies are ignored;
+                     * all replies are delivered at once.
+                     */
+                    if (!(request.getMessageObject() instanceof PnfsListDirectoryMessage)) {
+                        return null;
+                    }
+
+                    List<CellMessage> replies =
                             buildMessages(request, answers);
 
                     backgroundDeliverMessages(replies);
@@ -732,18 +764,19 @@ public class RemoteNameSpaceProviderTests
     }
 
 
-    private List<PnfsListDirectoryMessage> buildMessages(final CellMessage request,
+    private List<CellMessage> buildMessages(final CellMessage request,
             final Collection<DirectoryEntry>... replies)
     {
-        List<PnfsListDirectoryMessage> messages =
+        List<CellMessage> messages =
                 Lists.newArrayListWithExpectedSize(replies.length);
 
         for(int i = 0; i < replies.length; i++) {
             Collection<DirectoryEntry> entries = replies [i];
             boolean isLast = i == (replies.length - 1);
             CellMessage reply = buildListReply(request, entries, isLast, replies.length);
+            reply.addSourceAddress(REPLYING_PNFSMANAGER);
 
-            messages.add((PnfsListDirectoryMessage) reply.getMessageObject());
+            messages.add(reply);
         }
 
         return messages;
@@ -766,14 +799,15 @@ public class RemoteNameSpaceProviderTests
     }
 
 
-    private void backgroundDeliverMessages(final Collection<PnfsListDirectoryMessage> messages)
+    private void backgroundDeliverMessages(final Collection<CellMessage> messages)
     {
         new Thread() {
             @Override
             public void run()
             {
-                for(PnfsListDirectoryMessage message : messages) {
-                    _listHandler.messageArrived(message);
+                for(CellMessage message : messages) {
+                    _listHandler.messageArrived(message,
+                            (PnfsListDirectoryMessage) message.getMessageObject());
                 }
             }
         }.start();
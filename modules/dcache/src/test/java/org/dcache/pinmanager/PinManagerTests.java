@@ -3,7 +3,9 @@ package org.dcache.pinmanager;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.primitives.Longs;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.security.auth.Subject;
@@ -14,16 +16,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -33,6 +38,7 @@ import java.util.function.Predicate;
 
 import diskCacheV111.poolManager.Pool;
 import diskCacheV111.poolManager.PoolMonitorV5;
+import diskCacheV111.poolManager.PoolSelectionUnit;
 import diskCacheV111.pools.PoolCostInfo;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.CheckStagePermission;
@@ -51,6 +57,7 @@ import dmg.cells.nucleus.CellEndpoint;
 import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellMessageAnswerable;
 import dmg.cells.nucleus.CellMessageReceiver;
+import dmg.cells.nucleus.CellPath;
 import dmg.cells.nucleus.SerializationException;
 
 import org.dcache.auth.Subjects;
@@ -90,6 +97,8 @@ public class PinManagerTests
 
     final static String POOL1 = "pool1";
 
+    final static String POOL2 = "pool2";
+
     final static String STICKY1 = "PinManager-1";
 
     private FileAttributes getAttributes(PnfsId pnfsId)
@@ -111,12 +120,8 @@ public class PinManagerTests
         return attributes;
     }
 
-    @Test
-    public void testPinning()
-        throws CacheException, InterruptedException, ExecutionException
+    private PinRequestProcessor createPinRequestProcessor(PinDao dao)
     {
-        TestDao dao = new TestDao();
-
         PinRequestProcessor processor = new PinRequestProcessor();
         processor.setScheduledExecutor(new TestExecutor());
         processor.setExecutor(MoreExecutors.directExecutor());
@@ -155,6 +160,15 @@ public class PinManagerTests
                 };
             }
         });
+        return processor;
+    }
+
+    @Test
+    public void testPinning()
+        throws CacheException, InterruptedException, ExecutionException
+    {
+        TestDao dao = new TestDao();
+        PinRequestProcessor processor = createPinRequestProcessor(dao);
 
         Date expiration = new Date(now() + 30);
         PinManagerPinMessage message =
@@ -179,6 +193,47 @@ public class PinManagerTests
         assertValidSticky(pin.getSticky());
     }
 
+    @Test
+    public void testBulkPinning()
+        throws Exception
+    {
+        TestDao dao = new TestDao();
+        PinRequestProcessor processor = createPinRequestProcessor(dao);
+        CellEndpoint endpoint = mock(CellEndpoint.class);
+        processor.setCellEndpoint(endpoint);
+
+        PinManagerBulkPinMessage bulk = new PinManagerBulkPinMessage("bulk1", asList(
+                new PinManagerPinMessage(getAttributes(PNFS_ID1), PROTOCOL_INFO, REQUEST_ID1, 30),
+                new PinManagerPinMessage(getAttributes(PNFS_ID2), PROTOCOL_INFO, REQUEST_ID1, 30)));
+        CellMessage envelope = new CellMessage(new CellAddressCore("PinManager"), bulk);
+        envelope.addSourceAddress(new CellAddressCore("SRM"));
+
+        PinManagerBulkPinMessage reply = processor.messageArrived(envelope, bulk);
+
+        assertEquals(0, reply.getReturnCode());
+        assertTrue(reply.getRequests().isEmpty());
+
+        ArgumentCaptor<CellMessage> notifications = ArgumentCaptor.forClass(CellMessage.class);
+        verify(endpoint, times(2)).sendMessage(notifications.capture());
+        List<PnfsId> pinned = new ArrayList<>();
+        for (CellMessage notification : notifications.getAllValues()) {
+            assertEquals(new CellAddressCore("SRM"), notification.getDestinationPath().getDestinationAddress());
+
+            PinManagerPinMessage message = (PinManagerPinMessage) notification.getMessageObject();
+            assertEquals(0, message.getReturnCode());
+            assertEquals("bulk1", message.getBulkId());
+            assertEquals(message.getBulkIndex() == 0 ? PNFS_ID1 : PNFS_ID2, message.getPnfsId());
+
+            Pin pin = dao.get(dao.where().id(message.getPinId()));
+            assertEquals(REQUEST_ID1, pin.getRequestId());
+            assertEquals(POOL1, pin.getPool());
+            assertEquals(PINNED, pin.getState());
+            pinned.add(pin.getPnfsId());
+        }
+        assertEquals(2, dao.count(dao.where().state(PINNED)));
+        assertTrue(pinned.containsAll(asList(PNFS_ID1, PNFS_ID2)));
+    }
+
     @Test
     public void testExtendLifetime()
         throws CacheException, InterruptedException, ExecutionException
@@ -300,6 +355,141 @@ public class PinManagerTests
         assertEquals(pin.getSticky(), newPin.getSticky());
     }
 
+    private Pin givenPin(TestDao dao, Pin.State state, String pool, long expirationTime)
+    {
+        return dao.create(dao.set()
+                                  .subject(Subjects.ROOT)
+                                  .requestId(REQUEST_ID1)
+                                  .expirationTime(new Date(expirationTime))
+                                  .pnfsId(PNFS_ID1)
+                                  .pool(pool)
+                                  .sticky(STICKY1)
+                                  .state(state));
+    }
+
+    private Pin.State getState(TestDao dao, Pin pin)
+    {
+        return dao.get(dao.where().id(pin.getPinId())).getState();
+    }
+
+    private Runnable createExpirationTask(PinDao dao)
+    {
+        PinManager pinManager = new PinManager();
+        pinManager.setDao(dao);
+        return pinManager.new ExpirationTask();
+    }
+
+    @Test
+    public void testFirstExpirationCoversAllExpiredPins()
+    {
+        TestDao dao = new TestDao();
+        Pin pin = givenPin(dao, PINNED, POOL1, now() - TimeUnit.HOURS.toMillis(1));
+
+        createExpirationTask(dao).run();
+
+        assertEquals(UNPINNING, getState(dao, pin));
+    }
+
+    @Test
+    public void testExpirationCoversSliceSincePreviousRun()
+    {
+        TestDao dao = new TestDao();
+        Runnable task = createExpirationTask(dao);
+        task.run();
+
+        Pin old = givenPin(dao, PINNED, POOL1, now() - TimeUnit.HOURS.toMillis(1));
+        Pin recent = givenPin(dao, PINNED, POOL1, now() - 1);
+        Pin future = givenPin(dao, PINNED, POOL1, now() + TimeUnit.HOURS.toMillis(1));
+        task.run();
+
+        assertEquals(PINNED, getState(dao, old));
+        assertEquals(UNPINNING, getState(dao, recent));
+        assertEquals(PINNED, getState(dao, future));
+    }
+
+    @Test
+    public void testEverySixtiethExpirationCoversAllExpiredPins()
+    {
+        TestDao dao = new TestDao();
+        Runnable task = createExpirationTask(dao);
+        task.run();
+
+        Pin old = givenPin(dao, PINNED, POOL1, now() - TimeUnit.HOURS.toMillis(1));
+        for (int i = 1; i < 60; i++) {
+            task.run();
+        }
+        assertEquals(PINNED, getState(dao, old));
+
+        task.run();
+        assertEquals(UNPINNING, getState(dao, old));
+    }
+
+    @Test
+    public void testUnpinningLimitsRequestsPerPoolAndOverall() throws Exception
+    {
+        TestDao dao = new TestDao();
+        for (int i = 0; i < 10; i++) {
+            givenPin(dao, UNPINNING, POOL1, now());
+        }
+        for (int i = 0; i < 2; i++) {
+            givenPin(dao, UNPINNING, POOL2, now());
+        }
+
+        PoolSelectionUnit psu = mock(PoolSelectionUnit.class);
+        for (String name : asList(POOL1, POOL2)) {
+            PoolSelectionUnit.SelectionPool pool = mock(PoolSelectionUnit.SelectionPool.class);
+            when(pool.isActive()).thenReturn(true);
+            when(pool.getAddress()).thenReturn(new CellAddressCore(name));
+            when(psu.getPool(name)).thenReturn(pool);
+        }
+        PoolMonitor poolMonitor = mock(PoolMonitor.class);
+        when(poolMonitor.getPoolSelectionUnit()).thenReturn(psu);
+
+        BlockingQueue<PoolSetStickyMessage> requests = new LinkedBlockingQueue<>();
+        Map<PoolSetStickyMessage, SettableFuture<PoolSetStickyMessage>> replies =
+                Collections.synchronizedMap(new IdentityHashMap<>());
+        CellStub poolStub = mock(CellStub.class);
+        when(poolStub.send(any(CellPath.class), any(PoolSetStickyMessage.class))).thenAnswer(invocation -> {
+            PoolSetStickyMessage msg = (PoolSetStickyMessage) invocation.getArguments()[1];
+            replies.put(msg, SettableFuture.create());
+            requests.add(msg);
+            return replies.get(msg);
+        });
+
+        Thread thread = new Thread(new UnpinProcessor(dao, poolStub, poolMonitor, 100, 3, 2));
+        thread.start();
+
+        /* POOL1 is limited to two requests, leaving the third to POOL2.
+         */
+        PoolSetStickyMessage first = requests.poll(10, TimeUnit.SECONDS);
+        PoolSetStickyMessage second = requests.poll(10, TimeUnit.SECONDS);
+        PoolSetStickyMessage third = requests.poll(10, TimeUnit.SECONDS);
+        assertEquals(POOL1, first.getPoolName());
+        assertEquals(POOL1, second.getPoolName());
+        assertEquals(POOL2, third.getPoolName());
+        assertNull(requests.poll(100, TimeUnit.MILLISECONDS));
+
+        /* POOL2 was held back by the overall limit and is served first.
+         */
+        replies.get(first).set(first);
+        PoolSetStickyMessage fourth = requests.poll(10, TimeUnit.SECONDS);
+        assertEquals(POOL2, fourth.getPoolName());
+        assertNull(requests.poll(100, TimeUnit.MILLISECONDS));
+
+        replies.get(second).set(second);
+        replies.get(third).set(third);
+        replies.get(fourth).set(fourth);
+        for (int i = 4; i < 12; i++) {
+            PoolSetStickyMessage msg = requests.poll(10, TimeUnit.SECONDS);
+            assertEquals(POOL1, msg.getPoolName());
+            replies.get(msg).set(msg);
+        }
+
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(thread.isAlive());
+        assertEquals(0, dao.count(dao.where().state(UNPINNING)));
+    }
+
     <T extends Comparable<T>> void assertBetween(T lower, T upper, T actual)
     {
         String message =
@@ -463,6 +653,12 @@ class TestDao implements PinDao
             return add(p -> p.getExpirationTime().before(date));
         }
 
+        @Override
+        public TestCriterion expirationTimeNotBefore(Date date)
+        {
+            return add(p -> p.getExpirationTime() != null && !p.getExpirationTime().before(date));
+        }
+
         @Override
         public TestCriterion state(Pin.State state)
         {
@@ -0,0 +1,94 @@
+package org.dcache.pool.movers;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import diskCacheV111.vehicles.ProtocolInfo;
+
+import org.dcache.pool.repository.Allocator;
+import org.dcache.pool.repository.OutOfDiskException;
+import org.dcache.pool.repository.RepositoryChannel;
+
+import static org.dcache.util.ByteUnit.MiB;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class MoverChannelTest
+{
+    private RepositoryChannel channel;
+    private Allocator allocator;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        channel = mock(RepositoryChannel.class);
+        when(channel.write(any(ByteBuffer.class), anyLong())).thenAnswer(invocation -> {
+            ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+            int remaining = buffer.remaining();
+            buffer.position(buffer.limit());
+            return remaining;
+        });
+        allocator = mock(Allocator.class);
+    }
+
+    private MoverChannel<ProtocolInfo> createChannel(MoverChannel.AllocatorMode mode)
+    {
+        return new MoverChannel<>(IoMode.WRITE, null, mock(ProtocolInfo.class), channel, allocator, mode);
+    }
+
+    @Test
+    public void shouldAllocateFreeIncrementWithoutWaitingInHardMode() throws Exception
+    {
+        when(allocator.tryAllocate(anyLong())).thenReturn(true);
+        MoverChannel<ProtocolInfo> mover = createChannel(MoverChannel.AllocatorMode.HARD);
+
+        mover.write(ByteBuffer.allocate(1024), 0);
+
+        verify(allocator).tryAllocate(MiB.toBytes(50));
+        verify(allocator, never()).allocate(anyLong());
+        verify(allocator, never()).allocateNow(anyLong());
+        assertThat(mover.getAllocated(), is(MiB.toBytes(50)));
+    }
+
+    @Test
+    public void shouldOnlyWaitForNeededSpaceInHardMode() throws Exception
+    {
+        when(allocator.tryAllocate(anyLong())).thenReturn(false);
+        MoverChannel<ProtocolInfo> mover = createChannel(MoverChannel.AllocatorMode.HARD);
+
+        mover.write(ByteBuffer.allocate(1024), 0);
+
+        verify(allocator).allocate(1024);
+        verify(allocator, never()).allocateNow(anyLong());
+        assertThat(mover.getAllocated(), is(1024L));
+    }
+
+    @Test
+    public void shouldNotRemoveFilesForIncrementInSoftMode() throws Exception
+    {
+        when(allocator.tryAllocate(anyLong())).thenReturn(false);
+        when(allocator.allocateNow(1024)).thenReturn(true);
+        MoverChannel<ProtocolInfo> mover = createChannel(MoverChannel.AllocatorMode.SOFT);
+
+        mover.write(ByteBuffer.allocate(1024), 0);
+
+        verify(allocator).allocateNow(1024);
+        verify(allocator, never()).allocateNow(MiB.toBytes(50));
+        verify(allocator, never()).allocate(anyLong());
+        assertThat(mover.getAllocated(), is(1024L));
+    }
+
+    @Test(expected = OutOfDiskException.class)
+    public void shouldFailWithoutSpaceInSoftMode() throws Exception
+    {
+        when(allocator.tryAllocate(anyLong())).thenReturn(false);
+        when(allocator.allocateNow(anyLong())).thenReturn(false);
+        MoverChannel<ProtocolInfo> mover = createChannel(MoverChannel.AllocatorMode.SOFT);
+
+        mover.write(ByteBuffer.allocate(1024), 0);
+    }
+}
@@ -0,0 +1,231 @@
+package org.dcache.pool.repository.container;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import diskCacheV111.util.PnfsId;
+
+import org.dcache.pool.movers.IoMode;
+import org.dcache.pool.repository.RepositoryChannel;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ContainerFileStoreTest
+{
+    private final static PnfsId SMALL = new PnfsId("000000000000000000000000000000000001");
+    private final static PnfsId OTHER = new PnfsId("000000000000000000000000000000000002");
+    private final static PnfsId LARGE = new PnfsId("000000000000000000000000000000000003");
+
+    private Path base;
+    private ContainerFileStore store;
+
+    @Before
+    public void setup() throws Exception
+    {
+        FileSystem fileSystem = Jimfs.newFileSystem(Configuration.unix());
+        base = fileSystem.getPath("/pool");
+        Files.createDirectory(base);
+        store = new ContainerFileStore(base, 1024, 4096, 0.5);
+    }
+
+    private void givenReplica(PnfsId id, int size, byte value) throws IOException
+    {
+        givenUnpackedReplica(id, size, value);
+        store.pack();
+    }
+
+    private void givenUnpackedReplica(PnfsId id, int size, byte value) throws IOException
+    {
+        store.create(id);
+        try (RepositoryChannel channel = store.openDataChannel(id, IoMode.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            while (buffer.hasRemaining()) {
+                buffer.put(value);
+            }
+            buffer.flip();
+            channel.write(buffer);
+        }
+    }
+
+    private byte[] read(PnfsId id) throws IOException
+    {
+        try (RepositoryChannel channel = store.openDataChannel(id, IoMode.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            return buffer.array();
+        }
+    }
+
+    @Test
+    public void shouldNotPackReplicaOnClose() throws Exception
+    {
+        givenUnpackedReplica(SMALL, 100, (byte) 1);
+
+        assertThat(Files.exists(base.resolve("data").resolve(SMALL.toString())), is(true));
+        assertThat(read(SMALL)[99], is((byte) 1));
+    }
+
+    @Test
+    public void shouldPackSmallReplica() throws Exception
+    {
+        givenReplica(SMALL, 100, (byte) 1);
+
+        assertThat(Files.exists(base.resolve("data").resolve(SMALL.toString())), is(false));
+        assertThat(store.contains(SMALL), is(true));
+        assertThat(store.getFileAttributeView(SMALL).readAttributes().size(), is(100L));
+        assertThat(read(SMALL).length, is(100));
+        assertThat(read(SMALL)[99], is((byte) 1));
+    }
+
+    @Test
+    public void shouldPackReplicasInBatch() throws Exception
+    {
+        givenUnpackedReplica(SMALL, 100, (byte) 1);
+        givenUnpackedReplica(OTHER, 100, (byte) 2);
+
+        store.pack();
+
+        assertThat(Files.exists(base.resolve("data").resolve(SMALL.toString())), is(false));
+        assertThat(Files.exists(base.resolve("data").resolve(OTHER.toString())), is(false));
+        assertThat(Files.size(base.resolve("containers").resolve("segment-00000000")), is(200L));
+        assertThat(read(SMALL)[0], is((byte) 1));
+        assertThat(read(OTHER)[0], is((byte) 2));
+    }
+
+    @Test
+    public void shouldNotPackRemovedReplica() throws Exception
+    {
+        givenUnpackedReplica(SMALL, 100, (byte) 1);
+        store.remove(SMALL);
+
+        store.pack();
+
+        assertThat(store.contains(SMALL), is(false));
+        assertThat(store.index(), is(empty()));
+    }
+
+    @Test
+    public void shouldNotPackReplicaReopenedForWriting() throws Exception
+    {
+        givenUnpackedReplica(SMALL, 100, (byte) 1);
+
+        try (RepositoryChannel channel = store.openDataChannel(SMALL, IoMode.WRITE)) {
+            store.pack();
+            channel.write(ByteBuffer.wrap(new byte[] { 3 }), 100);
+        }
+
+        assertThat(Files.exists(base.resolve("data").resolve(SMALL.toString())), is(true));
+        assertThat(read(SMALL)[100], is((byte) 3));
+    }
+
+    @Test
+    public void shouldNotPackLargeReplica() throws Exception
+    {
+        givenReplica(LARGE, 2000, (byte) 1);
+
+        assertThat(Files.exists(base.resolve("data").resolve(LARGE.toString())), is(true));
+        assertThat(store.index(), contains(LARGE));
+    }
+
+    @Test
+    public void shouldNotReadBeyondReplica() throws Exception
+    {
+        givenReplica(SMALL, 100, (byte) 1);
+        givenReplica(OTHER, 100, (byte) 2);
+
+        try (RepositoryChannel channel = store.openDataChannel(SMALL, IoMode.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(200);
+            assertThat(channel.read(buffer), is(100));
+            assertThat(channel.read(buffer), is(-1));
+        }
+        assertThat(read(OTHER)[0], is((byte) 2));
+    }
+
+    @Test
+    public void shouldRecoverIndexAfterRestart() throws Exception
+    {
+        givenReplica(SMALL, 100, (byte) 1);
+        givenReplica(OTHER, 100, (byte) 2);
+        store.remove(SMALL);
+        store.shutdown();
+
+        store = new ContainerFileStore(base, 1024, 4096, 0.5);
+
+        assertThat(store.index(), contains(OTHER));
+        assertThat(read(OTHER)[50], is((byte) 2));
+    }
+
+    @Test
+    public void shouldUnpackReplicaOpenedForWriting() throws Exception
+    {
+        givenReplica(SMALL, 100, (byte) 1);
+
+        try (RepositoryChannel channel = store.openDataChannel(SMALL, IoMode.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 3 }), 100);
+        }
+
+        assertThat(read(SMALL).length, is(101));
+        assertThat(read(SMALL)[0], is((byte) 1));
+        assertThat(read(SMALL)[100], is((byte) 3));
+    }
+
+    @Test
+    public void shouldMoveLiveReplicasOnCompaction() throws Exception
+    {
+        givenReplica(SMALL, 1000, (byte) 1);
+        givenReplica(OTHER, 1000, (byte) 2);
+        givenReplica(LARGE, 1000, (byte) 3);
+        givenReplica(new PnfsId("000000000000000000000000000000000004"), 1000, (byte) 4);
+        givenReplica(new PnfsId("000000000000000000000000000000000005"), 1000, (byte) 5);
+        store.remove(SMALL);
+        store.remove(OTHER);
+        store.remove(LARGE);
+
+        store.compact();
+
+        assertThat(Files.exists(base.resolve("containers").resolve("segment-00000000")), is(false));
+        assertThat(read(new PnfsId("000000000000000000000000000000000004"))[0], is((byte) 4));
+        assertThat(read(new PnfsId("000000000000000000000000000000000005"))[0], is((byte) 5));
+    }
+
+    @Test
+    public void shouldReadReplicasWhileBeingPacked() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < 100; i++) {
+                PnfsId id = new PnfsId(String.format("%036X", 16 + i));
+                givenUnpackedReplica(id, 100, (byte) 1);
+
+                AtomicBoolean isPacked = new AtomicBoolean();
+                Future<?> reader = executor.submit(() -> {
+                    do {
+                        assertThat(store.contains(id), is(true));
+                        assertThat(store.getFileAttributeView(id).readAttributes().size(), is(100L));
+                        assertThat(read(id)[99], is((byte) 1));
+                    } while (!isPacked.get());
+                    return null;
+                });
+                store.pack();
+                isPacked.set(true);
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
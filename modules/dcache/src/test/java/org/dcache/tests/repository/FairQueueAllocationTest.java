@@ -0,0 +1,98 @@
+package org.dcache.tests.repository;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.dcache.pool.classic.FairQueueAllocation;
+import org.dcache.pool.repository.Account;
+
+import static org.junit.Assert.*;
+
+public class FairQueueAllocationTest
+{
+    private Account account;
+    private FairQueueAllocation allocator;
+
+    @Before
+    public void setUp()
+    {
+        account = new Account();
+        account.setTotal(100);
+        allocator = new FairQueueAllocation();
+        allocator.setAccount(account);
+        allocator.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException
+    {
+        allocator.stop();
+    }
+
+    @Test
+    public void shouldAllocateImmediatelyIfSpaceIsFree() throws Exception
+    {
+        ListenableFuture<Void> future = allocator.allocateAsync(60);
+
+        assertTrue(future.isDone());
+        assertEquals(40, account.getFree());
+    }
+
+    @Test
+    public void shouldServeWaitingRequestsInOrder() throws Exception
+    {
+        allocator.allocate(90);
+        ListenableFuture<Void> first = allocator.allocateAsync(50);
+        ListenableFuture<Void> second = allocator.allocateAsync(5);
+
+        assertFalse(first.isDone());
+        assertFalse("Later requests must not overtake the head of the queue", second.isDone());
+
+        allocator.free(90);
+        first.get(1, TimeUnit.SECONDS);
+        second.get(1, TimeUnit.SECONDS);
+
+        assertEquals(45, account.getFree());
+        assertEquals(0, account.getRequested());
+    }
+
+    @Test
+    public void shouldWithdrawCancelledRequests() throws Exception
+    {
+        allocator.allocate(90);
+        ListenableFuture<Void> first = allocator.allocateAsync(50);
+        ListenableFuture<Void> second = allocator.allocateAsync(5);
+
+        first.cancel(false);
+        second.get(1, TimeUnit.SECONDS);
+
+        assertEquals(5, account.getFree());
+        assertEquals(0, account.getRequested());
+    }
+
+    @Test
+    public void shouldFailAllocateNowIfSpaceCannotBeFreed() throws Exception
+    {
+        allocator.allocate(90);
+
+        assertFalse(allocator.allocateNow(50));
+        assertEquals(10, account.getFree());
+    }
+
+    @Test
+    public void shouldNotWaitForRemovableSpaceInTryAllocate() throws Exception
+    {
+        allocator.allocate(90);
+        account.adjustRemovable(50);
+
+        assertFalse(allocator.tryAllocate(50));
+        assertEquals(10, account.getFree());
+        assertEquals(0, account.getRequested());
+        assertTrue(allocator.tryAllocate(10));
+        assertEquals(0, account.getFree());
+    }
+}
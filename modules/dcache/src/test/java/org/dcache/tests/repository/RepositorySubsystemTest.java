@@ -95,6 +95,7 @@ public class RepositorySubsystemTest
     private PnfsHandler pnfs;
 
     private Account account;
+    private FairQueueAllocation allocator;
     private ReplicaRepository repository;
     private SpaceSweeper2 sweeper;
     private ReplicaStore replicaStore;
@@ -185,7 +186,7 @@ public class RepositorySubsystemTest
     private void initRepository()
             throws IOException, DatabaseException
     {
-        FairQueueAllocation allocator = new FairQueueAllocation();
+        allocator = new FairQueueAllocation();
         FileStore fileStore = new FlatFileStore(dataRoot);
         replicaStore =
             new FileMetaDataRepository(fileStore, metaRoot);
@@ -195,6 +196,7 @@ public class RepositorySubsystemTest
         repository = new ReplicaRepository();
 
         allocator.setAccount(account);
+        allocator.start();
         repository.setCellAddress(address);
         repository.setAllocator(allocator);
         repository.setPnfsHandler(pnfs);
@@ -260,6 +262,7 @@ public class RepositorySubsystemTest
                     Arrays.asList(new StickyRecord("system", -1)));
         repository.shutdown();
         replicaStore.close();
+        allocator.stop();
 
         /* Create repository.
          */
@@ -276,6 +279,7 @@ public class RepositorySubsystemTest
     {
         sweeper.stop();
         repository.shutdown();
+        allocator.stop();
         replicaStore.close();
         if (metaRoot != null) {
             deleteDirectory(metaRoot);
@@ -0,0 +1,111 @@
+package org.dcache.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import diskCacheV111.vehicles.IoJobInfo;
+
+import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellMessage;
+
+import org.dcache.vehicles.PoolMoverInfo;
+import org.dcache.vehicles.PoolMoverSnapshotMessage;
+import org.dcache.vehicles.PoolMoverUpdateMessage;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class PoolMoverSubscriberTest
+{
+    private static final long UPDATE_TIME = 30000;
+
+    private CellEndpoint endpoint;
+    private PoolMoverSubscriber subscriber;
+
+    @Before
+    public void setUp()
+    {
+        endpoint = mock(CellEndpoint.class);
+        subscriber = new PoolMoverSubscriber();
+        subscriber.setCellEndpoint(endpoint);
+    }
+
+    private static PoolMoverInfo mover(String pool, int id, long bytes, String user, String client)
+    {
+        IoJobInfo job = new IoJobInfo(0, 0, "RUNNING", id, "door@domain", id, null, bytes, 0, 0);
+        return new PoolMoverInfo(pool, job, user, client);
+    }
+
+    private static PoolMoverUpdateMessage update(String pool, long sequence, PoolMoverInfo... updated)
+    {
+        return new PoolMoverUpdateMessage(pool, sequence, UPDATE_TIME, Arrays.asList(updated),
+                                          Collections.emptyList());
+    }
+
+    private static PoolMoverUpdateMessage finished(String pool, long sequence, Integer... ids)
+    {
+        return new PoolMoverUpdateMessage(pool, sequence, UPDATE_TIME, Collections.emptyList(),
+                                          Arrays.asList(ids));
+    }
+
+    @Test
+    public void shouldIndexMoversFromUpdates()
+    {
+        subscriber.messageArrived(update("pool1", 1, mover("pool1", 1, 0, "alice", "10.0.0.1"),
+                                         mover("pool1", 2, 0, "bob", "10.0.0.2")));
+        subscriber.messageArrived(update("pool2", 1, mover("pool2", 1, 0, "alice", "10.0.0.3")));
+
+        assertEquals(3, subscriber.movers().size());
+        assertEquals(2, subscriber.moversOfPool("pool1").size());
+        assertEquals(2, subscriber.moversOfUser("alice").size());
+        assertEquals(1, subscriber.moversOfClient("10.0.0.2").size());
+        assertEquals(3, subscriber.moversOfDoor("door@domain").size());
+    }
+
+    @Test
+    public void shouldReplaceAndRemoveMovers()
+    {
+        subscriber.messageArrived(update("pool1", 1, mover("pool1", 1, 0, "alice", "10.0.0.1")));
+        subscriber.messageArrived(update("pool1", 2, mover("pool1", 1, 100, "alice", "10.0.0.1")));
+
+        assertEquals(1, subscriber.moversOfUser("alice").size());
+        assertEquals(100, subscriber.moversOfUser("alice").iterator().next().getJob().getBytesTransferred());
+
+        subscriber.messageArrived(finished("pool1", 3, 1));
+
+        assertTrue(subscriber.movers().isEmpty());
+        assertTrue(subscriber.moversOfUser("alice").isEmpty());
+        assertTrue(subscriber.moversOfClient("10.0.0.1").isEmpty());
+    }
+
+    @Test
+    public void shouldRequestSnapshotOnMissedUpdate()
+    {
+        subscriber.messageArrived(update("pool1", 5, mover("pool1", 1, 0, "alice", "10.0.0.1")));
+
+        verify(endpoint).sendMessage(any(CellMessage.class));
+    }
+
+    @Test
+    public void shouldDropMoversMissingFromSnapshot()
+    {
+        subscriber.messageArrived(update("pool1", 5, mover("pool1", 1, 0, "alice", "10.0.0.1")));
+
+        PoolMoverSnapshotMessage snapshot = new PoolMoverSnapshotMessage();
+        snapshot.setSnapshot("pool1", 5, UPDATE_TIME,
+                             Collections.singletonList(mover("pool1", 2, 0, "bob", "10.0.0.2")));
+        subscriber.messageArrived(snapshot);
+
+        assertEquals(1, subscriber.movers().size());
+        assertTrue(subscriber.moversOfUser("alice").isEmpty());
+        assertEquals(1, subscriber.moversOfUser("bob").size());
+
+        subscriber.messageArrived(update("pool1", 6, mover("pool1", 3, 0, "carol", "10.0.0.3")));
+
+        verify(endpoint, times(1)).sendMessage(any(CellMessage.class));
+    }
+}
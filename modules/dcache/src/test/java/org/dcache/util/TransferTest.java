@@ -0,0 +1,224 @@
+package org.dcache.util;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.FileIsNewCacheException;
+import diskCacheV111.util.FsPath;
+import diskCacheV111.util.NotFileCacheException;
+import diskCacheV111.util.PnfsHandler;
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.GenericStorageInfo;
+import diskCacheV111.vehicles.Message;
+import diskCacheV111.vehicles.PnfsSelectReadPoolMessage;
+import diskCacheV111.vehicles.PoolMgrSelectReadPoolMsg;
+import diskCacheV111.vehicles.ProtocolInfo;
+import diskCacheV111.vehicles.StorageInfo;
+
+import dmg.cells.nucleus.CellAddressCore;
+
+import org.dcache.auth.Subjects;
+import org.dcache.auth.attributes.Restrictions;
+import org.dcache.cells.CellStub;
+import org.dcache.namespace.FileType;
+import org.dcache.poolmanager.PoolManagerHandler;
+import org.dcache.poolmanager.PoolManagerStub;
+import org.dcache.poolmanager.SerializablePoolManagerHandler;
+import org.dcache.vehicles.FileAttributes;
+import org.dcache.vehicles.PnfsGetFileAttributes;
+
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TransferTest
+{
+    private static final PnfsId PNFSID = new PnfsId("000000000000000000000000000000000001");
+    private static final String POOL = "pool";
+
+    private final ProtocolInfo protocolInfo = mock(ProtocolInfo.class);
+
+    private CellStub pnfsStub;
+    private PoolManagerStub poolManager;
+    private SerializablePoolManagerHandler handler;
+    private Transfer transfer;
+
+    @Before
+    public void setup()
+    {
+        pnfsStub = mock(CellStub.class);
+        handler = mock(SerializablePoolManagerHandler.class);
+        poolManager = new PoolManagerStub();
+        poolManager.setHandler(handler);
+
+        transfer = new Transfer(new PnfsHandler(pnfsStub), Subjects.ROOT, Restrictions.none(),
+                                FsPath.create("/test/file"));
+        transfer.setPoolManagerStub(poolManager);
+        transfer.setProtocolInfo(protocolInfo);
+    }
+
+    private static FileAttributes attributes(FileType type)
+    {
+        GenericStorageInfo info = new GenericStorageInfo("osm", "test:disk");
+        info.setIsNew(false);
+
+        FileAttributes attributes = new FileAttributes();
+        attributes.setPnfsId(PNFSID);
+        attributes.setFileType(type);
+        attributes.setStorageInfo(info);
+        attributes.setStorageClass("test:disk");
+        attributes.setCacheClass(null);
+        attributes.setHsm("osm");
+        attributes.setLocations(Collections.singleton(POOL));
+        attributes.setSize(1L);
+        attributes.setAccessLatency(StorageInfo.DEFAULT_ACCESS_LATENCY);
+        attributes.setRetentionPolicy(StorageInfo.DEFAULT_RETENTION_POLICY);
+        attributes.setChecksums(Collections.emptySet());
+        attributes.setFlags(Collections.emptyMap());
+        return attributes;
+    }
+
+    private PoolMgrSelectReadPoolMsg selected()
+    {
+        PoolMgrSelectReadPoolMsg msg =
+                new PoolMgrSelectReadPoolMsg(attributes(FileType.REGULAR), protocolInfo, null);
+        msg.setPoolName(POOL);
+        msg.setPoolAddress(new CellAddressCore(POOL, "poolDomain"));
+        return msg;
+    }
+
+    private void givenPnfsManagerReplies(ListenableFuture<Message> reply)
+    {
+        when(pnfsStub.send(any(Serializable.class), eq(Message.class), anyLong())).thenReturn(reply);
+    }
+
+    private static int getRc(ListenableFuture<?> future) throws InterruptedException
+    {
+        try {
+            future.get();
+            fail("Expected a failure");
+            return 0;
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(CacheException.class)));
+            return ((CacheException) e.getCause()).getRc();
+        }
+    }
+
+    @Test
+    public void shouldReadNameSpaceEntryAndSelectPoolInOneRequest() throws Exception
+    {
+        givenPnfsManagerReplies(immediateFuture(selected()));
+
+        transfer.readNameSpaceEntryAndSelectPoolAsync(1000).get();
+
+        ArgumentCaptor<Serializable> request = ArgumentCaptor.forClass(Serializable.class);
+        verify(pnfsStub).send(request.capture(), eq(Message.class), anyLong());
+        assertThat(request.getValue(), is(instanceOf(PnfsSelectReadPoolMessage.class)));
+        assertThat(((PnfsSelectReadPoolMessage) request.getValue()).getPoolManagerHandler(),
+                   is(sameInstance(handler)));
+        verify(handler, never()).sendAsync(any(), any(PoolMgrSelectReadPoolMsg.class), anyLong());
+        assertThat(transfer.getPool(), is(POOL));
+        assertThat(transfer.getPnfsId(), is(PNFSID));
+        assertThat(transfer.isWrite(), is(false));
+    }
+
+    @Test
+    public void shouldSelectPoolSeparatelyIfNotForwarded() throws Exception
+    {
+        when(pnfsStub.send(any(Serializable.class), eq(Message.class), anyLong())).thenAnswer(invocation -> {
+            PnfsSelectReadPoolMessage msg = (PnfsSelectReadPoolMessage) invocation.getArguments()[0];
+            msg.setFileAttributes(attributes(FileType.REGULAR));
+            return immediateFuture(msg);
+        });
+        when(handler.sendAsync(any(), any(PoolMgrSelectReadPoolMsg.class), anyLong()))
+                .thenReturn(immediateFuture(selected()));
+
+        transfer.readNameSpaceEntryAndSelectPoolAsync(1000).get();
+
+        verify(handler).sendAsync(any(), any(PoolMgrSelectReadPoolMsg.class), anyLong());
+        assertThat(transfer.getPool(), is(POOL));
+    }
+
+    @Test
+    public void shouldUseSeparateRequestsWithoutSerializableHandler() throws Exception
+    {
+        PoolManagerHandler nonSerializable = mock(PoolManagerHandler.class);
+        poolManager.setHandler(nonSerializable);
+        when(pnfsStub.send(any(PnfsGetFileAttributes.class), anyLong())).thenAnswer(invocation -> {
+            PnfsGetFileAttributes msg = (PnfsGetFileAttributes) invocation.getArguments()[0];
+            msg.setFileAttributes(attributes(FileType.REGULAR));
+            return immediateFuture(msg);
+        });
+        when(nonSerializable.sendAsync(any(), any(PoolMgrSelectReadPoolMsg.class), anyLong()))
+                .thenReturn(immediateFuture(selected()));
+
+        transfer.readNameSpaceEntryAndSelectPoolAsync(1000).get();
+
+        verify(pnfsStub, never()).send(any(Serializable.class), eq(Message.class), anyLong());
+        verify(nonSerializable).sendAsync(any(), any(PoolMgrSelectReadPoolMsg.class), anyLong());
+        assertThat(transfer.getPool(), is(POOL));
+    }
+
+    @Test
+    public void shouldFailDirectoryWithoutSelectingPool() throws Exception
+    {
+        when(pnfsStub.send(any(Serializable.class), eq(Message.class), anyLong())).thenAnswer(invocation -> {
+            PnfsSelectReadPoolMessage msg = (PnfsSelectReadPoolMessage) invocation.getArguments()[0];
+            msg.setFileAttributes(attributes(FileType.DIR));
+            return immediateFuture(msg);
+        });
+
+        int rc = getRc(transfer.readNameSpaceEntryAndSelectPoolAsync(1000));
+
+        assertThat(rc, is(CacheException.NOT_FILE));
+        verify(handler, never()).sendAsync(any(), any(PoolMgrSelectReadPoolMsg.class), anyLong());
+    }
+
+    @Test
+    public void shouldNotRetryIfNotFile() throws Exception
+    {
+        givenPnfsManagerReplies(immediateFailedFuture(new NotFileCacheException("Not a regular file")));
+
+        int rc = getRc(transfer.readNameSpaceEntryAndStartMoverAsync(new TransferRetryPolicy(3, 0, 60000)));
+
+        assertThat(rc, is(CacheException.NOT_FILE));
+        verify(pnfsStub, times(1)).send(any(Serializable.class), eq(Message.class), anyLong());
+    }
+
+    @Test
+    public void shouldNotRetryIfFileIsNew() throws Exception
+    {
+        givenPnfsManagerReplies(immediateFailedFuture(new FileIsNewCacheException()));
+
+        int rc = getRc(transfer.readNameSpaceEntryAndStartMoverAsync(new TransferRetryPolicy(3, 0, 60000)));
+
+        assertThat(rc, is(CacheException.FILE_IS_NEW));
+        verify(pnfsStub, times(1)).send(any(Serializable.class), eq(Message.class), anyLong());
+    }
+
+    @Test
+    public void shouldRetryPoolSelectionIfOutOfDate() throws Exception
+    {
+        when(pnfsStub.send(any(Serializable.class), eq(Message.class), anyLong()))
+                .thenReturn(immediateFailedFuture(new CacheException(CacheException.OUT_OF_DATE, "Out of date")))
+                .thenReturn(immediateFailedFuture(new FileIsNewCacheException()));
+
+        int rc = getRc(transfer.readNameSpaceEntryAndStartMoverAsync(new TransferRetryPolicy(3, 0, 60000)));
+
+        assertThat(rc, is(CacheException.FILE_IS_NEW));
+        verify(pnfsStub, times(2)).send(any(Serializable.class), eq(Message.class), anyLong());
+    }
+}
@@ -77,7 +77,7 @@ class AuthzMapLineParser implements LineParser<AuthzMapLineParser.StringPredicat
         return null;
     }
 
-    public static class StringPredicate implements MapPredicate<String> {
+    public static class StringPredicate implements IndexedMapPredicate<String> {
 
         private final String _string;
 
@@ -89,6 +89,21 @@ class AuthzMapLineParser implements LineParser<AuthzMapLineParser.StringPredicat
         public boolean matches(String object) {
             return _string.equals(object);
         }
+
+        @Override
+        public String getIndexKey(String object) {
+            return object;
+        }
+
+        @Override
+        public String getIndexPrefix() {
+            return _string;
+        }
+
+        @Override
+        public boolean isExact() {
+            return true;
+        }
     }
 
     public static class UserAuthzInformation
@@ -17,7 +17,7 @@ class FileLineSource implements LineSource {
 
     private final File _file;
     private final long _minCheckInterval;
-    private long _lastRefresh;
+    private volatile long _lastRefresh;
 
     /**
      * @param filepath Path to text file
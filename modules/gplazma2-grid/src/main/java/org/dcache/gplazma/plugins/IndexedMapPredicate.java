@@ -0,0 +1,27 @@
+package org.dcache.gplazma.plugins;
+
+/**
+ * A MapPredicate that only matches objects whose index key starts with a
+ * fixed prefix. Such predicates are indexed by a SourceBackedPredicateMap,
+ * thus a lookup does not have to test every predicate of the map.
+ * @param <T> Type of the entries to be tested for matching.
+ */
+interface IndexedMapPredicate<T> extends MapPredicate<T> {
+
+    /**
+     * @param object Entry to be tested for matching
+     * @return the string by which the entry is looked up in the index
+     */
+    String getIndexKey(T object);
+
+    /**
+     * @return prefix of the index key of every object matching this predicate
+     */
+    String getIndexPrefix();
+
+    /**
+     * @return true if this predicate only matches objects whose index key is
+     * equal to the prefix, false otherwise
+     */
+    boolean isExact();
+}
@@ -0,0 +1,116 @@
+package org.dcache.gplazma.plugins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Immutable index of the predicates of a SourceBackedPredicateMap.
+ *
+ * Predicates matching a single index key are kept in a hash map, predicates
+ * matching all index keys with a common prefix are kept in a trie, and all
+ * other predicates are kept in a list. A lookup thus only tests the
+ * predicates that can possibly match, and takes time proportional to the
+ * length of the key rather than to the number of predicates.
+ *
+ * Matching values are returned in the order in which the predicates were
+ * added.
+ * @param <TKey> type of key to access matching values
+ * @param <TValue> type of values
+ */
+class PredicateIndex<TKey, TValue> {
+
+    private final Map<String, List<Entry<TKey, TValue>>> _exact = new HashMap<>();
+    private final Node<TKey, TValue> _prefixes = new Node<>();
+    private final List<Entry<TKey, TValue>> _unindexed = new ArrayList<>();
+    private Function<TKey, String> _indexKey;
+    private int _size;
+
+    /**
+     * Adds a predicate to the index. Must not be called once the index is
+     * shared with other threads.
+     */
+    void add(MapPredicate<TKey> predicate, TValue value) {
+        Entry<TKey, TValue> entry = new Entry<>(_size++, predicate, value);
+        if (predicate instanceof IndexedMapPredicate) {
+            IndexedMapPredicate<TKey> indexed = (IndexedMapPredicate<TKey>) predicate;
+            if (_indexKey == null) {
+                _indexKey = indexed::getIndexKey;
+            }
+            if (indexed.isExact()) {
+                _exact.computeIfAbsent(indexed.getIndexPrefix(), k -> new ArrayList<>(1)).add(entry);
+            } else {
+                _prefixes.add(indexed.getIndexPrefix(), entry);
+            }
+        } else {
+            _unindexed.add(entry);
+        }
+    }
+
+    /**
+     * Returns the values of all predicates matching the key.
+     */
+    List<TValue> get(TKey key) {
+        List<Entry<TKey, TValue>> candidates = new ArrayList<>(_unindexed);
+        if (_indexKey != null) {
+            String indexKey = _indexKey.apply(key);
+            if (indexKey != null) {
+                candidates.addAll(_exact.getOrDefault(indexKey, Collections.emptyList()));
+                _prefixes.collect(indexKey, candidates);
+            }
+        }
+        if (candidates.size() > 1) {
+            candidates.sort(Comparator.comparingInt(e -> e.position));
+        }
+        return candidates.stream()
+                .filter(e -> e.predicate.matches(key))
+                .map(e -> e.value)
+                .collect(toList());
+    }
+
+    private static class Entry<TKey, TValue> {
+        final int position;
+        final MapPredicate<TKey> predicate;
+        final TValue value;
+
+        Entry(int position, MapPredicate<TKey> predicate, TValue value) {
+            this.position = position;
+            this.predicate = predicate;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Trie node holding the predicates whose prefix is the path to the node.
+     */
+    private static class Node<TKey, TValue> {
+        private final Map<Character, Node<TKey, TValue>> _children = new HashMap<>();
+        private final List<Entry<TKey, TValue>> _entries = new ArrayList<>(1);
+
+        void add(String prefix, Entry<TKey, TValue> entry) {
+            Node<TKey, TValue> node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node._children.computeIfAbsent(prefix.charAt(i), c -> new Node<>());
+            }
+            node._entries.add(entry);
+        }
+
+        void collect(String key, List<Entry<TKey, TValue>> out) {
+            Node<TKey, TValue> node = this;
+            out.addAll(node._entries);
+            for (int i = 0; i < key.length(); i++) {
+                node = node._children.get(key.charAt(i));
+                if (node == null) {
+                    break;
+                }
+                out.addAll(node._entries);
+            }
+        }
+    }
+}
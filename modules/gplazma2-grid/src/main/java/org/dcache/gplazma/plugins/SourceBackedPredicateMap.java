@@ -5,11 +5,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  * Represents a map based on a somehow defined key/value source (e.g. configuration file)
@@ -22,10 +19,15 @@ class SourceBackedPredicateMap<TKey, TValue> {
 
     private static final Logger _log = LoggerFactory.getLogger(SourceBackedPredicateMap.class);
 
-    private final Map<MapPredicate<TKey>, TValue> _predicateValueMap = new LinkedHashMap<>();
     private final LineSource _source;
     private final LineParser<? extends MapPredicate<TKey>, TValue> _parser;
 
+    /**
+     * Index of the current content of the source. Replaced as a whole when
+     * the source changes, thus lookups never block on a reload.
+     */
+    private volatile PredicateIndex<TKey, TValue> _index = new PredicateIndex<>();
+
     protected SourceBackedPredicateMap(LineSource source, LineParser<? extends MapPredicate<TKey>, TValue> parser) {
         _source = source;
         _parser = parser;
@@ -36,36 +38,37 @@ class SourceBackedPredicateMap<TKey, TValue> {
      * @param key Key to be used to find corresponding values
      * @return Collection of matching values
      */
-    public synchronized List<TValue> getValuesForPredicatesMatching(TKey key) {
+    public List<TValue> getValuesForPredicatesMatching(TKey key) {
 
         if (_source.hasChanged()) {
             try {
-                _log.info("Source changed. Recreating map.");
-                createMapFromData(_source.getContent());
+                reload();
             } catch (IOException e) {
                 _log.error("Error creating map.", e);
                 return Collections.emptyList();
             }
         }
 
-        List<TValue> result = new LinkedList<>();
-        for (Entry<MapPredicate<TKey>, TValue> predicateEntry : _predicateValueMap.entrySet()) {
-            if (predicateEntry.getKey().matches(key)) {
-               result.add(predicateEntry.getValue());
-            }
+        return _index.get(key);
+    }
+
+    private synchronized void reload() throws IOException {
+        if (_source.hasChanged()) {
+            _log.info("Source changed. Recreating map.");
+            _index = createIndexFromData(_source.getContent());
         }
-        return result;
     }
 
-    private synchronized void createMapFromData(List<String> data) {
+    private PredicateIndex<TKey, TValue> createIndexFromData(List<String> data) {
 
-        _predicateValueMap.clear();
+        PredicateIndex<TKey, TValue> index = new PredicateIndex<>();
 
         for (String line : data) {
             Map.Entry<? extends MapPredicate<TKey>, TValue> entry = _parser.accept(line);
             if (entry!=null) {
-                _predicateValueMap.put(entry.getKey(), entry.getValue());
+                index.add(entry.getKey(), entry.getValue());
             }
         }
+        return index;
     }
 }
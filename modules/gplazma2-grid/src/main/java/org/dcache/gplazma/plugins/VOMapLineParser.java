@@ -1,5 +1,6 @@
 package org.dcache.gplazma.plugins;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,14 +62,36 @@ class VOMapLineParser
         return null;
     }
 
-    static class DNFQANPredicate implements MapPredicate<NameRolePair>
+    static class DNFQANPredicate implements IndexedMapPredicate<NameRolePair>
     {
+        private static final CharMatcher WILDCARD = CharMatcher.anyOf("*?{");
+
         private final Pattern _dnPattern;
         private final FQAN _fqan;
+        private final String _dnPrefix;
+        private final boolean _isExact;
 
         public DNFQANPredicate(String dnGlob, FQAN fqan) {
             _dnPattern = Glob.parseGlobToPattern(dnGlob);
             _fqan = fqan;
+            int wildcard = WILDCARD.indexIn(dnGlob);
+            _isExact = wildcard == -1;
+            _dnPrefix = _isExact ? dnGlob : dnGlob.substring(0, wildcard);
+        }
+
+        @Override
+        public String getIndexKey(NameRolePair dnfqan) {
+            return Strings.nullToEmpty(dnfqan.getName());
+        }
+
+        @Override
+        public String getIndexPrefix() {
+            return _dnPrefix;
+        }
+
+        @Override
+        public boolean isExact() {
+            return _isExact;
         }
 
         @Override
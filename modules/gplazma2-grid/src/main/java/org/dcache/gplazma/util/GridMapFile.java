@@ -17,8 +17,13 @@ public class GridMapFile
         LoggerFactory.getLogger(GridMapFile.class);
 
     private File _file;
-    private long _loaded;
-    private ImmutableMultimap<String,String> _map = ImmutableMultimap.of();
+    private volatile long _loaded;
+
+    /**
+     * Replaced as a whole when the file is reloaded, thus lookups don't
+     * need to synchronize.
+     */
+    private volatile ImmutableMultimap<String,String> _map = ImmutableMultimap.of();
 
     public GridMapFile(File file)
     {
@@ -31,7 +36,16 @@ public class GridMapFile
         this(new File(filename));
     }
 
-    public synchronized void refresh()
+    public void refresh()
+    {
+        long modified = _file.lastModified();
+        if (_loaded > 0 && modified > 0 && _loaded >= modified) {
+            return;
+        }
+        reload();
+    }
+
+    private synchronized void reload()
     {
         try {
             long now = System.currentTimeMillis();
@@ -0,0 +1,58 @@
+package org.dcache.gplazma.plugins;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.dcache.auth.FQAN;
+import org.dcache.gplazma.util.NameRolePair;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PredicateIndexTest
+{
+    private static final String DN = "/O=GermanGrid/OU=DESY/CN=Tigran Mkrtchyan";
+
+    private PredicateIndex<NameRolePair, String> index;
+
+    @Before
+    public void setUp()
+    {
+        index = new PredicateIndex<>();
+        VOMapLineParser parser = new VOMapLineParser();
+        for (String line : Arrays.asList(
+                "\"*\" \"/dteam\" dteamuser",
+                "\"/O=GermanGrid/OU=DESY/*\" desy",
+                "\"" + DN + "\" \"/dteam\" tigran",
+                "\"/O=GermanGrid/OU=DESY/CN=Someone Else\" someone",
+                "\"/O=GermanGrid/OU=DES?/CN=Tigran*\" horst")) {
+            Map.Entry<VOMapLineParser.DNFQANPredicate, String> entry = parser.accept(line);
+            index.add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Test
+    public void shouldReturnMatchesInOrderOfAddition()
+    {
+        assertEquals(Arrays.asList("dteamuser", "desy", "tigran", "horst"),
+                     index.get(new NameRolePair(DN, "/dteam")));
+    }
+
+    @Test
+    public void shouldNotReturnPredicatesWithOtherFqan()
+    {
+        assertEquals(Arrays.asList("desy", "horst"),
+                     index.get(new NameRolePair(DN, "/atlas")));
+    }
+
+    @Test
+    public void shouldOnlyMatchWildcardsForUnknownDn()
+    {
+        assertEquals(Arrays.asList("dteamuser"),
+                     index.get(new NameRolePair("/O=Other/CN=Nobody", "/dteam")));
+        assertTrue(index.get(new NameRolePair("/O=Other/CN=Nobody", "/atlas")).isEmpty());
+    }
+}
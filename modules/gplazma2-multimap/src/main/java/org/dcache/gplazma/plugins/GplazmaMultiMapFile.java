@@ -34,8 +34,13 @@ public class GplazmaMultiMapFile
     private static final Logger LOG = LoggerFactory.getLogger(GplazmaMultiMapFile.class);
 
     private File file;
-    private long lastLoaded;
-    private Map<Principal,Set<Principal>> map = Collections.emptyMap();
+    private volatile long lastLoaded;
+
+    /**
+     * Replaced as a whole when the file is reloaded, thus lookups don't
+     * need to synchronize.
+     */
+    private volatile Map<Principal,Set<Principal>> map = Collections.emptyMap();
     private static final String[] principalTypes = new String[]{"dn",
                                                                 "email",
                                                                 "username",
@@ -54,12 +59,18 @@ public class GplazmaMultiMapFile
         this.file = file;
     }
 
-    public synchronized void ensureUpToDate() throws AuthenticationException
+    public void ensureUpToDate() throws AuthenticationException
+    {
+        if (lastLoaded <= file.lastModified()) {
+            reload();
+        }
+    }
+
+    private synchronized void reload() throws AuthenticationException
     {
         if (lastLoaded <= file.lastModified()) {
              LOG.debug("Reading file {}", file);
-             try {
-                BufferedReader reader = new BufferedReader(new FileReader(file));
+             try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
                 map = parseMapFile(reader);
                 lastLoaded = System.currentTimeMillis();
             } catch (IOException e) {
@@ -176,7 +187,7 @@ public class GplazmaMultiMapFile
         return principal.length() - principal.replace(",", "").length();
     }
 
-    public synchronized Set<Principal> getMappedPrincipals(Principal principal)
+    public Set<Principal> getMappedPrincipals(Principal principal)
     {
         Set<Principal> out = map.get(principal);
         return (out == null) ? Collections.emptySet(): out;
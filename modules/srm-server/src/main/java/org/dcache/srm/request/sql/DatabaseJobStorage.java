@@ -80,9 +80,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -114,6 +118,12 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
     protected final TransactionTemplate transactionTemplate;
     private final boolean logHistory;
 
+    /**
+     * Statements shared by the jobs of a batch, by SQL. Only set while
+     * saveJobs prepares the statements of a batch on the current thread.
+     */
+    private final ThreadLocal<Map<String, PreparedStatement>> batchStatements = new ThreadLocal<>();
+
     public DatabaseJobStorage(Configuration.DatabaseParameters configuration, ScheduledExecutorService executor)
             throws DataAccessException
     {
@@ -202,17 +212,25 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
 
     private void saveHistory(Connection connection, Job job,
                              List<Job.JobHistory> history) throws SQLException
+    {
+        saveHistory(connection, Collections.singletonMap(job, history));
+    }
+
+    private void saveHistory(Connection connection,
+                             Map<Job, List<Job.JobHistory>> histories) throws SQLException
     {
         PreparedStatement stmt =
                 connection.prepareStatement("INSERT INTO " + getHistoryTableName() + " VALUES (?,?,?,?,?)");
         try {
-            for (Job.JobHistory element : history) {
-                stmt.setLong(1, element.getId());
-                stmt.setLong(2, job.getId());
-                stmt.setInt(3, element.getState().getStateId());
-                stmt.setLong(4, element.getTransitionTime());
-                stmt.setString(5, element.getDescription());
-                stmt.addBatch();
+            for (Map.Entry<Job, List<Job.JobHistory>> entry : histories.entrySet()) {
+                for (Job.JobHistory element : entry.getValue()) {
+                    stmt.setLong(1, element.getId());
+                    stmt.setLong(2, entry.getKey().getId());
+                    stmt.setInt(3, element.getState().getStateId());
+                    stmt.setLong(4, element.getTransitionTime());
+                    stmt.setString(5, element.getDescription());
+                    stmt.addBatch();
+                }
             }
             stmt.executeBatch();
         } finally {
@@ -273,6 +291,116 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
         markHistoryAsSaved(savedHistory);
     }
 
+    /**
+     * Saves several jobs in a single transaction.
+     *
+     * The update and create statements of all jobs are executed as JDBC
+     * batches: While the statements are prepared, statements with the
+     * same SQL share a single PreparedStatement to which the parameters
+     * of each job are added as a batch entry. History entries of all
+     * jobs are inserted in a single batch too.
+     */
+    @Override
+    public void saveJobs(Collection<J> jobs, boolean force) throws DataAccessException
+    {
+        List<Job.JobHistory> savedHistory =
+                transactionTemplate.execute(status -> jdbcTemplate.execute((Connection con) -> {
+                    Map<String, PreparedStatement> statements = new LinkedHashMap<>();
+                    batchStatements.set(statements);
+                    try {
+                        Map<Job, List<Job.JobHistory>> histories = new LinkedHashMap<>();
+                        Map<Job, BatchEntry> updates = new LinkedHashMap<>();
+                        Map<PreparedStatement, Integer> batchSizes = new IdentityHashMap<>();
+                        for (Job job : jobs) {
+                            job.rlock();
+                            try {
+                                histories.put(job, getJobHistoriesToSave(job));
+                                updates.put(job, addToBatch(getUpdateStatement(con, job), batchSizes));
+                            } finally {
+                                job.runlock();
+                            }
+                        }
+
+                        Map<PreparedStatement, int[]> rowCounts = executeBatches(batchSizes.keySet());
+                        List<Job> missing = updates.entrySet().stream()
+                                .filter(e -> rowCounts.get(e.getValue().statement)[e.getValue().index] == 0)
+                                .map(Map.Entry::getKey)
+                                .collect(Collectors.toList());
+
+                        if (!missing.isEmpty()) {
+                            batchSizes.clear();
+                            List<PreparedStatement> batchCreateStatements = new ArrayList<>();
+                            try {
+                                for (Job job : missing) {
+                                    job.rlock();
+                                    try {
+                                        addToBatch(getCreateStatement(con, job), batchSizes);
+                                        PreparedStatement batchCreateStatement = getBatchCreateStatement(con, job);
+                                        if (batchCreateStatement != null) {
+                                            batchCreateStatements.add(batchCreateStatement);
+                                        }
+                                    } finally {
+                                        job.runlock();
+                                    }
+                                }
+                                executeBatches(batchSizes.keySet());
+                                for (PreparedStatement batchCreateStatement : batchCreateStatements) {
+                                    batchCreateStatement.executeBatch();
+                                }
+                            } finally {
+                                batchCreateStatements.forEach(SqlHelper::tryToClose);
+                            }
+                        }
+
+                        histories.values().removeIf(List::isEmpty);
+                        if (!histories.isEmpty()) {
+                            saveHistory(con, histories);
+                        }
+                        return histories.values().stream()
+                                .flatMap(List::stream)
+                                .collect(Collectors.toList());
+                    } finally {
+                        batchStatements.remove();
+                        statements.values().forEach(SqlHelper::tryToClose);
+                    }
+                }));
+        markHistoryAsSaved(savedHistory);
+    }
+
+    private static BatchEntry addToBatch(PreparedStatement statement,
+                                         Map<PreparedStatement, Integer> batchSizes)
+            throws SQLException
+    {
+        statement.addBatch();
+        int index = batchSizes.merge(statement, 1, Integer::sum) - 1;
+        return new BatchEntry(statement, index);
+    }
+
+    private static Map<PreparedStatement, int[]> executeBatches(Collection<PreparedStatement> statements)
+            throws SQLException
+    {
+        Map<PreparedStatement, int[]> rowCounts = new IdentityHashMap<>();
+        for (PreparedStatement statement : statements) {
+            rowCounts.put(statement, statement.executeBatch());
+        }
+        return rowCounts;
+    }
+
+    /**
+     * Position of the parameters of a job within a batched statement.
+     */
+    private static class BatchEntry
+    {
+        final PreparedStatement statement;
+        final int index;
+
+        BatchEntry(PreparedStatement statement, int index)
+        {
+            this.statement = statement;
+            this.index = index;
+        }
+    }
+
     protected PreparedStatement getBatchCreateStatement(Connection connection, Job job)
             throws SQLException
     {
@@ -446,7 +574,19 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
             Object... args)
             throws SQLException
     {
-        PreparedStatement stmt = connection.prepareStatement(query);
+        PreparedStatement stmt;
+        Map<String, PreparedStatement> batch = batchStatements.get();
+        if (batch == null) {
+            stmt = connection.prepareStatement(query);
+        } else {
+            stmt = batch.get(query);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(query);
+                batch.put(query, stmt);
+            } else {
+                stmt.clearParameters();
+            }
+        }
         for (int i = 0; i < args.length; i++) {
             stmt.setObject(i + 1, args[i]);
         }
@@ -6,9 +6,11 @@ import org.springframework.dao.DataAccessException;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -32,7 +34,6 @@ import org.dcache.srm.request.LsRequest;
 import org.dcache.srm.request.PutFileRequest;
 import org.dcache.srm.request.PutRequest;
 import org.dcache.srm.request.ReserveSpaceRequest;
-import org.dcache.srm.scheduler.AsynchronousSaveJobStorage;
 import org.dcache.srm.scheduler.CanonicalizingJobStorage;
 import org.dcache.srm.scheduler.ForceOnlyJobStorageDecorator;
 import org.dcache.srm.scheduler.JobStorage;
@@ -40,6 +41,7 @@ import org.dcache.srm.scheduler.JobStorageFactory;
 import org.dcache.srm.scheduler.NoopJobStorage;
 import org.dcache.srm.scheduler.SchedulerContainer;
 import org.dcache.srm.scheduler.SharedMemoryCacheJobStorage;
+import org.dcache.srm.scheduler.WriteBehindJobStorage;
 import org.dcache.srm.util.Configuration;
 import org.dcache.srm.util.Configuration.DatabaseParameters;
 
@@ -56,6 +58,9 @@ public class DatabaseJobStorageFactory extends JobStorageFactory
             new HashMap<>();
     private final ExecutorService executor;
     private final ScheduledExecutorService scheduledExecutor;
+    private final List<WriteBehindJobStorage<?>> writeBehindStorages = new ArrayList<>();
+    private final long flushDelay;
+    private final int batchSize;
 
     private <J extends Job> void add(DatabaseParameters config, Class<J> entityClass,
                      Supplier<JobStorage<J>> storageFactory)
@@ -69,7 +74,10 @@ public class DatabaseJobStorageFactory extends JobStorageFactory
         JobStorage<J> js;
         if (config.isDatabaseEnabled()) {
             js = storageFactory.get();
-            js = new AsynchronousSaveJobStorage<>(js, executor);
+            WriteBehindJobStorage<J> writeBehind =
+                    new WriteBehindJobStorage<>(js, executor, scheduledExecutor, flushDelay, batchSize);
+            writeBehindStorages.add(writeBehind);
+            js = writeBehind;
             if (config.getStoreCompletedRequestsOnly()) {
                 js = new ForceOnlyJobStorageDecorator<>(js);
             }
@@ -84,6 +92,8 @@ public class DatabaseJobStorageFactory extends JobStorageFactory
             throws DataAccessException, IOException
     {
         checkNotNull(manager);
+        flushDelay = config.getJdbcFlushDelay();
+        batchSize = config.getJdbcBatchSize();
         executor = new ThreadPoolExecutor(
                 config.getJdbcExecutionThreadNum(), config.getJdbcExecutionThreadNum(),
                 0L, TimeUnit.MILLISECONDS,
@@ -159,8 +169,9 @@ public class DatabaseJobStorageFactory extends JobStorageFactory
         scheduledExecutor.shutdown();
         executor.shutdown();
         try {
-            if (scheduledExecutor.awaitTermination(3, TimeUnit.SECONDS)) {
-                executor.awaitTermination(3, TimeUnit.SECONDS);
+            if (scheduledExecutor.awaitTermination(3, TimeUnit.SECONDS) &&
+                    executor.awaitTermination(3, TimeUnit.SECONDS)) {
+                writeBehindStorages.forEach(WriteBehindJobStorage::shutdown);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
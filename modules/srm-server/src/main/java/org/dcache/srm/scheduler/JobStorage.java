@@ -76,6 +76,7 @@ import org.springframework.dao.DataAccessException;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Set;
 
 import org.dcache.srm.request.Job;
@@ -101,6 +102,21 @@ public interface JobStorage<J extends Job> {
     void saveJob(J job, boolean force)
             throws DataAccessException;
 
+    /**
+     * Saves several jobs. Implementations may write the jobs in a
+     * single batch.
+     *
+     * @param jobs Jobs to save
+     * @param force as for {@link #saveJob}
+     */
+    default void saveJobs(Collection<J> jobs, boolean force)
+            throws DataAccessException
+    {
+        for (J job : jobs) {
+            saveJob(job, force);
+        }
+    }
+
     Set<Long> getLatestCompletedJobIds(int maxNum) throws DataAccessException;
     Set<Long> getLatestDoneJobIds(int maxNum) throws DataAccessException;
     Set<Long> getLatestFailedJobIds(int maxNum) throws DataAccessException;
@@ -67,22 +67,26 @@ COPYRIGHT STATUS:
 package org.dcache.srm.scheduler;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.dao.DataAccessException;
 
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.Formatter;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.dcache.srm.SRMAuthorizationException;
 import org.dcache.srm.SRMException;
@@ -104,18 +108,19 @@ public class Scheduler <T extends Job>
 {
     private static final Logger LOGGER =
             LoggerFactory.getLogger(Scheduler.class);
+    private static final int DEFAULT_MAX_THREADS = 100;
     private final Class<T> type;
 
-    private int maxRequests;
+    private volatile int maxRequests;
 
     // thread pool related variables
-    private final ExecutorService pooledExecutor;
+    private final ThreadPoolExecutor pooledExecutor;
 
     // ready state related variables
-    private int maxReadyJobs;
+    private volatile int maxReadyJobs;
 
     // async wait state related variables
-    private int maxInProgress;
+    private volatile int maxInProgress;
 
     private final String id;
     private volatile boolean running;
@@ -138,7 +143,13 @@ public class Scheduler <T extends Job>
     private String schedulingStrategyName;
     private String transferStrategyName;
 
-    private Multimap<State,Long> jobs = MultimapBuilder.enumKeys(State.class).hashSetValues().build();
+    /**
+     * IDs of the jobs of this scheduler by state. Only non-final states are
+     * present. The sets and the total are updated without locking; the state
+     * changes of an individual job are serialized by the lock of the job.
+     */
+    private final Map<State,Set<Long>> jobs = new EnumMap<>(State.class);
+    private final AtomicInteger totalRequests = new AtomicInteger();
 
     public static Scheduler<?> getScheduler(String id)
     {
@@ -159,9 +170,19 @@ public class Scheduler <T extends Job>
         this.id = checkNotNull(id);
         checkArgument(!id.isEmpty(), "need non-empty string as an id");
 
+        for (State state : State.values()) {
+            if (!state.isFinal()) {
+                jobs.put(state, ConcurrentHashMap.newKeySet());
+            }
+        }
+
         workSupplyService = new WorkSupplyService();
         retryTimer = new Timer();
-        pooledExecutor = Executors.newCachedThreadPool();
+        pooledExecutor = new ThreadPoolExecutor(DEFAULT_MAX_THREADS, DEFAULT_MAX_THREADS,
+                                                60L, TimeUnit.SECONDS,
+                                                new LinkedBlockingQueue<>(),
+                                                new ThreadFactoryBuilder().setNameFormat(id + "-%d").build());
+        pooledExecutor.allowCoreThreadTimeOut(true);
 
         addScheduler(id, this);
     }
@@ -242,7 +263,7 @@ public class Scheduler <T extends Job>
         pooledExecutor.execute(new JobWrapper(job));
     }
 
-    public synchronized int getTotalQueued()
+    public int getTotalQueued()
     {
         return jobs.get(State.QUEUED).size();
     }
@@ -252,12 +273,12 @@ public class Scheduler <T extends Job>
         return jobs.get(State.INPROGRESS).size();
     }
 
-    public synchronized int getTotalRQueued()
+    public int getTotalRQueued()
     {
         return jobs.get(State.RQUEUED).size();
     }
 
-    public synchronized int getTotalReady()
+    public int getTotalReady()
     {
         return jobs.get(State.READY).size();
     }
@@ -284,9 +305,9 @@ public class Scheduler <T extends Job>
         return false;
     }
 
-    private synchronized int getTotalRequests()
+    private int getTotalRequests()
     {
-        return jobs.size();
+        return totalRequests.get();
     }
 
     public double getLoad()
@@ -452,11 +473,12 @@ public class Scheduler <T extends Job>
     {
         checkNotNull(job);
 
-        synchronized (this) {
-            jobs.remove(oldState, job.getId());
-            if (!newState.isFinal()) {
-                jobs.put(newState, job.getId());
-            }
+        boolean removed = !oldState.isFinal() && jobs.get(oldState).remove(job.getId());
+        boolean added = !newState.isFinal() && jobs.get(newState).add(job.getId());
+        if (added && !removed) {
+            totalRequests.incrementAndGet();
+        } else if (removed && !added) {
+            totalRequests.decrementAndGet();
         }
 
         LOGGER.debug("state changed for job id {} from {} to {}", job.getId(), oldState, newState);
@@ -481,7 +503,7 @@ public class Scheduler <T extends Job>
      *
      * @return Value of property maxReadyJobs.
      */
-    public synchronized int getMaxReadyJobs()
+    public int getMaxReadyJobs()
     {
         return maxReadyJobs;
     }
@@ -491,7 +513,7 @@ public class Scheduler <T extends Job>
      *
      * @param maxReadyJobs New value of property maxReadyJobs.
      */
-    public synchronized void setMaxReadyJobs(int maxReadyJobs)
+    public void setMaxReadyJobs(int maxReadyJobs)
     {
         this.maxReadyJobs = maxReadyJobs;
     }
@@ -501,26 +523,51 @@ public class Scheduler <T extends Job>
      *
      * @return Value of property maxThreadQueueSize.
      */
-    public synchronized int getMaxRequests()
+    public int getMaxRequests()
     {
         return maxRequests;
     }
 
-    public synchronized void setMaxRequests(int maxRequests)
+    public void setMaxRequests(int maxRequests)
     {
         this.maxRequests = maxRequests;
     }
 
-    public synchronized int getMaxInProgress()
+    public int getMaxInProgress()
     {
         return maxInProgress;
     }
 
-    public synchronized void setMaxInprogress(int maxAsyncWaitJobs)
+    public void setMaxInprogress(int maxAsyncWaitJobs)
     {
         this.maxInProgress = maxAsyncWaitJobs;
     }
 
+    /**
+     * Sets the maximum number of threads executing jobs of this scheduler.
+     *
+     * Most job steps submit their work to other services and continue in a
+     * callback once the reply arrives, thus they do not occupy a thread
+     * while waiting. Jobs in excess of the limit queue for a thread. Idle
+     * threads are released after a minute.
+     */
+    public synchronized void setMaxThreads(int maxThreads)
+    {
+        checkArgument(maxThreads > 0, "need at least one thread");
+        if (maxThreads > pooledExecutor.getMaximumPoolSize()) {
+            pooledExecutor.setMaximumPoolSize(maxThreads);
+            pooledExecutor.setCorePoolSize(maxThreads);
+        } else {
+            pooledExecutor.setCorePoolSize(maxThreads);
+            pooledExecutor.setMaximumPoolSize(maxThreads);
+        }
+    }
+
+    public int getMaxThreads()
+    {
+        return pooledExecutor.getMaximumPoolSize();
+    }
+
     public String toString()
     {
         StringBuilder sb = new StringBuilder();
@@ -570,7 +617,7 @@ public class Scheduler <T extends Job>
         }
     }
 
-    public synchronized void getInfo(Appendable appendable)
+    public void getInfo(Appendable appendable)
     {
         int fieldWidth = Math.max(3, String.valueOf(getMaxRequests()).length());
         InfoFormatter formatter =
@@ -585,6 +632,7 @@ public class Scheduler <T extends Job>
         }
         formatter.line();
         formatter.field("Total requests (max " + getMaxRequests() + ")", getTotalRequests());
+        formatter.field("Active threads (max " + getMaxThreads() + ")", pooledExecutor.getActiveCount());
         formatter.format("\n");
         formatter.format("    Scheduling strategy             : %s\n", schedulingStrategyName);
         formatter.format("    Transfer strategy               : %s\n", transferStrategyName);
@@ -604,13 +652,13 @@ public class Scheduler <T extends Job>
         }
     }
 
-    public synchronized void printThreadQueue(StringBuilder sb)
+    public void printThreadQueue(StringBuilder sb)
     {
         sb.append("ThreadQueue :\n");
         printQueue(sb, jobs.get(State.QUEUED));
     }
 
-    public synchronized void printReadyQueue(StringBuilder sb)
+    public void printReadyQueue(StringBuilder sb)
     {
         sb.append("ReadyQueue :\n");
         printQueue(sb, jobs.get(State.RQUEUED));
@@ -3,17 +3,28 @@ package org.dcache.srm.scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.dcache.srm.request.Job;
 
 /**
+ * Cache of the jobs that are in an active (non final) state.
+ *
+ * Jobs are indexed by ID, by type and by type and state. Lookups do not
+ * lock. Registrations and state changes of a job only lock the hash bin of
+ * that job in the ID index; the secondary indexes are concurrent sets that
+ * are updated while the bin is locked, thus a job is in the secondary
+ * indexes if and only if it is in the ID index, and it is indexed by the
+ * state it had at its last update.
+ *
+ * The state of a job is read before locking the bin, as reading the state
+ * acquires the lock of the job.
  *
  * @author timur
  */
@@ -22,21 +33,11 @@ public class SharedMemoryCache {
     private static final Logger _log =
         LoggerFactory.getLogger(SharedMemoryCache.class);
 
-    /**
-     * This set is used to keep the Jobs that are in active
-     * (Non final) state in memory
-     * If the SRM application runs in the Terracotta clustered environment,
-     * the Set is used as a root, so all jobs that are added to this
-     * cache are shared between all instances of the SRM servers.
-     *
-     */
-   private  final ReentrantReadWriteLock sharedMemoryReadWriteLock =
-            new ReentrantReadWriteLock();
-    private  final ReadLock sharedMemoryReadLock = sharedMemoryReadWriteLock.readLock();
-    private  final WriteLock sharedMemoryWriteLock = sharedMemoryReadWriteLock.writeLock();
-    private final Map<Long,Job> sharedMemoryCache =
-            new HashMap<>();
+    private final ConcurrentMap<Long,Entry> sharedMemoryCache =
+            new ConcurrentHashMap<>();
 
+    private final ConcurrentMap<Class<? extends Job>,TypeIndex> typeIndex =
+            new ConcurrentHashMap<>();
 
     /**
      * Canonicalizes non-final jobs.
@@ -46,21 +47,19 @@ public class SharedMemoryCache {
      */
     public <T extends Job> T canonicalize(T job)
     {
-        sharedMemoryWriteLock.lock();
-        try {
-            Job other = sharedMemoryCache.get(job.getId());
-            if (other != null) {
-                if (!job.getClass().isInstance(other)) {
-                    throw new IllegalStateException("Conflicting types for request " + job.getId() + ": " + job.getClass() + " and " + other.getClass());
-                }
-                job = (T) other;
-            } else if (!job.getState().isFinal()) {
-                sharedMemoryCache.put(job.getId(), job);
+        Entry entry = sharedMemoryCache.get(job.getId());
+        if (entry == null) {
+            State state = job.getState();
+            if (state.isFinal()) {
+                return job;
             }
-        } finally {
-            sharedMemoryWriteLock.unlock();
+            entry = sharedMemoryCache.computeIfAbsent(job.getId(), id -> add(job, state));
         }
-        return job;
+        Job other = entry.job;
+        if (!job.getClass().isInstance(other)) {
+            throw new IllegalStateException("Conflicting types for request " + job.getId() + ": " + job.getClass() + " and " + other.getClass());
+        }
+        return (T) other;
     }
 
     /**
@@ -74,62 +73,119 @@ public class SharedMemoryCache {
      */
     public <T extends Job> void update(T job)
     {
-        sharedMemoryWriteLock.lock();
-        try {
-            Job other = sharedMemoryCache.get(job.getId());
-            if (other != null) {
-                if (other != job) {
-                    throw new IllegalArgumentException("Duplicate job #" + job.getId());
-                }
-                if (job.getState().isFinal()) {
-                    sharedMemoryCache.remove(job.getId());
-                }
-            } else {
-                if (!job.getState().isFinal()) {
-                    sharedMemoryCache.put(job.getId(), job);
-                }
+        State state = job.getState();
+        sharedMemoryCache.compute(job.getId(), (id, entry) -> {
+            if (entry == null) {
+                return state.isFinal() ? null : add(job, state);
             }
-        } finally {
-            sharedMemoryWriteLock.unlock();
-        }
+            if (entry.job != job) {
+                throw new IllegalArgumentException("Duplicate job #" + job.getId());
+            }
+            if (state.isFinal()) {
+                remove(entry);
+                return null;
+            }
+            if (entry.state != state) {
+                TypeIndex index = getTypeIndex(job.getClass());
+                index.byState(entry.state).remove(job);
+                index.byState(state).add(job);
+                entry.state = state;
+            }
+            return entry;
+        });
     }
 
     public Job getJob(long jobId) {
-        _log.debug("getJob ( "+jobId + " ) ");
-       sharedMemoryReadLock.lock();
-       try {
-            return sharedMemoryCache.get(jobId);
-        } finally {
-            sharedMemoryReadLock.unlock();
-        }
-
+        _log.debug("getJob ( {} ) ", jobId);
+        Entry entry = sharedMemoryCache.get(jobId);
+        return (entry == null) ? null : entry.job;
     }
 
    /**
     * removes all values from the cache
     */
     public void clearCache() {
-        sharedMemoryWriteLock.lock();
-        try {
-            sharedMemoryCache.clear();
-        }finally{
-            sharedMemoryWriteLock.unlock();
+        for (Long id : sharedMemoryCache.keySet()) {
+            sharedMemoryCache.computeIfPresent(id, (key, entry) -> {
+                remove(entry);
+                return null;
+            });
         }
     }
 
     public <T extends Job> Set<T> getJobs(Class<T> jobType) {
-       sharedMemoryReadLock.lock();
-       try {
-           Set<T> results = new HashSet<>();
-           for(Job job: sharedMemoryCache.values()) {
-               if(job.getClass().equals(jobType)) {
-                   results.add((T)job);
-               }
-           }
-           return results;
-        } finally {
-            sharedMemoryReadLock.unlock();
+        TypeIndex index = typeIndex.get(jobType);
+        if (index == null) {
+            return Collections.emptySet();
         }
+        return new HashSet<>((Set<T>) index.all);
+    }
 
+    /**
+     * Returns the jobs of the given type that were in the given state when
+     * they were last updated.
+     */
+    public <T extends Job> Set<T> getJobs(Class<T> jobType, State state) {
+        TypeIndex index = typeIndex.get(jobType);
+        if (index == null || state.isFinal()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>((Set<T>) index.byState(state));
+    }
+
+    private Entry add(Job job, State state)
+    {
+        TypeIndex index = getTypeIndex(job.getClass());
+        index.all.add(job);
+        index.byState(state).add(job);
+        return new Entry(job, state);
+    }
+
+    private void remove(Entry entry)
+    {
+        TypeIndex index = getTypeIndex(entry.job.getClass());
+        index.byState(entry.state).remove(entry.job);
+        index.all.remove(entry.job);
+    }
+
+    private TypeIndex getTypeIndex(Class<? extends Job> type)
+    {
+        return typeIndex.computeIfAbsent(type, t -> new TypeIndex());
+    }
+
+    /**
+     * Registration of a job. The state is guarded by the hash bin of the
+     * job in the ID index.
+     */
+    private static class Entry
+    {
+        final Job job;
+        State state;
+
+        Entry(Job job, State state)
+        {
+            this.job = job;
+            this.state = state;
+        }
+    }
+
+    private static class TypeIndex
+    {
+        final Set<Job> all = ConcurrentHashMap.newKeySet();
+        final Map<State,Set<Job>> byState = new EnumMap<>(State.class);
+
+        TypeIndex()
+        {
+            for (State state : State.values()) {
+                if (!state.isFinal()) {
+                    byState.put(state, ConcurrentHashMap.newKeySet());
+                }
+            }
+        }
+
+        Set<Job> byState(State state)
+        {
+            return byState.get(state);
+        }
     }
 }
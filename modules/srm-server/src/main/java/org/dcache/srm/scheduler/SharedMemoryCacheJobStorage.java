@@ -4,6 +4,7 @@ import org.springframework.dao.DataAccessException;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -17,7 +18,9 @@ import org.dcache.srm.request.Job;
  *
  * All non-final jobs are cached in a static SharedMemoryCache instance suitable
  * for use as a root object with Terracotta. The expiration time of such jobs are
- * periodically checked and if passed the jobs are expired.
+ * periodically checked and if passed the jobs are expired. The cache indexes
+ * jobs by type and state, thus queries for active jobs do not scan jobs of
+ * other types.
  *
  * Since the cache is shared among all instances of SharedMemoryCacheJobStorage,
  * Job IDs must be unique over all instances. This has the additional benefit
@@ -86,9 +89,18 @@ public class SharedMemoryCacheJobStorage<J extends Job> implements JobStorage<J>
         return storage.getJobs(scheduler).stream().map(this::canonicalize).collect(Collectors.toSet());
     }
 
+    /**
+     * Jobs in non-final states are all cached, thus they are served from the
+     * state index of the cache without querying the decorated storage.
+     */
     @Override
     public Set<J> getJobs(String scheduler, State state) throws DataAccessException
     {
+        if (!state.isFinal()) {
+            return sharedMemoryCache.getJobs(type, state).stream()
+                    .filter(job -> Objects.equals(scheduler, job.getSchedulerId()))
+                    .collect(Collectors.toSet());
+        }
         return storage.getJobs(scheduler, state).stream().map(this::canonicalize).collect(Collectors.toSet());
     }
 
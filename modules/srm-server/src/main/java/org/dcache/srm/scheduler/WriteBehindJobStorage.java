@@ -0,0 +1,265 @@
+package org.dcache.srm.scheduler;
+
+import com.google.common.collect.Iterables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import org.dcache.srm.request.Job;
+import org.dcache.srm.util.JDC;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Job storage decorator that writes jobs behind the back of the caller.
+ *
+ * Saving a job merely marks it as dirty. Dirty jobs are written to the
+ * decorated storage in batches, once the flush delay has passed since
+ * the first job was marked dirty or once a full batch of dirty jobs has
+ * accumulated. Saving a job that is already dirty does not cause an
+ * additional write, thus the write rate tracks the number of distinct
+ * jobs rather than the number of state transitions.
+ *
+ * At most one flush is in progress at any time, thus a job is never
+ * written by two flushes concurrently and an older state of a job
+ * cannot overwrite a newer one. History entries are written together
+ * with the job they belong to.
+ */
+public class WriteBehindJobStorage<J extends Job> implements JobStorage<J>
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindJobStorage.class);
+
+    private final JobStorage<J> storage;
+    private final Executor executor;
+    private final ScheduledExecutorService scheduledExecutor;
+    private final long flushDelay;
+    private final int batchSize;
+
+    /**
+     * Dirty jobs by ID. Guarded by this.
+     */
+    private Map<Long, Entry<J>> dirty = new LinkedHashMap<>();
+
+    /**
+     * Whether a flush is scheduled or in progress. Guarded by this.
+     */
+    private boolean isFlushPending;
+
+    /**
+     * The delayed flush, if the delay has not passed yet. Guarded by this.
+     */
+    private ScheduledFuture<?> delayedFlush;
+
+    public WriteBehindJobStorage(JobStorage<J> storage, Executor executor,
+                                 ScheduledExecutorService scheduledExecutor,
+                                 long flushDelay, int batchSize)
+    {
+        this.storage = storage;
+        this.executor = executor;
+        this.scheduledExecutor = scheduledExecutor;
+        this.flushDelay = flushDelay;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void init() throws DataAccessException
+    {
+        storage.init();
+    }
+
+    @Override
+    public J getJob(long jobId) throws DataAccessException
+    {
+        return storage.getJob(jobId);
+    }
+
+    @Override
+    public J getJob(long jobId, Connection connection) throws SQLException
+    {
+        return storage.getJob(jobId, connection);
+    }
+
+    @Override
+    public Set<J> getJobs(String scheduler) throws DataAccessException
+    {
+        return storage.getJobs(scheduler);
+    }
+
+    @Override
+    public Set<J> getJobs(String scheduler, State state) throws DataAccessException
+    {
+        return storage.getJobs(scheduler, state);
+    }
+
+    @Override
+    public void saveJob(J job, boolean force)
+    {
+        boolean isFlushDue = false;
+        synchronized (this) {
+            markDirty(new Entry<>(job, force));
+            if (!isFlushPending) {
+                isFlushPending = true;
+                scheduleFlush();
+            } else if (delayedFlush != null && dirty.size() >= batchSize && delayedFlush.cancel(false)) {
+                delayedFlush = null;
+                isFlushDue = true;
+            }
+        }
+        if (isFlushDue) {
+            submitFlush();
+        }
+    }
+
+    /**
+     * Writes all dirty jobs. Must be called after the executors have
+     * terminated, as otherwise a concurrent flush could overwrite the
+     * jobs with older state.
+     */
+    public void shutdown()
+    {
+        write(takeDirty());
+    }
+
+    private void markDirty(Entry<J> entry)
+    {
+        dirty.merge(entry.job.getId(), entry,
+                    (existing, added) -> new Entry<>(added.job, existing.force || added.force));
+    }
+
+    private void scheduleFlush()
+    {
+        try {
+            delayedFlush = scheduledExecutor.schedule(this::submitFlush, flushDelay, MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the jobs are written by shutdown.
+            delayedFlush = null;
+        }
+    }
+
+    private void submitFlush()
+    {
+        try {
+            executor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // Flush synchronously, thus creating back pressure.
+            flush();
+        }
+    }
+
+    private synchronized List<Entry<J>> takeDirty()
+    {
+        List<Entry<J>> jobs = new ArrayList<>(dirty.values());
+        dirty = new LinkedHashMap<>();
+        return jobs;
+    }
+
+    private void flush()
+    {
+        synchronized (this) {
+            delayedFlush = null;
+        }
+        write(takeDirty());
+
+        boolean isFlushDue = false;
+        synchronized (this) {
+            if (dirty.isEmpty()) {
+                isFlushPending = false;
+            } else if (dirty.size() >= batchSize) {
+                isFlushDue = true;
+            } else {
+                scheduleFlush();
+            }
+        }
+        if (isFlushDue) {
+            submitFlush();
+        }
+    }
+
+    private void write(List<Entry<J>> entries)
+    {
+        for (List<Entry<J>> batch : Iterables.partition(entries, batchSize)) {
+            List<J> forced = new ArrayList<>();
+            List<J> notForced = new ArrayList<>();
+            for (Entry<J> entry : batch) {
+                (entry.force ? forced : notForced).add(entry.job);
+            }
+            try {
+                if (!forced.isEmpty()) {
+                    storage.saveJobs(forced, true);
+                }
+                if (!notForced.isEmpty()) {
+                    storage.saveJobs(notForced, false);
+                }
+            } catch (DataAccessException e) {
+                LOGGER.warn("Failed to save batch of {} requests, saving them one by one: {}",
+                            batch.size(), e.getMessage());
+                batch.forEach(this::writeOne);
+            } catch (RuntimeException e) {
+                Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+            }
+        }
+    }
+
+    private void writeOne(Entry<J> entry)
+    {
+        try (JDC ignored = entry.job.applyJdc()) {
+            storage.saveJob(entry.job, entry.force);
+        } catch (DataAccessException e) {
+            LOGGER.error("SQL statement failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Set<Long> getLatestCompletedJobIds(int maxNum) throws DataAccessException
+    {
+        return storage.getLatestCompletedJobIds(maxNum);
+    }
+
+    @Override
+    public Set<Long> getLatestDoneJobIds(int maxNum) throws DataAccessException
+    {
+        return storage.getLatestDoneJobIds(maxNum);
+    }
+
+    @Override
+    public Set<Long> getLatestFailedJobIds(int maxNum) throws DataAccessException
+    {
+        return storage.getLatestFailedJobIds(maxNum);
+    }
+
+    @Override
+    public Set<Long> getLatestCanceledJobIds(int maxNum) throws DataAccessException
+    {
+        return storage.getLatestCanceledJobIds(maxNum);
+    }
+
+    @Override
+    public Set<J> getActiveJobs() throws DataAccessException
+    {
+        return storage.getActiveJobs();
+    }
+
+    private static class Entry<J>
+    {
+        final J job;
+        final boolean force;
+
+        Entry(J job, boolean force)
+        {
+            this.job = job;
+            this.force = force;
+        }
+    }
+}
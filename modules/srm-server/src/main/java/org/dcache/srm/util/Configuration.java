@@ -177,6 +177,8 @@ public class Configuration {
     protected String qosConfigFile = null;
     private Integer maxQueuedJdbcTasksNum ; //null by default
     private Integer jdbcExecutionThreadNum;//null by default
+    private long jdbcFlushDelay = 1000;
+    private int jdbcBatchSize = 100;
     private String credentialsDirectory="/opt/d-cache/credentials";
     private boolean overwrite = false;
     private boolean overwrite_by_default = false;
@@ -824,6 +826,29 @@ public class Configuration {
         this.maxQueuedJdbcTasksNum = maxQueuedJdbcTasksNum;
     }
 
+    /**
+     * Maximum time in milliseconds a modified request waits before it is
+     * written to the database.
+     */
+    public long getJdbcFlushDelay() {
+        return jdbcFlushDelay;
+    }
+
+    public void setJdbcFlushDelay(long jdbcFlushDelay) {
+        this.jdbcFlushDelay = jdbcFlushDelay;
+    }
+
+    /**
+     * Maximum number of requests written to the database in a single batch.
+     */
+    public int getJdbcBatchSize() {
+        return jdbcBatchSize;
+    }
+
+    public void setJdbcBatchSize(int jdbcBatchSize) {
+        this.jdbcBatchSize = jdbcBatchSize;
+    }
+
     public String getCredentialsDirectory() {
         return credentialsDirectory;
     }
@@ -0,0 +1,98 @@
+package org.dcache.srm.scheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.dcache.srm.request.Job;
+
+import static org.dcache.srm.scheduler.State.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class SharedMemoryCacheTest
+{
+    private SharedMemoryCache cache;
+
+    @Before
+    public void setUp()
+    {
+        cache = new SharedMemoryCache();
+    }
+
+    @Test
+    public void whenCanonicalizingNonFinalJobThenJobIsCached()
+    {
+        Job job = mockJob(1, QUEUED);
+        assertThat(cache.canonicalize(job), is(sameInstance(job)));
+        assertThat(cache.getJob(1), is(sameInstance(job)));
+        assertThat(cache.getJobs(job.getClass()), contains(job));
+        assertThat(cache.getJobs(job.getClass(), QUEUED), contains(job));
+    }
+
+    @Test
+    public void whenCanonicalizingFinalJobThenJobIsNotCached()
+    {
+        Job job = mockJob(1, DONE);
+        assertThat(cache.canonicalize(job), is(sameInstance(job)));
+        assertThat(cache.getJob(1), is(nullValue()));
+        assertThat(cache.getJobs(job.getClass()), is(empty()));
+    }
+
+    @Test
+    public void whenCanonicalizingCopyThenCachedInstanceIsReturned()
+    {
+        Job job = mockJob(1, QUEUED);
+        cache.canonicalize(job);
+        assertThat(cache.canonicalize(mockJob(1, QUEUED)), is(sameInstance(job)));
+    }
+
+    @Test
+    public void whenStateChangesThenStateIndexIsUpdated()
+    {
+        Job job = mockJob(1, QUEUED);
+        cache.canonicalize(job);
+        when(job.getState()).thenReturn(INPROGRESS);
+        cache.update(job);
+        assertThat(cache.getJobs(job.getClass(), QUEUED), is(empty()));
+        assertThat(cache.getJobs(job.getClass(), INPROGRESS), contains(job));
+    }
+
+    @Test
+    public void whenJobBecomesFinalThenJobIsRemoved()
+    {
+        Job job = mockJob(1, QUEUED);
+        cache.canonicalize(job);
+        when(job.getState()).thenReturn(DONE);
+        cache.update(job);
+        assertThat(cache.getJob(1), is(nullValue()));
+        assertThat(cache.getJobs(job.getClass()), is(empty()));
+        assertThat(cache.getJobs(job.getClass(), QUEUED), is(empty()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void whenUpdatingCopyThenUpdateFails()
+    {
+        cache.canonicalize(mockJob(1, QUEUED));
+        cache.update(mockJob(1, INPROGRESS));
+    }
+
+    @Test
+    public void whenClearingCacheThenIndexesAreEmpty()
+    {
+        Job job = mockJob(1, QUEUED);
+        cache.canonicalize(job);
+        cache.clearCache();
+        assertThat(cache.getJob(1), is(nullValue()));
+        assertThat(cache.getJobs(job.getClass()), is(empty()));
+        assertThat(cache.getJobs(job.getClass(), QUEUED), is(empty()));
+    }
+
+    private static Job mockJob(long id, State state)
+    {
+        Job job = mock(Job.class);
+        when(job.getId()).thenReturn(id);
+        when(job.getState()).thenReturn(state);
+        return job;
+    }
+}
@@ -0,0 +1,122 @@
+package org.dcache.srm.scheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.dcache.srm.request.Job;
+
+import static org.mockito.Mockito.*;
+
+public class WriteBehindJobStorageTest
+{
+    private JobStorage<Job> storage;
+    private List<Runnable> tasks;
+    private List<Runnable> delayedTasks;
+    private WriteBehindJobStorage<Job> writeBehindStorage;
+    private Job job1;
+    private Job job2;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        storage = mock(JobStorage.class);
+        job1 = mockJob(1);
+        job2 = mockJob(2);
+        tasks = new ArrayList<>();
+        delayedTasks = new ArrayList<>();
+        ScheduledExecutorService scheduledExecutor = mock(ScheduledExecutorService.class);
+        ScheduledFuture<?> future = mock(ScheduledFuture.class);
+        when(future.cancel(anyBoolean())).thenReturn(true);
+        doAnswer(invocation -> {
+            delayedTasks.add((Runnable) invocation.getArguments()[0]);
+            return future;
+        }).when(scheduledExecutor).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        writeBehindStorage = new WriteBehindJobStorage<>(storage, tasks::add, scheduledExecutor, 1000, 2);
+    }
+
+    @Test
+    public void whenSavingThenNothingIsWrittenBeforeTheDelay() throws Exception
+    {
+        writeBehindStorage.saveJob(job1, false);
+        runTasks();
+        verifyZeroInteractions(storage);
+    }
+
+    @Test
+    public void whenDelayHasPassedThenJobIsWritten() throws Exception
+    {
+        writeBehindStorage.saveJob(job1, false);
+        runDelayedTasks();
+        runTasks();
+        verify(storage).saveJobs(Collections.singletonList(job1), false);
+    }
+
+    @Test
+    public void whenSavingTwiceThenJobIsWrittenOnceWithForce() throws Exception
+    {
+        writeBehindStorage.saveJob(job1, true);
+        writeBehindStorage.saveJob(job1, false);
+        runDelayedTasks();
+        runTasks();
+        verify(storage).saveJobs(Collections.singletonList(job1), true);
+        verifyNoMoreInteractions(storage);
+    }
+
+    @Test
+    public void whenBatchIsFullThenJobsAreWrittenWithoutDelay() throws Exception
+    {
+        writeBehindStorage.saveJob(job1, false);
+        writeBehindStorage.saveJob(job2, false);
+        runTasks();
+        verify(storage).saveJobs(Arrays.asList(job1, job2), false);
+    }
+
+    @Test
+    public void whenBatchFailsThenJobsAreWrittenOneByOne() throws Exception
+    {
+        doThrow(DataAccessResourceFailureException.class).when(storage).saveJobs(anyCollection(), anyBoolean());
+        writeBehindStorage.saveJob(job1, false);
+        writeBehindStorage.saveJob(job2, true);
+        runTasks();
+        verify(storage).saveJob(job1, false);
+        verify(storage).saveJob(job2, true);
+    }
+
+    @Test
+    public void whenShuttingDownThenDirtyJobsAreWritten() throws Exception
+    {
+        writeBehindStorage.saveJob(job1, false);
+        writeBehindStorage.shutdown();
+        verify(storage).saveJobs(Collections.singletonList(job1), false);
+    }
+
+    private static Job mockJob(long id)
+    {
+        Job job = mock(Job.class);
+        when(job.getId()).thenReturn(id);
+        return job;
+    }
+
+    private void runDelayedTasks()
+    {
+        List<Runnable> copy = new ArrayList<>(delayedTasks);
+        delayedTasks.clear();
+        copy.forEach(Runnable::run);
+    }
+
+    private void runTasks()
+    {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+}